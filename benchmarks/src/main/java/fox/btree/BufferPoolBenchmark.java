@@ -0,0 +1,85 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static fox.btree.TreeState.SIZE;
+
+/**
+ * Finds on a file backed {@link OffHeapBplusTree} with buffer pools of different sizes, for sizing the pool. The pool's
+ * hit ratio is printed at the end of each trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferPoolBenchmark {
+
+    @Param({"64"})
+    public int branchingFactor;
+
+    /**
+     * Frames in the pool. A 100k key tree with B = 64 has about 2300 nodes.
+     */
+    @Param({"64", "512", "4096"})
+    public int poolPages;
+
+    @Param({"CLOCK", "LRU"})
+    public EvictionPolicy policy;
+
+    @Param({"RANDOM", "ZIPFIAN"})
+    public KeyDistribution distribution;
+
+    private Path path;
+    private BufferPool pool;
+    private OffHeapBplusTree tree;
+    private long[] lookups;
+    private int pos;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        path = Files.createTempFile("bufferpool", ".btree");
+        pool = new BufferPool(new PageFile(path, OffHeapBplusTree.nodeSize(branchingFactor)), poolPages, policy);
+        tree = new OffHeapBplusTree(branchingFactor, pool);
+        Random random = new Random(0xB7EE);
+        for (long key : KeyDistribution.RANDOM.generate(SIZE, random)) {
+            tree.insert(key, key);
+        }
+        lookups = distribution.generate(SIZE, random);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%nhits %d misses %d evictions %d write backs %d hit ratio %.3f%n", pool.hits(),
+                pool.misses(), pool.evictions(), pool.writeBacks(),
+                (double) pool.hits() / (pool.hits() + pool.misses()));
+        tree.close();
+        Files.delete(path);
+    }
+
+    @Benchmark
+    public long find() {
+        long key = lookups[pos];
+        pos = pos == lookups.length - 1 ? 0 : pos + 1;
+        return tree.find(key, -1);
+    }
+}
@@ -0,0 +1,74 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static fox.btree.TreeState.SIZE;
+
+/**
+ * Building a tree from sorted input with the bulk loader compared with inserting the same entries one at a time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkLoadBenchmark {
+
+    @Param({"4", "16", "64", "128", "512"})
+    public int branchingFactor;
+
+    @Param({"LONG", "STRING"})
+    public KeyType keyType;
+
+    private List<Map.Entry<Comparable, Object>> entries;
+    private BasicBplusTree tree;
+
+    @Setup(Level.Trial)
+    public void setupEntries() {
+        entries = new ArrayList<>(SIZE);
+        for (long i = 0; i < SIZE; i++) {
+            Comparable key = keyType.key(i);
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(key, key));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupTree() {
+        tree = new BasicBplusTree(branchingFactor);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public BasicBplusTree bulkLoad() {
+        tree.bulkLoad(entries.iterator(), 1.0);
+        return tree;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public BasicBplusTree insert() {
+        for (Map.Entry<Comparable, Object> entry : entries) {
+            tree.insert(entry.getKey(), entry.getValue());
+        }
+        return tree;
+    }
+}
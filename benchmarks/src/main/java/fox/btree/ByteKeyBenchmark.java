@@ -0,0 +1,97 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static fox.btree.TreeState.SIZE;
+
+/**
+ * Finds on (String, long, enum) composite keys, comparing a Comparable composite key class with the same keys encoded
+ * as {@link ByteKey}s and searched with {@link SearchStrategy#UNSIGNED_BYTES}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteKeyBenchmark {
+
+    private static final KeyEncoder<Object[]> ENCODER = KeyEncoder.composite(KeyEncoder.STRING, KeyEncoder.LONG,
+            KeyEncoder.forEnum(TimeUnit.class));
+
+    @Param({"16", "64", "256"})
+    public int branchingFactor;
+
+    private CompositeKey[] compositeKeys;
+    private ByteKey[] byteKeys;
+    private BasicBplusTree compositeTree;
+    private BasicBplusTree byteKeyTree;
+    private int pos;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        long[] ks = KeyDistribution.RANDOM.generate(SIZE, new Random(0xB7EE));
+        compositeKeys = new CompositeKey[ks.length];
+        byteKeys = new ByteKey[ks.length];
+        compositeTree = new BasicBplusTree(branchingFactor, SearchStrategy.BINARY);
+        byteKeyTree = new BasicBplusTree(branchingFactor, SearchStrategy.UNSIGNED_BYTES);
+        TimeUnit[] units = TimeUnit.values();
+        for (int i = 0; i < ks.length; i++) {
+            compositeKeys[i] = new CompositeKey("tenant-" + ks[i] % 20, ks[i], units[(int) (ks[i] % units.length)]);
+            byteKeys[i] = ENCODER.encode(new Object[]{compositeKeys[i].tenant, compositeKeys[i].id,
+                    compositeKeys[i].unit});
+            compositeTree.insert(compositeKeys[i], ks[i]);
+            byteKeyTree.insert(byteKeys[i], ks[i]);
+        }
+    }
+
+    @Benchmark
+    public Object composite() {
+        CompositeKey key = compositeKeys[pos];
+        pos = pos == compositeKeys.length - 1 ? 0 : pos + 1;
+        return compositeTree.find(key);
+    }
+
+    @Benchmark
+    public Object byteKey() {
+        ByteKey key = byteKeys[pos];
+        pos = pos == byteKeys.length - 1 ? 0 : pos + 1;
+        return byteKeyTree.find(key);
+    }
+
+    static final class CompositeKey implements Comparable<CompositeKey> {
+
+        final String tenant;
+        final long id;
+        final TimeUnit unit;
+
+        CompositeKey(String tenant, long id, TimeUnit unit) {
+            this.tenant = tenant;
+            this.id = id;
+            this.unit = unit;
+        }
+
+        @Override
+        public int compareTo(CompositeKey other) {
+            int comp = tenant.compareTo(other.tenant);
+            if (comp == 0) {
+                comp = Long.compare(id, other.id);
+            }
+            return comp == 0 ? unit.compareTo(other.unit) : comp;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static fox.btree.TreeState.SIZE;
+
+/**
+ * Steady insert/remove churn: a hole of missing keys slides through the key space, so leaves are merged away at its
+ * leading edge and split again at its trailing edge, while the tree stays the same size. Run through
+ * {@link BenchmarkRunner} (or with "-prof gc") to see the allocation per operation, which should be zero once the
+ * tree's node pool has filled. With relaxed rebalancing the leaves at the leading edge are left to empty out and are
+ * filled again when the hole has passed, instead of being merged and split. They are never tidied, as the hole always
+ * comes back round to fill them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChurnBenchmark {
+
+    /**
+     * Number of consecutive keys missing from the tree at any time
+     */
+    private static final int HOLE = 10_000;
+
+    @Param({"16", "64", "256"})
+    public int branchingFactor;
+
+    @Param({"false", "true"})
+    public boolean relaxed;
+
+    private Long[] keys;
+    private BasicBplusTree tree;
+    private int pos;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        keys = new Long[SIZE];
+        tree = new BasicBplusTree(branchingFactor);
+        if (relaxed) {
+            tree.relaxRebalancing(0, 0);
+        }
+        for (int i = 0; i < SIZE; i++) {
+            keys[i] = (long) i;
+            if (i >= HOLE) {
+                tree.insert(keys[i], keys[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object churn() {
+        // Close the hole behind and open it up ahead
+        Long behind = keys[pos];
+        pos = pos + 1 == keys.length ? 0 : pos + 1;
+        int ahead = pos + HOLE - 1;
+        tree.insert(behind, behind);
+        return tree.remove(keys[ahead >= keys.length ? ahead - keys.length : ahead]);
+    }
+}
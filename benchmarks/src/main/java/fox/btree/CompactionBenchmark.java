@@ -0,0 +1,71 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static fox.btree.TreeState.SIZE;
+
+/**
+ * Finds in a tree left sparse by removing nine in every ten keys, before and after compacting it back to full nodes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactionBenchmark {
+
+    @Param({"16", "64", "256"})
+    public int branchingFactor;
+
+    @Param({"false", "true"})
+    public boolean compacted;
+
+    private Long[] keys;
+    private BasicBplusTree tree;
+    private int pos;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        long[] ks = KeyDistribution.RANDOM.generate(SIZE * 10, new Random(0xB7EE));
+        tree = new BasicBplusTree(branchingFactor);
+        keys = new Long[SIZE];
+        for (int i = 0; i < ks.length; i++) {
+            tree.insert(ks[i], ks[i]);
+        }
+        for (int i = 0; i < ks.length; i++) {
+            if (i % 10 == 0) {
+                keys[i / 10] = ks[i];
+            } else {
+                tree.remove(ks[i]);
+            }
+        }
+        if (compacted) {
+            Compactor compactor = tree.compactor(1.0);
+            compactor.finish();
+            System.out.printf("%nreclaimed %d nodes %d bytes in %d passes%n", compactor.nodesReclaimed(),
+                    compactor.bytesReclaimed(), compactor.passes());
+        }
+    }
+
+    @Benchmark
+    public Object find() {
+        Long key = keys[pos];
+        pos = pos + 1 == keys.length ? 0 : pos + 1;
+        return tree.find(key);
+    }
+}
@@ -0,0 +1,110 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static fox.btree.TreeState.SIZE;
+
+/**
+ * Read heavy mixed workload shared by all benchmark threads, comparing {@link ConcurrentBplusTree} and
+ * {@link BlinkBplusTree} with a {@link BasicBplusTree} behind one global lock. Run with increasing thread counts,
+ * e.g. "-t 1 -t 2 -t 4 -t 8", to see how each scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentBenchmark {
+
+    @Param({"16", "64", "256"})
+    public int branchingFactor;
+
+    /**
+     * Percentage of operations that are writes, split evenly between inserts and removes
+     */
+    @Param({"0", "10"})
+    public int writePercent;
+
+    private Long[] keys;
+    private ConcurrentBplusTree concurrent;
+    private BlinkBplusTree blink;
+    private BasicBplusTree locked;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        long[] ks = KeyDistribution.RANDOM.generate(SIZE, new Random(0xB7EE));
+        keys = new Long[ks.length];
+        concurrent = new ConcurrentBplusTree(branchingFactor);
+        blink = new BlinkBplusTree(branchingFactor);
+        locked = new BasicBplusTree(branchingFactor);
+        for (int i = 0; i < ks.length; i++) {
+            keys[i] = ks[i];
+            concurrent.insert(keys[i], keys[i]);
+            blink.insert(keys[i], keys[i]);
+            locked.insert(keys[i], keys[i]);
+        }
+    }
+
+    @Benchmark
+    public Object concurrent() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long key = keys[random.nextInt(keys.length)];
+        int r = random.nextInt(100);
+        if (r >= writePercent) {
+            return concurrent.find(key);
+        } else if ((r & 1) == 0) {
+            concurrent.insert(key, key);
+            return null;
+        } else {
+            return concurrent.remove(key);
+        }
+    }
+
+    @Benchmark
+    public Object blink() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long key = keys[random.nextInt(keys.length)];
+        int r = random.nextInt(100);
+        if (r >= writePercent) {
+            return blink.find(key);
+        } else if ((r & 1) == 0) {
+            blink.insert(key, key);
+            return null;
+        } else {
+            return blink.remove(key);
+        }
+    }
+
+    @Benchmark
+    public Object globalLock() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long key = keys[random.nextInt(keys.length)];
+        int r = random.nextInt(100);
+        synchronized (locked) {
+            if (r >= writePercent) {
+                return locked.find(key);
+            } else if ((r & 1) == 0) {
+                locked.insert(key, key);
+                return null;
+            } else {
+                return locked.remove(key);
+            }
+        }
+    }
+}
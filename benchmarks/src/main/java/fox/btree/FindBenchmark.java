@@ -0,0 +1,41 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point lookups against a fully populated tree.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindBenchmark extends TreeState {
+
+    private Comparable[] keys;
+    private BasicBplusTree tree;
+    private int pos;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tree = populatedTree(populationKeys());
+        keys = opKeys();
+    }
+
+    @Benchmark
+    public Object find() {
+        Comparable key = keys[pos];
+        pos = pos + 1 == keys.length ? 0 : pos + 1;
+        return tree.find(key);
+    }
+}
@@ -0,0 +1,47 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts a full key set into an empty tree.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsertBenchmark extends TreeState {
+
+    private Comparable[] keys;
+    private BasicBplusTree tree;
+
+    @Setup(Level.Trial)
+    public void setupKeys() {
+        keys = opKeys();
+    }
+
+    @Setup(Level.Invocation)
+    public void setupTree() {
+        tree = newTree();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public BasicBplusTree insert() {
+        for (Comparable key : keys) {
+            tree.insert(key, key);
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,82 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static fox.btree.TreeState.SIZE;
+
+/**
+ * Finds on trees of tenant/namespace/id String keys with and without {@link KeyCompression#PREFIX}. The number of
+ * chars held by the leaves and by the leaf separators is printed at the end of each trial; run with "-prof gc" to
+ * compare allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyCompressionBenchmark {
+
+    @Param({"16", "64", "256"})
+    public int branchingFactor;
+
+    @Param({"NONE", "PREFIX"})
+    public KeyCompression keyCompression;
+
+    private String[] keys;
+    private BasicBplusTree tree;
+    private int pos;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        long[] ks = KeyDistribution.RANDOM.generate(SIZE, new Random(0xB7EE));
+        keys = new String[ks.length];
+        tree = new BasicBplusTree(branchingFactor, keyCompression);
+        for (int i = 0; i < ks.length; i++) {
+            keys[i] = String.format("tenant-%04d/namespace-%02d/id-%012d", ks[i] % 50, ks[i] % 7, ks[i]);
+            tree.insert(keys[i], keys[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long leafChars = 0;
+        long separatorChars = 0;
+        for (LeafNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next()) {
+            if (leaf instanceof PrefixLeafNode) {
+                leafChars += ((PrefixLeafNode) leaf).storedChars();
+            } else {
+                for (int i = 0; i < leaf.numKeys(); i++) {
+                    leafChars += ((String) leaf.getKey(i)).length();
+                }
+            }
+            if (leaf.prev() != null) {
+                separatorChars += ((String) leaf.prev().separatorTo(leaf)).length();
+            }
+        }
+        System.out.printf("%nleaf key chars %d separator chars %d nodes %d%n", leafChars, separatorChars,
+                tree.nodeCount());
+    }
+
+    @Benchmark
+    public Object find() {
+        String key = keys[pos];
+        pos = pos == keys.length - 1 ? 0 : pos + 1;
+        return tree.find(key);
+    }
+}
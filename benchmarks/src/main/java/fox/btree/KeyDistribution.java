@@ -0,0 +1,112 @@
+package fox.btree;
+
+import java.util.Random;
+
+/**
+ * The order in which a benchmark presents keys to the tree. All distributions draw from {@code [0, count)}.
+ */
+public enum KeyDistribution {
+
+    SEQUENTIAL {
+        @Override
+        long[] generate(int count, Random random) {
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = i;
+            }
+            return keys;
+        }
+    },
+
+    REVERSE {
+        @Override
+        long[] generate(int count, Random random) {
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = count - 1 - i;
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * Every key exactly once, shuffled
+     */
+    RANDOM {
+        @Override
+        long[] generate(int count, Random random) {
+            long[] keys = SEQUENTIAL.generate(count, random);
+            for (int i = count - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                long tmp = keys[i];
+                keys[i] = keys[j];
+                keys[j] = tmp;
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * Skewed towards a small set of hot keys, which are scattered over the key space so they don't all land in the
+     * same leaf. Keys repeat so inserts overwrite and removes miss.
+     */
+    ZIPFIAN {
+        @Override
+        long[] generate(int count, Random random) {
+            ZipfianGenerator zipf = new ZipfianGenerator(count, random);
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                long rank = zipf.next();
+                // Scatter the hot ranks over the key space
+                keys[i] = (rank * 0x9E3779B97F4A7C15L >>> 1) % count;
+            }
+            return keys;
+        }
+    };
+
+    abstract long[] generate(int count, Random random);
+
+    /**
+     * Zipfian generator using the rejection free method from Gray et al, "Quickly Generating Billion-Record Synthetic
+     * Databases".
+     */
+    private static final class ZipfianGenerator {
+
+        private static final double THETA = 0.99;
+
+        private final int items;
+        private final Random random;
+        private final double alpha;
+        private final double zetan;
+        private final double eta;
+
+        ZipfianGenerator(int items, Random random) {
+            this.items = items;
+            this.random = random;
+            double zeta2 = zeta(2);
+            this.zetan = zeta(items);
+            this.alpha = 1.0 / (1.0 - THETA);
+            this.eta = (1 - Math.pow(2.0 / items, 1 - THETA)) / (1 - zeta2 / zetan);
+        }
+
+        long next() {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < 1.0 + Math.pow(0.5, THETA)) {
+                return 1;
+            }
+            return (long) (items * Math.pow(eta * u - eta + 1, alpha));
+        }
+
+        private double zeta(int n) {
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1 / Math.pow(i + 1, THETA);
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package fox.btree;
+
+/**
+ * The type of key stored in the tree. String keys are zero padded so they sort in the same order as the numbers they
+ * were generated from.
+ */
+public enum KeyType {
+
+    LONG {
+        @Override
+        Comparable key(long k) {
+            return k;
+        }
+    },
+
+    STRING {
+        @Override
+        Comparable key(long k) {
+            return String.format("key-%012d", k);
+        }
+    };
+
+    abstract Comparable key(long k);
+
+    Comparable[] keys(long[] ks) {
+        Comparable[] keys = new Comparable[ks.length];
+        for (int i = 0; i < ks.length; i++) {
+            keys[i] = key(ks[i]);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,77 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static fox.btree.TreeState.SIZE;
+
+/**
+ * Insert and find on {@link LongBplusTree}, for comparison with the LONG key type runs of {@link InsertBenchmark} and
+ * {@link FindBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongBplusTreeBenchmark {
+
+    private static final Object VALUE = new Object();
+
+    @Param({"4", "16", "64", "128", "512"})
+    public int branchingFactor;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN", "REVERSE"})
+    public KeyDistribution distribution;
+
+    private long[] keys;
+    private LongBplusTree populated;
+    private LongBplusTree empty;
+    private int pos;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(0xB7EE);
+        keys = distribution.generate(SIZE, random);
+        populated = new LongBplusTree(branchingFactor);
+        for (long key : KeyDistribution.RANDOM.generate(SIZE, random)) {
+            populated.insert(key, VALUE);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupEmpty() {
+        empty = new LongBplusTree(branchingFactor);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public LongBplusTree insert() {
+        for (long key : keys) {
+            empty.insert(key, VALUE);
+        }
+        return empty;
+    }
+
+    @Benchmark
+    public Object find() {
+        long key = keys[pos];
+        pos = pos + 1 == keys.length ? 0 : pos + 1;
+        return populated.find(key);
+    }
+}
@@ -0,0 +1,58 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of {@link TreeStats}: finds, and removes each followed by reinserting the same key, with metrics enabled
+ * compared with disabled. Disabled should match {@link FindBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark extends TreeState {
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private Comparable[] keys;
+    private BasicBplusTree tree;
+    private int pos;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tree = populatedTree(populationKeys());
+        keys = opKeys();
+        if (metrics) {
+            tree.enableMetrics();
+        }
+    }
+
+    @Benchmark
+    public Object find() {
+        Comparable key = keys[pos];
+        pos = pos + 1 == keys.length ? 0 : pos + 1;
+        return tree.find(key);
+    }
+
+    @Benchmark
+    public Object removeInsert() {
+        Comparable key = keys[pos];
+        pos = pos + 1 == keys.length ? 0 : pos + 1;
+        Object value = tree.remove(key);
+        tree.insert(key, value);
+        return value;
+    }
+}
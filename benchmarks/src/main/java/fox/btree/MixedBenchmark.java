@@ -0,0 +1,68 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A read mostly mix of finds, inserts and removes against a populated tree. Inserts and removes hit the same key
+ * distribution so the tree stays roughly the same size.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MixedBenchmark extends TreeState {
+
+    private static final byte FIND = 0;
+    private static final byte INSERT = 1;
+    private static final byte REMOVE = 2;
+
+    /**
+     * Percentage of operations that are writes, split evenly between inserts and removes
+     */
+    @Param({"20"})
+    public int writePercent;
+
+    private Comparable[] keys;
+    private byte[] ops;
+    private BasicBplusTree tree;
+    private int pos;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tree = populatedTree(populationKeys());
+        keys = opKeys();
+        ops = new byte[keys.length];
+        for (int i = 0; i < ops.length; i++) {
+            int r = random.nextInt(100);
+            ops[i] = r >= writePercent ? FIND : r % 2 == 0 ? INSERT : REMOVE;
+        }
+    }
+
+    @Benchmark
+    public Object mixed() {
+        Comparable key = keys[pos];
+        byte op = ops[pos];
+        pos = pos + 1 == keys.length ? 0 : pos + 1;
+        switch (op) {
+            case INSERT:
+                tree.insert(key, key);
+                return null;
+            case REMOVE:
+                return tree.remove(key);
+            default:
+                return tree.find(key);
+        }
+    }
+}
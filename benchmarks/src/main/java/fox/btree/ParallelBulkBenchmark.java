@@ -0,0 +1,103 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static fox.btree.TreeState.SIZE;
+
+/**
+ * Building a tree from unsorted entries and purging ranges of keys from it, serially compared with in parallel on the
+ * common fork-join pool. The parallel versions only pull ahead with several cores to spread the leaves over.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelBulkBenchmark {
+
+    /**
+     * Entries in each built tree
+     */
+    private static final int ENTRIES = SIZE * 10;
+
+    @Param({"16", "128"})
+    public int branchingFactor;
+
+    private List<Map.Entry<Comparable, Object>> entries;
+    private List<KeyRange> ranges;
+    private BasicBplusTree empty;
+    private BasicBplusTree full;
+
+    @Setup(Level.Trial)
+    public void setupEntries() {
+        entries = new ArrayList<>(ENTRIES);
+        for (long i = 0; i < ENTRIES; i++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(i, i));
+        }
+        Collections.shuffle(entries, new Random(0x5EED));
+        // Every other block of a thousand keys
+        ranges = new ArrayList<>();
+        for (long from = 0; from < ENTRIES; from += 2000) {
+            ranges.add(new KeyRange(from, from + 1000));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupTrees() {
+        empty = new BasicBplusTree(branchingFactor);
+        full = new BasicBplusTree(branchingFactor);
+        full.parallelBulkLoad(entries, 1.0);
+    }
+
+    @Benchmark
+    public BasicBplusTree serialLoad() {
+        List<Map.Entry<Comparable, Object>> sorted = new ArrayList<>(entries);
+        sorted.sort((e1, e2) -> e1.getKey().compareTo(e2.getKey()));
+        empty.bulkLoad(sorted.iterator(), 1.0);
+        return empty;
+    }
+
+    @Benchmark
+    public BasicBplusTree parallelLoad() {
+        empty.parallelBulkLoad(entries, 1.0);
+        return empty;
+    }
+
+    @Benchmark
+    public int serialPurge() {
+        int removed = 0;
+        for (KeyRange range : ranges) {
+            for (long key = (Long) range.from(); key < (Long) range.to(); key++) {
+                if (full.remove(key) != null) {
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Benchmark
+    public int parallelPurge() {
+        return full.parallelRemoveRanges(ranges);
+    }
+}
@@ -0,0 +1,87 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.AbstractMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static fox.btree.TreeState.SIZE;
+
+/**
+ * Updates that nearly all split or rebalance a node, at large branching factors where the cost of a node finding its
+ * position in its parent shows. Removes run against a tree bulk loaded at the minimum fill, so every remove from a leaf
+ * has to steal from or merge with a sibling. Inserts go between the keys of a tree bulk loaded full, so the first
+ * insert into every leaf splits it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RebalanceBenchmark {
+
+    @Param({"256", "1024", "4096"})
+    public int branchingFactor;
+
+    private Long[] keys;
+    private Long[] between;
+    private BasicBplusTree sparse;
+    private BasicBplusTree full;
+
+    @Setup(Level.Trial)
+    public void setupKeys() {
+        long[] shuffled = KeyDistribution.RANDOM.generate(SIZE, new Random(0xB7EE));
+        keys = new Long[SIZE];
+        between = new Long[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            keys[i] = shuffled[i] * 2;
+            between[i] = shuffled[i] * 2 + 1;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupTrees() {
+        sparse = loaded(0.01);
+        full = loaded(1);
+    }
+
+    private BasicBplusTree loaded(double fillFactor) {
+        BasicBplusTree tree = new BasicBplusTree(branchingFactor);
+        tree.bulkLoad(IntStream.range(0, SIZE).mapToObj(i -> new AbstractMap.SimpleEntry<>((long) i * 2, i)),
+                fillFactor);
+        return tree;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public BasicBplusTree remove() {
+        for (Long key : keys) {
+            sparse.remove(key);
+        }
+        return sparse;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public BasicBplusTree insert() {
+        for (Long key : between) {
+            full.insert(key, key);
+        }
+        return full;
+    }
+}
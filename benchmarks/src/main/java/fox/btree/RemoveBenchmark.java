@@ -0,0 +1,49 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes a key set from a fully populated tree. Zipfian keys repeat so some of the removes miss.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemoveBenchmark extends TreeState {
+
+    private Comparable[] population;
+    private Comparable[] keys;
+    private BasicBplusTree tree;
+
+    @Setup(Level.Trial)
+    public void setupKeys() {
+        population = populationKeys();
+        keys = opKeys();
+    }
+
+    @Setup(Level.Invocation)
+    public void setupTree() {
+        tree = populatedTree(population);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public BasicBplusTree remove() {
+        for (Comparable key : keys) {
+            tree.remove(key);
+        }
+        return tree;
+    }
+}
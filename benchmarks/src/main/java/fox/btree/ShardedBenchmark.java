@@ -0,0 +1,124 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static fox.btree.TreeState.SIZE;
+
+/**
+ * Write heavy workload shared by all benchmark threads, comparing a {@link ShardedBplusTree} with a
+ * {@link BasicBplusTree} behind one global lock and a {@link ConcurrentBplusTree}. Run with increasing thread counts,
+ * e.g. "-t 1 -t 2 -t 4 -t 8", and with as many shards as cores to see how the writes scale.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardedBenchmark {
+
+    @Param({"64"})
+    public int branchingFactor;
+
+    @Param({"1", "4"})
+    public int shards;
+
+    /**
+     * Percentage of operations that are writes, split evenly between inserts and removes
+     */
+    @Param({"50", "100"})
+    public int writePercent;
+
+    private Long[] keys;
+    private ShardedBplusTree sharded;
+    private ConcurrentBplusTree concurrent;
+    private BasicBplusTree locked;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        long[] ks = KeyDistribution.RANDOM.generate(SIZE, new Random(0xB7EE));
+        keys = new Long[ks.length];
+        // Start the shards off evenly over the key space
+        Comparable[] splitKeys = new Comparable[shards - 1];
+        for (int i = 0; i < splitKeys.length; i++) {
+            splitKeys[i] = (long) SIZE * (i + 1) / shards;
+        }
+        sharded = new ShardedBplusTree(branchingFactor, splitKeys);
+        concurrent = new ConcurrentBplusTree(branchingFactor);
+        locked = new BasicBplusTree(branchingFactor);
+        for (int i = 0; i < ks.length; i++) {
+            keys[i] = ks[i];
+            sharded.insert(keys[i], keys[i]);
+            concurrent.insert(keys[i], keys[i]);
+            locked.insert(keys[i], keys[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sharded.close();
+    }
+
+    @Benchmark
+    public Object sharded() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long key = keys[random.nextInt(keys.length)];
+        int r = random.nextInt(100);
+        if (r >= writePercent) {
+            return sharded.find(key);
+        } else if ((r & 1) == 0) {
+            sharded.insert(key, key);
+            return null;
+        } else {
+            return sharded.remove(key);
+        }
+    }
+
+    @Benchmark
+    public Object concurrent() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long key = keys[random.nextInt(keys.length)];
+        int r = random.nextInt(100);
+        if (r >= writePercent) {
+            return concurrent.find(key);
+        } else if ((r & 1) == 0) {
+            concurrent.insert(key, key);
+            return null;
+        } else {
+            return concurrent.remove(key);
+        }
+    }
+
+    @Benchmark
+    public Object globalLock() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long key = keys[random.nextInt(keys.length)];
+        int r = random.nextInt(100);
+        synchronized (locked) {
+            if (r >= writePercent) {
+                return locked.find(key);
+            } else if ((r & 1) == 0) {
+                locked.insert(key, key);
+                return null;
+            } else {
+                return locked.remove(key);
+            }
+        }
+    }
+}
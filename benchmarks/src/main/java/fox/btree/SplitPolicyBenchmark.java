@@ -0,0 +1,81 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static fox.btree.TreeState.SIZE;
+
+/**
+ * Inserts a full key set into an empty tree under each {@link SplitPolicy}, and prints the leaf fill the policy left
+ * behind, which is what decides how many nodes a scan has to touch afterwards.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SplitPolicyBenchmark {
+
+    @Param({"16", "64"})
+    public int branchingFactor;
+
+    @Param({"MIDDLE", "APPEND", "PREPEND", "AUTO"})
+    public SplitPolicy policy;
+
+    @Param({"SEQUENTIAL", "REVERSE", "RANDOM"})
+    public KeyDistribution distribution;
+
+    private Long[] keys;
+    private BasicBplusTree tree;
+
+    @Setup(Level.Trial)
+    public void setupKeys() {
+        long[] ks = distribution.generate(SIZE, new Random(0x5B17));
+        keys = new Long[ks.length];
+        for (int i = 0; i < ks.length; i++) {
+            keys[i] = ks[i];
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupTree() {
+        tree = new BasicBplusTree(branchingFactor, SearchStrategy.BINARY, KeyCompression.NONE, policy);
+    }
+
+    @TearDown(Level.Trial)
+    public void printFill() {
+        BasicBplusTree filled = new BasicBplusTree(branchingFactor, SearchStrategy.BINARY, KeyCompression.NONE,
+                policy);
+        TreeStats stats = filled.enableMetrics();
+        for (Long key : keys) {
+            filled.insert(key, key);
+        }
+        System.out.printf("%n%s/%s b=%d: %d leaves, average leaf fill %.3f%n", policy, distribution,
+                branchingFactor, stats.getLeafCount(), stats.getAverageLeafFill());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public BasicBplusTree insert() {
+        for (Long key : keys) {
+            tree.insert(key, key);
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,59 @@
+package fox.btree;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Parameters shared by all the tree benchmarks.
+ */
+@State(Scope.Thread)
+public class TreeState {
+
+    /**
+     * Number of keys in each run. Benchmarks that work on a whole key set per invocation report per key figures by
+     * using this as their operations per invocation.
+     */
+    public static final int SIZE = 100_000;
+
+    @Param({"4", "16", "64", "128", "512"})
+    public int branchingFactor;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN", "REVERSE"})
+    public KeyDistribution distribution;
+
+    @Param({"LONG", "STRING"})
+    public KeyType keyType;
+
+    // Fixed seed so every run of a parameter combination sees the same keys
+    protected final Random random = new Random(0xB7EE);
+
+    /**
+     * The keys presented to the operation under test, in distribution order.
+     */
+    protected Comparable[] opKeys() {
+        return keyType.keys(distribution.generate(SIZE, random));
+    }
+
+    /**
+     * Every key in the key space, shuffled, used to populate trees that the operation under test reads or removes
+     * from.
+     */
+    protected Comparable[] populationKeys() {
+        return keyType.keys(KeyDistribution.RANDOM.generate(SIZE, random));
+    }
+
+    protected BasicBplusTree newTree() {
+        return new BasicBplusTree(branchingFactor);
+    }
+
+    protected BasicBplusTree populatedTree(Comparable[] keys) {
+        BasicBplusTree tree = newTree();
+        for (Comparable key : keys) {
+            tree.insert(key, key);
+        }
+        return tree;
+    }
+}
@@ -1,8 +1,5 @@
 package fox.btree;
 
-import java.util.LinkedList;
-import java.util.Queue;
-
 /**
  * Created by tim on 08/12/16.
  */
@@ -13,6 +10,13 @@ public abstract class BaseNode implements Node {
 
     protected InternalNode parent;
 
+    /**
+     * This node's position in its parent's children. Only kept up to date for the nodes on the path of the current
+     * update, which is recorded as it descends, so that splits and merges can find their siblings directly. Splits
+     * also fix up the nodes they move, as a batch insert may carry on splitting a leaf that has moved.
+     */
+    protected int posInParent;
+
     public BaseNode(BasicBplusTree tree) {
         this.tree = tree;
         this.nodeNum = tree.nextNodeCount();
@@ -39,32 +43,57 @@ public abstract class BaseNode implements Node {
 
     public abstract LeafNode findLeaf(Comparable key);
 
-    public void dump() {
-        Queue<Node> level = new LinkedList<>();
-        level.add(this);
-        while (!level.isEmpty()) {
-            int count = level.size();
-            for (int i = 0; i < count; i++) {
-                Node node = level.poll();
-                System.out.print("N" + node.getNodeNum());
-                if (node.getParent() != null) {
-                    System.out.print("|P" + node.getParent().getNodeNum() + "|");
-                } else {
-                    System.out.print("|root|");
-                }
-                for (int j = 0; j < node.numKeys(); j++) {
-                    Comparable key = node.getKey(j);
-                    System.out.print(key + "|");
-                }
-                System.out.print("  ");
-                if (!node.isLeaf()) {
-                    for (int j = 0; j < node.numKeys(); j++) {
-                        Node child = node.getChild(j);
-                        level.add(child);
-                    }
-                }
+    /**
+     * @return the number of keys in the subtree under this node
+     */
+    abstract int subtreeCount();
+
+    /**
+     * Add to the count this node's ancestors keep for the subtree it is in, all the way up to the root. Relies on the
+     * positions recorded by the descent to this node.
+     */
+    void addToAncestorCounts(int delta) {
+        BaseNode node = this;
+        while (node.parent != null) {
+            node.parent.addChildCount(node.posInParent, delta);
+            node = node.parent;
+        }
+    }
+
+    /**
+     * @return true if this is the last node on its level. Relies on the positions recorded by the descent.
+     */
+    boolean onRightEdge() {
+        for (BaseNode node = this; node.parent != null; node = node.parent) {
+            if (node.posInParent != node.parent.numChildren() - 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if this is the first node on its level. Relies on the positions recorded by the descent.
+     */
+    boolean onLeftEdge() {
+        for (BaseNode node = this; node.parent != null; node = node.parent) {
+            if (node.posInParent != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record the positions of this node and its ancestors, for a node that wasn't reached by a descent.
+     */
+    void locateInParents() {
+        for (BaseNode node = this; node.parent != null; node = node.parent) {
+            int pos = 0;
+            while (node.parent.getChild(pos) != node) {
+                pos++;
             }
-            System.out.print(" ****\n");
+            node.posInParent = pos;
         }
     }
 
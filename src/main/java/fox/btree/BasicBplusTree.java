@@ -1,5 +1,15 @@
 package fox.btree;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * A very basic B+Tree used to experiment and play with the structure.
  * <p>
@@ -10,28 +20,388 @@ package fox.btree;
 public class BasicBplusTree {
 
     private final int branchingFactor;
+    private final SearchStrategy searchStrategy;
+    private final KeyCompression keyCompression;
+    private final SplitPolicy splitPolicy;
+    private final NodePool nodePool = new NodePool(NodePool.DEFAULT_CAPACITY);
+    private TreeMetrics metrics = TreeMetrics.DISABLED;
+    // The search strategy in use, which counts comparisons while metrics are enabled
+    private SearchStrategy search;
     private int keycount;
     private int nodeCount;
     private Node root;
+    // The leaf the last insert went into and which end of it, for SplitPolicy.AUTO
+    private LeafNode lastInsertLeaf;
+    private int lastInsertEnd;
+    // Leaves are rebalanced straight away below this many keys, and deferred down to it
+    private int underflowFloor;
+    private int tidyThreshold;
+    private final List<LeafNode> pendingTidy = new ArrayList<>();
 
     public BasicBplusTree(int branchingFactor) {
+        this(branchingFactor, SearchStrategy.forBranchingFactor(branchingFactor));
+    }
+
+    public BasicBplusTree(int branchingFactor, SearchStrategy searchStrategy) {
+        this(branchingFactor, searchStrategy, KeyCompression.NONE);
+    }
+
+    public BasicBplusTree(int branchingFactor, KeyCompression keyCompression) {
+        this(branchingFactor, SearchStrategy.forBranchingFactor(branchingFactor), keyCompression);
+    }
+
+    public BasicBplusTree(int branchingFactor, SplitPolicy splitPolicy) {
+        this(branchingFactor, SearchStrategy.forBranchingFactor(branchingFactor), KeyCompression.NONE, splitPolicy);
+    }
+
+    public BasicBplusTree(int branchingFactor, SearchStrategy searchStrategy, KeyCompression keyCompression) {
+        this(branchingFactor, searchStrategy, keyCompression, SplitPolicy.MIDDLE);
+    }
+
+    /**
+     * @param keyCompression how the leaves store their keys. The search strategy is not used by leaves with
+     *                       {@link KeyCompression#PREFIX}, which compare the packed suffixes in place.
+     * @param splitPolicy    where full nodes are split
+     */
+    public BasicBplusTree(int branchingFactor, SearchStrategy searchStrategy, KeyCompression keyCompression,
+                          SplitPolicy splitPolicy) {
         if (branchingFactor < 4) {
             throw new IllegalArgumentException("branchingFactor must be >= 4");
         }
+        if (searchStrategy == null) {
+            throw new IllegalArgumentException("searchStrategy must be specified");
+        }
+        if (keyCompression == null) {
+            throw new IllegalArgumentException("keyCompression must be specified");
+        }
+        if (splitPolicy == null) {
+            throw new IllegalArgumentException("splitPolicy must be specified");
+        }
         this.branchingFactor = branchingFactor;
-        this.root = new LeafNode(this);
+        this.searchStrategy = searchStrategy;
+        this.keyCompression = keyCompression;
+        this.splitPolicy = splitPolicy;
+        this.search = searchStrategy;
+        this.underflowFloor = minLeafKeys();
+        this.root = newLeaf();
     }
 
     public void insert(Comparable key, Object value) {
+        long start = metrics.startTimer();
         root.insert(key, value);
+        metrics.insertDone(start);
+    }
+
+    /**
+     * Build this tree bottom up from entries in ascending key order, which is much cheaper than inserting them one at
+     * a time. The tree must be empty.
+     *
+     * @param fillFactor how full to make each node, between 0 (exclusive) and 1. Nodes are never filled below the
+     *                   minimum for the branching factor.
+     */
+    public void bulkLoad(Iterator<? extends Map.Entry<? extends Comparable, ?>> sorted, double fillFactor) {
+        new BulkLoader(this, fillFactor).load(sorted);
+    }
+
+    public void bulkLoad(Stream<? extends Map.Entry<? extends Comparable, ?>> sorted, double fillFactor) {
+        bulkLoad(sorted.iterator(), fillFactor);
+    }
+
+    /**
+     * Build this tree from entries in any order using the common fork-join pool. The tree must be empty and the keys
+     * must be unique.
+     *
+     * @see #parallelBulkLoad(Collection, double, ForkJoinPool)
+     */
+    public void parallelBulkLoad(Collection<? extends Map.Entry<? extends Comparable, ?>> entries, double fillFactor) {
+        parallelBulkLoad(entries, fillFactor, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Build this tree from entries in any order, sorting them and filling the leaves in parallel on a fork-join pool.
+     * The tree must be empty and the keys must be unique. The result is the same as bulk loading the sorted entries.
+     */
+    public void parallelBulkLoad(Collection<? extends Map.Entry<? extends Comparable, ?>> entries, double fillFactor,
+                                 ForkJoinPool pool) {
+        new ParallelBulkLoader(this, fillFactor, pool).load(entries);
+    }
+
+    /**
+     * Remove every key in a set of disjoint ranges using the common fork-join pool.
+     *
+     * @see #parallelRemoveRanges(Collection, ForkJoinPool)
+     */
+    public int parallelRemoveRanges(Collection<KeyRange> ranges) {
+        return parallelRemoveRanges(ranges, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Remove every key in a set of disjoint ranges. The leaves are purged in parallel on a fork-join pool, then the
+     * leaves left under the minimum are merged in one pass and the internal levels rebuilt fully packed.
+     *
+     * @return the number of keys removed
+     */
+    public int parallelRemoveRanges(Collection<KeyRange> ranges, ForkJoinPool pool) {
+        return new ParallelBulkLoader(this, 1.0, pool).purge(ranges);
+    }
+
+    /**
+     * Start compacting this tree, repacking nodes left under-filled by removes towards a fill factor. Nothing is done
+     * until the compactor is stepped, and the tree can be updated as normal in between steps.
+     *
+     * @param fillFactor how full to make each node, as for {@link #bulkLoad(Iterator, double)}
+     */
+    public Compactor compactor(double fillFactor) {
+        return new Compactor(this, fillFactor);
+    }
+
+    /**
+     * Insert or update a batch of entries. The batch is sorted and the keys that land in the same leaf are applied
+     * together, with one descent and at most one split per leaf.
+     */
+    public BatchResult putAll(Map<? extends Comparable, ?> batch) {
+        return new BatchInserter(this).putAll(batch);
     }
 
     public Object find(Comparable key) {
-        return root.find(key);
+        long start = metrics.startTimer();
+        Object value = root.find(key);
+        metrics.findDone(start);
+        return value;
     }
 
     public Object remove(Comparable key) {
-        return root.remove(key);
+        long start = metrics.startTimer();
+        Object value = root.remove(key);
+        if (tidyThreshold > 0 && pendingTidy.size() >= tidyThreshold) {
+            tidy();
+        }
+        metrics.removeDone(start);
+        return value;
+    }
+
+    /**
+     * Let leaves fall under the minimum number of keys without rebalancing them, so a key removed and soon inserted
+     * again doesn't merge and then split the same leaves. The leaves are rebalanced in batches by {@link #tidy()}, and
+     * straight away only if they fall under the floor.
+     *
+     * @param underflowFloor the fewest keys a leaf can be left with, between 0 (leaves can be left empty) and the
+     *                       minimum for the branching factor (no relaxation)
+     * @param tidyThreshold  how many leaves can be waiting before a remove tidies the tree, or 0 to only tidy when
+     *                       {@link #tidy()} is called
+     */
+    public void relaxRebalancing(int underflowFloor, int tidyThreshold) {
+        if (underflowFloor < 0 || underflowFloor > minLeafKeys()) {
+            throw new IllegalArgumentException("underflowFloor must be between 0 and " + minLeafKeys());
+        }
+        if (tidyThreshold < 0) {
+            throw new IllegalArgumentException("tidyThreshold must be >= 0");
+        }
+        this.underflowFloor = underflowFloor;
+        this.tidyThreshold = tidyThreshold;
+    }
+
+    /**
+     * Tidy the tree and go back to rebalancing leaves as soon as they fall under the minimum.
+     */
+    public void strictRebalancing() {
+        tidy();
+        underflowFloor = minLeafKeys();
+        tidyThreshold = 0;
+    }
+
+    public boolean isRelaxed() {
+        return underflowFloor < minLeafKeys();
+    }
+
+    /**
+     * Rebalance the leaves left under the minimum while rebalancing was relaxed. Leaves that have been filled up
+     * again since are left alone.
+     *
+     * @return the number of leaves that were rebalanced
+     */
+    public int tidy() {
+        int tidied = 0;
+        for (LeafNode leaf : pendingTidy) {
+            // Leaves merged away since have been reset
+            if (leaf.pendingTidy() && leaf.tidy()) {
+                tidied++;
+            }
+        }
+        pendingTidy.clear();
+        return tidied;
+    }
+
+    /**
+     * Scan the entries between two keys in ascending order. A null bound means the range is unbounded at that end.
+     */
+    public Cursor scan(Comparable from, boolean fromInclusive, Comparable to, boolean toInclusive) {
+        LeafNode leaf;
+        int pos;
+        if (from == null) {
+            leaf = firstLeaf();
+            pos = 0;
+        } else {
+            leaf = ((BaseNode) root).findLeaf(from);
+            pos = leaf.search(from);
+            if (pos >= 0) {
+                pos = fromInclusive ? pos : pos + 1;
+            } else {
+                pos = -(pos + 1);
+            }
+        }
+        return new LeafCursor(leaf, pos, to, toInclusive, false);
+    }
+
+    /**
+     * Scan the entries between two keys in descending order, starting at {@code from} which is the upper bound of the
+     * range. A null bound means the range is unbounded at that end.
+     */
+    public Cursor descendingScan(Comparable from, boolean fromInclusive, Comparable to, boolean toInclusive) {
+        LeafNode leaf;
+        int pos;
+        if (from == null) {
+            leaf = lastLeaf();
+            pos = leaf.numKeys() - 1;
+        } else {
+            leaf = ((BaseNode) root).findLeaf(from);
+            pos = leaf.search(from);
+            if (pos >= 0) {
+                pos = fromInclusive ? pos : pos - 1;
+            } else {
+                pos = -(pos + 1) - 1;
+            }
+        }
+        return new LeafCursor(leaf, pos, to, toInclusive, true);
+    }
+
+    public Cursor scan() {
+        return scan(null, true, null, true);
+    }
+
+    public Cursor descendingScan() {
+        return descendingScan(null, true, null, true);
+    }
+
+    /**
+     * @return a stream of all the entries in key order. The tree must not be modified while it is in use.
+     */
+    public Stream<Map.Entry<Comparable, Object>> stream() {
+        return StreamSupport.stream(spliterator(null, true, null, true), false);
+    }
+
+    /**
+     * @return a stream of the entries from a key inclusive to another exclusive, in key order
+     */
+    public Stream<Map.Entry<Comparable, Object>> stream(Comparable from, Comparable to) {
+        return StreamSupport.stream(spliterator(from, true, to, false), false);
+    }
+
+    /**
+     * @return a parallel stream of all the entries. Each fork join task works through its own whole subtrees.
+     */
+    public Stream<Map.Entry<Comparable, Object>> parallelStream() {
+        return StreamSupport.stream(spliterator(null, true, null, true), true);
+    }
+
+    public Stream<Map.Entry<Comparable, Object>> parallelStream(Comparable from, Comparable to) {
+        return StreamSupport.stream(spliterator(from, true, to, false), true);
+    }
+
+    /**
+     * @return a spliterator over the entries between two keys, which splits at internal node child boundaries and
+     * always knows its exact size. A null bound means the range is unbounded at that end.
+     */
+    public Spliterator<Map.Entry<Comparable, Object>> spliterator(Comparable from, boolean fromInclusive,
+                                                                Comparable to, boolean toInclusive) {
+        int lo = from == null ? 0 : countBelow(from, !fromInclusive);
+        int hi = to == null ? keycount : countBelow(to, toInclusive);
+        return new TreeSpliterator(this, lo, Math.max(lo, hi));
+    }
+
+    /**
+     * @return the number of keys less than the key, which is the position the key has, or would have, in key order.
+     * Uses the subtree counts in the internal nodes rather than visiting the keys.
+     */
+    public int rank(Comparable key) {
+        return countBelow(key, false);
+    }
+
+    /**
+     * @return the key at a position in key order, counting from 0
+     */
+    public Comparable select(int index) {
+        if (index < 0 || index >= keycount) {
+            throw new IllegalArgumentException("index " + index + " out of range for " + keycount + " keys");
+        }
+        Node node = root;
+        while (!node.isLeaf()) {
+            InternalNode internal = (InternalNode) node;
+            int pos = 0;
+            while (index >= internal.childCount(pos)) {
+                index -= internal.childCount(pos);
+                pos++;
+            }
+            node = internal.getChild(pos);
+        }
+        return node.getKey(index);
+    }
+
+    /**
+     * @return the number of keys from a key inclusive to another exclusive
+     */
+    public int count(Comparable from, Comparable to) {
+        return count(from, true, to, false);
+    }
+
+    /**
+     * @return the number of keys between two keys. A null bound means the range is unbounded at that end.
+     */
+    public int count(Comparable from, boolean fromInclusive, Comparable to, boolean toInclusive) {
+        int upper = to == null ? keycount : countBelow(to, toInclusive);
+        int lower = from == null ? 0 : countBelow(from, !fromInclusive);
+        return Math.max(0, upper - lower);
+    }
+
+    /**
+     * @return the number of keys less than the key, or less than or equal to it if inclusive
+     */
+    private int countBelow(Comparable key, boolean inclusive) {
+        int count = 0;
+        Node node = root;
+        while (!node.isLeaf()) {
+            InternalNode internal = (InternalNode) node;
+            int pos = internal.childIndex(key);
+            for (int i = 0; i < pos; i++) {
+                count += internal.childCount(i);
+            }
+            node = internal.getChild(pos);
+        }
+        int i = ((LeafNode) node).search(key);
+        return count + (i < 0 ? -(i + 1) : inclusive ? i + 1 : i);
+    }
+
+    /**
+     * Start recording metrics for this tree, or carry on if they already are. Until then the hooks cost nothing.
+     *
+     * @return the metrics, which can be published over JMX with {@link TreeStats#register(String)}
+     */
+    public TreeStats enableMetrics() {
+        if (!(metrics instanceof TreeStats)) {
+            TreeStats stats = new TreeStats(this);
+            metrics = stats;
+            search = CountingSearch.wrap(searchStrategy, stats);
+        }
+        return (TreeStats) metrics;
+    }
+
+    /**
+     * Stop recording metrics. The last metrics returned by {@link #enableMetrics()} keep their values, but are not
+     * unregistered from JMX.
+     */
+    public void disableMetrics() {
+        metrics = TreeMetrics.DISABLED;
+        search = searchStrategy;
     }
 
     public Node getRoot() {
@@ -58,12 +428,134 @@ public class BasicBplusTree {
         return branchingFactor;
     }
 
+    SearchStrategy searchStrategy() {
+        return search;
+    }
+
+    SplitPolicy splitPolicy() {
+        return splitPolicy;
+    }
+
+    int underflowFloor() {
+        return underflowFloor;
+    }
+
+    int pendingTidyCount() {
+        return pendingTidy.size();
+    }
+
+    /**
+     * Queue a leaf left under the minimum to be rebalanced by the next {@link #tidy()}.
+     */
+    void deferRebalance(LeafNode leaf) {
+        pendingTidy.add(leaf);
+    }
+
+    /**
+     * Start again from a new root leaf if the tree has no keys but still has internal nodes, which happens when
+     * relaxed rebalancing leaves the leaves empty rather than merging them.
+     */
+    void resetIfEmpty() {
+        if (keycount == 0 && !root.isLeaf()) {
+            releaseAll(root);
+            pendingTidy.clear();
+            lastInsertLeaf = null;
+            setRoot(newLeaf());
+        }
+    }
+
+    private void releaseAll(Node node) {
+        if (node.isLeaf()) {
+            release((LeafNode) node);
+            return;
+        }
+        for (int i = 0; i < node.numChildren(); i++) {
+            releaseAll(node.getChild(i));
+        }
+        release((InternalNode) node);
+    }
+
+    private int minLeafKeys() {
+        return branchingFactor / 2 - 1;
+    }
+
+    /**
+     * Record which end of a leaf a key was inserted at (1 for the last position, -1 for the first, 0 for neither).
+     *
+     * @return true if the previous insert was at the same end of the same leaf
+     */
+    boolean continuesRun(LeafNode leaf, int end) {
+        boolean run = end != 0 && leaf == lastInsertLeaf && end == lastInsertEnd;
+        lastInsertLeaf = leaf;
+        lastInsertEnd = end;
+        return run;
+    }
+
+    TreeMetrics metrics() {
+        return metrics;
+    }
+
+    LeafNode newLeaf() {
+        LeafNode leaf = nodePool.takeLeaf();
+        if (leaf == null) {
+            leaf = keyCompression == KeyCompression.PREFIX ? new PrefixLeafNode(this) : new LeafNode(this);
+        }
+        metrics.nodeCreated(leaf);
+        return leaf;
+    }
+
+    InternalNode newInternal() {
+        InternalNode node = nodePool.takeInternal();
+        if (node == null) {
+            node = new InternalNode(this);
+        }
+        metrics.nodeCreated(node);
+        return node;
+    }
+
+    /**
+     * Hand back a leaf that is no longer in the tree.
+     */
+    void release(LeafNode leaf) {
+        metrics.nodeReleased(leaf);
+        nodePool.release(leaf);
+    }
+
+    /**
+     * Hand back an internal node that is no longer in the tree.
+     */
+    void release(InternalNode node) {
+        metrics.nodeReleased(node);
+        nodePool.release(node);
+    }
+
+    NodePool nodePool() {
+        return nodePool;
+    }
+
     void addKeyCount(int i) {
         keycount += i;
     }
 
     void setRoot(Node root) {
         this.root = root;
+        metrics.rootChanged(root);
+    }
+
+    LeafNode firstLeaf() {
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = node.getChild(0);
+        }
+        return (LeafNode) node;
+    }
+
+    LeafNode lastLeaf() {
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = node.getChild(node.numChildren() - 1);
+        }
+        return (LeafNode) node;
     }
 
 
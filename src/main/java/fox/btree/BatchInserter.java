@@ -0,0 +1,81 @@
+package fox.btree;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Applies a batch of upserts by sorting it and handing each leaf all the keys that belong in it at once, so each
+ * leaf is reached with one descent and merged and split at most once.
+ */
+class BatchInserter {
+
+    private final BasicBplusTree tree;
+
+    BatchInserter(BasicBplusTree tree) {
+        this.tree = tree;
+    }
+
+    BatchResult putAll(Map<? extends Comparable, ?> batch) {
+        int n = batch.size();
+        Comparable[] keys = new Comparable[n];
+        Object[] values = new Object[n];
+        sort(batch, keys, values);
+
+        Object[] oldValues = new Object[n];
+        int descents = 0;
+        int leafSplits = 0;
+        int leavesCreated = 0;
+        int i = 0;
+        while (i < n) {
+            // Descend once, remembering the smallest separator to the right of the path - every key below it belongs
+            // in the same leaf
+            Comparable upper = null;
+            Node node = tree.getRoot();
+            while (!node.isLeaf()) {
+                InternalNode internal = (InternalNode) node;
+                int pos = internal.childIndex(keys[i]);
+                if (pos + 1 < internal.numKeys()) {
+                    upper = internal.getKey(pos + 1);
+                }
+                BaseNode child = (BaseNode) internal.getChild(pos);
+                child.posInParent = pos;
+                node = child;
+            }
+            descents++;
+            int j = i + 1;
+            if (upper == null) {
+                j = n;
+            } else {
+                while (j < n && keys[j].compareTo(upper) < 0) {
+                    j++;
+                }
+            }
+            int pieces = ((LeafNode) node).mergeSorted(keys, values, i, j, oldValues);
+            if (pieces > 1) {
+                leafSplits++;
+                leavesCreated += pieces - 1;
+            }
+            i = j;
+        }
+        return new BatchResult(keys, oldValues, descents, leafSplits, leavesCreated);
+    }
+
+    private static void sort(Map<? extends Comparable, ?> batch, Comparable[] keys, Object[] values) {
+        if (batch instanceof SortedMap && ((SortedMap) batch).comparator() == null) {
+            // Already in natural order
+            int i = 0;
+            for (Map.Entry<? extends Comparable, ?> entry : batch.entrySet()) {
+                keys[i] = entry.getKey();
+                values[i++] = entry.getValue();
+            }
+            return;
+        }
+        Map.Entry[] entries = batch.entrySet().toArray(new Map.Entry[batch.size()]);
+        Arrays.sort(entries, (e1, e2) -> ((Comparable) e1.getKey()).compareTo(e2.getKey()));
+        for (int i = 0; i < entries.length; i++) {
+            keys[i] = (Comparable) entries[i].getKey();
+            values[i] = entries[i].getValue();
+        }
+    }
+}
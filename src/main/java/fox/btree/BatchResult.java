@@ -0,0 +1,66 @@
+package fox.btree;
+
+/**
+ * The outcome of a {@link BasicBplusTree#putAll} batch: the keys of the batch in ascending order with the value each
+ * one replaced, and how much work grouping the batch by leaf saved.
+ */
+public class BatchResult {
+
+    private final Comparable[] keys;
+    private final Object[] oldValues;
+    private final int descents;
+    private final int leafSplits;
+    private final int leavesCreated;
+
+    BatchResult(Comparable[] keys, Object[] oldValues, int descents, int leafSplits, int leavesCreated) {
+        this.keys = keys;
+        this.oldValues = oldValues;
+        this.descents = descents;
+        this.leafSplits = leafSplits;
+        this.leavesCreated = leavesCreated;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public Comparable key(int pos) {
+        return keys[pos];
+    }
+
+    /**
+     * @return the value the key at this position replaced, or null if it was newly inserted
+     */
+    public Object oldValue(int pos) {
+        return oldValues[pos];
+    }
+
+    /**
+     * @return the number of root to leaf descents the batch took
+     */
+    public int descents() {
+        return descents;
+    }
+
+    /**
+     * @return the descents saved compared with inserting each key separately
+     */
+    public int descentsSaved() {
+        return keys.length - descents;
+    }
+
+    /**
+     * @return the number of leaves that were split, each one split once however many new leaves it produced
+     */
+    public int leafSplits() {
+        return leafSplits;
+    }
+
+    /**
+     * @return the leaf splits saved compared with inserting each key separately. One at a time inserts need at least
+     * one split per new leaf, so this is a lower bound.
+     */
+    public int splitsSaved() {
+        return leavesCreated - leafSplits;
+    }
+}
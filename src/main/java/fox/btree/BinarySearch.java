@@ -0,0 +1,25 @@
+package fox.btree;
+
+/**
+ * Classic binary search.
+ */
+public class BinarySearch implements SearchStrategy {
+
+    @Override
+    public int search(Comparable[] keys, int from, int to, Comparable key) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comp = key.compareTo(keys[mid]);
+            if (comp > 0) {
+                low = mid + 1;
+            } else if (comp < 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
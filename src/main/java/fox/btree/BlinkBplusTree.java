@@ -0,0 +1,290 @@
+package fox.btree;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread safe B-link tree in the style of Lehman and Yao.
+ * <p>
+ * Every node has a high key and a link to its right sibling. A split publishes the new right node and then the
+ * shrunken left node, whose high key is now the separator and whose right link points at the new node, before the
+ * separator is posted to the parent. Anyone who reaches the left node in between and is looking for a key at or above
+ * its high key simply follows the right link. That means:
+ * <ul>
+ * <li>Readers never latch. They read each node's immutable contents once (see {@link BlinkNode}) and move right
+ * whenever the key is beyond the high key.</li>
+ * <li>Writers hold at most one latch at a time. They latch the leaf, moving right latch by latch, and after a split
+ * release it before latching the parent to post the separator. Nodes are never removed so a right link is always
+ * safe to follow.</li>
+ * </ul>
+ * As in Lehman and Yao, removes take keys out of leaves without any rebalancing so leaves can underflow, or even
+ * empty, and the separators above them stay where they are.
+ * <p>
+ * Nodes are copied on every write, trading allocation on the write path for readers that never wait.
+ */
+public class BlinkBplusTree {
+
+    private final int branchingFactor;
+    private final SearchStrategy searchStrategy;
+    private final ReentrantLock rootLatch = new ReentrantLock();
+    private final LongAdder keyCount = new LongAdder();
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private volatile BlinkNode root;
+
+    public BlinkBplusTree(int branchingFactor) {
+        this(branchingFactor, SearchStrategy.forBranchingFactor(branchingFactor));
+    }
+
+    public BlinkBplusTree(int branchingFactor, SearchStrategy searchStrategy) {
+        if (branchingFactor < 4) {
+            throw new IllegalArgumentException("branchingFactor must be >= 4");
+        }
+        if (searchStrategy == null) {
+            throw new IllegalArgumentException("searchStrategy must be specified");
+        }
+        this.branchingFactor = branchingFactor;
+        this.searchStrategy = searchStrategy;
+        this.root = newNode(0, new BlinkNode.Contents(new Comparable[0], new Object[0], null, null, null));
+    }
+
+    public Object find(Comparable key) {
+        BlinkNode node = root;
+        while (true) {
+            BlinkNode.Contents contents = node.contents;
+            if (contents.beyondHighKey(key)) {
+                node = contents.right;
+            } else if (node.isLeaf()) {
+                int i = searchStrategy.search(contents.keys, 0, contents.keys.length, key);
+                return i >= 0 ? contents.values[i] : null;
+            } else {
+                node = contents.children[childIndex(contents, key)];
+            }
+        }
+    }
+
+    public void insert(Comparable key, Object value) {
+        Deque<BlinkNode> path = new ArrayDeque<>();
+        BlinkNode node = latchCovering(descend(key, 0, path), key);
+        Comparable separator;
+        BlinkNode right;
+        try {
+            BlinkNode.Contents contents = node.contents;
+            int i = searchStrategy.search(contents.keys, 0, contents.keys.length, key);
+            if (i >= 0) {
+                Object[] values = contents.values.clone();
+                values[i] = value;
+                node.contents = new BlinkNode.Contents(contents.keys, values, null, contents.highKey, contents.right);
+                return;
+            }
+            i = -(i + 1);
+            Comparable[] keys = insertInArray(contents.keys, i, key);
+            Object[] values = insertInArray(contents.values, i, value);
+            keyCount.increment();
+            if (keys.length <= branchingFactor - 1) {
+                node.contents = new BlinkNode.Contents(keys, values, null, contents.highKey, contents.right);
+                return;
+            }
+            separator = keys[splitPoint(keys)];
+            right = split(node, keys, values, null);
+        } finally {
+            node.latch.unlock();
+        }
+        postSeparator(node, right, separator, path);
+    }
+
+    public Object remove(Comparable key) {
+        BlinkNode node = latchCovering(descend(key, 0, null), key);
+        try {
+            BlinkNode.Contents contents = node.contents;
+            int i = searchStrategy.search(contents.keys, 0, contents.keys.length, key);
+            if (i < 0) {
+                return null;
+            }
+            node.contents = new BlinkNode.Contents(removeFromArray(contents.keys, i),
+                    removeFromArray(contents.values, i), null, contents.highKey, contents.right);
+            keyCount.decrement();
+            return contents.values[i];
+        } finally {
+            node.latch.unlock();
+        }
+    }
+
+    public int keyCount() {
+        return keyCount.intValue();
+    }
+
+    public int nodeCount() {
+        return nodeCount.get();
+    }
+
+    BlinkNode root() {
+        return root;
+    }
+
+    int branchingFactor() {
+        return branchingFactor;
+    }
+
+    /**
+     * Descend without latching to the node covering the key on a level, moving right where needed.
+     *
+     * @param path if not null receives the internal node passed through on each level above
+     */
+    private BlinkNode descend(Comparable key, int level, Deque<BlinkNode> path) {
+        BlinkNode node = root;
+        while (true) {
+            BlinkNode.Contents contents = node.contents;
+            if (contents.beyondHighKey(key)) {
+                node = contents.right;
+            } else if (node.level == level) {
+                return node;
+            } else {
+                if (path != null) {
+                    path.push(node);
+                }
+                node = contents.children[childIndex(contents, key)];
+            }
+        }
+    }
+
+    /**
+     * Latch the node covering the key, starting from the given node and moving right one latch at a time. The latch is
+     * released again if the key can't be compared.
+     */
+    private BlinkNode latchCovering(BlinkNode node, Comparable key) {
+        node.latch.lock();
+        while (true) {
+            BlinkNode.Contents contents = node.contents;
+            boolean beyond;
+            try {
+                beyond = contents.beyondHighKey(key);
+            } catch (RuntimeException e) {
+                node.latch.unlock();
+                throw e;
+            }
+            if (!beyond) {
+                return node;
+            }
+            BlinkNode right = contents.right;
+            node.latch.unlock();
+            node = right;
+            node.latch.lock();
+        }
+    }
+
+    /**
+     * Split an overfull latched node given its new entries. The caller still holds the latch afterwards.
+     *
+     * @return the new right hand node
+     */
+    private BlinkNode split(BlinkNode node, Comparable[] keys, Object[] values, BlinkNode[] children) {
+        BlinkNode.Contents contents = node.contents;
+        int leftKeys = splitPoint(keys);
+        Comparable separator = keys[leftKeys];
+        BlinkNode right = newNode(node.level, new BlinkNode.Contents(
+                Arrays.copyOfRange(keys, leftKeys, keys.length),
+                values == null ? null : Arrays.copyOfRange(values, leftKeys, values.length),
+                children == null ? null : Arrays.copyOfRange(children, leftKeys, children.length),
+                contents.highKey, contents.right));
+        // The right node is unreachable until the left node is published with the link to it
+        node.contents = new BlinkNode.Contents(
+                Arrays.copyOf(keys, leftKeys),
+                values == null ? null : Arrays.copyOf(values, leftKeys),
+                children == null ? null : Arrays.copyOf(children, leftKeys),
+                separator, right);
+        return right;
+    }
+
+    /**
+     * @return the number of entries that stay in the left node when an overfull node splits
+     */
+    private static int splitPoint(Comparable[] keys) {
+        return keys.length / 2;
+    }
+
+    /**
+     * Add a split's new right node to the level above, splitting upwards as far as needed. No latch is held on entry.
+     * <p>
+     * The separator has to be passed in rather than read from the right node, whose first key can be removed as soon
+     * as the split node is unlatched.
+     */
+    private void postSeparator(BlinkNode left, BlinkNode right, Comparable separator, Deque<BlinkNode> path) {
+        while (true) {
+            BlinkNode parent = path.poll();
+            if (parent == null) {
+                if (growRoot(left, right, separator)) {
+                    return;
+                }
+                // Somebody else split the root, wait for the new level to appear then find our parent on it
+                while (root.level <= left.level) {
+                    Thread.yield();
+                }
+                parent = descend(separator, left.level + 1, null);
+            }
+            parent = latchCovering(parent, separator);
+            try {
+                BlinkNode.Contents contents = parent.contents;
+                int i = -(searchStrategy.search(contents.keys, 1, contents.keys.length, separator) + 1);
+                Comparable[] keys = insertInArray(contents.keys, i, separator);
+                BlinkNode[] children = insertInArray(contents.children, i, right);
+                if (keys.length <= branchingFactor) {
+                    parent.contents = new BlinkNode.Contents(keys, null, children, contents.highKey, contents.right);
+                    return;
+                }
+                left = parent;
+                separator = keys[splitPoint(keys)];
+                right = split(parent, keys, null, children);
+            } finally {
+                parent.latch.unlock();
+            }
+        }
+    }
+
+    /**
+     * If the node that split is still the root put a new root above it.
+     *
+     * @return false if the node isn't the root
+     */
+    private boolean growRoot(BlinkNode left, BlinkNode right, Comparable separator) {
+        rootLatch.lock();
+        try {
+            if (root != left) {
+                return false;
+            }
+            // The left most key isn't used for routing, and a split leaf may have been emptied since
+            Comparable[] leftKeys = left.contents.keys;
+            Comparable[] keys = {leftKeys.length > 0 ? leftKeys[0] : separator, separator};
+            BlinkNode[] children = {left, right};
+            root = newNode(left.level + 1, new BlinkNode.Contents(keys, null, children, null, null));
+            return true;
+        } finally {
+            rootLatch.unlock();
+        }
+    }
+
+    private int childIndex(BlinkNode.Contents contents, Comparable key) {
+        int i = searchStrategy.search(contents.keys, 1, contents.keys.length, key);
+        return i >= 0 ? i : -(i + 2);
+    }
+
+    private BlinkNode newNode(int level, BlinkNode.Contents contents) {
+        return new BlinkNode(nodeCount.getAndIncrement(), level, contents);
+    }
+
+    private static <T> T[] insertInArray(T[] arr, int pos, T val) {
+        T[] result = Arrays.copyOf(arr, arr.length + 1);
+        System.arraycopy(arr, pos, result, pos + 1, arr.length - pos);
+        result[pos] = val;
+        return result;
+    }
+
+    private static <T> T[] removeFromArray(T[] arr, int pos) {
+        T[] result = Arrays.copyOf(arr, arr.length - 1);
+        System.arraycopy(arr, pos + 1, result, pos, arr.length - pos - 1);
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+package fox.btree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks a quiescent {@link BlinkBplusTree}, level by level along the right links.
+ * <p>
+ * Nothing is removed from a B-link tree on delete so there are no minimum occupancy checks, but every separator must
+ * have been posted: the children of each level, read left to right, must be exactly the chain of right links on the
+ * level below, and each child's high key must be the separator to its right in the parent.
+ */
+public class BlinkInvariantChecker {
+
+    void checkInvariants(BlinkBplusTree tree) {
+        int branchingFactor = tree.branchingFactor();
+        BlinkNode root = tree.root();
+        assertTrue("root must not have a right link", root.contents.right == null);
+        if (!root.isLeaf()) {
+            assertTrue("non leaf root node num keys must be >= 2", root.contents.keys.length >= 2);
+        }
+        List<BlinkNode> level = chain(root);
+        int keys = 0;
+        while (true) {
+            List<BlinkNode> below = new ArrayList<>();
+            for (BlinkNode node : level) {
+                BlinkNode.Contents contents = node.contents;
+                assertTrue("node " + node.getNodeNum() + " at wrong level", node.level == level.get(0).level);
+                int start = node.isLeaf() ? 0 : 1;
+                for (int i = start; i < contents.keys.length; i++) {
+                    if (i > start) {
+                        assertTrue("keys not in sorted order in node " + node.getNodeNum(),
+                                contents.keys[i - 1].compareTo(contents.keys[i]) < 0);
+                    }
+                    assertTrue("key not below high key in node " + node.getNodeNum(),
+                            !contents.beyondHighKey(contents.keys[i]));
+                }
+                if (node.isLeaf()) {
+                    assertTrue("leaf node num keys must be <= B - 1", contents.keys.length <= branchingFactor - 1);
+                    assertTrue("leaf must have a value per key", contents.values.length == contents.keys.length);
+                    keys += contents.keys.length;
+                } else {
+                    assertTrue("internal node num keys must be <= B", contents.keys.length <= branchingFactor);
+                    assertTrue("internal node must have a child per key",
+                            contents.children.length == contents.keys.length);
+                    for (int i = 0; i < contents.children.length; i++) {
+                        BlinkNode child = contents.children[i];
+                        Comparable high = i < contents.keys.length - 1 ? contents.keys[i + 1] : contents.highKey;
+                        assertEquals(high, child.contents.highKey);
+                        // The left most key is only a lower bound and emptied leaves have nothing to compare
+                        if (i > 0 && !child.isLeaf()) {
+                            assertEquals(contents.keys[i], child.contents.keys[0]);
+                        } else if (i > 0 && child.contents.keys.length > 0) {
+                            assertTrue("leaf key below its separator",
+                                    child.contents.keys[0].compareTo(contents.keys[i]) >= 0);
+                        }
+                        below.add(child);
+                    }
+                }
+            }
+            if (level.get(0).isLeaf()) {
+                break;
+            }
+            List<BlinkNode> linked = chain(below.get(0));
+            assertTrue("children and right links disagree", below.equals(linked));
+            level = below;
+        }
+        assertEquals(tree.keyCount(), keys);
+    }
+
+    private List<BlinkNode> chain(BlinkNode leftmost) {
+        List<BlinkNode> nodes = new ArrayList<>();
+        for (BlinkNode node = leftmost; node != null; node = node.contents.right) {
+            assertTrue("only the rightmost node may have no high key",
+                    (node.contents.highKey == null) == (node.contents.right == null));
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private void assertTrue(String msg, boolean ok) {
+        if (!ok) {
+            throw new IllegalStateException(msg);
+        }
+    }
+
+    private void assertEquals(Object object1, Object object2) {
+        if (object1 == null ? object2 != null : !object1.equals(object2)) {
+            throw new IllegalStateException("Not equal " + object1 + " " + object2);
+        }
+    }
+}
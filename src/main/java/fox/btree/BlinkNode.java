@@ -0,0 +1,75 @@
+package fox.btree;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A node of a {@link BlinkBplusTree}.
+ * <p>
+ * The node's entries, high key and right link are held together in an immutable {@link Contents} which is replaced
+ * wholesale on every change, so a reader that reads {@link #contents} once always sees a consistent node - the
+ * equivalent of the atomic page reads Lehman and Yao assume. The latch is only ever taken by writers.
+ */
+public class BlinkNode {
+
+    final int nodeNum;
+    /**
+     * 0 for leaves, counting up towards the root
+     */
+    final int level;
+    final ReentrantLock latch = new ReentrantLock();
+    volatile Contents contents;
+
+    BlinkNode(int nodeNum, int level, Contents contents) {
+        this.nodeNum = nodeNum;
+        this.level = level;
+        this.contents = contents;
+    }
+
+    public boolean isLeaf() {
+        return level == 0;
+    }
+
+    public int getNodeNum() {
+        return nodeNum;
+    }
+
+    /**
+     * One version of a node's state. Arrays are sized to exactly the number of entries.
+     */
+    static final class Contents {
+
+        final Comparable[] keys;
+        /**
+         * Leaves only
+         */
+        final Object[] values;
+        /**
+         * Internal nodes only, parallel to keys. As in the other trees the zeroth key is the lower bound of the node
+         * and isn't used for routing.
+         */
+        final BlinkNode[] children;
+        /**
+         * Every key in the node is less than this. Null for the rightmost node on a level.
+         */
+        final Comparable highKey;
+        /**
+         * The next node to the right on the same level, or null for the rightmost node.
+         */
+        final BlinkNode right;
+
+        Contents(Comparable[] keys, Object[] values, BlinkNode[] children, Comparable highKey, BlinkNode right) {
+            this.keys = keys;
+            this.values = values;
+            this.children = children;
+            this.highKey = highKey;
+            this.right = right;
+        }
+
+        /**
+         * @return true if the key belongs to a node further right
+         */
+        boolean beyondHighKey(Comparable key) {
+            return highKey != null && key.compareTo(highKey) >= 0;
+        }
+    }
+}
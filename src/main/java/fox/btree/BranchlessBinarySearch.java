@@ -0,0 +1,29 @@
+package fox.btree;
+
+/**
+ * Binary search where the loop body has no data dependent branch - the only choice made in each step is which base
+ * to carry forward, which the JIT can compile to a conditional move. The number of iterations depends only on the
+ * size of the range so the loop itself predicts perfectly.
+ */
+public class BranchlessBinarySearch implements SearchStrategy {
+
+    @Override
+    public int search(Comparable[] keys, int from, int to, Comparable key) {
+        int n = to - from;
+        if (n == 0) {
+            return -(from + 1);
+        }
+        int base = from;
+        while (n > 1) {
+            int half = n >>> 1;
+            // base ends up as the last position with keys[base] <= key (or from if key is smaller than everything)
+            base = key.compareTo(keys[base + half]) >= 0 ? base + half : base;
+            n -= half;
+        }
+        int comp = key.compareTo(keys[base]);
+        if (comp == 0) {
+            return base;
+        }
+        return comp > 0 ? -(base + 2) : -(base + 1);
+    }
+}
@@ -0,0 +1,348 @@
+package fox.btree;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link NodeStore} whose slots are the pages of a {@link PageFile}, cached in a fixed number of direct memory
+ * frames.
+ * <p>
+ * A page that isn't in a frame is read in when it's accessed, evicting another page chosen by the
+ * {@link EvictionPolicy} if the pool is full. Pinned pages are never evicted. Pages written through
+ * {@link #writableBuffer(int)} are dirty and are written back when evicted or on {@link #flush()}. As with
+ * {@link SlabAllocator} released pages go on a free list threaded through the pages themselves.
+ * <p>
+ * The counters count page accesses, where consecutive accesses to the same page count once.
+ */
+public class BufferPool implements NodeStore {
+
+    private static final int NO_FRAME = -1;
+
+    private final PageFile file;
+    private final int pageSize;
+    private final int capacity;
+    private final EvictionPolicy policy;
+    private final ByteBuffer frames;
+    private final int[] framePage;
+    private final int[] pinCount;
+    private final boolean[] dirty;
+    private final Map<Integer, Integer> pageTable = new HashMap<>();
+
+    // CLOCK
+    private final boolean[] referenced;
+    private int hand;
+
+    // LRU, a list of frames from most to least recently used
+    private final int[] newer;
+    private final int[] older;
+    private int newest = NO_FRAME;
+    private int oldest = NO_FRAME;
+
+    private int framesUsed;
+    private int lastPage = NO_SLOT;
+    private int lastFrame = NO_FRAME;
+
+    private int nextUnused;
+    private int freeHead;
+    private int freeCount;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long writeBacks;
+
+    /**
+     * @param capacity the number of pages held in memory, which must comfortably exceed the number pinned at once
+     */
+    public BufferPool(PageFile file, int capacity, EvictionPolicy policy) {
+        if (capacity < 8) {
+            throw new IllegalArgumentException("capacity must be >= 8");
+        }
+        if ((long) capacity * file.pageSize() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("pool size must be < 2GB");
+        }
+        this.file = file;
+        this.pageSize = file.pageSize();
+        this.capacity = capacity;
+        this.policy = policy;
+        this.frames = ByteBuffer.allocateDirect(capacity * pageSize).order(ByteOrder.nativeOrder());
+        this.framePage = new int[capacity];
+        Arrays.fill(framePage, NO_SLOT);
+        this.pinCount = new int[capacity];
+        this.dirty = new boolean[capacity];
+        this.referenced = new boolean[capacity];
+        this.newer = new int[capacity];
+        this.older = new int[capacity];
+        this.nextUnused = file.headerInt(PageFile.NEXT_UNUSED_OFFSET);
+        this.freeHead = file.headerInt(PageFile.FREE_HEAD_OFFSET);
+        this.freeCount = file.headerInt(PageFile.FREE_COUNT_OFFSET);
+    }
+
+    @Override
+    public int allocate() {
+        if (freeHead != NO_SLOT) {
+            int page = freeHead;
+            freeHead = frames.getInt(offset(page));
+            freeCount--;
+            return page;
+        }
+        // A new page has nothing worth reading
+        int page = nextUnused++;
+        load(page, false);
+        return page;
+    }
+
+    @Override
+    public void free(int slot) {
+        writableBuffer(slot).putInt(offset(slot), freeHead);
+        freeHead = slot;
+        freeCount++;
+    }
+
+    @Override
+    public ByteBuffer buffer(int slot) {
+        frameFor(slot);
+        return frames;
+    }
+
+    @Override
+    public ByteBuffer writableBuffer(int slot) {
+        dirty[frameFor(slot)] = true;
+        return frames;
+    }
+
+    @Override
+    public int offset(int slot) {
+        return frameFor(slot) * pageSize;
+    }
+
+    @Override
+    public void pin(int slot) {
+        pinCount[frameFor(slot)]++;
+    }
+
+    @Override
+    public void unpin(int slot) {
+        Integer frame = pageTable.get(slot);
+        if (frame == null || pinCount[frame] == 0) {
+            throw new IllegalStateException("page " + slot + " is not pinned");
+        }
+        pinCount[frame]--;
+    }
+
+    @Override
+    public int slotSize() {
+        return pageSize;
+    }
+
+    @Override
+    public int usedSlots() {
+        return nextUnused - 1 - freeCount;
+    }
+
+    @Override
+    public int freeSlots() {
+        return freeCount;
+    }
+
+    /**
+     * @return the direct memory taken by the frames
+     */
+    @Override
+    public long reservedBytes() {
+        return (long) capacity * pageSize;
+    }
+
+    @Override
+    public long metadata(int index) {
+        return file.metadata(index);
+    }
+
+    @Override
+    public void setMetadata(int index, long value) {
+        file.setMetadata(index, value);
+    }
+
+    /**
+     * Write back every dirty page and the header and sync the file.
+     */
+    @Override
+    public void flush() {
+        for (int frame = 0; frame < framesUsed; frame++) {
+            if (dirty[frame]) {
+                writeBack(frame);
+            }
+        }
+        file.setHeaderInt(PageFile.NEXT_UNUSED_OFFSET, nextUnused);
+        file.setHeaderInt(PageFile.FREE_HEAD_OFFSET, freeHead);
+        file.setHeaderInt(PageFile.FREE_COUNT_OFFSET, freeCount);
+        file.writeHeader();
+        file.sync();
+    }
+
+    /**
+     * Flush and close the file.
+     */
+    @Override
+    public void release() {
+        flush();
+        file.close();
+        pageTable.clear();
+        lastPage = NO_SLOT;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of dirty pages written back to the file, whether on eviction or flush
+     */
+    public long writeBacks() {
+        return writeBacks;
+    }
+
+    /**
+     * @return the size of the file in pages, including the header and free pages
+     */
+    public int filePages() {
+        return nextUnused;
+    }
+
+    private int frameFor(int page) {
+        if (page == lastPage) {
+            return lastFrame;
+        }
+        Integer frame = pageTable.get(page);
+        if (frame != null) {
+            hits++;
+            touch(frame);
+        } else {
+            misses++;
+            frame = load(page, true);
+        }
+        lastPage = page;
+        lastFrame = frame;
+        return frame;
+    }
+
+    private int load(int page, boolean read) {
+        int frame = framesUsed < capacity ? framesUsed++ : evict();
+        if (read) {
+            file.read(page, frames, frame * pageSize);
+        }
+        framePage[frame] = page;
+        // A page that was never read must be written back even if it is never written to
+        dirty[frame] = !read;
+        pageTable.put(page, frame);
+        if (policy == EvictionPolicy.LRU) {
+            pushNewest(frame);
+        } else {
+            referenced[frame] = true;
+        }
+        return frame;
+    }
+
+    private void touch(int frame) {
+        if (policy == EvictionPolicy.LRU) {
+            if (frame != newest) {
+                unlink(frame);
+                pushNewest(frame);
+            }
+        } else {
+            referenced[frame] = true;
+        }
+    }
+
+    /**
+     * @return a frame emptied of its page
+     */
+    private int evict() {
+        int frame = policy == EvictionPolicy.LRU ? lruVictim() : clockVictim();
+        if (frame == NO_FRAME) {
+            throw new IllegalStateException("all " + capacity + " buffer pool frames are pinned");
+        }
+        if (dirty[frame]) {
+            writeBack(frame);
+        }
+        int page = framePage[frame];
+        pageTable.remove(page);
+        if (page == lastPage) {
+            lastPage = NO_SLOT;
+        }
+        if (policy == EvictionPolicy.LRU) {
+            unlink(frame);
+        }
+        evictions++;
+        return frame;
+    }
+
+    private int clockVictim() {
+        // Two sweeps clear every referenced bit so anything still not found is pinned
+        for (int i = 0; i < 2 * capacity; i++) {
+            int frame = hand;
+            hand = hand == capacity - 1 ? 0 : hand + 1;
+            if (pinCount[frame] == 0) {
+                if (!referenced[frame]) {
+                    return frame;
+                }
+                referenced[frame] = false;
+            }
+        }
+        return NO_FRAME;
+    }
+
+    private int lruVictim() {
+        for (int frame = oldest; frame != NO_FRAME; frame = newer[frame]) {
+            if (pinCount[frame] == 0) {
+                return frame;
+            }
+        }
+        return NO_FRAME;
+    }
+
+    private void pushNewest(int frame) {
+        older[frame] = newest;
+        newer[frame] = NO_FRAME;
+        if (newest != NO_FRAME) {
+            newer[newest] = frame;
+        } else {
+            oldest = frame;
+        }
+        newest = frame;
+    }
+
+    private void unlink(int frame) {
+        if (newer[frame] != NO_FRAME) {
+            older[newer[frame]] = older[frame];
+        } else {
+            newest = older[frame];
+        }
+        if (older[frame] != NO_FRAME) {
+            newer[older[frame]] = newer[frame];
+        } else {
+            oldest = newer[frame];
+        }
+    }
+
+    private void writeBack(int frame) {
+        file.write(framePage[frame], frames, frame * pageSize);
+        dirty[frame] = false;
+        writeBacks++;
+    }
+}
@@ -0,0 +1,161 @@
+package fox.btree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a tree bottom up from entries in ascending key order.
+ * <p>
+ * Leaves are filled left to right to the target fill factor and linked as they go, then each internal level is built
+ * on top of the one below until a level fits in a single root. There are no descents from the root and no splits.
+ * <p>
+ * Filling every node to the target can leave the last node on a level under the minimum. When that happens it is
+ * merged with, or evened up with, the node before it.
+ */
+class BulkLoader {
+
+    private final BasicBplusTree tree;
+    private final int leafTarget;
+    private final int internalTarget;
+
+    BulkLoader(BasicBplusTree tree, double fillFactor) {
+        if (fillFactor <= 0 || fillFactor > 1) {
+            throw new IllegalArgumentException("fillFactor must be > 0 and <= 1");
+        }
+        this.tree = tree;
+        int b = tree.branchingFactor();
+        this.leafTarget = clamp((int) Math.round(fillFactor * (b - 1)), Math.max(1, b / 2 - 1), b - 1);
+        this.internalTarget = clamp((int) Math.round(fillFactor * b), b / 2, b);
+    }
+
+    void load(Iterator<? extends Map.Entry<? extends Comparable, ?>> sorted) {
+        if (tree.keyCount() != 0) {
+            throw new IllegalStateException("Can only bulk load an empty tree");
+        }
+        tree.resetIfEmpty();
+        buildInternalLevels(buildLeaves(sorted));
+    }
+
+    /**
+     * Build the internal levels over a list of linked leaves, which must all be within the size limits if there is
+     * more than one, and make the top node the root.
+     */
+    void buildInternalLevels(List<BaseNode> leaves) {
+        List<BaseNode> level = leaves;
+        while (level.size() > 1) {
+            level = buildInternalLevel(level);
+        }
+        BaseNode root = level.get(0);
+        root.setParent(null);
+        tree.setRoot(root);
+    }
+
+    int leafTarget() {
+        return leafTarget;
+    }
+
+    int internalTarget() {
+        return internalTarget;
+    }
+
+    private List<BaseNode> buildLeaves(Iterator<? extends Map.Entry<? extends Comparable, ?>> sorted) {
+        List<BaseNode> leaves = new ArrayList<>();
+        // The empty root leaf of the new tree becomes the first leaf
+        LeafNode leaf = (LeafNode) tree.getRoot();
+        leaves.add(leaf);
+        Comparable prevKey = null;
+        while (sorted.hasNext()) {
+            Map.Entry<? extends Comparable, ?> entry = sorted.next();
+            Comparable key = entry.getKey();
+            if (key == null) {
+                throw new IllegalArgumentException("null key");
+            }
+            if (prevKey != null && key.compareTo(prevKey) <= 0) {
+                throw new IllegalArgumentException("keys must be unique and in ascending order, " + key
+                        + " follows " + prevKey);
+            }
+            prevKey = key;
+            if (leaf.numKeys() == leafTarget) {
+                LeafNode next = tree.newLeaf();
+                next.linkAfter(leaf);
+                leaves.add(next);
+                leaf = next;
+            }
+            leaf.append(key, entry.getValue());
+        }
+
+        int numLeaves = leaves.size();
+        int min = tree.branchingFactor() / 2 - 1;
+        if (numLeaves > 1 && leaf.numKeys() < min) {
+            LeafNode prev = leaf.prev();
+            int total = prev.numKeys() + leaf.numKeys();
+            if (total <= tree.branchingFactor() - 1) {
+                prev.absorbNext();
+                leaves.remove(numLeaves - 1);
+                tree.release(leaf);
+            } else {
+                prev.moveTailToNext(total / 2 - leaf.numKeys());
+            }
+        }
+        return leaves;
+    }
+
+    private List<BaseNode> buildInternalLevel(List<BaseNode> children) {
+        int[] sizes = groupSizes(children.size(), internalTarget, tree.branchingFactor() / 2, tree.branchingFactor());
+        List<BaseNode> level = new ArrayList<>(sizes.length);
+        int c = 0;
+        for (int size : sizes) {
+            InternalNode node = tree.newInternal();
+            for (int i = 0; i < size; i++) {
+                BaseNode child = children.get(c++);
+                node.addChildPointer(i, minKey(child), child);
+                child.setParent(node);
+            }
+            level.add(node);
+        }
+        return level;
+    }
+
+    /**
+     * Split count items into groups of the target size, evening up the last two groups if the last would otherwise be
+     * under the minimum.
+     */
+    static int[] groupSizes(int count, int target, int min, int max) {
+        int groups = (count + target - 1) / target;
+        int last = count - (groups - 1) * target;
+        if (groups > 1 && last < min) {
+            int total = target + last;
+            if (total <= max) {
+                groups--;
+                last = total;
+            } else {
+                last = total / 2;
+            }
+        }
+        int[] sizes = new int[groups];
+        for (int i = 0; i < groups - 1; i++) {
+            sizes[i] = target;
+        }
+        sizes[groups - 1] = last;
+        if (groups > 1) {
+            sizes[groups - 2] = count - (groups - 2) * target - last;
+        }
+        return sizes;
+    }
+
+    private static Comparable minKey(BaseNode node) {
+        if (node instanceof LeafNode && ((LeafNode) node).prev() != null) {
+            // Route with the separator the previous leaf would have pushed up had it split, which may be shorter
+            LeafNode leaf = (LeafNode) node;
+            return leaf.prev().separatorTo(leaf);
+        }
+        // The zeroth key of an internal node built here is always a lower bound for every key in its subtree
+        return node.getKey(0);
+    }
+
+    private static int clamp(int val, int min, int max) {
+        return Math.max(min, Math.min(max, val));
+    }
+}
@@ -0,0 +1,126 @@
+package fox.btree;
+
+import java.util.Arrays;
+
+/**
+ * A key made of bytes which compare as unsigned, lexicographically, like memcmp. Typed and composite keys are turned
+ * into ByteKeys by a {@link KeyEncoder} so that every comparison in the tree is the same cheap, monomorphic byte
+ * comparison whatever the original key types were.
+ * <p>
+ * The first eight bytes are also kept packed into a long, so most comparisons are decided by a single unsigned long
+ * compare without touching the arrays.
+ */
+public final class ByteKey implements Comparable<ByteKey> {
+
+    private final byte[] bytes;
+    private final long head;
+
+    public ByteKey(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes must be specified");
+        }
+        this.bytes = bytes;
+        long h = 0;
+        for (int i = 0; i < 8; i++) {
+            h = (h << 8) | (i < bytes.length ? bytes[i] & 0xFF : 0);
+        }
+        this.head = h;
+    }
+
+    /**
+     * @return the encoded bytes, which must not be modified
+     */
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    @Override
+    public int compareTo(ByteKey other) {
+        if (head != other.head) {
+            return Long.compareUnsigned(head, other.head);
+        }
+        // The heads are zero padded, so if they match any bytes in them beyond the shorter key are zeros and the
+        // shorter key sorts first
+        byte[] b1 = bytes;
+        byte[] b2 = other.bytes;
+        int lim = Math.min(b1.length, b2.length);
+        for (int i = 8; i < lim; i++) {
+            if (b1[i] != b2[i]) {
+                return (b1[i] & 0xFF) - (b2[i] & 0xFF);
+            }
+        }
+        return b1.length - b2.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ByteKey && head == ((ByteKey) o).head && Arrays.equals(bytes, ((ByteKey) o).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Accumulates the bytes of a key, growing as needed. Multi byte values are written big endian so that they compare
+     * correctly byte by byte.
+     */
+    public static final class Builder {
+
+        private byte[] buf = new byte[16];
+        private int pos;
+
+        public Builder writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+            return this;
+        }
+
+        public Builder writeInt(int i) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (i >>> shift);
+            }
+            return this;
+        }
+
+        public Builder writeLong(long l) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (l >>> shift);
+            }
+            return this;
+        }
+
+        public Builder writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+            return this;
+        }
+
+        public ByteKey build() {
+            return new ByteKey(Arrays.copyOf(buf, pos));
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(pos + extra, buf.length * 2));
+            }
+        }
+    }
+}
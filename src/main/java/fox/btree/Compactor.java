@@ -0,0 +1,211 @@
+package fox.btree;
+
+/**
+ * Repacks the under-filled nodes of a {@link BasicBplusTree} towards a target fill factor, a few nodes at a time so
+ * it can be run in between other work on the tree, see {@link BasicBplusTree#compactor(double)}.
+ * <p>
+ * Each level is worked through from left to right, starting with the leaves. When a node is under the target, the
+ * shortest run of it and its right siblings that would fit in one fewer nodes is found, and their entries (or
+ * children) are spread evenly over all but the last, which is released. Every node stays within its size limits.
+ * Only siblings with the same parent are repacked, and the normal rebalancing takes care of any parent left under the
+ * minimum. Absorbing nodes empties the level above, which is
+ * then compacted in turn. Merges up there bring nodes that had different parents together, so while a pass over all
+ * the levels repacks anything another pass is made, up to a limit so that a tree being split as fast as it is
+ * repacked doesn't keep the compactor going forever.
+ * <p>
+ * Progress is remembered as a key rather than a node, so the tree can be modified between steps. Keys inserted
+ * behind the compactor's position aren't revisited.
+ */
+public class Compactor {
+
+    static final int MAX_PASSES = 8;
+
+    private final BasicBplusTree tree;
+    private final int leafTarget;
+    private final int internalTarget;
+    // Levels are numbered up from 0 for the leaves
+    private int level;
+    // A key in the subtree of the next node to visit at the current level, null for the leftmost node
+    private Comparable resumeKey;
+    private boolean done;
+    private int passes = 1;
+    private boolean repackedThisPass;
+    private int nodesVisited;
+    private long leavesReclaimed;
+    private long internalsReclaimed;
+
+    Compactor(BasicBplusTree tree, double fillFactor) {
+        this.tree = tree;
+        // Aim for the same fill as a bulk load would
+        BulkLoader targets = new BulkLoader(tree, fillFactor);
+        this.leafTarget = targets.leafTarget();
+        this.internalTarget = targets.internalTarget();
+    }
+
+    /**
+     * Visit up to maxNodes nodes, repacking the ones under the target.
+     *
+     * @return true if there is more to do
+     */
+    public boolean step(int maxNodes) {
+        if (maxNodes < 1) {
+            throw new IllegalArgumentException("maxNodes must be > 0");
+        }
+        NodePool pool = tree.nodePool();
+        long leavesBefore = pool.releasedLeaves();
+        long internalsBefore = pool.releasedInternals();
+        for (int i = 0; i < maxNodes && !done; i++) {
+            visit();
+        }
+        leavesReclaimed += pool.releasedLeaves() - leavesBefore;
+        internalsReclaimed += pool.releasedInternals() - internalsBefore;
+        return !done;
+    }
+
+    /**
+     * Carry on until the whole tree has been compacted.
+     */
+    public void finish() {
+        while (step(Integer.MAX_VALUE)) {
+            // keep going
+        }
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return the number of nodes visited so far
+     */
+    public int nodesVisited() {
+        return nodesVisited;
+    }
+
+    /**
+     * @return the number of passes started over the levels of the tree
+     */
+    public int passes() {
+        return passes;
+    }
+
+    /**
+     * @return the number of nodes released from the tree so far, both those absorbed by their siblings and any
+     * merged away by the rebalancing that followed
+     */
+    public long nodesReclaimed() {
+        return leavesReclaimed + internalsReclaimed;
+    }
+
+    /**
+     * @return an estimate of the heap released with the reclaimed nodes, counting each node and its own arrays but
+     * not the keys and values, which were all moved to other nodes
+     */
+    public long bytesReclaimed() {
+        int b = tree.branchingFactor();
+        return leavesReclaimed * leafBytes(b) + internalsReclaimed * internalBytes(b);
+    }
+
+    private void visit() {
+        nodesVisited++;
+        BaseNode node = locate();
+        if (node == null) {
+            // The current level is the root, so every level below it has been compacted
+            if (repackedThisPass && passes < MAX_PASSES) {
+                passes++;
+                repackedThisPass = false;
+                level = 0;
+            } else {
+                done = true;
+            }
+            return;
+        }
+        if (repack(node)) {
+            repackedThisPass = true;
+        } else {
+            resumeKey = keyAfter(node);
+            if (resumeKey == null) {
+                level++;
+            }
+        }
+        // Otherwise the node may still be under the target, so visit it again. The rebalancing after releasing a node
+        // can move nodes around, so it is found again from the root.
+    }
+
+    /**
+     * Find the node at the current level that covers the resume key, recording positions on the way down.
+     *
+     * @return the node, or null if the current level is the root
+     */
+    private BaseNode locate() {
+        Node node = tree.getRoot();
+        int height = 1;
+        for (Node n = node; !n.isLeaf(); n = n.getChild(0)) {
+            height++;
+        }
+        if (level >= height - 1) {
+            return null;
+        }
+        for (int depth = height - 1; depth > level; depth--) {
+            InternalNode internal = (InternalNode) node;
+            int pos = resumeKey == null ? 0 : internal.childIndex(resumeKey);
+            BaseNode child = (BaseNode) internal.getChild(pos);
+            child.posInParent = pos;
+            node = child;
+        }
+        return (BaseNode) node;
+    }
+
+    /**
+     * If a node is under the target, look for the shortest run of it and its right siblings whose entries would fit
+     * in one fewer nodes filled to the target, and repack them.
+     *
+     * @return true if it did, releasing a node
+     */
+    private boolean repack(BaseNode node) {
+        InternalNode parent = (InternalNode) node.getParent();
+        int pos = node.posInParent;
+        int target = node.isLeaf() ? leafTarget : internalTarget;
+        if (node.numKeys() >= target) {
+            return false;
+        }
+        int total = node.numKeys();
+        for (int window = 2; pos + window <= parent.numChildren(); window++) {
+            total += parent.getChild(pos + window - 1).numKeys();
+            if (total <= (window - 1) * target) {
+                if (node.isLeaf()) {
+                    ((LeafNode) node).repack(window);
+                } else {
+                    ((InternalNode) node).repack(window);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the first key after the last leaf under a node, or null if there are no keys after it
+     */
+    private static Comparable keyAfter(Node node) {
+        while (!node.isLeaf()) {
+            node = node.getChild(node.numChildren() - 1);
+        }
+        LeafNode next = ((LeafNode) node).next();
+        while (next != null && next.numKeys() == 0) {
+            // Left empty by relaxed rebalancing
+            next = next.next();
+        }
+        return next == null ? null : next.getKey(0);
+    }
+
+    // Rough shallow sizes assuming compressed oops: a header, the fields and the node's own arrays
+
+    static long leafBytes(int b) {
+        return 48 + 2 * (16 + 4L * b);
+    }
+
+    static long internalBytes(int b) {
+        return 48 + 3 * (16 + 4L * (b + 1));
+    }
+}
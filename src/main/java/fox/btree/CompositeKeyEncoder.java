@@ -0,0 +1,30 @@
+package fox.btree;
+
+/**
+ * Encodes each part of a composite key with its own encoder, one after the other.
+ */
+class CompositeKeyEncoder implements KeyEncoder<Object[]> {
+
+    private final KeyEncoder[] parts;
+
+    CompositeKeyEncoder(KeyEncoder<?>... parts) {
+        if (parts.length == 0) {
+            throw new IllegalArgumentException("composite key must have at least one part");
+        }
+        this.parts = parts.clone();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void encode(Object[] value, ByteKey.Builder out) {
+        if (value.length != parts.length) {
+            throw new IllegalArgumentException("expected " + parts.length + " key parts, got " + value.length);
+        }
+        for (int i = 0; i < parts.length; i++) {
+            if (value[i] == null) {
+                throw new IllegalArgumentException("null key part " + i);
+            }
+            parts[i].encode(value[i], out);
+        }
+    }
+}
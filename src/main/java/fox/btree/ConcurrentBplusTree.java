@@ -0,0 +1,390 @@
+package fox.btree;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A thread safe B+Tree using optimistic lock coupling.
+ * <p>
+ * Every node has a version lock (see {@link ConcurrentNode}). Readers never write to shared memory: they descend
+ * holding only optimistic stamps, validating each node's stamp after reading from it and after taking the child's
+ * stamp, and start again from the root if anything they read from has changed.
+ * <p>
+ * Writers descend the same way and only lock nodes they are about to change, by upgrading the stamps they read with.
+ * To make sure a change never has to propagate upwards, structure modifications happen on the way down: an insert
+ * that meets a full node splits it straight away (locking just the node and its parent) and a remove that meets a
+ * node at the minimum tops it up from, or merges it with, a sibling (locking the node, its parent and that sibling).
+ * After either the operation restarts from the root. Locks are only ever taken with try* methods so writers never
+ * block each other and can't deadlock - if a lock isn't available they back off and restart.
+ * <p>
+ * The root pointer has its own version lock which acts as the parent lock of the root node.
+ */
+public class ConcurrentBplusTree {
+
+    private static final Object RESTART = new Object();
+    private static final int RESTART_POS = -1;
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    private final int branchingFactor;
+    private final SearchStrategy searchStrategy;
+    private final StampedLock rootLock = new StampedLock();
+    private final LongAdder keyCount = new LongAdder();
+    private final LongAdder restarts = new LongAdder();
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private volatile ConcurrentNode root;
+
+    public ConcurrentBplusTree(int branchingFactor) {
+        this(branchingFactor, SearchStrategy.forBranchingFactor(branchingFactor));
+    }
+
+    public ConcurrentBplusTree(int branchingFactor, SearchStrategy searchStrategy) {
+        if (branchingFactor < 4) {
+            throw new IllegalArgumentException("branchingFactor must be >= 4");
+        }
+        if (searchStrategy == null) {
+            throw new IllegalArgumentException("searchStrategy must be specified");
+        }
+        this.branchingFactor = branchingFactor;
+        this.searchStrategy = searchStrategy;
+        this.root = new ConcurrentLeafNode(this);
+    }
+
+    public Object find(Comparable key) {
+        int attempts = 0;
+        while (true) {
+            Object result = tryFind(key);
+            if (result != RESTART) {
+                return result;
+            }
+            attempts = backoff(attempts);
+        }
+    }
+
+    public void insert(Comparable key, Object value) {
+        int attempts = 0;
+        while (!tryInsert(key, value)) {
+            attempts = backoff(attempts);
+        }
+    }
+
+    public Object remove(Comparable key) {
+        int attempts = 0;
+        while (true) {
+            Object result = tryRemove(key);
+            if (result != RESTART) {
+                return result;
+            }
+            attempts = backoff(attempts);
+        }
+    }
+
+    public int keyCount() {
+        return keyCount.intValue();
+    }
+
+    public int nodeCount() {
+        return nodeCount.get();
+    }
+
+    /**
+     * @return the number of times an operation had to start again from the root
+     */
+    public long restarts() {
+        return restarts.sum();
+    }
+
+    /**
+     * Only safe to walk from the root when no operations are in progress.
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    int branchingFactor() {
+        return branchingFactor;
+    }
+
+    SearchStrategy searchStrategy() {
+        return searchStrategy;
+    }
+
+    int nextNodeCount() {
+        return nodeCount.getAndIncrement();
+    }
+
+    private Object tryFind(Comparable key) {
+        long rootStamp = rootLock.tryOptimisticRead();
+        ConcurrentNode node = root;
+        long stamp = node.lock.tryOptimisticRead();
+        if (rootStamp == 0 || stamp == 0 || !rootLock.validate(rootStamp)) {
+            return RESTART;
+        }
+        while (!node.isLeaf()) {
+            ConcurrentInternalNode internal = (ConcurrentInternalNode) node;
+            int pos = childPos(internal, stamp, key);
+            if (pos == RESTART_POS) {
+                return RESTART;
+            }
+            ConcurrentNode child = internal.child(pos);
+            long childStamp = child == null ? 0 : child.lock.tryOptimisticRead();
+            if (childStamp == 0 || !node.lock.validate(stamp)) {
+                return RESTART;
+            }
+            node = child;
+            stamp = childStamp;
+        }
+        Object value;
+        try {
+            value = ((ConcurrentLeafNode) node).findValue(key);
+        } catch (RuntimeException e) {
+            return restartOrThrow(node, stamp, e);
+        }
+        return node.lock.validate(stamp) ? value : RESTART;
+    }
+
+    private boolean tryInsert(Comparable key, Object value) {
+        long rootStamp = rootLock.tryOptimisticRead();
+        ConcurrentNode node = root;
+        long stamp = node.lock.tryOptimisticRead();
+        if (rootStamp == 0 || stamp == 0 || !rootLock.validate(rootStamp)) {
+            return false;
+        }
+        ConcurrentInternalNode parent = null;
+        long parentStamp = 0;
+        int pos = RESTART_POS;
+        while (true) {
+            boolean full = node.isFull();
+            if (!node.lock.validate(stamp)) {
+                return false;
+            }
+            if (full) {
+                split(node, stamp, parent, parentStamp, pos, rootStamp);
+                return false;
+            }
+            if (node.isLeaf()) {
+                break;
+            }
+            ConcurrentInternalNode internal = (ConcurrentInternalNode) node;
+            int childPos = childPos(internal, stamp, key);
+            if (childPos == RESTART_POS) {
+                return false;
+            }
+            ConcurrentNode child = internal.child(childPos);
+            long childStamp = child == null ? 0 : child.lock.tryOptimisticRead();
+            if (childStamp == 0 || !node.lock.validate(stamp)) {
+                return false;
+            }
+            parent = internal;
+            parentStamp = stamp;
+            pos = childPos;
+            node = child;
+            stamp = childStamp;
+        }
+        long writeStamp = node.lock.tryConvertToWriteLock(stamp);
+        if (writeStamp == 0) {
+            return false;
+        }
+        try {
+            if (((ConcurrentLeafNode) node).insertValue(key, value)) {
+                keyCount.increment();
+            }
+        } finally {
+            node.lock.unlockWrite(writeStamp);
+        }
+        return true;
+    }
+
+    private Object tryRemove(Comparable key) {
+        long rootStamp = rootLock.tryOptimisticRead();
+        ConcurrentNode node = root;
+        long stamp = node.lock.tryOptimisticRead();
+        if (rootStamp == 0 || stamp == 0 || !rootLock.validate(rootStamp)) {
+            return RESTART;
+        }
+        ConcurrentInternalNode parent = null;
+        long parentStamp = 0;
+        boolean parentIsRoot = false;
+        int pos = RESTART_POS;
+        while (true) {
+            if (parent != null) {
+                boolean atMin = node.numKeys <= node.minKeys();
+                if (!node.lock.validate(stamp)) {
+                    return RESTART;
+                }
+                if (atMin) {
+                    rebalance(node, stamp, parent, parentStamp, pos, parentIsRoot, rootStamp);
+                    return RESTART;
+                }
+            }
+            if (node.isLeaf()) {
+                break;
+            }
+            ConcurrentInternalNode internal = (ConcurrentInternalNode) node;
+            int childPos = childPos(internal, stamp, key);
+            if (childPos == RESTART_POS) {
+                return RESTART;
+            }
+            ConcurrentNode child = internal.child(childPos);
+            long childStamp = child == null ? 0 : child.lock.tryOptimisticRead();
+            if (childStamp == 0 || !node.lock.validate(stamp)) {
+                return RESTART;
+            }
+            parentIsRoot = parent == null;
+            parent = internal;
+            parentStamp = stamp;
+            pos = childPos;
+            node = child;
+            stamp = childStamp;
+        }
+        long writeStamp = node.lock.tryConvertToWriteLock(stamp);
+        if (writeStamp == 0) {
+            return RESTART;
+        }
+        try {
+            ConcurrentLeafNode leaf = (ConcurrentLeafNode) node;
+            int i = leaf.indexOf(key);
+            if (i < 0) {
+                return null;
+            }
+            keyCount.decrement();
+            return leaf.removeAt(i);
+        } finally {
+            node.lock.unlockWrite(writeStamp);
+        }
+    }
+
+    /**
+     * Split a full node, locking it and its parent - or the root pointer if it is the root. Does nothing if either has
+     * changed since it was read.
+     */
+    private void split(ConcurrentNode node, long stamp, ConcurrentInternalNode parent, long parentStamp, int pos,
+                       long rootStamp) {
+        StampedLock parentLock = parent == null ? rootLock : parent.lock;
+        long parentWrite = parentLock.tryConvertToWriteLock(parent == null ? rootStamp : parentStamp);
+        if (parentWrite == 0) {
+            return;
+        }
+        long nodeWrite = node.lock.tryConvertToWriteLock(stamp);
+        if (nodeWrite == 0) {
+            parentLock.unlockWrite(parentWrite);
+            return;
+        }
+        try {
+            ConcurrentNode right = node.split();
+            Comparable separator = right.getKey(0);
+            if (parent == null) {
+                // Create a new root
+                ConcurrentInternalNode newRoot = new ConcurrentInternalNode(this);
+                newRoot.addChild(0, node.getKey(0), node);
+                newRoot.addChild(1, separator, right);
+                root = newRoot;
+            } else {
+                parent.addChild(pos + 1, separator, right);
+            }
+        } finally {
+            node.lock.unlockWrite(nodeWrite);
+            parentLock.unlockWrite(parentWrite);
+        }
+    }
+
+    /**
+     * Top up a node at the minimum from a sibling, or merge the two if the sibling has nothing to spare. Locks the
+     * node, its parent and the sibling, plus the root pointer if the merge could leave the root with one child. Does
+     * nothing if any of them can't be locked.
+     */
+    private void rebalance(ConcurrentNode node, long stamp, ConcurrentInternalNode parent, long parentStamp, int pos,
+                           boolean parentIsRoot, long rootStamp) {
+        long rootWrite = 0;
+        if (parentIsRoot && parent.numKeys == 2) {
+            // If this is stale the parent upgrade below will fail
+            rootWrite = rootLock.tryConvertToWriteLock(rootStamp);
+            if (rootWrite == 0) {
+                return;
+            }
+        }
+        long parentWrite = parent.lock.tryConvertToWriteLock(parentStamp);
+        if (parentWrite == 0) {
+            unlockRoot(rootWrite);
+            return;
+        }
+        long nodeWrite = node.lock.tryConvertToWriteLock(stamp);
+        if (nodeWrite == 0) {
+            parent.lock.unlockWrite(parentWrite);
+            unlockRoot(rootWrite);
+            return;
+        }
+        // Prefer the left sibling, as the single threaded tree does
+        boolean left = pos > 0;
+        int siblingPos = left ? pos - 1 : pos + 1;
+        ConcurrentNode sibling = parent.child(siblingPos);
+        long siblingWrite = sibling.lock.tryWriteLock();
+        if (siblingWrite == 0) {
+            node.lock.unlockWrite(nodeWrite);
+            parent.lock.unlockWrite(parentWrite);
+            unlockRoot(rootWrite);
+            return;
+        }
+        try {
+            if (sibling.numKeys > sibling.minKeys()) {
+                Comparable separator = node.stealFrom(sibling, left);
+                parent.setKey(left ? pos : siblingPos, separator);
+            } else {
+                ConcurrentNode leftNode = left ? sibling : node;
+                ConcurrentNode rightNode = left ? node : sibling;
+                leftNode.mergeFrom(rightNode);
+                parent.removeChild(left ? pos : siblingPos);
+                if (parent.numKeys == 1) {
+                    // Only the root can get down to one child - which becomes the root
+                    leftNode.parent = null;
+                    root = leftNode;
+                }
+            }
+        } finally {
+            sibling.lock.unlockWrite(siblingWrite);
+            node.lock.unlockWrite(nodeWrite);
+            parent.lock.unlockWrite(parentWrite);
+            unlockRoot(rootWrite);
+        }
+    }
+
+    private void unlockRoot(long rootWrite) {
+        if (rootWrite != 0) {
+            rootLock.unlockWrite(rootWrite);
+        }
+    }
+
+    /**
+     * Find the child to descend to, optimistically.
+     *
+     * @return the child position, or RESTART_POS if the node changed while it was being read
+     */
+    private int childPos(ConcurrentInternalNode node, long stamp, Comparable key) {
+        try {
+            int pos = node.childIndex(key);
+            return node.lock.validate(stamp) ? pos : RESTART_POS;
+        } catch (RuntimeException e) {
+            restartOrThrow(node, stamp, e);
+            return RESTART_POS;
+        }
+    }
+
+    /**
+     * A node read optimistically can be inconsistent, which can surface as an exception. That's only a reason to
+     * restart if the node really did change, otherwise it is a genuine error.
+     */
+    private Object restartOrThrow(ConcurrentNode node, long stamp, RuntimeException e) {
+        if (node.lock.validate(stamp)) {
+            throw e;
+        }
+        return RESTART;
+    }
+
+    private int backoff(int attempts) {
+        restarts.increment();
+        if (++attempts % SPINS_BEFORE_YIELD == 0) {
+            Thread.yield();
+        }
+        return attempts;
+    }
+}
@@ -0,0 +1,125 @@
+package fox.btree;
+
+/**
+ * Internal node of a {@link ConcurrentBplusTree}. Internal nodes are split before they overflow so they never need
+ * more room than the branching factor.
+ */
+public class ConcurrentInternalNode extends ConcurrentNode {
+
+    private final ConcurrentNode[] children;
+
+    public ConcurrentInternalNode(ConcurrentBplusTree tree) {
+        super(tree, tree.branchingFactor());
+        children = new ConcurrentNode[tree.branchingFactor()];
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return false;
+    }
+
+    @Override
+    public int numValues() {
+        return 0;
+    }
+
+    @Override
+    public int numChildren() {
+        return numKeys;
+    }
+
+    @Override
+    public Object getValue(int pos) {
+        return null;
+    }
+
+    @Override
+    public Node getChild(int pos) {
+        return children[pos];
+    }
+
+    @Override
+    boolean isFull() {
+        return numKeys == tree.branchingFactor();
+    }
+
+    @Override
+    int minKeys() {
+        return tree.branchingFactor() / 2;
+    }
+
+    /**
+     * The position of the child whose subtree covers the key - the zeroth key is never used for routing. Safe to call
+     * optimistically, the result must be validated.
+     */
+    int childIndex(Comparable key) {
+        int i = search(key, 1);
+        return i >= 0 ? i : -(i + 2);
+    }
+
+    ConcurrentNode child(int pos) {
+        return children[pos];
+    }
+
+    void addChild(int pos, Comparable key, ConcurrentNode child) {
+        insertInArray(keys, pos, numKeys, key);
+        insertInArray(children, pos, numKeys, child);
+        numKeys++;
+        child.parent = this;
+    }
+
+    void removeChild(int pos) {
+        removeFromArray(keys, pos, numKeys);
+        removeFromArray(children, pos, numKeys);
+        numKeys--;
+    }
+
+    void setKey(int pos, Comparable key) {
+        keys[pos] = key;
+    }
+
+    @Override
+    ConcurrentNode split() {
+        int leftKeys = numKeys / 2;
+        int rightKeys = numKeys - leftKeys;
+        ConcurrentInternalNode newNode = new ConcurrentInternalNode(tree);
+        System.arraycopy(keys, leftKeys, newNode.keys, 0, rightKeys);
+        System.arraycopy(children, leftKeys, newNode.children, 0, rightKeys);
+        newNode.numKeys = rightKeys;
+        for (int i = leftKeys; i < numKeys; i++) {
+            newNode.children[i - leftKeys].parent = newNode;
+            keys[i] = null;
+            children[i] = null;
+        }
+        numKeys = leftKeys;
+        return newNode;
+    }
+
+    @Override
+    Comparable stealFrom(ConcurrentNode node, boolean left) {
+        ConcurrentInternalNode sibling = (ConcurrentInternalNode) node;
+        int posToSteal = left ? sibling.numKeys - 1 : 0;
+        int posToInsert = left ? 0 : numKeys;
+        Comparable key = sibling.keys[posToSteal];
+        ConcurrentNode child = sibling.children[posToSteal];
+        removeFromArray(sibling.keys, posToSteal, sibling.numKeys);
+        removeFromArray(sibling.children, posToSteal, sibling.numKeys);
+        sibling.numKeys--;
+        insertInArray(keys, posToInsert, numKeys, key);
+        insertInArray(children, posToInsert, numKeys, child);
+        numKeys++;
+        child.parent = this;
+        return left ? keys[0] : sibling.keys[0];
+    }
+
+    @Override
+    void mergeFrom(ConcurrentNode node) {
+        ConcurrentInternalNode right = (ConcurrentInternalNode) node;
+        for (int i = 0; i < right.numKeys; i++) {
+            right.children[i].parent = this;
+        }
+        System.arraycopy(right.keys, 0, keys, numKeys, right.numKeys);
+        System.arraycopy(right.children, 0, children, numKeys, right.numKeys);
+        numKeys += right.numKeys;
+    }
+}
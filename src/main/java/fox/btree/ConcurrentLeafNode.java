@@ -0,0 +1,126 @@
+package fox.btree;
+
+/**
+ * Leaf node of a {@link ConcurrentBplusTree}. Leaves are split before they overflow so they never need more room than
+ * the maximum number of keys.
+ */
+public class ConcurrentLeafNode extends ConcurrentNode {
+
+    private final Object[] values;
+
+    public ConcurrentLeafNode(ConcurrentBplusTree tree) {
+        super(tree, tree.branchingFactor() - 1);
+        values = new Object[tree.branchingFactor() - 1];
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return true;
+    }
+
+    @Override
+    public int numValues() {
+        return numKeys;
+    }
+
+    @Override
+    public int numChildren() {
+        return 0;
+    }
+
+    @Override
+    public Object getValue(int pos) {
+        return values[pos];
+    }
+
+    @Override
+    public Node getChild(int pos) {
+        return null;
+    }
+
+    @Override
+    boolean isFull() {
+        return numKeys == tree.branchingFactor() - 1;
+    }
+
+    @Override
+    int minKeys() {
+        return tree.branchingFactor() / 2 - 1;
+    }
+
+    /**
+     * Safe to call optimistically, the result must be validated.
+     */
+    Object findValue(Comparable key) {
+        int i = search(key, 0);
+        return i >= 0 ? values[i] : null;
+    }
+
+    /**
+     * @return true if the key was added, false if an existing value was replaced
+     */
+    boolean insertValue(Comparable key, Object value) {
+        int i = search(key, 0);
+        if (i >= 0) {
+            values[i] = value;
+            return false;
+        }
+        i = -(i + 1);
+        insertInArray(keys, i, numKeys, key);
+        insertInArray(values, i, numKeys, value);
+        numKeys++;
+        return true;
+    }
+
+    int indexOf(Comparable key) {
+        return search(key, 0);
+    }
+
+    Object removeAt(int pos) {
+        Object value = values[pos];
+        removeFromArray(keys, pos, numKeys);
+        removeFromArray(values, pos, numKeys);
+        numKeys--;
+        return value;
+    }
+
+    @Override
+    ConcurrentNode split() {
+        int leftKeys = numKeys / 2;
+        int rightKeys = numKeys - leftKeys;
+        ConcurrentLeafNode newNode = new ConcurrentLeafNode(tree);
+        System.arraycopy(keys, leftKeys, newNode.keys, 0, rightKeys);
+        System.arraycopy(values, leftKeys, newNode.values, 0, rightKeys);
+        newNode.numKeys = rightKeys;
+        for (int i = leftKeys; i < numKeys; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        numKeys = leftKeys;
+        return newNode;
+    }
+
+    @Override
+    Comparable stealFrom(ConcurrentNode node, boolean left) {
+        ConcurrentLeafNode sibling = (ConcurrentLeafNode) node;
+        int posToSteal = left ? sibling.numKeys - 1 : 0;
+        int posToInsert = left ? 0 : numKeys;
+        Comparable key = sibling.keys[posToSteal];
+        Object value = sibling.values[posToSteal];
+        removeFromArray(sibling.keys, posToSteal, sibling.numKeys);
+        removeFromArray(sibling.values, posToSteal, sibling.numKeys);
+        sibling.numKeys--;
+        insertInArray(keys, posToInsert, numKeys, key);
+        insertInArray(values, posToInsert, numKeys, value);
+        numKeys++;
+        return left ? keys[0] : sibling.keys[0];
+    }
+
+    @Override
+    void mergeFrom(ConcurrentNode node) {
+        ConcurrentLeafNode right = (ConcurrentLeafNode) node;
+        System.arraycopy(right.keys, 0, keys, numKeys, right.numKeys);
+        System.arraycopy(right.values, 0, values, numKeys, right.numKeys);
+        numKeys += right.numKeys;
+    }
+}
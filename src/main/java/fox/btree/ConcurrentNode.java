@@ -0,0 +1,111 @@
+package fox.btree;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Base class for the nodes of a {@link ConcurrentBplusTree}.
+ * <p>
+ * Each node carries a {@link StampedLock} used as a version lock: readers take an optimistic stamp and validate it
+ * after reading, writers upgrade the stamp they read with to a write lock so they only get it if nothing has changed
+ * in between. Readers may see the node mid update, so everything read optimistically must be validated before it is
+ * acted on.
+ * <p>
+ * The parent pointer is only maintained so the tree can be checked when it is quiescent - the tree itself never
+ * follows it.
+ */
+public abstract class ConcurrentNode implements Node {
+
+    protected final ConcurrentBplusTree tree;
+    protected final int nodeNum;
+    protected final StampedLock lock = new StampedLock();
+
+    protected ConcurrentInternalNode parent;
+    protected int numKeys;
+    protected final Comparable[] keys;
+
+    public ConcurrentNode(ConcurrentBplusTree tree, int capacity) {
+        this.tree = tree;
+        this.nodeNum = tree.nextNodeCount();
+        this.keys = new Comparable[capacity];
+    }
+
+    @Override
+    public Node getParent() {
+        return parent;
+    }
+
+    @Override
+    public int getNodeNum() {
+        return nodeNum;
+    }
+
+    @Override
+    public boolean isRoot() {
+        return parent == null;
+    }
+
+    @Override
+    public int numKeys() {
+        return numKeys;
+    }
+
+    @Override
+    public Comparable getKey(int pos) {
+        return keys[pos];
+    }
+
+    // Nodes can only be modified through the tree, which takes care of the locking
+
+    @Override
+    public Object find(Comparable key) {
+        throw new UnsupportedOperationException("Use ConcurrentBplusTree.find");
+    }
+
+    @Override
+    public Object remove(Comparable key) {
+        throw new UnsupportedOperationException("Use ConcurrentBplusTree.remove");
+    }
+
+    @Override
+    public void insert(Comparable key, Object value) {
+        throw new UnsupportedOperationException("Use ConcurrentBplusTree.insert");
+    }
+
+    /**
+     * @return true if the node can't take another entry without splitting
+     */
+    abstract boolean isFull();
+
+    abstract int minKeys();
+
+    /**
+     * Move the upper half of the entries into a new node to the right of this one. Must hold the write lock.
+     */
+    abstract ConcurrentNode split();
+
+    /**
+     * Take one entry from a sibling, which must have more than the minimum. Must hold both write locks.
+     *
+     * @return the new separator key for whichever of the two nodes is on the right
+     */
+    abstract Comparable stealFrom(ConcurrentNode sibling, boolean left);
+
+    /**
+     * Append all the entries of the right hand sibling to this node. Must hold both write locks.
+     */
+    abstract void mergeFrom(ConcurrentNode right);
+
+    protected int search(Comparable key, int from) {
+        return tree.searchStrategy().search(keys, from, numKeys, key);
+    }
+
+    protected static <T> void insertInArray(T[] arr, int pos, int numKeys, T val) {
+        System.arraycopy(arr, pos, arr, pos + 1, numKeys - pos);
+        arr[pos] = val;
+    }
+
+    protected static <T> void removeFromArray(T[] arr, int pos, int numKeys) {
+        System.arraycopy(arr, pos + 1, arr, pos, numKeys - pos - 1);
+        arr[numKeys - 1] = null;
+    }
+}
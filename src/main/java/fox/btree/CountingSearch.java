@@ -0,0 +1,51 @@
+package fox.btree;
+
+/**
+ * Counts the key comparisons made by another search strategy, by handing it a probe key that counts its compareTo
+ * calls. Only strategies that touch the probe through nothing but compareTo can be counted this way, others are left
+ * as they are.
+ */
+class CountingSearch implements SearchStrategy {
+
+    private final SearchStrategy delegate;
+    private final TreeMetrics metrics;
+
+    private CountingSearch(SearchStrategy delegate, TreeMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return a strategy counting the comparisons made by the given one, or the same one if they can't be counted
+     */
+    static SearchStrategy wrap(SearchStrategy strategy, TreeMetrics metrics) {
+        if (strategy == LINEAR || strategy == BINARY || strategy == BRANCHLESS_BINARY) {
+            return new CountingSearch(strategy, metrics);
+        }
+        return strategy;
+    }
+
+    @Override
+    public int search(Comparable[] keys, int from, int to, Comparable key) {
+        CountingKey probe = new CountingKey(key);
+        int i = delegate.search(keys, from, to, probe);
+        metrics.comparisons(probe.count);
+        return i;
+    }
+
+    private static final class CountingKey implements Comparable {
+
+        private final Comparable key;
+        private int count;
+
+        CountingKey(Comparable key) {
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(Object other) {
+            count++;
+            return key.compareTo(other);
+        }
+    }
+}
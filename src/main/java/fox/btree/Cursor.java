@@ -0,0 +1,20 @@
+package fox.btree;
+
+/**
+ * Iterates over a range of entries in key order. Call {@link #next()} to move on to each entry, including the first.
+ * <p>
+ * A cursor walks the linked leaves directly so it is only valid until the tree is next modified.
+ */
+public interface Cursor {
+
+    /**
+     * Move to the next entry.
+     *
+     * @return false if there are no more entries in the range
+     */
+    boolean next();
+
+    Comparable key();
+
+    Object value();
+}
@@ -0,0 +1,265 @@
+package fox.btree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link OffHeapBplusTree} whose inserts and removes are durable when they return, made thread safe with a single
+ * lock.
+ * <p>
+ * Each mutation is appended to a {@link WriteAheadLog} and applied to the tree under the lock, then the caller waits
+ * for the log to sync outside it, so concurrent callers share fsyncs through group commit. If the log fails, the
+ * mutations it lost are undone, so one that throws doesn't stay in the tree. A {@link #checkpoint()} writes every
+ * entry to a checkpoint file, swapped in atomically with a rename, and empties the log. Opening the tree loads the
+ * last checkpoint and replays the log after it.
+ * <p>
+ * Files in the directory:
+ * <pre>
+ *  checkpoint  - magic int, lsn long, count long, then count key value pairs in key order
+ *  wal         - the log
+ * </pre>
+ */
+public class DurableBplusTree {
+
+    static final byte INSERT = 1;
+    static final byte REMOVE = 2;
+
+    private static final int CHECKPOINT_MAGIC = 0x43484b50;
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String LOG_FILE = "wal";
+
+    private final Path dir;
+    private final OffHeapBplusTree tree;
+    private final WriteAheadLog log;
+    private final long recoveryNanos;
+    private final long recoveredRecords;
+    // Mutations that may not be durable yet, oldest first, so they can be undone if the log fails
+    private final ArrayDeque<Undo> undo = new ArrayDeque<>();
+
+    /**
+     * Open the tree in a directory, creating it if it's empty.
+     *
+     * @param groupCommitDelay the longest a sync waits for other callers to join its batch
+     * @param groupCommitBytes the batch size at which a sync stops waiting
+     */
+    public DurableBplusTree(Path dir, int branchingFactor, long groupCommitDelay, TimeUnit unit,
+                            int groupCommitBytes) {
+        this.dir = dir;
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.tree = new OffHeapBplusTree(branchingFactor);
+        long checkpointLsn = loadCheckpoint();
+        this.log = new WriteAheadLog(dir.resolve(LOG_FILE), groupCommitDelay, unit, groupCommitBytes);
+        this.recoveredRecords = log.replay(checkpointLsn, this::apply);
+        this.recoveryNanos = System.nanoTime() - start;
+    }
+
+    public void insert(long key, long value) {
+        long lsn;
+        synchronized (this) {
+            lsn = log.append(INSERT, key, value);
+            boolean existed = tree.containsKey(key);
+            addUndo(lsn, key, existed, existed ? tree.find(key, 0) : 0);
+            tree.insert(key, value);
+        }
+        awaitDurable(lsn);
+    }
+
+    public long remove(long key, long defaultValue) {
+        long lsn;
+        long val;
+        synchronized (this) {
+            if (!tree.containsKey(key)) {
+                return defaultValue;
+            }
+            lsn = log.append(REMOVE, key, 0);
+            val = tree.remove(key, defaultValue);
+            addUndo(lsn, key, true, val);
+        }
+        awaitDurable(lsn);
+        return val;
+    }
+
+    public synchronized long find(long key, long defaultValue) {
+        return tree.find(key, defaultValue);
+    }
+
+    public synchronized boolean containsKey(long key) {
+        return tree.containsKey(key);
+    }
+
+    public synchronized int keyCount() {
+        return tree.keyCount();
+    }
+
+    /**
+     * Write every entry to a new checkpoint and empty the log. Mutations wait while the checkpoint is written.
+     */
+    public synchronized void checkpoint() {
+        if (log.failed()) {
+            // Only what made it into the log belongs in the checkpoint
+            rollBack();
+        }
+        long lsn = log.lastLsn();
+        Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     Channels.newOutputStream(channel), 1 << 16))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeLong(lsn);
+            out.writeLong(tree.keyCount());
+            LongCursor cursor = tree.scan();
+            while (cursor.next()) {
+                out.writeLong(cursor.key());
+                out.writeLong(cursor.value());
+            }
+            out.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(tmp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            // The rename must be on disk before the log is emptied, or a crash could keep the empty log and the old
+            // checkpoint
+            try (FileChannel dirChannel = FileChannel.open(dir, StandardOpenOption.READ)) {
+                dirChannel.force(true);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.truncate(lsn);
+    }
+
+    /**
+     * @return how long opening the tree took, loading the checkpoint and replaying the log
+     */
+    public long recoveryTime(TimeUnit unit) {
+        return unit.convert(recoveryNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the number of log records replayed when the tree was opened
+     */
+    public long recoveredRecords() {
+        return recoveredRecords;
+    }
+
+    /**
+     * @return the log, for its write and fsync rates
+     */
+    public WriteAheadLog log() {
+        return log;
+    }
+
+    /**
+     * Sync the log and close the tree. Nothing is lost without a checkpoint, but the next open has more to replay.
+     */
+    public synchronized void close() {
+        log.close();
+        tree.close();
+    }
+
+    private long loadCheckpoint() {
+        Path path = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IllegalStateException(path + " is not a checkpoint");
+            }
+            long lsn = in.readLong();
+            long count = in.readLong();
+            for (long i = 0; i < count; i++) {
+                tree.insert(in.readLong(), in.readLong());
+            }
+            return lsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Wait for a mutation to be made durable, undoing it and everything else the log lost if the log fails.
+     */
+    private void awaitDurable(long lsn) {
+        try {
+            log.awaitDurable(lsn);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                rollBack();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Remember how to undo a mutation until it is durable, forgetting any that already are. Called with the lock held.
+     */
+    private void addUndo(long lsn, long key, boolean existed, long oldValue) {
+        long durableLsn = log.durableLsn();
+        while (!undo.isEmpty() && undo.peekFirst().lsn <= durableLsn) {
+            undo.pollFirst();
+        }
+        undo.addLast(new Undo(lsn, key, existed, oldValue));
+    }
+
+    /**
+     * Undo the mutations that aren't durable, newest first, once the log has failed. Called with the lock held.
+     */
+    private void rollBack() {
+        long durableLsn = log.durableLsn();
+        while (!undo.isEmpty() && undo.peekLast().lsn > durableLsn) {
+            Undo last = undo.pollLast();
+            if (last.existed) {
+                tree.insert(last.key, last.oldValue);
+            } else {
+                tree.remove(last.key, 0);
+            }
+        }
+    }
+
+    private void apply(byte type, long key, long value) {
+        if (type == INSERT) {
+            tree.insert(key, value);
+        } else if (type == REMOVE) {
+            tree.remove(key, 0);
+        } else {
+            throw new IllegalStateException("unknown log record type " + type);
+        }
+    }
+
+    private static final class Undo {
+
+        final long lsn;
+        final long key;
+        final boolean existed;
+        final long oldValue;
+
+        Undo(long lsn, long key, boolean existed, long oldValue) {
+            this.lsn = lsn;
+            this.key = key;
+            this.existed = existed;
+            this.oldValue = oldValue;
+        }
+    }
+}
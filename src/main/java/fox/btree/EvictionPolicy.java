@@ -0,0 +1,18 @@
+package fox.btree;
+
+/**
+ * How a {@link BufferPool} picks the page to evict when it needs a frame.
+ */
+public enum EvictionPolicy {
+
+    /**
+     * Second chance: a hand sweeps the frames, clearing each one's referenced bit and evicting the first frame it
+     * finds that hasn't been referenced since the last sweep. Cheap to maintain on every access.
+     */
+    CLOCK,
+
+    /**
+     * Evict the least recently used page, tracked with a doubly linked list of frames.
+     */
+    LRU
+}
@@ -8,6 +8,8 @@ public class InternalNode extends BaseNode {
     private int numKeys;
     private Comparable[] keys;
     private BaseNode[] children;
+    // The number of keys in the subtree under each child
+    private int[] counts;
 
     public InternalNode(BasicBplusTree tree) {
         super(tree);
@@ -15,6 +17,7 @@ public class InternalNode extends BaseNode {
         // A little extra space for splitting
         keys = new Comparable[b + 1];
         children = new BaseNode[b + 1];
+        counts = new int[b + 1];
     }
 
 
@@ -35,7 +38,7 @@ public class InternalNode extends BaseNode {
 
     @Override
     public Object remove(Comparable key) {
-        Node leaf = findLeaf(key);
+        Node leaf = descend(key);
         if (leaf != null) {
             return leaf.remove(key);
         } else {
@@ -45,22 +48,38 @@ public class InternalNode extends BaseNode {
 
     @Override
     public void insert(Comparable key, Object value) {
-        Node leaf = findLeaf(key);
+        Node leaf = descend(key);
         leaf.insert(key, value);
     }
 
     @Override
     public LeafNode findLeaf(Comparable key) {
-        for (int i = 1; i < numKeys; i++) {
-            Comparable k = keys[i];
-            int comp = key.compareTo(k);
-            if (comp < 0) {
-                BaseNode child = children[i - 1];
-                return child.findLeaf(key);
+        return children[childIndex(key)].findLeaf(key);
+    }
+
+    /**
+     * Find the leaf for a key that is about to be updated, recording the position of each node on the way down.
+     */
+    LeafNode descend(Comparable key) {
+        InternalNode node = this;
+        while (true) {
+            int pos = node.childIndex(key);
+            BaseNode child = node.children[pos];
+            child.posInParent = pos;
+            if (child.isLeaf()) {
+                return (LeafNode) child;
             }
+            node = (InternalNode) child;
         }
-        BaseNode child = children[numKeys - 1];
-        return child.findLeaf(key);
+    }
+
+    /**
+     * The position of the child whose subtree covers the key. The zeroth key is never used for routing so the search
+     * starts at 1 - the child to take is the one to the left of the insertion point.
+     */
+    int childIndex(Comparable key) {
+        int i = tree.searchStrategy().search(keys, 1, numKeys, key);
+        return i >= 0 ? i : -(i + 2);
     }
 
     @Override
@@ -106,26 +125,39 @@ public class InternalNode extends BaseNode {
     void addChildPointer(int pos, Comparable key, Node child) {
         insertInArray(keys, pos, key);
         insertInArray(children, pos, child);
+        insertInArray(counts, pos, ((BaseNode) child).subtreeCount());
+        ((BaseNode) child).posInParent = pos;
         numKeys++;
     }
 
-    void setKey(int pos, Comparable key) {
-        keys[pos] = key;
+    /**
+     * @return the number of keys in the subtree under the child at a position
+     */
+    int childCount(int pos) {
+        return counts[pos];
     }
 
-    void insertChild(Node position, Comparable key, Node child) {
+    void addChildCount(int pos, int delta) {
+        counts[pos] += delta;
+    }
 
-        int pos = 0;
-        boolean found = false;
-        for (Node c : children) {
-            if (c == position) {
-                found = true;
-                break;
-            }
-            pos++;
+    @Override
+    int subtreeCount() {
+        int count = 0;
+        for (int i = 0; i < numKeys; i++) {
+            count += counts[i];
         }
+        return count;
+    }
 
-        if (!found) {
+    void setKey(int pos, Comparable key) {
+        keys[pos] = key;
+    }
+
+    void insertChild(BaseNode position, Comparable key, BaseNode child) {
+
+        int pos = position.posInParent;
+        if (children[pos] != position) {
             throw new IllegalStateException("Can't find node");
         }
 
@@ -134,6 +166,11 @@ public class InternalNode extends BaseNode {
         // insert key at position i
         insertInArray(keys, pos, key);
         insertInArray(children, pos, child);
+        child.posInParent = pos;
+        // The new child was split off the one before it
+        int childCount = child.subtreeCount();
+        counts[pos - 1] -= childCount;
+        insertInArray(counts, pos, childCount);
 
         numKeys++;
 
@@ -143,48 +180,54 @@ public class InternalNode extends BaseNode {
         // (see visualisation)
         if (numKeys == maxKeys() + 1) {
             // No room - split
-            split();
+            split(splitPoint(pos));
         }
     }
 
-    private void split() {
-
-        int splitAt = numKeys / 2 + 1;
-
-        int b = tree.branchingFactor();
-
-        Comparable[] keysLeft = new Comparable[b + 1];
-        BaseNode[] childrenLeft = new BaseNode[b + 1];
-
-        Comparable[] keysRight = new Comparable[b + 1];
-        BaseNode[] childrenRight = new BaseNode[b + 1];
-
-        System.arraycopy(keys, 0, keysLeft, 0, splitAt);
-        System.arraycopy(children, 0, childrenLeft, 0, splitAt);
+    /**
+     * @return the number of children to keep in this node when splitting it after inserting a child at a position
+     */
+    private int splitPoint(int insertPos) {
+        SplitPolicy policy = tree.splitPolicy();
+        // Skewed splits still leave two children on the small side, so every child has a sibling to rebalance with
+        if (insertPos == numKeys - 1 && policy.skewsRight() && onRightEdge()) {
+            return numKeys - 2;
+        }
+        if (insertPos == 1 && policy.skewsLeft() && onLeftEdge()) {
+            return 2;
+        }
+        return numKeys / 2 + 1;
+    }
 
-        System.arraycopy(keys, splitAt, keysRight, 0, numKeys - splitAt);
-        System.arraycopy(children, splitAt, childrenRight, 0, numKeys - splitAt);
+    private void split(int splitAt) {
+        tree.metrics().internalSplit();
 
         int leftKeys = splitAt;
         int rightKeys = numKeys - splitAt;
 
-        keys = keysLeft;
-        children = childrenLeft;
-        numKeys = leftKeys;
-
-        InternalNode newNode = new InternalNode(tree);
-        newNode.keys = keysRight;
-        newNode.children = childrenRight;
+        // Move the right half straight into the new node's arrays, this node keeps its own
+        InternalNode newNode = tree.newInternal();
+        System.arraycopy(keys, splitAt, newNode.keys, 0, rightKeys);
+        System.arraycopy(children, splitAt, newNode.children, 0, rightKeys);
+        System.arraycopy(counts, splitAt, newNode.counts, 0, rightKeys);
         newNode.numKeys = rightKeys;
 
+        for (int i = splitAt; i < numKeys; i++) {
+            keys[i] = null;
+            children[i] = null;
+            counts[i] = 0;
+        }
+        numKeys = leftKeys;
+
         for (int i = 0; i < newNode.numKeys; i++) {
             BaseNode c = newNode.children[i];
             c.setParent(newNode);
+            c.posInParent = i;
         }
 
         if (parent == null) {
             // Create a new root
-            parent = new InternalNode(tree);
+            parent = tree.newInternal();
             parent.addChildPointer(0, keys[0], this);
             parent.addChildPointer(1, newNode.keys[0], newNode);
             newNode.setParent(parent);
@@ -198,6 +241,7 @@ public class InternalNode extends BaseNode {
     void removeKey(int pos) {
         removeFromArray(keys, pos, numKeys);
         removeFromArray(children, pos, numKeys);
+        removeFromArray(counts, pos, numKeys);
         numKeys--;
         if (!isRoot()) {
             if (numKeys < tree.branchingFactor() / 2) {
@@ -211,28 +255,20 @@ public class InternalNode extends BaseNode {
                 BaseNode child = children[0];
                 child.setParent(null);
                 tree.setRoot(child);
+                tree.release(this);
             }
         }
     }
 
     private boolean tryStealSibling() {
-        int numSiblings = parent.numChildren();
-        for (int i = 0; i < numSiblings; i++) {
-            InternalNode sibling = (InternalNode)parent.getChild(i);
-            if (i < numSiblings - 1 && parent.getChild(i + 1) == this) {
-                // left sibling
-                if (tryStealSibling(sibling, i, true)) {
-                    return true;
-                }
-            }
-            if (i > 0 && parent.getChild(i - 1) == this) {
-                // Right sibling
-                if (tryStealSibling(sibling, i, false)) {
-                    return true;
-                }
-            }
+        int pos = posInParent;
+        if (pos > 0 && tryStealSibling((InternalNode) parent.getChild(pos - 1), pos - 1, true)) {
+            // left sibling
+            return true;
         }
-        return false;
+        // Right sibling
+        return pos < parent.numChildren() - 1
+                && tryStealSibling((InternalNode) parent.getChild(pos + 1), pos + 1, false);
     }
 
     private boolean tryStealSibling(InternalNode sibling, int siblingPos, boolean left) {
@@ -246,12 +282,18 @@ public class InternalNode extends BaseNode {
 
             Comparable key = sibling.getKey(posToSteal);
             Node child = sibling.getChild(posToSteal);
+            int childCount = sibling.counts[posToSteal];
             removeFromArray(sibling.keys, posToSteal, siblingNumKeys);
             removeFromArray(sibling.children, posToSteal, siblingNumKeys);
+            removeFromArray(sibling.counts, posToSteal, siblingNumKeys);
             sibling.numKeys--;
             insertInArray(keys, posToInsert, key);
             insertInArray(children, posToInsert, child);
+            insertInArray(counts, posToInsert, childCount);
             numKeys++;
+            parent.counts[siblingPos] -= childCount;
+            parent.counts[posInParent] += childCount;
+            tree.metrics().steal();
             // Update parent key value
             if (left) {
                 parent.setKey(siblingPos + 1, key);
@@ -266,24 +308,23 @@ public class InternalNode extends BaseNode {
     }
 
     private void mergeSibling() {
-        int numSiblings = parent.numChildren();
-        for (int i = 0; i < numSiblings; i++) {
-            InternalNode sibling = (InternalNode)parent.getChild(i);
-            boolean left;
-            if (i < numSiblings - 1 && parent.getChild(i + 1) == this) {
-                left = true;
-            } else if (i > 0 && parent.getChild(i - 1) == this) {
-                left = false;
-            } else {
-                continue;
-            }
-            // left or right sibling
-            if (sibling.numKeys == minKeys()) {
-                // Has min number of keys so can merge it
-                mergeSibling(sibling, left, i);
+        int pos = posInParent;
+        if (pos > 0) {
+            // left sibling
+            InternalNode sibling = (InternalNode) parent.getChild(pos - 1);
+            if (sibling.numKeys <= minKeys()) {
+                // Has min number of keys (or fewer, on the edge of a tree with skewed splits) so can merge it
+                mergeSibling(sibling, true, pos - 1);
                 return;
             }
         }
+        if (pos < parent.numChildren() - 1) {
+            // Right sibling
+            InternalNode sibling = (InternalNode) parent.getChild(pos + 1);
+            if (sibling.numKeys <= minKeys()) {
+                mergeSibling(sibling, false, pos + 1);
+            }
+        }
     }
 
     private void mergeSibling(InternalNode sibling, boolean left, int siblingPos) {
@@ -323,12 +364,95 @@ public class InternalNode extends BaseNode {
 
         System.arraycopy(srcKeys, 0, destKeys, dest.numKeys, src.numKeys);
         System.arraycopy(srcChildren, 0, destChildren, dest.numKeys, src.numKeys);
+        System.arraycopy(src.counts, 0, dest.counts, dest.numKeys, src.numKeys);
 
         dest.numKeys += src.numKeys;
+        parent.counts[srcPos - 1] += parent.counts[srcPos];
+        tree.metrics().merge();
 
         // remove merged key from parent
         parent.removeKey(srcPos);
 
+        tree.release(src);
+    }
+
+    /**
+     * Spread the children of this node and the window - 1 nodes to its right evenly over one fewer nodes, merging
+     * the emptied last node away. The nodes must all have the same parent, and the positions of this node and its
+     * ancestors must be up to date.
+     */
+    void repack(int window) {
+        InternalNode[] nodes = new InternalNode[window];
+        int total = 0;
+        for (int i = 0; i < window; i++) {
+            nodes[i] = (InternalNode) parent.getChild(posInParent + i);
+            total += nodes[i].numKeys;
+        }
+        Comparable[] allKeys = new Comparable[total];
+        BaseNode[] allChildren = new BaseNode[total];
+        int[] allCounts = new int[total];
+        int start = 0;
+        for (InternalNode node : nodes) {
+            System.arraycopy(node.keys, 0, allKeys, start, node.numKeys);
+            System.arraycopy(node.children, 0, allChildren, start, node.numKeys);
+            System.arraycopy(node.counts, 0, allCounts, start, node.numKeys);
+            start += node.numKeys;
+        }
+
+        int pieces = window - 1;
+        start = 0;
+        for (int p = 0; p < window; p++) {
+            InternalNode node = nodes[p];
+            // The last node is emptied
+            int size = p == pieces ? 0 : (total - start) / (pieces - p);
+            int count = 0;
+            for (int i = 0; i < Math.max(size, node.numKeys); i++) {
+                if (i < size) {
+                    node.keys[i] = allKeys[start + i];
+                    node.children[i] = allChildren[start + i];
+                    node.counts[i] = allCounts[start + i];
+                    node.children[i].setParent(node);
+                    node.children[i].posInParent = i;
+                    count += node.counts[i];
+                } else {
+                    node.keys[i] = null;
+                    node.children[i] = null;
+                    node.counts[i] = 0;
+                }
+            }
+            node.numKeys = size;
+            parent.counts[posInParent + p] = count;
+            if (p > 0 && p < pieces) {
+                // The zeroth key of a node that isn't leftmost is a lower bound for its subtree
+                parent.setKey(posInParent + p, node.keys[0]);
+            }
+            start += size;
+        }
+
+        nodes[pieces - 1].posInParent = posInParent + pieces - 1;
+        nodes[pieces - 1].mergeSibling(nodes[pieces], false, posInParent + pieces);
+    }
+
+    /**
+     * Clear out this node once it has been removed from the tree, so it can be reused.
+     */
+    void reset() {
+        for (int i = 0; i < numKeys; i++) {
+            keys[i] = null;
+            children[i] = null;
+            counts[i] = 0;
+        }
+        numKeys = 0;
+        parent = null;
+    }
+
+    private static void insertInArray(int[] arr, int pos, int val) {
+        System.arraycopy(arr, pos, arr, pos + 1, arr.length - pos - 1);
+        arr[pos] = val;
+    }
 
+    private static void removeFromArray(int[] arr, int pos, int numKeys) {
+        System.arraycopy(arr, pos + 1, arr, pos, numKeys - pos - 1);
+        arr[numKeys - 1] = 0;
     }
 }
@@ -0,0 +1,55 @@
+package fox.btree;
+
+/**
+ * Interpolation search for numeric keys. The next probe is estimated from the key's value relative to the values at
+ * the ends of the range, so uniformly distributed keys are found in O(log log n) probes.
+ * <p>
+ * The estimate only guides the probe position - every decision is made with {@code compareTo} so the result is exact
+ * even when the numeric values lose precision. Non numeric keys fall back to binary search.
+ */
+public class InterpolationSearch implements SearchStrategy {
+
+    @Override
+    public int search(Comparable[] keys, int from, int to, Comparable key) {
+        if (!(key instanceof Number)) {
+            return BINARY.search(keys, from, to, key);
+        }
+        double k = ((Number) key).doubleValue();
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int comp = key.compareTo(keys[low]);
+            if (comp <= 0) {
+                return comp == 0 ? low : -(low + 1);
+            }
+            comp = key.compareTo(keys[high]);
+            if (comp >= 0) {
+                return comp == 0 ? high : -(high + 2);
+            }
+            // keys[low] < key < keys[high]
+            low++;
+            high--;
+            if (low > high) {
+                break;
+            }
+            double kl = ((Number) keys[low]).doubleValue();
+            double kh = ((Number) keys[high]).doubleValue();
+            int mid;
+            if (kh > kl) {
+                mid = low + (int) ((k - kl) / (kh - kl) * (high - low));
+                mid = Math.max(low, Math.min(high, mid));
+            } else {
+                mid = (low + high) >>> 1;
+            }
+            comp = key.compareTo(keys[mid]);
+            if (comp == 0) {
+                return mid;
+            } else if (comp < 0) {
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return -(low + 1);
+    }
+}
@@ -7,15 +7,47 @@ public class InvariantChecker {
 
     private int branchingFactor;
     private int leafDepth = -1;
+    private LeafNode prevLeaf;
+    private int keyCount;
+    // Whether the first and last nodes on each level may be under the minimum, see SplitPolicy
+    private boolean relaxLeftEdge;
+    private boolean relaxRightEdge;
+    // The fewest keys a leaf may have, lower than the minimum for leaves waiting to be tidied in a relaxed tree
+    private int leafFloor;
 
     void checkInvariants(BasicBplusTree tree) {
+        check(tree.getRoot(), tree.branchingFactor(), tree.splitPolicy().skewsLeft(),
+                tree.splitPolicy().skewsRight(), tree.underflowFloor());
+        assertEquals(tree.keyCount(), keyCount);
+    }
+
+    /**
+     * Check the tree under a root node. Leaf links are only checked for trees made of {@link LeafNode}s.
+     */
+    void checkInvariants(Node root, int branchingFactor) {
+        check(root, branchingFactor, false, false, branchingFactor / 2 - 1);
+    }
+
+    private void check(Node root, int branchingFactor, boolean relaxLeftEdge, boolean relaxRightEdge,
+                       int leafFloor) {
+        this.relaxLeftEdge = relaxLeftEdge;
+        this.relaxRightEdge = relaxRightEdge;
+        this.leafFloor = leafFloor;
         leafDepth = -1;
-        branchingFactor = tree.branchingFactor();
-        assertTrue("root node must be a root", tree.getRoot().isRoot());
-        checkInvariants(tree.getRoot(), null, null, 0);
+        prevLeaf = null;
+        this.branchingFactor = branchingFactor;
+        assertTrue("root node must be a root", root.isRoot());
+        keyCount = checkInvariants(root, null, null, 0, true, true);
+        if (prevLeaf != null) {
+            assertTrue("last leaf must not have a next leaf", prevLeaf.next() == null);
+        }
     }
 
-    private void checkInvariants(Node node, Comparable greaterThanOrEqual, Comparable lessThan, int depth) {
+    /**
+     * @return the number of keys in the leaves under the node
+     */
+    private int checkInvariants(Node node, Comparable greaterThanOrEqual, Comparable lessThan, int depth,
+                                boolean leftEdge, boolean rightEdge) {
 
         if (node.isLeaf()) {
             assertTrue("leaft node must not have children", node.numChildren() == 0);
@@ -47,6 +79,16 @@ public class InvariantChecker {
             } else {
                 leafDepth = depth;
             }
+
+            // Invariant: leaves are visited left to right so each must be linked to the one visited before it
+            if (node instanceof LeafNode) {
+                LeafNode leaf = (LeafNode) node;
+                assertTrue("leaf " + node.getNodeNum() + " prev link inconsistent", leaf.prev() == prevLeaf);
+                if (prevLeaf != null) {
+                    assertTrue("leaf " + prevLeaf.getNodeNum() + " next link inconsistent", prevLeaf.next() == leaf);
+                }
+                prevLeaf = leaf;
+            }
         } else {
             assertEquals(node.numKeys(), node.numChildren());
             assertEquals(0, node.numValues());
@@ -62,9 +104,22 @@ public class InvariantChecker {
                 assertTrue("non leaf root node num keys must be >= 2", node.numKeys() >= 2);
                 assertTrue("non leaf root node num keys must be <= B", node.numKeys() <= branchingFactor);
             }
+        } else if (leftEdge && relaxLeftEdge || rightEdge && relaxRightEdge) {
+            // Skewed splits can leave the edge nodes with as little as a single key, or two children, and relaxed
+            // rebalancing can leave an edge leaf emptier still
+            assertTrue("edge node num keys must be >= 1",
+                    node.numKeys() >= (node.isLeaf() ? Math.min(1, leafFloor) : 2));
+            assertTrue("edge node num keys must be <= its maximum",
+                    node.numKeys() <= branchingFactor - (node.isLeaf() ? 1 : 0));
         } else if (node.isLeaf()) {
-            assertTrue("leaf node num keys must be >= B / 2 - 1", node.numKeys() >= branchingFactor / 2 - 1);
+            assertTrue("leaf node num keys must be >= B / 2 - 1, or the underflow floor if relaxed",
+                    node.numKeys() >= leafFloor);
             assertTrue("leaf node num keys must be <= B - 1", node.numKeys() <= branchingFactor - 1);
+            if (node.numKeys() < branchingFactor / 2 - 1) {
+                // Relaxed rebalancing must still get round to every leaf it left under the minimum
+                assertTrue("leaf node " + node.getNodeNum() + " under B / 2 - 1 keys must be waiting to be tidied",
+                        !(node instanceof LeafNode) || ((LeafNode) node).pendingTidy());
+            }
         } else {
             assertTrue("internal node num keys must be >= B / 2", node.numKeys() >= branchingFactor / 2);
             assertTrue("internal node num keys must be <= B", node.numKeys() <= branchingFactor);
@@ -109,18 +164,25 @@ public class InvariantChecker {
 
         }
 
+        if (node.isLeaf()) {
+            return node.numKeys();
+        }
+
         // Recurse
-        if (!node.isLeaf()) {
-            for (int i = 0; i < node.numKeys(); i++) {
-                Node child = node.getChild(i);
-                Comparable gOrE = i == 0 ? null : node.getKey(i);
-                Comparable less = i < node.numKeys() - 1 ? node.getKey(i + 1) : null;
-                checkInvariants(child, gOrE, less, depth + 1);
+        int count = 0;
+        for (int i = 0; i < node.numKeys(); i++) {
+            Node child = node.getChild(i);
+            Comparable gOrE = i == 0 ? null : node.getKey(i);
+            Comparable less = i < node.numKeys() - 1 ? node.getKey(i + 1) : null;
+            int childCount = checkInvariants(child, gOrE, less, depth + 1, leftEdge && i == 0,
+                    rightEdge && i == node.numKeys() - 1);
+            // Invariant: internal nodes know how many keys are under each child
+            if (node instanceof InternalNode) {
+                assertEquals(childCount, ((InternalNode) node).childCount(i));
             }
-            Node rightChild = node.getChild(node.numKeys() - 1);
-            checkInvariants(rightChild, node.getKey(node.numKeys() - 1), null, depth + 1);
-
+            count += childCount;
         }
+        return count;
 
     }
 
@@ -0,0 +1,19 @@
+package fox.btree;
+
+/**
+ * How a {@link BasicBplusTree} stores the keys in its leaves.
+ */
+public enum KeyCompression {
+
+    /**
+     * Each key is stored as the object it was inserted as.
+     */
+    NONE,
+
+    /**
+     * Keys must be Strings. Each leaf stores the prefix its keys share once, followed by the remaining characters of
+     * every key packed into one char array, and the separators pushed into internal nodes are truncated to the
+     * shortest string that still divides the two leaves. See {@link PrefixLeafNode}.
+     */
+    PREFIX
+}
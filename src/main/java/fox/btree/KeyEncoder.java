@@ -0,0 +1,67 @@
+package fox.btree;
+
+/**
+ * Turns keys of some type into {@link ByteKey}s whose unsigned byte order is the same as the natural order of the
+ * keys, so a tree using {@link SearchStrategy#UNSIGNED_BYTES} can store and compare them without calling the keys'
+ * own compareTo.
+ * <p>
+ * Every encoding is self delimiting, so encodings can be concatenated to build composite keys that sort by their first
+ * part, then their second and so on.
+ */
+public interface KeyEncoder<T> {
+
+    /**
+     * Signed longs, as 8 bytes with the sign bit flipped.
+     */
+    KeyEncoder<Long> LONG = (value, out) -> out.writeLong(value ^ Long.MIN_VALUE);
+
+    /**
+     * Signed ints, as 4 bytes with the sign bit flipped.
+     */
+    KeyEncoder<Integer> INT = (value, out) -> out.writeInt(value ^ Integer.MIN_VALUE);
+
+    /**
+     * Doubles in the order of {@link Double#compare}, as 8 bytes: the sign bit is flipped for positive values and all
+     * the bits are flipped for negative ones.
+     */
+    KeyEncoder<Double> DOUBLE = (value, out) -> {
+        long bits = Double.doubleToLongBits(value);
+        out.writeLong(bits < 0 ? ~bits : bits ^ Long.MIN_VALUE);
+    };
+
+    /**
+     * Strings, as UTF-8 with zero bytes escaped and a terminator. See {@link StringKeyEncoder}.
+     */
+    KeyEncoder<String> STRING = new StringKeyEncoder();
+
+    /**
+     * Append the encoding of a value to a key being built.
+     */
+    void encode(T value, ByteKey.Builder out);
+
+    default ByteKey encode(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null key");
+        }
+        ByteKey.Builder builder = new ByteKey.Builder();
+        encode(value, builder);
+        return builder.build();
+    }
+
+    /**
+     * Enum constants in ordinal order, as one byte when the enum has at most 256 constants, otherwise two.
+     */
+    static <E extends Enum<E>> KeyEncoder<E> forEnum(Class<E> type) {
+        if (type.getEnumConstants().length <= 256) {
+            return (value, out) -> out.writeByte(value.ordinal());
+        }
+        return (value, out) -> out.writeByte(value.ordinal() >>> 8).writeByte(value.ordinal());
+    }
+
+    /**
+     * Keys made of several parts, passed as an array with one element per encoder, which sort by each part in turn.
+     */
+    static KeyEncoder<Object[]> composite(KeyEncoder<?>... parts) {
+        return new CompositeKeyEncoder(parts);
+    }
+}
@@ -0,0 +1,39 @@
+package fox.btree;
+
+/**
+ * A range of keys from an inclusive lower bound up to an exclusive upper bound. A null bound means the range is
+ * unbounded at that end.
+ */
+public final class KeyRange {
+
+    private final Comparable from;
+    private final Comparable to;
+
+    public KeyRange(Comparable from, Comparable to) {
+        if (from != null && to != null && from.compareTo(to) > 0) {
+            throw new IllegalArgumentException("from " + from + " is after to " + to);
+        }
+        this.from = from;
+        this.to = to;
+    }
+
+    public Comparable from() {
+        return from;
+    }
+
+    public Comparable to() {
+        return to;
+    }
+
+    /**
+     * @return true if every key in this range is before every key in the other
+     */
+    boolean before(KeyRange other) {
+        return to != null && other.from != null && to.compareTo(other.from) <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + from + ", " + to + ")";
+    }
+}
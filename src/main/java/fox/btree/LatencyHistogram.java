@@ -0,0 +1,63 @@
+package fox.btree;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of latencies in power of two buckets of nanoseconds. Recording is a single striped counter increment, so it
+ * is cheap and safe from any number of threads, at the price of percentiles only being accurate to within a factor of
+ * two.
+ */
+class LatencyHistogram {
+
+    // Bucket i holds latencies in [2^(i-1), 2^i), bucket 0 only zero
+    private final LongAdder[] buckets = new LongAdder[64];
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        // The clock can step backwards
+        long latency = Math.max(nanos, 0);
+        buckets[64 - Long.numberOfLeadingZeros(latency)].increment();
+        max.accumulate(latency);
+    }
+
+    long count() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * @return an upper bound for the latency below which the given fraction of the recorded latencies fall, or 0 if
+     * none have been recorded
+     */
+    long percentile(double fraction) {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        long target = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target && seen > 0) {
+                return Math.min(i == 0 ? 0 : (1L << i) - 1, max());
+            }
+        }
+        return max();
+    }
+}
@@ -0,0 +1,79 @@
+package fox.btree;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A cursor that walks the leaf level from one leaf to the next (or previous) without going back through the internal
+ * nodes.
+ */
+class LeafCursor implements Cursor {
+
+    private final Comparable end;
+    private final boolean endInclusive;
+    private final boolean descending;
+
+    private LeafNode leaf;
+    private int pos;
+    private boolean positioned;
+
+    /**
+     * @param leaf the leaf holding the first entry
+     * @param pos the position of the first entry, which may be off either end of the leaf
+     * @param end the last key in the range or null if unbounded
+     */
+    LeafCursor(LeafNode leaf, int pos, Comparable end, boolean endInclusive, boolean descending) {
+        this.leaf = leaf;
+        this.pos = pos;
+        this.end = end;
+        this.endInclusive = endInclusive;
+        this.descending = descending;
+    }
+
+    @Override
+    public boolean next() {
+        if (leaf == null) {
+            return false;
+        }
+        if (positioned) {
+            pos += descending ? -1 : 1;
+        }
+        positioned = true;
+        // Move across to a neighbouring leaf when we run off the end of this one
+        while (pos < 0 || pos >= leaf.numKeys()) {
+            leaf = descending ? leaf.prev() : leaf.next();
+            if (leaf == null) {
+                return false;
+            }
+            pos = descending ? leaf.numKeys() - 1 : 0;
+        }
+        if (end != null) {
+            int comp = leaf.getKey(pos).compareTo(end);
+            if (descending) {
+                comp = -comp;
+            }
+            if (comp > 0 || (comp == 0 && !endInclusive)) {
+                leaf = null;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Comparable key() {
+        checkPositioned();
+        return leaf.getKey(pos);
+    }
+
+    @Override
+    public Object value() {
+        checkPositioned();
+        return leaf.getValue(pos);
+    }
+
+    private void checkPositioned() {
+        if (!positioned || leaf == null) {
+            throw new NoSuchElementException();
+        }
+    }
+}
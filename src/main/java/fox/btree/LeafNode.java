@@ -1,18 +1,27 @@
 package fox.btree;
 
+import java.util.Arrays;
+import java.util.Map;
+
 /**
  * Created by tim on 08/12/16.
  */
 public class LeafNode extends BaseNode {
 
+    private static final Comparable[] EMPTY_KEYS = new Comparable[0];
+
     private int numKeys;
     private Comparable[] keys;
     private Object[] values;
+    private LeafNode prev;
+    private LeafNode next;
+    // Whether the leaf is under the minimum and waiting for BasicBplusTree.tidy() to rebalance it
+    private boolean pendingTidy;
 
     public LeafNode(BasicBplusTree tree) {
         super(tree);
         int b = tree.branchingFactor();
-        keys = new Comparable[b];
+        keys = newKeyArray(b);
         values = new Object[b];
     }
 
@@ -23,36 +32,76 @@ public class LeafNode extends BaseNode {
 
     @Override
     public Object find(Comparable key) {
-        // TODO - binary search!
-        for (int i = 0; i < numKeys; i++) {
-            Comparable k = keys[i];
-            if (k.equals(key)) {
-                return values[i];
-            }
-        }
-        return null;
+        int i = search(key);
+        return i >= 0 ? values[i] : null;
     }
 
     @Override
     public Object remove(Comparable key) {
-        // TODO - binary search!
-        for (int i = 0; i < numKeys; i++) {
-            Comparable k = keys[i];
-            if (k.equals(key)) {
-                Object val = values[i];
-                removeFromArray(keys, i, numKeys);
-                removeFromArray(values, i, numKeys);
-                numKeys--;
-                tree.addKeyCount(-1);
-                if (!isRoot() && numKeys < minKeys()) {
-                    if (!tryStealSibling()) {
-                        mergeSibling();
-                    }
+        int i = search(key);
+        if (i < 0) {
+            return null;
+        }
+        Object val = values[i];
+        removeKey(i, numKeys);
+        removeFromArray(values, i, numKeys);
+        numKeys--;
+        tree.addKeyCount(-1);
+        addToAncestorCounts(-1);
+        if (!isRoot() && numKeys < minKeys()) {
+            if (numKeys >= tree.underflowFloor()) {
+                // Relaxed, leave it under-filled until the tree is tidied
+                if (!pendingTidy) {
+                    pendingTidy = true;
+                    tree.deferRebalance(this);
                 }
-                return val;
+            } else if (!tryStealSibling()) {
+                mergeSibling();
             }
         }
-        return null;
+        return val;
+    }
+
+    boolean pendingTidy() {
+        return pendingTidy;
+    }
+
+    /**
+     * Bring a leaf whose rebalancing was deferred back up to the minimum, merging it with a sibling if the two fit in
+     * one leaf, otherwise taking keys from a sibling with plenty. Doesn't rely on the positions from a descent.
+     *
+     * @return true if the leaf needed rebalancing
+     */
+    boolean tidy() {
+        pendingTidy = false;
+        boolean tidied = false;
+        while (!isRoot() && numKeys < minKeys()) {
+            tidied = true;
+            // A merge into this leaf can change the positions of the nodes above it
+            locateInParents();
+            int pos = posInParent;
+            if (pos > 0) {
+                LeafNode sibling = (LeafNode) parent.getChild(pos - 1);
+                if (sibling.numKeys + numKeys <= maxKeys()) {
+                    // This leaf goes, anything left under the minimum is the sibling's to tidy
+                    mergeSibling(sibling, true, pos - 1);
+                    break;
+                }
+            }
+            if (pos < parent.numChildren() - 1) {
+                LeafNode sibling = (LeafNode) parent.getChild(pos + 1);
+                if (numKeys + sibling.numKeys <= maxKeys()) {
+                    mergeSibling(sibling, false, pos + 1);
+                    continue;
+                }
+            }
+            // A sibling too full to merge with has enough to spare to bring this leaf up to the minimum
+            while (numKeys < minKeys() && tryStealSibling()) {
+                // keep going
+            }
+            break;
+        }
+        return tidied;
     }
 
 
@@ -60,23 +109,23 @@ public class LeafNode extends BaseNode {
     @Override
     public void insert(Comparable key, Object value) {
         // Insert sorted order
-        int i = 0;
-        for (; i < numKeys; i++) {
-            int comp = key.compareTo(keys[i]);
-            if (comp == 0) {
-                // update the value
-                values[i] = value;
-                return;
-            } else if (comp < 0) {
-                break;
-            }
+        int i = search(key);
+        if (i >= 0) {
+            // update the value
+            values[i] = value;
+            return;
         }
+        i = -(i + 1);
 
-        insertInArray(keys, i, key);
+        insertKey(i, key, numKeys);
         insertInArray(values, i, value);
 
         numKeys++;
         tree.addKeyCount(1);
+        addToAncestorCounts(1);
+        // Which end of the leaf the key went on, if either
+        int end = i == numKeys - 1 ? 1 : i == 0 ? -1 : 0;
+        boolean run = tree.splitPolicy() == SplitPolicy.AUTO && tree.continuesRun(this, end);
 
 // Commented out because for any leftmost node its not important that the parent key for the child equals the leftmost
 // value as its never used, therefore we can save some cycles by not keeping it up to date
@@ -95,8 +144,25 @@ public class LeafNode extends BaseNode {
 
         if (numKeys == maxKeys() + 1) {
             // No room - split
-            split();
+            split(splitPoint(end, run));
+        }
+    }
+
+    /**
+     * @return the number of keys to keep in this leaf when splitting it, after a key was inserted at an end (1 for
+     * the last position, -1 for the first) or in between (0)
+     */
+    private int splitPoint(int end, boolean run) {
+        SplitPolicy policy = tree.splitPolicy();
+        if (end == 1 && next == null && (policy == SplitPolicy.APPEND || run)) {
+            // The new key starts a new leaf
+            return numKeys - 1;
+        }
+        if (end == -1 && prev == null && (policy == SplitPolicy.PREPEND || run)) {
+            // The new key is left on its own in this leaf
+            return 1;
         }
+        return tree.branchingFactor() / 2;
     }
 
     @Override
@@ -104,6 +170,254 @@ public class LeafNode extends BaseNode {
         return this;
     }
 
+    int search(Comparable key) {
+        return tree.searchStrategy().search(keys, 0, numKeys, key);
+    }
+
+    // How the keys are stored. These are all overridden by PrefixLeafNode, which doesn't use the keys array.
+
+    /**
+     * @return the array of keys for a new leaf
+     */
+    Comparable[] newKeyArray(int size) {
+        return new Comparable[size];
+    }
+
+    /**
+     * Insert a key at a position, shifting the keys after it to the right. Doesn't change numKeys.
+     */
+    void insertKey(int pos, Comparable key, int numKeys) {
+        insertInArray(keys, pos, key);
+    }
+
+    /**
+     * Remove the key at a position, shifting the keys after it to the left. Doesn't change numKeys.
+     */
+    void removeKey(int pos, int numKeys) {
+        removeFromArray(keys, pos, numKeys);
+    }
+
+    /**
+     * Remove the keys in [from, to), shifting the keys after them to the left. Doesn't change numKeys.
+     */
+    void removeKeys(int from, int to, int numKeys) {
+        System.arraycopy(keys, to, keys, from, numKeys - to);
+        for (int i = numKeys - (to - from); i < numKeys; i++) {
+            keys[i] = null;
+        }
+    }
+
+    /**
+     * @return a copy of the keys in [from, to)
+     */
+    Comparable[] copyKeys(int from, int to) {
+        Comparable[] copy = new Comparable[to - from];
+        System.arraycopy(keys, from, copy, 0, to - from);
+        return copy;
+    }
+
+    /**
+     * Replace all the keys with the first count keys of src. Doesn't change numKeys.
+     */
+    void setKeys(Comparable[] src, int count) {
+        System.arraycopy(src, 0, keys, 0, count);
+        for (int i = count; i < numKeys; i++) {
+            keys[i] = null;
+        }
+    }
+
+    /**
+     * Move the keys in [from, numKeys) to the start of an empty leaf. Doesn't change either leaf's numKeys.
+     */
+    void moveKeysTo(LeafNode dest, int from) {
+        System.arraycopy(keys, from, dest.keys, 0, numKeys - from);
+        for (int i = from; i < numKeys; i++) {
+            keys[i] = null;
+        }
+    }
+
+    /**
+     * Copy all the keys of src onto the end of this leaf's keys. Doesn't change either leaf's numKeys.
+     */
+    void appendKeysFrom(LeafNode src) {
+        System.arraycopy(src.keys, 0, keys, numKeys, src.numKeys);
+    }
+
+    /**
+     * @return the key the parent uses to route to the leaf to the right of this one. It must be greater than every key
+     * in this leaf and no greater than any key in the right leaf.
+     */
+    Comparable separatorTo(LeafNode right) {
+        return right.getKey(0);
+    }
+
+    /**
+     * Add an entry after all the existing ones, without splitting. Only for building leaves directly from sorted
+     * input.
+     */
+    void append(Comparable key, Object value) {
+        insertKey(numKeys, key, numKeys);
+        values[numKeys] = value;
+        numKeys++;
+        tree.addKeyCount(1);
+    }
+
+    /**
+     * Link this leaf in as the next leaf after prev, which must currently be the last leaf.
+     */
+    void linkAfter(LeafNode prev) {
+        prev.next = this;
+        this.prev = prev;
+    }
+
+    /**
+     * Move the last count entries of this leaf to the front of the next leaf.
+     */
+    void moveTailToNext(int count) {
+        next.setKeys(concat(copyKeys(numKeys - count, numKeys), next.copyKeys(0, next.numKeys)), next.numKeys + count);
+        setKeys(copyKeys(0, numKeys - count), numKeys - count);
+        System.arraycopy(next.values, 0, next.values, count, next.numKeys);
+        System.arraycopy(values, numKeys - count, next.values, 0, count);
+        for (int i = numKeys - count; i < numKeys; i++) {
+            values[i] = null;
+        }
+        numKeys -= count;
+        next.numKeys += count;
+    }
+
+    /**
+     * Move all the entries of the next leaf onto the end of this one and unlink it. The next leaf must not have a
+     * parent yet.
+     */
+    void absorbNext() {
+        LeafNode src = next;
+        appendKeysFrom(src);
+        System.arraycopy(src.values, 0, values, numKeys, src.numKeys);
+        numKeys += src.numKeys;
+        next = src.next;
+        if (next != null) {
+            next.prev = this;
+        }
+        src.prev = null;
+        src.next = null;
+        src.numKeys = 0;
+    }
+
+    /**
+     * Fill an empty leaf with count entries starting at from, which must be in ascending key order. Unlike append it
+     * leaves the tree's key count alone, so that leaves can be filled concurrently.
+     */
+    void fill(Map.Entry<? extends Comparable, ?>[] entries, int from, int count) {
+        Comparable[] src = new Comparable[count];
+        for (int i = 0; i < count; i++) {
+            src[i] = entries[from + i].getKey();
+            values[i] = entries[from + i].getValue();
+        }
+        setKeys(src, count);
+        numKeys = count;
+    }
+
+    /**
+     * Remove the entries in [from, to) without rebalancing, or updating the key counts kept by the tree and the
+     * ancestors of this leaf.
+     */
+    void removeRange(int from, int to) {
+        removeKeys(from, to, numKeys);
+        System.arraycopy(values, to, values, from, numKeys - to);
+        for (int i = numKeys - (to - from); i < numKeys; i++) {
+            values[i] = null;
+        }
+        numKeys -= to - from;
+    }
+
+    /**
+     * Move the first count entries of this leaf onto the end of the previous leaf.
+     */
+    void moveHeadToPrev(int count) {
+        prev.setKeys(concat(prev.copyKeys(0, prev.numKeys), copyKeys(0, count)), prev.numKeys + count);
+        setKeys(copyKeys(count, numKeys), numKeys - count);
+        System.arraycopy(values, 0, prev.values, prev.numKeys, count);
+        System.arraycopy(values, count, values, 0, numKeys - count);
+        for (int i = numKeys - count; i < numKeys; i++) {
+            values[i] = null;
+        }
+        numKeys -= count;
+        prev.numKeys += count;
+    }
+
+    /**
+     * Spread the entries of this leaf and the window - 1 leaves to its right evenly over one fewer leaves, merging the
+     * emptied last leaf away. The leaves must all have the same parent, and the positions of this leaf and its
+     * ancestors must be up to date.
+     */
+    void repack(int window) {
+        int total = 0;
+        LeafNode leaf = this;
+        for (int i = 0; i < window; i++) {
+            total += leaf.numKeys;
+            leaf = leaf.next;
+        }
+        Comparable[] allKeys = new Comparable[total];
+        Object[] allValues = new Object[total];
+        int start = 0;
+        leaf = this;
+        for (int i = 0; i < window; i++) {
+            System.arraycopy(leaf.copyKeys(0, leaf.numKeys), 0, allKeys, start, leaf.numKeys);
+            System.arraycopy(leaf.values, 0, allValues, start, leaf.numKeys);
+            start += leaf.numKeys;
+            leaf = leaf.next;
+        }
+
+        int pieces = window - 1;
+        start = 0;
+        leaf = this;
+        for (int p = 0; p < window; p++) {
+            // The last leaf is emptied
+            int size = p == pieces ? 0 : (total - start) / (pieces - p);
+            leaf.setKeys(Arrays.copyOfRange(allKeys, start, start + size), size);
+            System.arraycopy(allValues, start, leaf.values, 0, size);
+            for (int i = size; i < leaf.numKeys; i++) {
+                leaf.values[i] = null;
+            }
+            parent.addChildCount(posInParent + p, size - leaf.numKeys);
+            leaf.numKeys = size;
+            start += size;
+            if (p > 0 && p < pieces) {
+                parent.setKey(posInParent + p, leaf.prev.separatorTo(leaf));
+            }
+            leaf = leaf.next;
+        }
+
+        LeafNode last = this;
+        for (int p = 1; p < pieces; p++) {
+            last = last.next;
+        }
+        last.posInParent = posInParent + pieces - 1;
+        last.mergeSibling(last.next, false, posInParent + pieces);
+    }
+
+    /**
+     * Take this leaf out of the chain of leaves, linking its neighbours to each other.
+     */
+    void unlink() {
+        if (prev != null) {
+            prev.next = next;
+        }
+        if (next != null) {
+            next.prev = prev;
+        }
+        prev = null;
+        next = null;
+    }
+
+    LeafNode prev() {
+        return prev;
+    }
+
+    LeafNode next() {
+        return next;
+    }
+
     @Override
     protected int minKeys() {
         return tree.branchingFactor() / 2 - 1;
@@ -119,6 +433,11 @@ public class LeafNode extends BaseNode {
         return numKeys;
     }
 
+    @Override
+    int subtreeCount() {
+        return numKeys;
+    }
+
     @Override
     public int numValues() {
         return numKeys;
@@ -144,66 +463,124 @@ public class LeafNode extends BaseNode {
         return null;
     }
 
-    private void split() {
-
-        int b = tree.branchingFactor();
-
-        Comparable[] keysLeft = new Comparable[b];
-        Object[] valuesLeft = new Object[b];
+    private void split(int leftKeys) {
+        tree.metrics().leafSplit();
 
-        Comparable[] keysRight = new Comparable[b];
-        Object[] valuesRight = new Object[b];
+        int rightKeys = numKeys - leftKeys;
 
-        System.arraycopy(keys, 0, keysLeft, 0, b / 2);
-        System.arraycopy(values, 0, valuesLeft, 0, b / 2);
-
-        System.arraycopy(keys, b / 2, keysRight, 0, b / 2);
-        System.arraycopy(values, b / 2, valuesRight, 0, b / 2);
+        // Move the right half straight into the new leaf's arrays, this leaf keeps its own
+        LeafNode newNode = tree.newLeaf();
+        moveKeysTo(newNode, leftKeys);
+        System.arraycopy(values, leftKeys, newNode.values, 0, rightKeys);
+        for (int i = leftKeys; i < numKeys; i++) {
+            values[i] = null;
+        }
+        newNode.numKeys = rightKeys;
+        numKeys = leftKeys;
 
-        keys = keysLeft;
-        values = valuesLeft;
-        numKeys = b / 2;
+        addRightSibling(newNode);
+    }
 
-        LeafNode newNode = new LeafNode(tree);
-        newNode.keys = keysRight;
-        newNode.values = valuesRight;
-        newNode.numKeys = b / 2;
+    /**
+     * Link a newly filled leaf in to the right of this one and add it to the parent, creating a new root if this
+     * leaf was the root.
+     */
+    private void addRightSibling(LeafNode newNode) {
+        newNode.prev = this;
+        newNode.next = next;
+        if (next != null) {
+            next.prev = newNode;
+        }
+        next = newNode;
 
         if (parent == null) {
             // Create a new root
-            parent = new InternalNode(tree);
+            parent = tree.newInternal();
 
             newNode.setParent(parent);
 
-            parent.addChildPointer(0, keys[0], this);
-            parent.addChildPointer(1, newNode.keys[0], newNode);
+            parent.addChildPointer(0, getKey(0), this);
+            parent.addChildPointer(1, separatorTo(newNode), newNode);
 
             tree.setRoot(parent);
         } else {
             newNode.setParent(parent);
-            parent.insertChild(this, newNode.keys[0], newNode);
+            parent.insertChild(this, separatorTo(newNode), newNode);
         }
-
     }
 
-    private boolean tryStealSibling() {
-        int numSiblings = parent.numChildren();
-        for (int i = 0; i < numSiblings; i++) {
-            LeafNode sibling = (LeafNode)parent.getChild(i);
-            if (i < numSiblings - 1 && parent.getChild(i + 1) == this) {
-                // left sibling
-                if (tryStealSibling(sibling, i, true)) {
-                    return true;
-                }
+    /**
+     * Upsert a sorted run of entries which all belong in this leaf, in one merge pass. If the result doesn't fit the
+     * leaf is split once into as many evenly filled leaves as are needed.
+     *
+     * @param oldValues receives the value each key replaced, at the same position as the key
+     * @return the number of leaves the entries now occupy
+     */
+    int mergeSorted(Comparable[] newKeys, Object[] newValues, int from, int to, Object[] oldValues) {
+        int capacity = numKeys + to - from;
+        Comparable[] mergedKeys = new Comparable[capacity];
+        Object[] mergedValues = new Object[capacity];
+        int i = 0;
+        int j = from;
+        int m = 0;
+        while (i < numKeys || j < to) {
+            int comp = i == numKeys ? 1 : j == to ? -1 : getKey(i).compareTo(newKeys[j]);
+            if (comp < 0) {
+                mergedKeys[m] = getKey(i);
+                mergedValues[m++] = values[i++];
+            } else if (comp > 0) {
+                mergedKeys[m] = newKeys[j];
+                mergedValues[m++] = newValues[j++];
+            } else {
+                // update the value
+                oldValues[j] = values[i];
+                mergedKeys[m] = getKey(i++);
+                mergedValues[m++] = newValues[j++];
             }
-            if (i > 0 && parent.getChild(i - 1) == this) {
-                // Right sibling
-                if (tryStealSibling(sibling, i, false)) {
-                    return true;
+        }
+        tree.addKeyCount(m - numKeys);
+
+        int max = maxKeys();
+        int pieces = (m + max - 1) / max;
+        if (pieces > 1) {
+            tree.metrics().leafSplit();
+        }
+        int start = 0;
+        LeafNode piece = this;
+        for (int p = 0; p < pieces; p++) {
+            // Share the entries out evenly, every piece is at least half full
+            int size = (m - start) / (pieces - p);
+            if (p == 0) {
+                setKeys(mergedKeys, size);
+                System.arraycopy(mergedValues, 0, values, 0, size);
+                for (int k = size; k < numKeys; k++) {
+                    values[k] = null;
                 }
+                addToAncestorCounts(size - numKeys);
+                numKeys = size;
+            } else {
+                LeafNode newNode = tree.newLeaf();
+                newNode.setKeys(Arrays.copyOfRange(mergedKeys, start, start + size), size);
+                System.arraycopy(mergedValues, start, newNode.values, 0, size);
+                newNode.numKeys = size;
+                // Count the new leaf's keys in the piece before it, the split then moves them over
+                piece.addToAncestorCounts(size);
+                piece.addRightSibling(newNode);
+                piece = newNode;
             }
+            start += size;
         }
-        return false;
+        return pieces;
+    }
+
+    private boolean tryStealSibling() {
+        int pos = posInParent;
+        if (pos > 0 && tryStealSibling((LeafNode) parent.getChild(pos - 1), pos - 1, true)) {
+            // left sibling
+            return true;
+        }
+        // Right sibling
+        return pos < parent.numChildren() - 1 && tryStealSibling((LeafNode) parent.getChild(pos + 1), pos + 1, false);
     }
 
     private boolean tryStealSibling(LeafNode sibling, int siblingPos, boolean left) {
@@ -216,17 +593,20 @@ public class LeafNode extends BaseNode {
 
             Comparable key = sibling.getKey(posToSteal);
             Object value = sibling.getValue(posToSteal);
-            removeFromArray(sibling.keys, posToSteal, siblingNumKeys);
+            sibling.removeKey(posToSteal, siblingNumKeys);
             removeFromArray(sibling.values, posToSteal, siblingNumKeys);
             sibling.numKeys--;
-            insertInArray(keys, posToInsert, key);
+            insertKey(posToInsert, key, numKeys);
             insertInArray(values, posToInsert, value);
             numKeys++;
+            parent.addChildCount(siblingPos, -1);
+            parent.addChildCount(posInParent, 1);
+            tree.metrics().steal();
             // Update parent key value
             if (left) {
-                parent.setKey(siblingPos + 1, getKey(0));
+                parent.setKey(siblingPos + 1, sibling.separatorTo(this));
             } else {
-                parent.setKey(siblingPos, sibling.getKey(0));
+                parent.setKey(siblingPos, separatorTo(sibling));
             }
             return true;
         }
@@ -234,31 +614,28 @@ public class LeafNode extends BaseNode {
     }
 
     private void mergeSibling() {
-        int numSiblings = parent.numChildren();
-        for (int i = 0; i < numSiblings; i++) {
-            LeafNode sibling = (LeafNode)parent.getChild(i);
-            boolean left;
-            if (i < numSiblings - 1 && parent.getChild(i + 1) == this) {
-                left = true;
-            } else if (i > 0 && parent.getChild(i - 1) == this) {
-                left = false;
-            } else {
-                continue;
-            }
-            // left or right sibling
-            if (sibling.numKeys == minKeys()) {
-                // Has min number of keys so can merge it
-                mergeSibling(sibling, left, i);
+        int pos = posInParent;
+        if (pos > 0) {
+            // left sibling
+            LeafNode sibling = (LeafNode) parent.getChild(pos - 1);
+            if (sibling.numKeys <= minKeys()) {
+                // Has min number of keys (or fewer, on the edge of a tree with skewed splits) so can merge it
+                mergeSibling(sibling, true, pos - 1);
                 return;
             }
         }
+        if (pos < parent.numChildren() - 1) {
+            // Right sibling
+            LeafNode sibling = (LeafNode) parent.getChild(pos + 1);
+            if (sibling.numKeys <= minKeys()) {
+                mergeSibling(sibling, false, pos + 1);
+            }
+        }
     }
 
     private void mergeSibling(LeafNode sibling, boolean left, int siblingPos) {
-        Comparable[] destKeys;
         Object[] destValues;
 
-        Comparable[] srcKeys;
         Object[] srcValues;
 
         LeafNode dest;
@@ -267,30 +644,58 @@ public class LeafNode extends BaseNode {
         int srcPos;
 
         if (left) {
-            destKeys = sibling.keys;
             destValues = sibling.values;
-            srcKeys = keys;
             srcValues = values;
             dest = sibling;
             src = this;
             srcPos = siblingPos + 1;
         } else {
-            destKeys = keys;
             destValues = values;
-            srcKeys = sibling.keys;
             srcValues = sibling.values;
             dest = this;
             src = sibling;
             srcPos = siblingPos;
         }
 
-        System.arraycopy(srcKeys, 0, destKeys, dest.numKeys, src.numKeys);
+        dest.appendKeysFrom(src);
         System.arraycopy(srcValues, 0, destValues, dest.numKeys, src.numKeys);
 
         dest.numKeys += src.numKeys;
 
+        // src is always to the right of dest, unlink it
+        dest.next = src.next;
+        if (src.next != null) {
+            src.next.prev = dest;
+        }
+        src.prev = null;
+        src.next = null;
+
         // remove merged key from parent
+        tree.metrics().merge();
+        parent.addChildCount(srcPos - 1, parent.childCount(srcPos));
         parent.removeKey(srcPos);
+
+        tree.release(src);
+    }
+
+    /**
+     * Clear out this leaf once it has been removed from the tree, so it can be reused.
+     */
+    void reset() {
+        setKeys(EMPTY_KEYS, 0);
+        for (int i = 0; i < numKeys; i++) {
+            values[i] = null;
+        }
+        numKeys = 0;
+        prev = null;
+        next = null;
+        parent = null;
+        pendingTidy = false;
     }
 
+    static Comparable[] concat(Comparable[] first, Comparable[] second) {
+        Comparable[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
 }
@@ -0,0 +1,20 @@
+package fox.btree;
+
+/**
+ * Scans the keys in order. Cheapest option for very small nodes.
+ */
+public class LinearSearch implements SearchStrategy {
+
+    @Override
+    public int search(Comparable[] keys, int from, int to, Comparable key) {
+        for (int i = from; i < to; i++) {
+            int comp = key.compareTo(keys[i]);
+            if (comp == 0) {
+                return i;
+            } else if (comp < 0) {
+                return -(i + 1);
+            }
+        }
+        return -(to + 1);
+    }
+}
@@ -0,0 +1,95 @@
+package fox.btree;
+
+/**
+ * Base class for the nodes of a {@link LongBplusTree}.
+ */
+public abstract class LongBaseNode implements LongNode {
+
+    protected final LongBplusTree tree;
+    protected final int nodeNum;
+
+    protected LongInternalNode parent;
+
+    public LongBaseNode(LongBplusTree tree) {
+        this.tree = tree;
+        this.nodeNum = tree.nextNodeCount();
+    }
+
+    @Override
+    public LongNode getParent() {
+        return parent;
+    }
+
+    @Override
+    public int getNodeNum() {
+        return nodeNum;
+    }
+
+    @Override
+    public boolean isRoot() {
+        return parent == null;
+    }
+
+    public void setParent(LongInternalNode parent) {
+        this.parent = parent;
+    }
+
+    public abstract LongLeafNode findLeaf(long key);
+
+    /**
+     * Search for a key in {@code keys[from, to)} with the same contract as
+     * {@link java.util.Arrays#binarySearch(long[], int, int, long)}. Small ranges are scanned linearly.
+     */
+    protected static int search(long[] keys, int from, int to, long key) {
+        if (to - from <= SearchStrategy.LINEAR_THRESHOLD) {
+            for (int i = from; i < to; i++) {
+                long k = keys[i];
+                if (k == key) {
+                    return i;
+                } else if (key < k) {
+                    return -(i + 1);
+                }
+            }
+            return -(to + 1);
+        }
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long k = keys[mid];
+            if (k < key) {
+                low = mid + 1;
+            } else if (k > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    protected static void insertInArray(long[] arr, int pos, long val) {
+        System.arraycopy(arr, pos, arr, pos + 1, arr.length - pos - 1);
+        arr[pos] = val;
+    }
+
+    protected static void removeFromArray(long[] arr, int pos, int numKeys) {
+        System.arraycopy(arr, pos + 1, arr, pos, numKeys - pos - 1);
+        arr[numKeys - 1] = 0;
+    }
+
+    protected static <T> void insertInArray(T[] arr, int pos, T val) {
+        System.arraycopy(arr, pos, arr, pos + 1, arr.length - pos - 1);
+        arr[pos] = val;
+    }
+
+    protected static <T> void removeFromArray(T[] arr, int pos, int numKeys) {
+        System.arraycopy(arr, pos + 1, arr, pos, numKeys - pos - 1);
+        arr[numKeys - 1] = null;
+    }
+
+    protected abstract int minKeys();
+
+    protected abstract int maxKeys();
+
+}
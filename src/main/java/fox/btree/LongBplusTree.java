@@ -0,0 +1,64 @@
+package fox.btree;
+
+/**
+ * A B+Tree specialized for primitive long keys.
+ * <p>
+ * Keys are held in {@code long[]} arrays and compared directly so there is no boxing and no {@code compareTo} call per
+ * comparison. Otherwise it behaves exactly like {@link BasicBplusTree}.
+ */
+public class LongBplusTree {
+
+    private final int branchingFactor;
+    private int keycount;
+    private int nodeCount;
+    private LongNode root;
+
+    public LongBplusTree(int branchingFactor) {
+        if (branchingFactor < 4) {
+            throw new IllegalArgumentException("branchingFactor must be >= 4");
+        }
+        this.branchingFactor = branchingFactor;
+        this.root = new LongLeafNode(this);
+    }
+
+    public void insert(long key, Object value) {
+        root.insert(key, value);
+    }
+
+    public Object find(long key) {
+        return root.find(key);
+    }
+
+    public Object remove(long key) {
+        return root.remove(key);
+    }
+
+    public LongNode getRoot() {
+        return root;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int keyCount() {
+        return keycount;
+    }
+
+    int nextNodeCount() {
+        return nodeCount++;
+    }
+
+    int branchingFactor() {
+        return branchingFactor;
+    }
+
+    void addKeyCount(int i) {
+        keycount += i;
+    }
+
+    void setRoot(LongNode root) {
+        this.root = root;
+    }
+
+}
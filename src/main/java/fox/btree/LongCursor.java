@@ -0,0 +1,26 @@
+package fox.btree;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link Cursor} over long keys and values, which avoids boxing.
+ */
+public interface LongCursor {
+
+    /**
+     * Move to the next entry.
+     *
+     * @return false if there are no more entries in the range
+     */
+    boolean next();
+
+    /**
+     * @throws NoSuchElementException if the cursor isn't on an entry
+     */
+    long key();
+
+    /**
+     * @throws NoSuchElementException if the cursor isn't on an entry
+     */
+    long value();
+}
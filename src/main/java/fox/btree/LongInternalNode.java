@@ -0,0 +1,274 @@
+package fox.btree;
+
+/**
+ * Internal node of a {@link LongBplusTree}.
+ */
+public class LongInternalNode extends LongBaseNode {
+
+    private int numKeys;
+    private long[] keys;
+    private LongBaseNode[] children;
+
+    public LongInternalNode(LongBplusTree tree) {
+        super(tree);
+        int b = tree.branchingFactor();
+        // A little extra space for splitting
+        keys = new long[b + 1];
+        children = new LongBaseNode[b + 1];
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return false;
+    }
+
+    @Override
+    public Object find(long key) {
+        return findLeaf(key).find(key);
+    }
+
+    @Override
+    public Object remove(long key) {
+        return findLeaf(key).remove(key);
+    }
+
+    @Override
+    public void insert(long key, Object value) {
+        findLeaf(key).insert(key, value);
+    }
+
+    @Override
+    public LongLeafNode findLeaf(long key) {
+        return children[childIndex(key)].findLeaf(key);
+    }
+
+    /**
+     * The position of the child whose subtree covers the key - the zeroth key is never used for routing.
+     */
+    int childIndex(long key) {
+        int i = search(keys, 1, numKeys, key);
+        return i >= 0 ? i : -(i + 2);
+    }
+
+    @Override
+    protected int minKeys() {
+        return tree.branchingFactor() / 2;
+    }
+
+    @Override
+    protected int maxKeys() {
+        return tree.branchingFactor();
+    }
+
+    @Override
+    public int numKeys() {
+        return numKeys;
+    }
+
+    @Override
+    public int numValues() {
+        return 0;
+    }
+
+    @Override
+    public int numChildren() {
+        return numKeys;
+    }
+
+    @Override
+    public long getKey(int pos) {
+        return keys[pos];
+    }
+
+    @Override
+    public Object getValue(int pos) {
+        return null;
+    }
+
+    @Override
+    public LongNode getChild(int pos) {
+        return children[pos];
+    }
+
+    void addChildPointer(int pos, long key, LongBaseNode child) {
+        insertInArray(keys, pos, key);
+        insertInArray(children, pos, child);
+        numKeys++;
+    }
+
+    void setKey(int pos, long key) {
+        keys[pos] = key;
+    }
+
+    void insertChild(LongBaseNode position, long key, LongBaseNode child) {
+
+        int pos = 0;
+        boolean found = false;
+        for (LongBaseNode c : children) {
+            if (c == position) {
+                found = true;
+                break;
+            }
+            pos++;
+        }
+
+        if (!found) {
+            throw new IllegalStateException("Can't find node");
+        }
+
+        pos++;
+
+        insertInArray(keys, pos, key);
+        insertInArray(children, pos, child);
+
+        numKeys++;
+
+        // For inner nodes the first key is effectively ignored so we split at b + 1
+        if (numKeys == maxKeys() + 1) {
+            // No room - split
+            split();
+        }
+    }
+
+    private void split() {
+
+        int splitAt = numKeys / 2 + 1;
+        int rightKeys = numKeys - splitAt;
+
+        LongInternalNode newNode = new LongInternalNode(tree);
+        System.arraycopy(keys, splitAt, newNode.keys, 0, rightKeys);
+        System.arraycopy(children, splitAt, newNode.children, 0, rightKeys);
+        newNode.numKeys = rightKeys;
+
+        for (int i = splitAt; i < numKeys; i++) {
+            children[i] = null;
+        }
+        numKeys = splitAt;
+
+        for (int i = 0; i < newNode.numKeys; i++) {
+            newNode.children[i].setParent(newNode);
+        }
+
+        if (parent == null) {
+            // Create a new root
+            parent = new LongInternalNode(tree);
+            parent.addChildPointer(0, keys[0], this);
+            parent.addChildPointer(1, newNode.keys[0], newNode);
+            newNode.setParent(parent);
+            tree.setRoot(parent);
+        } else {
+            newNode.setParent(parent);
+            parent.insertChild(this, newNode.keys[0], newNode);
+        }
+    }
+
+    void removeKey(int pos) {
+        removeFromArray(keys, pos, numKeys);
+        removeFromArray(children, pos, numKeys);
+        numKeys--;
+        if (!isRoot()) {
+            if (numKeys < minKeys()) {
+                if (!tryStealSibling()) {
+                    mergeSibling();
+                }
+            }
+        } else {
+            if (numKeys == 1) {
+                // Child becomes root
+                LongBaseNode child = children[0];
+                child.setParent(null);
+                tree.setRoot(child);
+            }
+        }
+    }
+
+    private boolean tryStealSibling() {
+        int numSiblings = parent.numChildren();
+        for (int i = 0; i < numSiblings; i++) {
+            LongInternalNode sibling = (LongInternalNode)parent.getChild(i);
+            if (i < numSiblings - 1 && parent.getChild(i + 1) == this) {
+                // left sibling
+                if (tryStealSibling(sibling, i, true)) {
+                    return true;
+                }
+            }
+            if (i > 0 && parent.getChild(i - 1) == this) {
+                // Right sibling
+                if (tryStealSibling(sibling, i, false)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean tryStealSibling(LongInternalNode sibling, int siblingPos, boolean left) {
+
+        int siblingNumKeys = sibling.numKeys();
+        if (siblingNumKeys > minKeys()) {
+            // It has spare key(s)
+
+            int posToSteal = left ? sibling.numKeys - 1 : 0;
+            int posToInsert = left ? 0 : numKeys;
+
+            long key = sibling.getKey(posToSteal);
+            LongBaseNode child = sibling.children[posToSteal];
+            removeFromArray(sibling.keys, posToSteal, siblingNumKeys);
+            removeFromArray(sibling.children, posToSteal, siblingNumKeys);
+            sibling.numKeys--;
+            insertInArray(keys, posToInsert, key);
+            insertInArray(children, posToInsert, child);
+            numKeys++;
+            // Update parent key value
+            if (left) {
+                parent.setKey(siblingPos + 1, key);
+            } else {
+                parent.setKey(siblingPos, sibling.keys[0]);
+            }
+            // Update parent of child
+            child.parent = this;
+            return true;
+        }
+        return false;
+    }
+
+    private void mergeSibling() {
+        int numSiblings = parent.numChildren();
+        for (int i = 0; i < numSiblings; i++) {
+            LongInternalNode sibling = (LongInternalNode)parent.getChild(i);
+            boolean left;
+            if (i < numSiblings - 1 && parent.getChild(i + 1) == this) {
+                left = true;
+            } else if (i > 0 && parent.getChild(i - 1) == this) {
+                left = false;
+            } else {
+                continue;
+            }
+            // left or right sibling
+            if (sibling.numKeys == minKeys()) {
+                // Has min number of keys so can merge it
+                mergeSibling(sibling, left, i);
+                return;
+            }
+        }
+    }
+
+    private void mergeSibling(LongInternalNode sibling, boolean left, int siblingPos) {
+        LongInternalNode dest = left ? sibling : this;
+        LongInternalNode src = left ? this : sibling;
+        int srcPos = left ? siblingPos + 1 : siblingPos;
+
+        // Update parents of children
+        for (int i = 0; i < src.numKeys; i++) {
+            src.children[i].setParent(dest);
+        }
+
+        System.arraycopy(src.keys, 0, dest.keys, dest.numKeys, src.numKeys);
+        System.arraycopy(src.children, 0, dest.children, dest.numKeys, src.numKeys);
+
+        dest.numKeys += src.numKeys;
+
+        // remove merged key from parent
+        parent.removeKey(srcPos);
+    }
+}
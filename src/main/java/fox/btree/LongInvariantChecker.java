@@ -0,0 +1,118 @@
+package fox.btree;
+
+/**
+ * The {@link InvariantChecker} for a {@link LongBplusTree}.
+ */
+public class LongInvariantChecker {
+
+    private int branchingFactor;
+    private int leafDepth = -1;
+
+    void checkInvariants(LongBplusTree tree) {
+        leafDepth = -1;
+        branchingFactor = tree.branchingFactor();
+        assertTrue("root node must be a root", tree.getRoot().isRoot());
+        checkInvariants(tree.getRoot(), null, null, 0);
+    }
+
+    private void checkInvariants(LongNode node, Long greaterThanOrEqual, Long lessThan, int depth) {
+
+        if (node.isLeaf()) {
+            assertTrue("leaf node must not have children", node.numChildren() == 0);
+        } else {
+            assertTrue("internal node must have children", node.numChildren() > 0);
+        }
+
+        // Check that parent-child relationship is consistent in both directions
+        if (node.getParent() != null) {
+            boolean found = false;
+            for (int i = 0; i < node.getParent().numKeys(); i++) {
+                if (node.getParent().getChild(i) == node) {
+                    found = true;
+                    break;
+                }
+            }
+            assertTrue("parent child relationship inconsistent in node " + node.getNodeNum(), found);
+        }
+
+        // Make sure number of keys, values and children are consistent
+        if (node.isLeaf()) {
+            assertEquals(node.numKeys(), node.numValues());
+            assertEquals(0, node.numChildren());
+
+            // Invariant: all leaves must be at same depth
+            if (leafDepth != -1) {
+                assertEquals(leafDepth, depth);
+            } else {
+                leafDepth = depth;
+            }
+        } else {
+            assertEquals(node.numKeys(), node.numChildren());
+            assertEquals(0, node.numValues());
+        }
+
+        // Invariants on number of keys
+        if (node.isRoot()) {
+            if (node.isLeaf()) {
+                assertTrue("leaf root node num keys must be <= B - 1", node.numKeys() <= branchingFactor - 1);
+            } else {
+                assertTrue("non leaf root node num keys must be >= 2", node.numKeys() >= 2);
+                assertTrue("non leaf root node num keys must be <= B", node.numKeys() <= branchingFactor);
+            }
+        } else if (node.isLeaf()) {
+            assertTrue("leaf node num keys must be >= B / 2 - 1", node.numKeys() >= branchingFactor / 2 - 1);
+            assertTrue("leaf node num keys must be <= B - 1", node.numKeys() <= branchingFactor - 1);
+        } else {
+            assertTrue("internal node num keys must be >= B / 2", node.numKeys() >= branchingFactor / 2);
+            assertTrue("internal node num keys must be <= B", node.numKeys() <= branchingFactor);
+        }
+
+        // The left most key in a left most child is never used so it doesn't have to match its subtree
+        int start = node.getParent() == null || node.getParent().getChild(0) == node ? 1 : 0;
+
+        Long prev = null;
+        for (int i = start; i < node.numKeys(); i++) {
+            long key = node.getKey(i);
+
+            // Invariant: key range
+            if (greaterThanOrEqual != null) {
+                assertTrue("key:" + key + " not >=" + greaterThanOrEqual, key >= greaterThanOrEqual);
+            }
+            if (lessThan != null) {
+                assertTrue("key:" + key + " lt:" + lessThan, key < lessThan);
+            }
+
+            // Check the values are correct for a leaf
+            if (node.isLeaf()) {
+                assertEquals("val" + key, node.getValue(i));
+            }
+
+            // Invariant: keys must be in sorted order
+            if (prev != null) {
+                assertTrue("keys not in sorted order in node " + node.getNodeNum(), key > prev);
+            }
+            prev = key;
+        }
+
+        // Recurse
+        if (!node.isLeaf()) {
+            for (int i = 0; i < node.numKeys(); i++) {
+                Long gOrE = i == 0 ? null : node.getKey(i);
+                Long less = i < node.numKeys() - 1 ? node.getKey(i + 1) : null;
+                checkInvariants(node.getChild(i), gOrE, less, depth + 1);
+            }
+        }
+    }
+
+    private void assertTrue(String msg, boolean ok) {
+        if (!ok) {
+            throw new IllegalStateException(msg);
+        }
+    }
+
+    private void assertEquals(Object object1, Object object2) {
+        if (!object1.equals(object2)) {
+            throw new IllegalStateException("Not equal " + object1 + " " + object2);
+        }
+    }
+}
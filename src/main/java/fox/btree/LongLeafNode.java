@@ -0,0 +1,232 @@
+package fox.btree;
+
+/**
+ * Leaf node of a {@link LongBplusTree}.
+ */
+public class LongLeafNode extends LongBaseNode {
+
+    private int numKeys;
+    private long[] keys;
+    private Object[] values;
+
+    public LongLeafNode(LongBplusTree tree) {
+        super(tree);
+        int b = tree.branchingFactor();
+        keys = new long[b];
+        values = new Object[b];
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return true;
+    }
+
+    @Override
+    public Object find(long key) {
+        int i = search(keys, 0, numKeys, key);
+        return i >= 0 ? values[i] : null;
+    }
+
+    @Override
+    public Object remove(long key) {
+        int i = search(keys, 0, numKeys, key);
+        if (i < 0) {
+            return null;
+        }
+        Object val = values[i];
+        removeFromArray(keys, i, numKeys);
+        removeFromArray(values, i, numKeys);
+        numKeys--;
+        tree.addKeyCount(-1);
+        if (!isRoot() && numKeys < minKeys()) {
+            if (!tryStealSibling()) {
+                mergeSibling();
+            }
+        }
+        return val;
+    }
+
+    @Override
+    public void insert(long key, Object value) {
+        // Insert sorted order
+        int i = search(keys, 0, numKeys, key);
+        if (i >= 0) {
+            // update the value
+            values[i] = value;
+            return;
+        }
+        i = -(i + 1);
+
+        insertInArray(keys, i, key);
+        insertInArray(values, i, value);
+
+        numKeys++;
+        tree.addKeyCount(1);
+
+        if (numKeys == maxKeys() + 1) {
+            // No room - split
+            split();
+        }
+    }
+
+    @Override
+    public LongLeafNode findLeaf(long key) {
+        return this;
+    }
+
+    @Override
+    protected int minKeys() {
+        return tree.branchingFactor() / 2 - 1;
+    }
+
+    @Override
+    protected int maxKeys() {
+        return tree.branchingFactor() - 1;
+    }
+
+    @Override
+    public int numKeys() {
+        return numKeys;
+    }
+
+    @Override
+    public int numValues() {
+        return numKeys;
+    }
+
+    @Override
+    public int numChildren() {
+        return 0;
+    }
+
+    @Override
+    public long getKey(int pos) {
+        return keys[pos];
+    }
+
+    @Override
+    public Object getValue(int pos) {
+        return values[pos];
+    }
+
+    @Override
+    public LongNode getChild(int pos) {
+        return null;
+    }
+
+    private void split() {
+
+        int b = tree.branchingFactor();
+        int leftKeys = b / 2;
+        int rightKeys = numKeys - leftKeys;
+
+        LongLeafNode newNode = new LongLeafNode(tree);
+        System.arraycopy(keys, leftKeys, newNode.keys, 0, rightKeys);
+        System.arraycopy(values, leftKeys, newNode.values, 0, rightKeys);
+        newNode.numKeys = rightKeys;
+
+        // The keys don't need clearing but the values must go so they can be collected
+        for (int i = leftKeys; i < numKeys; i++) {
+            values[i] = null;
+        }
+        numKeys = leftKeys;
+
+        if (parent == null) {
+            // Create a new root
+            parent = new LongInternalNode(tree);
+
+            newNode.setParent(parent);
+
+            parent.addChildPointer(0, keys[0], this);
+            parent.addChildPointer(1, newNode.keys[0], newNode);
+
+            tree.setRoot(parent);
+        } else {
+            newNode.setParent(parent);
+            parent.insertChild(this, newNode.keys[0], newNode);
+        }
+    }
+
+    private boolean tryStealSibling() {
+        int numSiblings = parent.numChildren();
+        for (int i = 0; i < numSiblings; i++) {
+            LongLeafNode sibling = (LongLeafNode)parent.getChild(i);
+            if (i < numSiblings - 1 && parent.getChild(i + 1) == this) {
+                // left sibling
+                if (tryStealSibling(sibling, i, true)) {
+                    return true;
+                }
+            }
+            if (i > 0 && parent.getChild(i - 1) == this) {
+                // Right sibling
+                if (tryStealSibling(sibling, i, false)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean tryStealSibling(LongLeafNode sibling, int siblingPos, boolean left) {
+        int siblingNumKeys = sibling.numKeys();
+        if (siblingNumKeys > minKeys()) {
+            // It has spare key(s)
+
+            int posToSteal = left ? sibling.numKeys - 1 : 0;
+            int posToInsert = left ? 0 : numKeys;
+
+            long key = sibling.getKey(posToSteal);
+            Object value = sibling.getValue(posToSteal);
+            removeFromArray(sibling.keys, posToSteal, siblingNumKeys);
+            removeFromArray(sibling.values, posToSteal, siblingNumKeys);
+            sibling.numKeys--;
+            insertInArray(keys, posToInsert, key);
+            insertInArray(values, posToInsert, value);
+            numKeys++;
+            // Update parent key value
+            if (left) {
+                parent.setKey(siblingPos + 1, getKey(0));
+            } else {
+                parent.setKey(siblingPos, sibling.getKey(0));
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void mergeSibling() {
+        int numSiblings = parent.numChildren();
+        for (int i = 0; i < numSiblings; i++) {
+            LongLeafNode sibling = (LongLeafNode)parent.getChild(i);
+            boolean left;
+            if (i < numSiblings - 1 && parent.getChild(i + 1) == this) {
+                left = true;
+            } else if (i > 0 && parent.getChild(i - 1) == this) {
+                left = false;
+            } else {
+                continue;
+            }
+            // left or right sibling
+            if (sibling.numKeys == minKeys()) {
+                // Has min number of keys so can merge it
+                mergeSibling(sibling, left, i);
+                return;
+            }
+        }
+    }
+
+    private void mergeSibling(LongLeafNode sibling, boolean left, int siblingPos) {
+        LongLeafNode dest = left ? sibling : this;
+        LongLeafNode src = left ? this : sibling;
+        int srcPos = left ? siblingPos + 1 : siblingPos;
+
+        System.arraycopy(src.keys, 0, dest.keys, dest.numKeys, src.numKeys);
+        System.arraycopy(src.values, 0, dest.values, dest.numKeys, src.numKeys);
+
+        dest.numKeys += src.numKeys;
+
+        // remove merged key from parent
+        parent.removeKey(srcPos);
+    }
+
+}
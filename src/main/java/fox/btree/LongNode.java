@@ -0,0 +1,33 @@
+package fox.btree;
+
+/**
+ * A node in a {@link LongBplusTree}. The same shape as {@link Node} but with primitive long keys.
+ */
+public interface LongNode {
+
+    LongNode getParent();
+
+    int getNodeNum();
+
+    boolean isRoot();
+
+    boolean isLeaf();
+
+    Object find(long key);
+
+    Object remove(long key);
+
+    void insert(long key, Object value);
+
+    int numKeys();
+
+    int numValues();
+
+    int numChildren();
+
+    long getKey(int pos);
+
+    Object getValue(int pos);
+
+    LongNode getChild(int pos);
+}
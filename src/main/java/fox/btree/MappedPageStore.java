@@ -0,0 +1,158 @@
+package fox.btree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read only {@link NodeStore} over a {@link PageFile}, memory mapped so that nodes are read straight out of the
+ * page cache with no copying into frames and nothing read up front. Opening a file only maps it, so it takes the same
+ * time however large the file is.
+ * <p>
+ * A single buffer can't map more than 2GB so the file is mapped in segments, each a whole number of pages.
+ */
+public class MappedPageStore implements NodeStore {
+
+    static final int DEFAULT_SEGMENT_BYTES = 1 << 30;
+
+    private final Path path;
+    private final int pageSize;
+    private final int pagesPerSegment;
+    private final ByteBuffer[] segments;
+    private final ByteBuffer header;
+
+    public MappedPageStore(Path path) {
+        this(path, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * @param segmentBytes the most to map in one buffer, rounded down to a whole number of pages
+     */
+    public MappedPageStore(Path path, int segmentBytes) {
+        this.path = path;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < PageFile.HEADER_SIZE) {
+                throw new IllegalArgumentException(path + " is not a page file");
+            }
+            ByteBuffer first = channel.map(FileChannel.MapMode.READ_ONLY, 0, PageFile.HEADER_SIZE)
+                    .order(ByteOrder.nativeOrder());
+            if (first.getInt(PageFile.MAGIC_OFFSET) != PageFile.MAGIC) {
+                throw new IllegalArgumentException(path + " is not a page file");
+            }
+            this.pageSize = first.getInt(PageFile.PAGE_SIZE_OFFSET);
+            if (segmentBytes < pageSize) {
+                throw new IllegalArgumentException("segmentBytes must be >= the page size " + pageSize);
+            }
+            this.pagesPerSegment = segmentBytes / pageSize;
+            // Only map the pages that were allocated, the file may have been left longer
+            long size = Math.min(fileSize, (long) first.getInt(PageFile.NEXT_UNUSED_OFFSET) * pageSize);
+            long segmentSize = (long) pagesPerSegment * pageSize;
+            int numSegments = (int) ((size + segmentSize - 1) / segmentSize);
+            this.segments = new ByteBuffer[numSegments];
+            for (int i = 0; i < numSegments; i++) {
+                long start = i * segmentSize;
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(segmentSize, size - start));
+                segments[i] = segment.order(ByteOrder.nativeOrder());
+            }
+            this.header = segments[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public int segments() {
+        return segments.length;
+    }
+
+    @Override
+    public int allocate() {
+        throw new UnsupportedOperationException(readOnly());
+    }
+
+    @Override
+    public void free(int slot) {
+        throw new UnsupportedOperationException(readOnly());
+    }
+
+    @Override
+    public ByteBuffer buffer(int slot) {
+        return segments[slot / pagesPerSegment];
+    }
+
+    @Override
+    public ByteBuffer writableBuffer(int slot) {
+        throw new UnsupportedOperationException(readOnly());
+    }
+
+    @Override
+    public int offset(int slot) {
+        return (slot % pagesPerSegment) * pageSize;
+    }
+
+    @Override
+    public int slotSize() {
+        return pageSize;
+    }
+
+    @Override
+    public int usedSlots() {
+        return header.getInt(PageFile.NEXT_UNUSED_OFFSET) - 1 - freeSlots();
+    }
+
+    @Override
+    public int freeSlots() {
+        return header.getInt(PageFile.FREE_COUNT_OFFSET);
+    }
+
+    /**
+     * @return the bytes mapped, which take up address space but only occupy memory as they are touched
+     */
+    @Override
+    public long reservedBytes() {
+        long bytes = 0;
+        for (ByteBuffer segment : segments) {
+            bytes += segment.capacity();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long metadata(int index) {
+        return header.getLong(PageFile.METADATA_OFFSET + 8 * index);
+    }
+
+    /**
+     * Only allowed if it leaves the metadata as it is, so that a read only tree can still be flushed and closed.
+     */
+    @Override
+    public void setMetadata(int index, long value) {
+        if (metadata(index) != value) {
+            throw new UnsupportedOperationException(readOnly());
+        }
+    }
+
+    /**
+     * Drop the mappings. They are unmapped when the buffers are collected.
+     */
+    @Override
+    public void release() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = null;
+        }
+    }
+
+    private String readOnly() {
+        return path + " is mapped read only";
+    }
+}
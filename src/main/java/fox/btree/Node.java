@@ -1,5 +1,8 @@
 package fox.btree;
 
+import java.util.LinkedList;
+import java.util.Queue;
+
 /**
  * Created by tim on 08/12/16.
  */
@@ -19,7 +22,34 @@ public interface Node {
 
     void insert(Comparable key, Object value);
 
-    void dump();
+    default void dump() {
+        Queue<Node> level = new LinkedList<>();
+        level.add(this);
+        while (!level.isEmpty()) {
+            int count = level.size();
+            for (int i = 0; i < count; i++) {
+                Node node = level.poll();
+                System.out.print("N" + node.getNodeNum());
+                if (node.getParent() != null) {
+                    System.out.print("|P" + node.getParent().getNodeNum() + "|");
+                } else {
+                    System.out.print("|root|");
+                }
+                for (int j = 0; j < node.numKeys(); j++) {
+                    Comparable key = node.getKey(j);
+                    System.out.print(key + "|");
+                }
+                System.out.print("  ");
+                if (!node.isLeaf()) {
+                    for (int j = 0; j < node.numKeys(); j++) {
+                        Node child = node.getChild(j);
+                        level.add(child);
+                    }
+                }
+            }
+            System.out.print(" ****\n");
+        }
+    }
 
     int numKeys();
 
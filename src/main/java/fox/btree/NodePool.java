@@ -0,0 +1,93 @@
+package fox.btree;
+
+import java.util.ArrayDeque;
+
+/**
+ * Nodes that merges have emptied, kept by a {@link BasicBplusTree} to be handed out again by the next splits along
+ * with the key, value and child arrays they own, so that steady insert/remove churn doesn't allocate any nodes. Only
+ * up to a fixed number of nodes of each kind are kept, the rest are left for the GC.
+ */
+class NodePool {
+
+    static final int DEFAULT_CAPACITY = 64;
+
+    private final int capacity;
+    private final ArrayDeque<LeafNode> leaves = new ArrayDeque<>();
+    private final ArrayDeque<InternalNode> internals = new ArrayDeque<>();
+    private long reused;
+    private long releasedLeaves;
+    private long releasedInternals;
+
+    NodePool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return an empty leaf, or null if there are none pooled
+     */
+    LeafNode takeLeaf() {
+        LeafNode leaf = leaves.pollFirst();
+        if (leaf != null) {
+            reused++;
+        }
+        return leaf;
+    }
+
+    /**
+     * @return an empty internal node, or null if there are none pooled
+     */
+    InternalNode takeInternal() {
+        InternalNode node = internals.pollFirst();
+        if (node != null) {
+            reused++;
+        }
+        return node;
+    }
+
+    /**
+     * Clear a leaf that is no longer in the tree and keep it for reuse.
+     */
+    void release(LeafNode leaf) {
+        releasedLeaves++;
+        leaf.reset();
+        if (leaves.size() < capacity) {
+            leaves.addFirst(leaf);
+        }
+    }
+
+    /**
+     * Clear an internal node that is no longer in the tree and keep it for reuse.
+     */
+    void release(InternalNode node) {
+        releasedInternals++;
+        node.reset();
+        if (internals.size() < capacity) {
+            internals.addFirst(node);
+        }
+    }
+
+    int size() {
+        return leaves.size() + internals.size();
+    }
+
+    /**
+     * @return the number of nodes handed out from the pool rather than allocated
+     */
+    long reused() {
+        return reused;
+    }
+
+    /**
+     * @return the number of leaves released from the tree, whether or not they were kept
+     */
+    long releasedLeaves() {
+        return releasedLeaves;
+    }
+
+    /**
+     * @return the number of internal nodes released from the tree, whether or not they were kept
+     */
+    long releasedInternals() {
+        return releasedInternals;
+    }
+}
@@ -0,0 +1,68 @@
+package fox.btree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed size slots that an {@link OffHeapBplusTree} keeps its nodes in, each identified by an int.
+ * <p>
+ * A slot's bytes are reached through {@link #buffer(int)} and {@link #offset(int)}, which must be called afresh for
+ * each access as a store is free to move a slot between accesses, unless it has been pinned. Writes must go through
+ * {@link #writableBuffer(int)} so that the store knows the slot has changed.
+ */
+public interface NodeStore {
+
+    int NO_SLOT = -1;
+
+    /**
+     * The number of longs of metadata the store keeps for its user
+     */
+    int METADATA_SLOTS = 8;
+
+    int allocate();
+
+    void free(int slot);
+
+    ByteBuffer buffer(int slot);
+
+    ByteBuffer writableBuffer(int slot);
+
+    int offset(int slot);
+
+    /**
+     * Keep the slot where it is until it is unpinned. Pins nest.
+     */
+    default void pin(int slot) {
+    }
+
+    default void unpin(int slot) {
+    }
+
+    int slotSize();
+
+    /**
+     * @return the number of slots currently handed out
+     */
+    int usedSlots();
+
+    int freeSlots();
+
+    /**
+     * @return the memory reserved by the store
+     */
+    long reservedBytes();
+
+    long metadata(int index);
+
+    void setMetadata(int index, long value);
+
+    /**
+     * Make everything written so far durable, if the store is durable at all.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Give up the store's resources. It must not be used afterwards.
+     */
+    void release();
+}
@@ -0,0 +1,638 @@
+package fox.btree;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A B+Tree with long keys and long values whose nodes live off heap.
+ * <p>
+ * Every node is a fixed size record in a {@link NodeStore} slot and refers to its parent, children and sibling
+ * leaves by slot number, so however large the tree gets the heap only holds the store's buffers. Slots released when
+ * nodes are merged are reused by later splits. By default the store is a {@link SlabAllocator} in direct memory; with
+ * a {@link BufferPool} the nodes are pages of a file and only the pool's frames are in memory, so the tree can be
+ * larger than RAM and can be reopened after {@link #close()}. A closed file can also be opened read only through a
+ * {@link MappedPageStore}. The nodes on the path an operation is working on are pinned for the duration of the
+ * operation.
+ * <p>
+ * Record layout, all offsets in bytes:
+ * <pre>
+ *  0  flags      int   - 1 if the node is a leaf
+ *  4  numKeys    int
+ *  8  parent     int   - slot of the parent, or NO_NODE for the root
+ *  12 prev       int   - leaves only, the slot of the previous leaf or NO_NODE
+ *  16 next       int   - leaves only, the slot of the next leaf or NO_NODE
+ *  24 keys       long[B + 1]
+ *  .. payload    long[B + 1] - values for a leaf, child slots for an internal node
+ * </pre>
+ * Like the other trees this is not thread safe.
+ */
+public class OffHeapBplusTree {
+
+    public static final int NO_NODE = NodeStore.NO_SLOT;
+
+    static final int DEFAULT_SLOTS_PER_SLAB = 1024;
+
+    private static final int FLAGS_OFFSET = 0;
+    private static final int NUM_KEYS_OFFSET = 4;
+    private static final int PARENT_OFFSET = 8;
+    private static final int PREV_OFFSET = 12;
+    private static final int NEXT_OFFSET = 16;
+    private static final int KEYS_OFFSET = 24;
+
+    private static final int LEAF_FLAG = 1;
+
+    // Store metadata
+    private static final int META_BRANCHING_FACTOR = 0;
+    private static final int META_ROOT = 1;
+    private static final int META_KEY_COUNT = 2;
+
+    private final int branchingFactor;
+    private final int payloadOffset;
+    private final NodeStore store;
+    private int root;
+    private int keycount;
+    private int[] pinned = new int[8];
+    private int numPinned;
+
+    public OffHeapBplusTree(int branchingFactor) {
+        this(branchingFactor, DEFAULT_SLOTS_PER_SLAB);
+    }
+
+    /**
+     * @param slotsPerSlab the number of nodes in each slab of direct memory, must be a power of 2
+     */
+    public OffHeapBplusTree(int branchingFactor, int slotsPerSlab) {
+        this(branchingFactor, new SlabAllocator(nodeSize(branchingFactor), slotsPerSlab));
+    }
+
+    /**
+     * Create a tree in an empty store, or open the tree already in a store.
+     *
+     * @param store a store with slots of at least {@link #nodeSize(int)} bytes
+     */
+    public OffHeapBplusTree(int branchingFactor, NodeStore store) {
+        if (branchingFactor < 4) {
+            throw new IllegalArgumentException("branchingFactor must be >= 4");
+        }
+        if (store.slotSize() < nodeSize(branchingFactor)) {
+            throw new IllegalArgumentException("store slots must be >= " + nodeSize(branchingFactor) + " bytes");
+        }
+        this.branchingFactor = branchingFactor;
+        // A little extra space for splitting
+        this.payloadOffset = KEYS_OFFSET + 8 * (branchingFactor + 1);
+        this.store = store;
+        if (store.usedSlots() == 0) {
+            this.root = allocateNode(true);
+        } else {
+            if (store.metadata(META_BRANCHING_FACTOR) != branchingFactor) {
+                throw new IllegalArgumentException("store holds a tree with branching factor "
+                        + store.metadata(META_BRANCHING_FACTOR));
+            }
+            this.root = (int) store.metadata(META_ROOT);
+            this.keycount = (int) store.metadata(META_KEY_COUNT);
+        }
+    }
+
+    /**
+     * @return the size in bytes of a node record
+     */
+    public static int nodeSize(int branchingFactor) {
+        return KEYS_OFFSET + 16 * (branchingFactor + 1);
+    }
+
+    public void insert(long key, long value) {
+        try {
+            doInsert(key, value);
+        } finally {
+            unpinPath();
+        }
+    }
+
+    private void doInsert(long key, long value) {
+        int leaf = findLeaf(key);
+        int numKeys = numKeys(leaf);
+        int i = search(leaf, 0, numKeys, key);
+        if (i >= 0) {
+            // update the value
+            setPayload(leaf, i, value);
+            return;
+        }
+        i = -(i + 1);
+        shiftRight(leaf, i, numKeys);
+        setKey(leaf, i, key);
+        setPayload(leaf, i, value);
+        setNumKeys(leaf, ++numKeys);
+        keycount++;
+        if (numKeys == maxLeafKeys() + 1) {
+            // No room - split
+            splitLeaf(leaf);
+        }
+    }
+
+    public long find(long key, long defaultValue) {
+        try {
+            int leaf = findLeaf(key);
+            int i = search(leaf, 0, numKeys(leaf), key);
+            return i >= 0 ? payload(leaf, i) : defaultValue;
+        } finally {
+            unpinPath();
+        }
+    }
+
+    public boolean containsKey(long key) {
+        try {
+            int leaf = findLeaf(key);
+            return search(leaf, 0, numKeys(leaf), key) >= 0;
+        } finally {
+            unpinPath();
+        }
+    }
+
+    public long remove(long key, long defaultValue) {
+        try {
+            return doRemove(key, defaultValue);
+        } finally {
+            unpinPath();
+        }
+    }
+
+    private long doRemove(long key, long defaultValue) {
+        int leaf = findLeaf(key);
+        int numKeys = numKeys(leaf);
+        int i = search(leaf, 0, numKeys, key);
+        if (i < 0) {
+            return defaultValue;
+        }
+        long val = payload(leaf, i);
+        shiftLeft(leaf, i, numKeys);
+        setNumKeys(leaf, --numKeys);
+        keycount--;
+        if (parent(leaf) != NO_NODE && numKeys < minKeys(true)) {
+            if (!tryStealSibling(leaf, true)) {
+                mergeSibling(leaf, true);
+            }
+        }
+        return val;
+    }
+
+    /**
+     * Scan the entries between two keys in ascending order. The cursor walks the leaves directly so it is only valid
+     * until the tree is next modified.
+     */
+    public LongCursor scan(long from, boolean fromInclusive, long to, boolean toInclusive) {
+        try {
+            int leaf = findLeaf(from);
+            int i = search(leaf, 0, numKeys(leaf), from);
+            int pos = i >= 0 ? (fromInclusive ? i : i + 1) : -(i + 1);
+            return new LeafCursor(leaf, pos, to, toInclusive);
+        } finally {
+            unpinPath();
+        }
+    }
+
+    public LongCursor scan() {
+        return scan(Long.MIN_VALUE, true, Long.MAX_VALUE, true);
+    }
+
+    public int keyCount() {
+        return keycount;
+    }
+
+    public int nodeCount() {
+        return store.usedSlots();
+    }
+
+    /**
+     * @return the memory reserved by the store, including free slots
+     */
+    public long offHeapBytes() {
+        return store.reservedBytes();
+    }
+
+    /**
+     * @return the store space occupied by live nodes
+     */
+    public long usedOffHeapBytes() {
+        return (long) store.usedSlots() * store.slotSize();
+    }
+
+    public int freeNodeSlots() {
+        return store.freeSlots();
+    }
+
+    /**
+     * Record the root and key count in the store and make the tree durable, if the store is.
+     */
+    public void flush() {
+        store.setMetadata(META_BRANCHING_FACTOR, branchingFactor);
+        store.setMetadata(META_ROOT, root);
+        store.setMetadata(META_KEY_COUNT, keycount);
+        store.flush();
+    }
+
+    /**
+     * Flush the tree and release its store. The tree must not be used afterwards.
+     */
+    public void close() {
+        flush();
+        store.release();
+        root = NO_NODE;
+        keycount = 0;
+    }
+
+    int root() {
+        return root;
+    }
+
+    int branchingFactor() {
+        return branchingFactor;
+    }
+
+    boolean isLeaf(int node) {
+        return store.buffer(node).getInt(store.offset(node) + FLAGS_OFFSET) == LEAF_FLAG;
+    }
+
+    int numKeys(int node) {
+        return store.buffer(node).getInt(store.offset(node) + NUM_KEYS_OFFSET);
+    }
+
+    int parent(int node) {
+        return store.buffer(node).getInt(store.offset(node) + PARENT_OFFSET);
+    }
+
+    int prev(int node) {
+        return store.buffer(node).getInt(store.offset(node) + PREV_OFFSET);
+    }
+
+    int next(int node) {
+        return store.buffer(node).getInt(store.offset(node) + NEXT_OFFSET);
+    }
+
+    long key(int node, int pos) {
+        return store.buffer(node).getLong(store.offset(node) + KEYS_OFFSET + 8 * pos);
+    }
+
+    long payload(int node, int pos) {
+        return store.buffer(node).getLong(store.offset(node) + payloadOffset + 8 * pos);
+    }
+
+    int child(int node, int pos) {
+        return (int) payload(node, pos);
+    }
+
+    private int allocateNode(boolean leaf) {
+        int node = store.allocate();
+        ByteBuffer buf = store.writableBuffer(node);
+        int base = store.offset(node);
+        buf.putInt(base + FLAGS_OFFSET, leaf ? LEAF_FLAG : 0);
+        buf.putInt(base + NUM_KEYS_OFFSET, 0);
+        buf.putInt(base + PARENT_OFFSET, NO_NODE);
+        buf.putInt(base + PREV_OFFSET, NO_NODE);
+        buf.putInt(base + NEXT_OFFSET, NO_NODE);
+        return node;
+    }
+
+    private void setNumKeys(int node, int numKeys) {
+        store.writableBuffer(node).putInt(store.offset(node) + NUM_KEYS_OFFSET, numKeys);
+    }
+
+    private void setParent(int node, int parent) {
+        store.writableBuffer(node).putInt(store.offset(node) + PARENT_OFFSET, parent);
+    }
+
+    private void setPrev(int node, int prev) {
+        store.writableBuffer(node).putInt(store.offset(node) + PREV_OFFSET, prev);
+    }
+
+    private void setNext(int node, int next) {
+        store.writableBuffer(node).putInt(store.offset(node) + NEXT_OFFSET, next);
+    }
+
+    private void setKey(int node, int pos, long key) {
+        store.writableBuffer(node).putLong(store.offset(node) + KEYS_OFFSET + 8 * pos, key);
+    }
+
+    private void setPayload(int node, int pos, long payload) {
+        store.writableBuffer(node).putLong(store.offset(node) + payloadOffset + 8 * pos, payload);
+    }
+
+    private int minKeys(boolean leaf) {
+        return leaf ? branchingFactor / 2 - 1 : branchingFactor / 2;
+    }
+
+    private int maxLeafKeys() {
+        return branchingFactor - 1;
+    }
+
+    /**
+     * Find the leaf for the key, pinning the path to it until {@link #unpinPath()}
+     */
+    private int findLeaf(long key) {
+        int node = root;
+        pin(node);
+        while (!isLeaf(node)) {
+            // The zeroth key is never used for routing
+            int i = search(node, 1, numKeys(node), key);
+            node = child(node, i >= 0 ? i : -(i + 2));
+            pin(node);
+        }
+        return node;
+    }
+
+    private void pin(int node) {
+        store.pin(node);
+        if (numPinned == pinned.length) {
+            pinned = Arrays.copyOf(pinned, numPinned * 2);
+        }
+        pinned[numPinned++] = node;
+    }
+
+    private void unpinPath() {
+        while (numPinned > 0) {
+            store.unpin(pinned[--numPinned]);
+        }
+    }
+
+    /**
+     * Binary search of the keys in [from, to) with the same contract as {@link java.util.Arrays#binarySearch}
+     */
+    private int search(int node, int from, int to, long key) {
+        ByteBuffer buf = store.buffer(node);
+        int keysBase = store.offset(node) + KEYS_OFFSET;
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long k = buf.getLong(keysBase + 8 * mid);
+            if (k < key) {
+                low = mid + 1;
+            } else if (k > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Move the keys and payloads in [pos, numKeys) one place to the right
+     */
+    private void shiftRight(int node, int pos, int numKeys) {
+        for (int i = numKeys - 1; i >= pos; i--) {
+            setKey(node, i + 1, key(node, i));
+            setPayload(node, i + 1, payload(node, i));
+        }
+    }
+
+    /**
+     * Move the keys and payloads in (pos, numKeys) one place to the left, overwriting pos
+     */
+    private void shiftLeft(int node, int pos, int numKeys) {
+        for (int i = pos + 1; i < numKeys; i++) {
+            setKey(node, i - 1, key(node, i));
+            setPayload(node, i - 1, payload(node, i));
+        }
+    }
+
+    private void copy(int src, int srcPos, int dest, int destPos, int length) {
+        for (int i = 0; i < length; i++) {
+            setKey(dest, destPos + i, key(src, srcPos + i));
+            setPayload(dest, destPos + i, payload(src, srcPos + i));
+        }
+    }
+
+    private void splitLeaf(int leaf) {
+        int numKeys = numKeys(leaf);
+        int leftKeys = branchingFactor / 2;
+        int rightKeys = numKeys - leftKeys;
+
+        int newNode = allocateNode(true);
+        copy(leaf, leftKeys, newNode, 0, rightKeys);
+        setNumKeys(newNode, rightKeys);
+        setNumKeys(leaf, leftKeys);
+
+        // Link the new node in to the right of this one
+        int next = next(leaf);
+        setPrev(newNode, leaf);
+        setNext(newNode, next);
+        if (next != NO_NODE) {
+            setPrev(next, newNode);
+        }
+        setNext(leaf, newNode);
+
+        insertIntoParent(leaf, key(newNode, 0), newNode);
+    }
+
+    private void splitInternal(int node) {
+        int numKeys = numKeys(node);
+        int splitAt = numKeys / 2 + 1;
+        int rightKeys = numKeys - splitAt;
+
+        int newNode = allocateNode(false);
+        copy(node, splitAt, newNode, 0, rightKeys);
+        setNumKeys(newNode, rightKeys);
+        setNumKeys(node, splitAt);
+
+        for (int i = 0; i < rightKeys; i++) {
+            setParent(child(newNode, i), newNode);
+        }
+
+        insertIntoParent(node, key(newNode, 0), newNode);
+    }
+
+    private void insertIntoParent(int node, long key, int newNode) {
+        int parent = parent(node);
+        if (parent == NO_NODE) {
+            // Create a new root
+            parent = allocateNode(false);
+            setKey(parent, 0, key(node, 0));
+            setPayload(parent, 0, node);
+            setKey(parent, 1, key);
+            setPayload(parent, 1, newNode);
+            setNumKeys(parent, 2);
+            setParent(node, parent);
+            setParent(newNode, parent);
+            root = parent;
+        } else {
+            setParent(newNode, parent);
+            int pos = indexInParent(parent, node) + 1;
+            int numKeys = numKeys(parent);
+            shiftRight(parent, pos, numKeys);
+            setKey(parent, pos, key);
+            setPayload(parent, pos, newNode);
+            setNumKeys(parent, ++numKeys);
+            // For inner nodes the first key is effectively ignored so we split at b + 1
+            if (numKeys == branchingFactor + 1) {
+                splitInternal(parent);
+            }
+        }
+    }
+
+    private int indexInParent(int parent, int node) {
+        int numKeys = numKeys(parent);
+        for (int i = 0; i < numKeys; i++) {
+            if (child(parent, i) == node) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Can't find node");
+    }
+
+    private void removeKey(int node, int pos) {
+        int numKeys = numKeys(node);
+        shiftLeft(node, pos, numKeys);
+        setNumKeys(node, --numKeys);
+        if (parent(node) != NO_NODE) {
+            if (numKeys < minKeys(false)) {
+                if (!tryStealSibling(node, false)) {
+                    mergeSibling(node, false);
+                }
+            }
+        } else if (numKeys == 1) {
+            // Child becomes root
+            int child = child(node, 0);
+            setParent(child, NO_NODE);
+            root = child;
+            store.free(node);
+        }
+    }
+
+    private boolean tryStealSibling(int node, boolean leaf) {
+        int parent = parent(node);
+        int pos = indexInParent(parent, node);
+        return (pos > 0 && tryStealSibling(node, leaf, pos - 1, true))
+                || (pos < numKeys(parent) - 1 && tryStealSibling(node, leaf, pos + 1, false));
+    }
+
+    private boolean tryStealSibling(int node, boolean leaf, int siblingPos, boolean left) {
+        int parent = parent(node);
+        int sibling = child(parent, siblingPos);
+        int siblingNumKeys = numKeys(sibling);
+        if (siblingNumKeys <= minKeys(leaf)) {
+            return false;
+        }
+        // It has spare key(s)
+        int numKeys = numKeys(node);
+        int posToSteal = left ? siblingNumKeys - 1 : 0;
+        int posToInsert = left ? 0 : numKeys;
+
+        long key = key(sibling, posToSteal);
+        long payload = payload(sibling, posToSteal);
+        shiftLeft(sibling, posToSteal, siblingNumKeys);
+        setNumKeys(sibling, siblingNumKeys - 1);
+        shiftRight(node, posToInsert, numKeys);
+        setKey(node, posToInsert, key);
+        setPayload(node, posToInsert, payload);
+        setNumKeys(node, numKeys + 1);
+        if (!leaf) {
+            setParent((int) payload, node);
+        }
+        // Update parent key value
+        if (left) {
+            setKey(parent, siblingPos + 1, key);
+        } else {
+            setKey(parent, siblingPos, key(sibling, 0));
+        }
+        return true;
+    }
+
+    private void mergeSibling(int node, boolean leaf) {
+        int parent = parent(node);
+        int pos = indexInParent(parent, node);
+        if (pos > 0 && numKeys(child(parent, pos - 1)) == minKeys(leaf)) {
+            mergeSibling(node, leaf, pos - 1, true);
+        } else if (pos < numKeys(parent) - 1 && numKeys(child(parent, pos + 1)) == minKeys(leaf)) {
+            mergeSibling(node, leaf, pos + 1, false);
+        }
+    }
+
+    private void mergeSibling(int node, boolean leaf, int siblingPos, boolean left) {
+        int parent = parent(node);
+        int sibling = child(parent, siblingPos);
+        int dest = left ? sibling : node;
+        int src = left ? node : sibling;
+        int srcPos = left ? siblingPos + 1 : siblingPos;
+
+        int destNumKeys = numKeys(dest);
+        int srcNumKeys = numKeys(src);
+        copy(src, 0, dest, destNumKeys, srcNumKeys);
+        setNumKeys(dest, destNumKeys + srcNumKeys);
+
+        if (leaf) {
+            // src is always to the right of dest, unlink it
+            int next = next(src);
+            setNext(dest, next);
+            if (next != NO_NODE) {
+                setPrev(next, dest);
+            }
+        } else {
+            for (int i = 0; i < srcNumKeys; i++) {
+                setParent(child(src, i), dest);
+            }
+        }
+        store.free(src);
+
+        // remove merged key from parent
+        removeKey(parent, srcPos);
+    }
+
+    private final class LeafCursor implements LongCursor {
+
+        private final long end;
+        private final boolean endInclusive;
+        private int leaf;
+        private int pos;
+        private boolean positioned;
+
+        LeafCursor(int leaf, int pos, long end, boolean endInclusive) {
+            this.leaf = leaf;
+            this.pos = pos;
+            this.end = end;
+            this.endInclusive = endInclusive;
+        }
+
+        @Override
+        public boolean next() {
+            if (leaf == NO_NODE) {
+                return false;
+            }
+            if (positioned) {
+                pos++;
+            }
+            positioned = true;
+            while (pos >= numKeys(leaf)) {
+                leaf = OffHeapBplusTree.this.next(leaf);
+                if (leaf == NO_NODE) {
+                    return false;
+                }
+                pos = 0;
+            }
+            long key = OffHeapBplusTree.this.key(leaf, pos);
+            if (key > end || (key == end && !endInclusive)) {
+                leaf = NO_NODE;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public long key() {
+            checkPositioned();
+            return OffHeapBplusTree.this.key(leaf, pos);
+        }
+
+        @Override
+        public long value() {
+            checkPositioned();
+            return payload(leaf, pos);
+        }
+
+        private void checkPositioned() {
+            if (!positioned || leaf == NO_NODE) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package fox.btree;
+
+/**
+ * The {@link InvariantChecker} for an {@link OffHeapBplusTree}. As well as the usual structural checks it makes sure
+ * every allocated slot is reachable from the root, so slots freed by merges are not leaked.
+ */
+public class OffHeapInvariantChecker {
+
+    private OffHeapBplusTree tree;
+    private int branchingFactor;
+    private int leafDepth;
+    private int prevLeaf;
+    private int nodes;
+    private int keys;
+
+    void checkInvariants(OffHeapBplusTree tree) {
+        this.tree = tree;
+        branchingFactor = tree.branchingFactor();
+        leafDepth = -1;
+        prevLeaf = OffHeapBplusTree.NO_NODE;
+        nodes = 0;
+        keys = 0;
+        int root = tree.root();
+        assertTrue("root node must be a root", tree.parent(root) == OffHeapBplusTree.NO_NODE);
+        checkInvariants(root, null, null, 0);
+        assertTrue("last leaf must not have a next leaf", tree.next(prevLeaf) == OffHeapBplusTree.NO_NODE);
+        assertTrue("reachable nodes " + nodes + " != allocated " + tree.nodeCount(), nodes == tree.nodeCount());
+        assertTrue("keys " + keys + " != key count " + tree.keyCount(), keys == tree.keyCount());
+    }
+
+    private void checkInvariants(int node, Long greaterThanOrEqual, Long lessThan, int depth) {
+        nodes++;
+        int numKeys = tree.numKeys(node);
+        int parent = tree.parent(node);
+        boolean leaf = tree.isLeaf(node);
+
+        if (parent != OffHeapBplusTree.NO_NODE) {
+            boolean found = false;
+            for (int i = 0; i < tree.numKeys(parent); i++) {
+                if (tree.child(parent, i) == node) {
+                    found = true;
+                    break;
+                }
+            }
+            assertTrue("parent child relationship inconsistent in node " + node, found);
+        }
+
+        if (leaf) {
+            keys += numKeys;
+            // Invariant: all leaves must be at same depth
+            if (leafDepth != -1) {
+                assertTrue("leaves at different depths", leafDepth == depth);
+            } else {
+                leafDepth = depth;
+            }
+            // Invariant: leaves are visited left to right so each must be linked to the one visited before it
+            assertTrue("leaf " + node + " prev link inconsistent", tree.prev(node) == prevLeaf);
+            if (prevLeaf != OffHeapBplusTree.NO_NODE) {
+                assertTrue("leaf " + prevLeaf + " next link inconsistent", tree.next(prevLeaf) == node);
+            }
+            prevLeaf = node;
+        }
+
+        // Invariants on number of keys
+        if (parent == OffHeapBplusTree.NO_NODE) {
+            if (leaf) {
+                assertTrue("leaf root node num keys must be <= B - 1", numKeys <= branchingFactor - 1);
+            } else {
+                assertTrue("non leaf root node num keys must be >= 2", numKeys >= 2);
+                assertTrue("non leaf root node num keys must be <= B", numKeys <= branchingFactor);
+            }
+        } else if (leaf) {
+            assertTrue("leaf node num keys must be >= B / 2 - 1", numKeys >= branchingFactor / 2 - 1);
+            assertTrue("leaf node num keys must be <= B - 1", numKeys <= branchingFactor - 1);
+        } else {
+            assertTrue("internal node num keys must be >= B / 2", numKeys >= branchingFactor / 2);
+            assertTrue("internal node num keys must be <= B", numKeys <= branchingFactor);
+        }
+
+        // The left most key in a left most child is never used so it doesn't have to match its subtree
+        int start = parent == OffHeapBplusTree.NO_NODE || tree.child(parent, 0) == node ? 1 : 0;
+        Long prev = null;
+        for (int i = start; i < numKeys; i++) {
+            long key = tree.key(node, i);
+            if (greaterThanOrEqual != null) {
+                assertTrue("key:" + key + " not >=" + greaterThanOrEqual, key >= greaterThanOrEqual);
+            }
+            if (lessThan != null) {
+                assertTrue("key:" + key + " lt:" + lessThan, key < lessThan);
+            }
+            if (prev != null) {
+                assertTrue("keys not in sorted order in node " + node, key > prev);
+            }
+            prev = key;
+        }
+
+        // Recurse
+        if (!leaf) {
+            for (int i = 0; i < numKeys; i++) {
+                Long gOrE = i == 0 ? null : tree.key(node, i);
+                Long less = i < numKeys - 1 ? tree.key(node, i + 1) : null;
+                checkInvariants(tree.child(node, i), gOrE, less, depth + 1);
+            }
+        }
+    }
+
+    private void assertTrue(String msg, boolean ok) {
+        if (!ok) {
+            throw new IllegalStateException(msg);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package fox.btree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file of fixed size pages. Page N lives at byte offset N * pageSize. Page 0 is the header:
+ * <pre>
+ *  0  magic       int
+ *  4  pageSize    int
+ *  8  nextUnused  int    - the first page that has never been allocated
+ *  12 freeHead    int    - the first page on the free list or NO_SLOT
+ *  16 freeCount   int
+ *  24 metadata    long[METADATA_SLOTS]
+ * </pre>
+ * Pages are read and written whole, in native byte order, by a {@link BufferPool} which also manages the header.
+ */
+public class PageFile {
+
+    static final int MAGIC = 0x42545245;
+    static final int MAGIC_OFFSET = 0;
+    static final int PAGE_SIZE_OFFSET = 4;
+    static final int NEXT_UNUSED_OFFSET = 8;
+    static final int FREE_HEAD_OFFSET = 12;
+    static final int FREE_COUNT_OFFSET = 16;
+    static final int METADATA_OFFSET = 24;
+    static final int HEADER_SIZE = METADATA_OFFSET + 8 * NodeStore.METADATA_SLOTS;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int pageSize;
+    private final ByteBuffer header;
+
+    /**
+     * Open the file, creating it if it doesn't exist or is empty.
+     *
+     * @param pageSize the page size, which must match the one the file was created with
+     */
+    public PageFile(Path path, int pageSize) {
+        if (pageSize < HEADER_SIZE) {
+            throw new IllegalArgumentException("pageSize must be >= " + HEADER_SIZE);
+        }
+        this.path = path;
+        this.pageSize = pageSize;
+        this.header = ByteBuffer.allocate(pageSize).order(ByteOrder.nativeOrder());
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            if (channel.size() == 0) {
+                header.putInt(MAGIC_OFFSET, MAGIC);
+                header.putInt(PAGE_SIZE_OFFSET, pageSize);
+                header.putInt(NEXT_UNUSED_OFFSET, 1);
+                header.putInt(FREE_HEAD_OFFSET, NodeStore.NO_SLOT);
+                writeHeader();
+            } else {
+                read(0, header, 0);
+                if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+                    throw new IllegalArgumentException(path + " is not a page file");
+                }
+                if (header.getInt(PAGE_SIZE_OFFSET) != pageSize) {
+                    throw new IllegalArgumentException(path + " has page size " + header.getInt(PAGE_SIZE_OFFSET));
+                }
+            }
+        } catch (IOException e) {
+            closeAfter(e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeAfter(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Close the channel when the constructor fails, as nobody else can.
+     */
+    private void closeAfter(Exception failure) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * Read a page into dest at the given offset. Pages past the end of the file read as zeros.
+     */
+    void read(int page, ByteBuffer dest, int offset) {
+        ByteBuffer buf = dest.duplicate();
+        buf.limit(offset + pageSize).position(offset);
+        long pos = (long) page * pageSize;
+        try {
+            while (buf.hasRemaining()) {
+                int read = channel.read(buf, pos);
+                if (read < 0) {
+                    while (buf.hasRemaining()) {
+                        buf.put((byte) 0);
+                    }
+                    break;
+                }
+                pos += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void write(int page, ByteBuffer src, int offset) {
+        ByteBuffer buf = src.duplicate();
+        buf.limit(offset + pageSize).position(offset);
+        long pos = (long) page * pageSize;
+        try {
+            while (buf.hasRemaining()) {
+                pos += channel.write(buf, pos);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    int headerInt(int offset) {
+        return header.getInt(offset);
+    }
+
+    void setHeaderInt(int offset, int value) {
+        header.putInt(offset, value);
+    }
+
+    long metadata(int index) {
+        return header.getLong(METADATA_OFFSET + 8 * index);
+    }
+
+    void setMetadata(int index, long value) {
+        header.putLong(METADATA_OFFSET + 8 * index, value);
+    }
+
+    void writeHeader() {
+        write(0, header, 0);
+    }
+
+    void sync() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package fox.btree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Bulk building and range purging for a {@link BasicBplusTree}, with the work on the leaves shared out over a
+ * {@link ForkJoinPool}.
+ * <p>
+ * A build sorts the entries in parallel, works out the size of every leaf up front and then fills runs of leaves
+ * concurrently. A purge removes the keys in each range from runs of leaves concurrently, without any rebalancing, and
+ * then repairs the tree in one pass. In both cases the internal levels are built over the finished leaves by the
+ * {@link BulkLoader} - they hold only around one entry per leaf so there is little to gain from building them in
+ * parallel. Leaves are allocated and released by the calling thread, as the tree's node pool and node numbering aren't
+ * thread safe, so the tasks only ever touch the contents of their own leaves.
+ */
+class ParallelBulkLoader {
+
+    // Runs of leaves at most this long are processed by a single task
+    private static final int LEAVES_PER_TASK = 64;
+
+    private final BasicBplusTree tree;
+    private final BulkLoader loader;
+    private final ForkJoinPool pool;
+
+    ParallelBulkLoader(BasicBplusTree tree, double fillFactor, ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool must be specified");
+        }
+        this.tree = tree;
+        this.loader = new BulkLoader(tree, fillFactor);
+        this.pool = pool;
+    }
+
+    @SuppressWarnings("unchecked")
+    void load(Collection<? extends Map.Entry<? extends Comparable, ?>> entries) {
+        if (tree.keyCount() != 0) {
+            throw new IllegalStateException("Can only bulk load an empty tree");
+        }
+        Map.Entry<? extends Comparable, ?>[] sorted = entries.toArray(new Map.Entry[0]);
+        if (sorted.length == 0) {
+            return;
+        }
+        // Sorting from inside the pool keeps all its subtasks in the pool
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                Arrays.parallelSort(sorted, (e1, e2) -> key(e1).compareTo(key(e2)));
+            }
+        });
+        // Check for duplicates before touching the tree, so a bad load leaves it as it was
+        for (int i = 1; i < sorted.length; i++) {
+            if (key(sorted[i]).compareTo(key(sorted[i - 1])) == 0) {
+                throw new IllegalArgumentException("duplicate key " + sorted[i].getKey());
+            }
+        }
+        tree.resetIfEmpty();
+
+        int b = tree.branchingFactor();
+        int[] sizes = BulkLoader.groupSizes(sorted.length, loader.leafTarget(), b / 2 - 1, b - 1);
+        List<BaseNode> leaves = new ArrayList<>(sizes.length);
+        int[] offsets = new int[sizes.length];
+        // The empty root leaf of the new tree becomes the first leaf
+        LeafNode leaf = (LeafNode) tree.getRoot();
+        leaves.add(leaf);
+        for (int i = 1; i < sizes.length; i++) {
+            LeafNode next = tree.newLeaf();
+            next.linkAfter(leaf);
+            leaves.add(next);
+            leaf = next;
+            offsets[i] = offsets[i - 1] + sizes[i - 1];
+        }
+
+        pool.invoke(new FillLeaves(sorted, leaves, sizes, offsets, 0, leaves.size()));
+        tree.addKeyCount(sorted.length);
+        loader.buildInternalLevels(leaves);
+    }
+
+    /**
+     * @return the number of keys removed
+     */
+    int purge(Collection<KeyRange> ranges) {
+        KeyRange[] sorted = ranges.toArray(new KeyRange[0]);
+        Arrays.sort(sorted, (r1, r2) -> r1.from() == null || r2.from() == null
+                ? Boolean.compare(r2.from() == null, r1.from() == null) : r1.from().compareTo(r2.from()));
+        for (int i = 1; i < sorted.length; i++) {
+            if (!sorted[i - 1].before(sorted[i])) {
+                throw new IllegalArgumentException("ranges " + sorted[i - 1] + " and " + sorted[i] + " overlap");
+            }
+        }
+        if (sorted.length == 0 || tree.keyCount() == 0) {
+            return 0;
+        }
+
+        List<LeafNode> leaves = new ArrayList<>();
+        for (LeafNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next()) {
+            leaves.add(leaf);
+        }
+        int removed = pool.invoke(new PurgeLeaves(sorted, leaves, 0, leaves.size()));
+        if (removed > 0) {
+            tree.addKeyCount(-removed);
+            rebalance(leaves);
+        }
+        return removed;
+    }
+
+    /**
+     * Merge or even up the leaves left under the minimum by a purge, dropping the empty ones, and rebuild the internal
+     * levels over what is left.
+     */
+    private void rebalance(List<LeafNode> leaves) {
+        int b = tree.branchingFactor();
+        int min = b / 2 - 1;
+        Node root = tree.getRoot();
+        if (!root.isLeaf()) {
+            releaseInternals((InternalNode) root);
+        }
+
+        List<BaseNode> kept = new ArrayList<>();
+        for (LeafNode leaf : leaves) {
+            if (leaf.numKeys() == 0) {
+                leaf.unlink();
+                tree.release(leaf);
+                continue;
+            }
+            if (!kept.isEmpty()) {
+                LeafNode prev = (LeafNode) kept.get(kept.size() - 1);
+                int total = prev.numKeys() + leaf.numKeys();
+                if (prev.numKeys() < min || leaf.numKeys() < min) {
+                    if (total <= b - 1) {
+                        prev.absorbNext();
+                        tree.release(leaf);
+                        continue;
+                    }
+                    if (prev.numKeys() > total / 2) {
+                        prev.moveTailToNext(prev.numKeys() - total / 2);
+                    } else {
+                        leaf.moveHeadToPrev(total / 2 - prev.numKeys());
+                    }
+                }
+            }
+            leaf.setParent(null);
+            kept.add(leaf);
+        }
+        if (kept.isEmpty()) {
+            // Everything was removed
+            kept.add(tree.newLeaf());
+        }
+        loader.buildInternalLevels(kept);
+    }
+
+    private void releaseInternals(InternalNode node) {
+        for (int i = 0; i < node.numChildren(); i++) {
+            Node child = node.getChild(i);
+            if (!child.isLeaf()) {
+                releaseInternals((InternalNode) child);
+            }
+        }
+        tree.release(node);
+    }
+
+    private static Comparable key(Map.Entry<? extends Comparable, ?> entry) {
+        Comparable key = entry.getKey();
+        if (key == null) {
+            throw new IllegalArgumentException("null key");
+        }
+        return key;
+    }
+
+    private static class FillLeaves extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Map.Entry<? extends Comparable, ?>[] sorted;
+        private final List<BaseNode> leaves;
+        private final int[] sizes;
+        private final int[] offsets;
+        private final int lo;
+        private final int hi;
+
+        FillLeaves(Map.Entry<? extends Comparable, ?>[] sorted, List<BaseNode> leaves, int[] sizes, int[] offsets,
+                   int lo, int hi) {
+            this.sorted = sorted;
+            this.leaves = leaves;
+            this.sizes = sizes;
+            this.offsets = offsets;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > LEAVES_PER_TASK) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new FillLeaves(sorted, leaves, sizes, offsets, lo, mid),
+                        new FillLeaves(sorted, leaves, sizes, offsets, mid, hi));
+                return;
+            }
+            for (int i = lo; i < hi; i++) {
+                ((LeafNode) leaves.get(i)).fill(sorted, offsets[i], sizes[i]);
+            }
+        }
+    }
+
+    private static class PurgeLeaves extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final KeyRange[] ranges;
+        private final List<LeafNode> leaves;
+        private final int lo;
+        private final int hi;
+
+        PurgeLeaves(KeyRange[] ranges, List<LeafNode> leaves, int lo, int hi) {
+            this.ranges = ranges;
+            this.leaves = leaves;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (hi - lo > LEAVES_PER_TASK) {
+                int mid = (lo + hi) >>> 1;
+                PurgeLeaves right = new PurgeLeaves(ranges, leaves, mid, hi);
+                right.fork();
+                int removed = new PurgeLeaves(ranges, leaves, lo, mid).compute();
+                return removed + right.join();
+            }
+            int removed = 0;
+            for (int i = lo; i < hi; i++) {
+                removed += purge(leaves.get(i));
+            }
+            return removed;
+        }
+
+        private int purge(LeafNode leaf) {
+            if (leaf.numKeys() == 0) {
+                return 0;
+            }
+            Comparable last = leaf.getKey(leaf.numKeys() - 1);
+            int before = leaf.numKeys();
+            for (int r = firstRange(leaf.getKey(0)); r < ranges.length; r++) {
+                KeyRange range = ranges[r];
+                if (range.from() != null && range.from().compareTo(last) > 0) {
+                    break;
+                }
+                int from = range.from() == null ? 0 : position(leaf, range.from());
+                int to = range.to() == null ? leaf.numKeys() : position(leaf, range.to());
+                if (from < to) {
+                    leaf.removeRange(from, to);
+                }
+            }
+            return before - leaf.numKeys();
+        }
+
+        /**
+         * @return the first range that isn't wholly before a key
+         */
+        private int firstRange(Comparable key) {
+            int low = 0;
+            int high = ranges.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                Comparable to = ranges[mid].to();
+                if (to != null && to.compareTo(key) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return the position of the first key in the leaf that is >= key
+         */
+        private static int position(LeafNode leaf, Comparable key) {
+            int i = leaf.search(key);
+            return i >= 0 ? i : -(i + 1);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package fox.btree;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A copy-on-write B+tree. Nodes are never modified: a write copies just the nodes on the path from the root to the
+ * leaf it changes, plus any sibling it has to split, borrow from or merge with, and then publishes a new
+ * {@link Snapshot} holding the new root. Every other node is shared with the previous version.
+ * <p>
+ * Readers and {@link #snapshot()} never block. Writers are serialized.
+ * <p>
+ * A version is reclaimed by the garbage collector once nothing refers to its snapshot, along with any nodes no later
+ * version shares. Handed out snapshots are watched with weak references so {@link #openSnapshots()} and
+ * {@link #reclaimedSnapshots()} show how many old versions are still being held on to.
+ */
+public class PersistentBplusTree {
+
+    private final int branchingFactor;
+    private final SearchStrategy searchStrategy;
+    private final ReferenceQueue<Snapshot> reclaimed = new ReferenceQueue<>();
+    private final Set<Reference<Snapshot>> open = ConcurrentHashMap.newKeySet();
+    private volatile Snapshot current;
+    private volatile long reclaimedSnapshots;
+
+    // Only touched by the writer
+    private int nodeCount;
+    private long nodesCopied;
+    private PersistentNode splitRight;
+    private boolean found;
+
+    public PersistentBplusTree(int branchingFactor) {
+        this(branchingFactor, SearchStrategy.forBranchingFactor(branchingFactor));
+    }
+
+    public PersistentBplusTree(int branchingFactor, SearchStrategy searchStrategy) {
+        if (branchingFactor < 4) {
+            throw new IllegalArgumentException("branchingFactor must be >= 4");
+        }
+        if (searchStrategy == null) {
+            throw new IllegalArgumentException("searchStrategy must be specified");
+        }
+        this.branchingFactor = branchingFactor;
+        this.searchStrategy = searchStrategy;
+        this.current = new Snapshot(newNode(new Comparable[0], new Object[0], null), 0, 0, searchStrategy);
+    }
+
+    public Object find(Comparable key) {
+        return current.find(key);
+    }
+
+    public synchronized void insert(Comparable key, Object value) {
+        Snapshot snapshot = current;
+        found = false;
+        PersistentNode root = insert(snapshot.root, key, value);
+        if (splitRight != null) {
+            root = newNode(new Comparable[]{root.keys[0], splitRight.keys[0]}, null,
+                    new PersistentNode[]{root, splitRight});
+            splitRight = null;
+        }
+        publish(root, snapshot.keyCount() + (found ? 0 : 1));
+    }
+
+    public synchronized Object remove(Comparable key) {
+        Snapshot snapshot = current;
+        found = false;
+        Object[] removed = new Object[1];
+        PersistentNode root = remove(snapshot.root, key, removed);
+        if (!found) {
+            return null;
+        }
+        if (!root.isLeaf() && root.children.length == 1) {
+            root = root.children[0];
+        }
+        publish(root, snapshot.keyCount() - 1);
+        return removed[0];
+    }
+
+    /**
+     * @return the current version of the tree
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = current;
+        if (!snapshot.tracked) {
+            synchronized (open) {
+                if (!snapshot.tracked) {
+                    snapshot.tracked = true;
+                    open.add(new WeakReference<>(snapshot, reclaimed));
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    public Cursor scan(Comparable from, boolean fromInclusive, Comparable to, boolean toInclusive) {
+        return current.scan(from, fromInclusive, to, toInclusive);
+    }
+
+    public Cursor scan() {
+        return current.scan();
+    }
+
+    public int keyCount() {
+        return current.keyCount();
+    }
+
+    /**
+     * @return the total number of nodes created, by copying or otherwise, since the tree was created
+     */
+    public synchronized int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the number of nodes written by inserts and removes. Comparing this with the number of writes and the
+     * height of the tree shows how much is shared between versions.
+     */
+    public synchronized long nodesCopied() {
+        return nodesCopied;
+    }
+
+    /**
+     * @return how many snapshots that have been handed out are still reachable
+     */
+    public int openSnapshots() {
+        expunge();
+        return open.size();
+    }
+
+    /**
+     * @return how many snapshots that had been handed out have been garbage collected
+     */
+    public long reclaimedSnapshots() {
+        expunge();
+        return reclaimedSnapshots;
+    }
+
+    int branchingFactor() {
+        return branchingFactor;
+    }
+
+    /**
+     * @return the current version without tracking it
+     */
+    Snapshot current() {
+        return current;
+    }
+
+    private void expunge() {
+        Reference<? extends Snapshot> ref;
+        while ((ref = reclaimed.poll()) != null) {
+            if (open.remove(ref)) {
+                synchronized (open) {
+                    reclaimedSnapshots++;
+                }
+            }
+        }
+    }
+
+    private void publish(PersistentNode root, int keyCount) {
+        current = new Snapshot(root, keyCount, current.version() + 1, searchStrategy);
+    }
+
+    /**
+     * @return the copy of the node with the entry added. If it had to split the new right hand node is left in
+     * splitRight.
+     */
+    private PersistentNode insert(PersistentNode node, Comparable key, Object value) {
+        if (node.isLeaf()) {
+            int i = searchStrategy.search(node.keys, 0, node.keys.length, key);
+            if (i >= 0) {
+                found = true;
+                Object[] values = node.values.clone();
+                values[i] = value;
+                return copy(node.keys, values, null);
+            }
+            i = -(i + 1);
+            return splitIfNeeded(insertInArray(node.keys, i, key), insertInArray(node.values, i, value), null);
+        }
+        int ci = childIndex(node, key);
+        PersistentNode child = insert(node.children[ci], key, value);
+        PersistentNode right = splitRight;
+        splitRight = null;
+        if (right == null) {
+            PersistentNode[] children = node.children.clone();
+            children[ci] = child;
+            // The keys haven't changed so the array can be shared
+            return copy(node.keys, null, children);
+        }
+        PersistentNode[] children = insertInArray(node.children, ci + 1, right);
+        children[ci] = child;
+        return splitIfNeeded(insertInArray(node.keys, ci + 1, right.keys[0]), null, children);
+    }
+
+    private PersistentNode splitIfNeeded(Comparable[] keys, Object[] values, PersistentNode[] children) {
+        if (keys.length <= maxKeys(children == null)) {
+            return copy(keys, values, children);
+        }
+        int half = keys.length / 2;
+        splitRight = copy(Arrays.copyOfRange(keys, half, keys.length),
+                values == null ? null : Arrays.copyOfRange(values, half, values.length),
+                children == null ? null : Arrays.copyOfRange(children, half, children.length));
+        return copy(Arrays.copyOf(keys, half),
+                values == null ? null : Arrays.copyOf(values, half),
+                children == null ? null : Arrays.copyOf(children, half));
+    }
+
+    /**
+     * @return the copy of the node with the key removed, which may be underfull, or the node itself if the key isn't
+     * there
+     */
+    private PersistentNode remove(PersistentNode node, Comparable key, Object[] removed) {
+        if (node.isLeaf()) {
+            int i = searchStrategy.search(node.keys, 0, node.keys.length, key);
+            if (i < 0) {
+                return node;
+            }
+            found = true;
+            removed[0] = node.values[i];
+            return copy(removeFromArray(node.keys, i), removeFromArray(node.values, i), null);
+        }
+        int ci = childIndex(node, key);
+        PersistentNode child = remove(node.children[ci], key, removed);
+        if (!found) {
+            return node;
+        }
+        Comparable[] keys = node.keys;
+        PersistentNode[] children = node.children.clone();
+        children[ci] = child;
+        if (child.keys.length < minKeys(child.isLeaf())) {
+            // Rebalance with the left sibling if there is one, otherwise the right
+            int left = ci > 0 ? ci - 1 : ci;
+            PersistentNode merged = join(children[left], children[left + 1], keys[left + 1]);
+            if (merged.keys.length <= maxKeys(merged.isLeaf())) {
+                children[left] = merged;
+                children = removeFromArray(children, left + 1);
+                keys = removeFromArray(keys, left + 1);
+            } else {
+                // Too many to merge, so share them out evenly instead
+                children[left] = splitIfNeeded(merged.keys, merged.values, merged.children);
+                children[left + 1] = splitRight;
+                splitRight = null;
+                keys = keys.clone();
+                keys[left + 1] = children[left + 1].keys[0];
+            }
+        }
+        return copy(keys, null, children);
+    }
+
+    /**
+     * Concatenate two adjacent nodes. Not counted as a copy as it's always either kept as a merge or split again.
+     */
+    private PersistentNode join(PersistentNode left, PersistentNode right, Comparable separator) {
+        Comparable[] keys = concat(left.keys, right.keys);
+        if (left.isLeaf()) {
+            return new PersistentNode(-1, keys, concat(left.values, right.values), null);
+        }
+        // The right node's lower bound becomes the key for its first child
+        keys[left.keys.length] = separator;
+        return new PersistentNode(-1, keys, null, concat(left.children, right.children));
+    }
+
+    private PersistentNode copy(Comparable[] keys, Object[] values, PersistentNode[] children) {
+        nodesCopied++;
+        return newNode(keys, values, children);
+    }
+
+    private PersistentNode newNode(Comparable[] keys, Object[] values, PersistentNode[] children) {
+        return new PersistentNode(nodeCount++, keys, values, children);
+    }
+
+    private int childIndex(PersistentNode node, Comparable key) {
+        int i = searchStrategy.search(node.keys, 1, node.keys.length, key);
+        return i >= 0 ? i : -(i + 2);
+    }
+
+    private int maxKeys(boolean leaf) {
+        return leaf ? branchingFactor - 1 : branchingFactor;
+    }
+
+    private int minKeys(boolean leaf) {
+        return leaf ? branchingFactor / 2 - 1 : branchingFactor / 2;
+    }
+
+    private static <T> T[] insertInArray(T[] arr, int pos, T val) {
+        T[] result = Arrays.copyOf(arr, arr.length + 1);
+        System.arraycopy(arr, pos, result, pos + 1, arr.length - pos);
+        result[pos] = val;
+        return result;
+    }
+
+    private static <T> T[] removeFromArray(T[] arr, int pos) {
+        T[] result = Arrays.copyOf(arr, arr.length - 1);
+        System.arraycopy(arr, pos + 1, result, pos, arr.length - pos - 1);
+        return result;
+    }
+
+    private static <T> T[] concat(T[] first, T[] second) {
+        T[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -0,0 +1,102 @@
+package fox.btree;
+
+/**
+ * The {@link InvariantChecker} for one version of a {@link PersistentBplusTree}. Nodes don't know their parents so
+ * whether a node is the root or left most on its level is passed down instead.
+ */
+public class PersistentInvariantChecker {
+
+    private int branchingFactor;
+    private int leafDepth;
+    private int keyCount;
+
+    void checkInvariants(Snapshot snapshot, int branchingFactor) {
+        this.branchingFactor = branchingFactor;
+        leafDepth = -1;
+        keyCount = 0;
+        checkInvariants(snapshot.root, true, true, null, null, 0);
+        assertEquals(snapshot.keyCount(), keyCount);
+    }
+
+    private void checkInvariants(PersistentNode node, boolean root, boolean leftMost, Comparable greaterThanOrEqual,
+                                 Comparable lessThan, int depth) {
+
+        if (node.isLeaf()) {
+            assertEquals(node.keys.length, node.values.length);
+            keyCount += node.keys.length;
+
+            // Invariant: all leaves must be at same depth
+            if (leafDepth != -1) {
+                assertEquals(leafDepth, depth);
+            } else {
+                leafDepth = depth;
+            }
+        } else {
+            assertEquals(node.keys.length, node.children.length);
+        }
+
+        // Invariants on number of keys
+        if (root) {
+            if (node.isLeaf()) {
+                assertTrue("leaf root node num keys must be <= B - 1", node.keys.length <= branchingFactor - 1);
+            } else {
+                assertTrue("non leaf root node num keys must be >= 2", node.keys.length >= 2);
+                assertTrue("non leaf root node num keys must be <= B", node.keys.length <= branchingFactor);
+            }
+        } else if (node.isLeaf()) {
+            assertTrue("leaf node num keys must be >= B / 2 - 1", node.keys.length >= branchingFactor / 2 - 1);
+            assertTrue("leaf node num keys must be <= B - 1", node.keys.length <= branchingFactor - 1);
+        } else {
+            assertTrue("internal node num keys must be >= B / 2", node.keys.length >= branchingFactor / 2);
+            assertTrue("internal node num keys must be <= B", node.keys.length <= branchingFactor);
+        }
+
+        // The left most key of a left most internal node is never used so it doesn't have to match its subtree
+        int start = leftMost && !node.isLeaf() ? 1 : 0;
+
+        Comparable prev = null;
+        for (int i = start; i < node.keys.length; i++) {
+            Comparable key = node.keys[i];
+
+            // Invariant: key range
+            if (greaterThanOrEqual != null) {
+                assertTrue("key:" + key + " not >=" + greaterThanOrEqual, key.compareTo(greaterThanOrEqual) >= 0);
+            }
+            if (lessThan != null) {
+                assertTrue("key:" + key + " lt:" + lessThan, key.compareTo(lessThan) < 0);
+            }
+
+            // Check the values are correct for a leaf
+            if (node.isLeaf()) {
+                assertEquals("val" + key, node.values[i]);
+            }
+
+            // Invariant: keys must be in sorted order
+            if (prev != null) {
+                assertTrue("keys not in sorted order in node " + node.getNodeNum(), key.compareTo(prev) > 0);
+            }
+            prev = key;
+        }
+
+        // Recurse
+        if (!node.isLeaf()) {
+            for (int i = 0; i < node.keys.length; i++) {
+                Comparable gOrE = i == 0 ? greaterThanOrEqual : node.keys[i];
+                Comparable less = i < node.keys.length - 1 ? node.keys[i + 1] : lessThan;
+                checkInvariants(node.children[i], false, leftMost && i == 0, gOrE, less, depth + 1);
+            }
+        }
+    }
+
+    private void assertTrue(String msg, boolean ok) {
+        if (!ok) {
+            throw new IllegalStateException(msg);
+        }
+    }
+
+    private void assertEquals(Object object1, Object object2) {
+        if (!object1.equals(object2)) {
+            throw new IllegalStateException("Not equal " + object1 + " " + object2);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package fox.btree;
+
+/**
+ * An immutable node of a {@link PersistentBplusTree}. Nodes have no parent pointers or sibling links so a node can be
+ * shared by any number of versions of the tree.
+ */
+public final class PersistentNode {
+
+    final int nodeNum;
+    /**
+     * As in the other trees the zeroth key of an internal node is the lower bound of the node and isn't used for
+     * routing
+     */
+    final Comparable[] keys;
+    /**
+     * Leaves only
+     */
+    final Object[] values;
+    /**
+     * Internal nodes only, parallel to keys
+     */
+    final PersistentNode[] children;
+
+    PersistentNode(int nodeNum, Comparable[] keys, Object[] values, PersistentNode[] children) {
+        this.nodeNum = nodeNum;
+        this.keys = keys;
+        this.values = values;
+        this.children = children;
+    }
+
+    public boolean isLeaf() {
+        return children == null;
+    }
+
+    public int getNodeNum() {
+        return nodeNum;
+    }
+
+    public int numKeys() {
+        return keys.length;
+    }
+}
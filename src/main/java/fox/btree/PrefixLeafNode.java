@@ -0,0 +1,227 @@
+package fox.btree;
+
+/**
+ * A leaf for String keys which stores the prefix shared by all its keys once, and the rest of each key packed into a
+ * single char array, so a leaf of long keys with a common tenant/namespace costs one array rather than a String and
+ * its array per key.
+ * <p>
+ * Key i is {@code prefix + new String(chars, start(i), ends[i] - start(i))}, where start(0) is 0 and start(i) is
+ * {@code ends[i - 1]}. The first key into an empty leaf becomes the whole prefix, and inserting a key that doesn't
+ * start with the prefix re-encodes the leaf with the shorter prefix they share; splits and merges re-encode with the
+ * longest prefix the keys now share. Searches compare the key against the prefix once and then against the packed
+ * suffixes in place, without materialising any keys.
+ */
+class PrefixLeafNode extends LeafNode {
+
+    private String prefix = "";
+    private char[] chars = new char[0];
+    private int[] ends;
+
+    PrefixLeafNode(BasicBplusTree tree) {
+        super(tree);
+        ends = new int[tree.branchingFactor()];
+    }
+
+    @Override
+    Comparable[] newKeyArray(int size) {
+        return null;
+    }
+
+    @Override
+    int search(Comparable key) {
+        String str = asString(key);
+        int numKeys = numKeys();
+        int plen = prefix.length();
+        int common = Math.min(plen, str.length());
+        for (int i = 0; i < common; i++) {
+            int diff = str.charAt(i) - prefix.charAt(i);
+            if (diff != 0) {
+                return diff < 0 ? -1 : -(numKeys + 1);
+            }
+        }
+        if (str.length() < plen) {
+            // A proper prefix of the prefix, so less than every key
+            return -1;
+        }
+        int low = 0;
+        int high = numKeys - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comp = compareSuffix(mid, str, plen);
+            if (comp < 0) {
+                low = mid + 1;
+            } else if (comp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    @Override
+    public Comparable getKey(int pos) {
+        int start = start(pos);
+        return prefix.concat(new String(chars, start, ends[pos] - start));
+    }
+
+    @Override
+    void insertKey(int pos, Comparable key, int numKeys) {
+        String str = asString(key);
+        if (numKeys == 0) {
+            // Start with the longest possible prefix, later keys shrink it as needed
+            setKeys(new Comparable[]{str}, 1);
+            return;
+        }
+        if (!str.startsWith(prefix)) {
+            Comparable[] keys = new Comparable[numKeys + 1];
+            System.arraycopy(copyKeys(0, pos), 0, keys, 0, pos);
+            keys[pos] = str;
+            System.arraycopy(copyKeys(pos, numKeys), 0, keys, pos + 1, numKeys - pos);
+            setKeys(keys, numKeys + 1);
+            return;
+        }
+        int len = str.length() - prefix.length();
+        int used = ends[numKeys - 1];
+        if (used + len > chars.length) {
+            char[] grown = new char[Math.max(used + len, chars.length * 2)];
+            System.arraycopy(chars, 0, grown, 0, used);
+            chars = grown;
+        }
+        int start = start(pos);
+        System.arraycopy(chars, start, chars, start + len, used - start);
+        str.getChars(prefix.length(), str.length(), chars, start);
+        for (int i = numKeys; i > pos; i--) {
+            ends[i] = ends[i - 1] + len;
+        }
+        ends[pos] = start + len;
+    }
+
+    @Override
+    void removeKey(int pos, int numKeys) {
+        int start = start(pos);
+        int len = ends[pos] - start;
+        int used = ends[numKeys - 1];
+        System.arraycopy(chars, ends[pos], chars, start, used - ends[pos]);
+        for (int i = pos; i < numKeys - 1; i++) {
+            ends[i] = ends[i + 1] - len;
+        }
+        ends[numKeys - 1] = 0;
+    }
+
+    @Override
+    void removeKeys(int from, int to, int numKeys) {
+        // What is left may share a longer prefix, so it is re-encoded
+        setKeys(concat(copyKeys(0, from), copyKeys(to, numKeys)), numKeys - (to - from));
+    }
+
+    @Override
+    Comparable[] copyKeys(int from, int to) {
+        Comparable[] copy = new Comparable[to - from];
+        for (int i = from; i < to; i++) {
+            copy[i - from] = getKey(i);
+        }
+        return copy;
+    }
+
+    @Override
+    void setKeys(Comparable[] src, int count) {
+        String newPrefix = "";
+        int total = 0;
+        if (count > 0) {
+            // The keys are sorted so the prefix shared by the first and last is shared by all of them
+            String first = asString(src[0]);
+            newPrefix = first.substring(0, commonPrefix(first, asString(src[count - 1])));
+            for (int i = 0; i < count; i++) {
+                total += asString(src[i]).length() - newPrefix.length();
+            }
+        }
+        char[] newChars = new char[total];
+        int end = 0;
+        for (int i = 0; i < count; i++) {
+            String str = (String) src[i];
+            str.getChars(newPrefix.length(), str.length(), newChars, end);
+            end += str.length() - newPrefix.length();
+            ends[i] = end;
+        }
+        for (int i = count; i < ends.length; i++) {
+            ends[i] = 0;
+        }
+        prefix = newPrefix;
+        chars = newChars;
+    }
+
+    @Override
+    void moveKeysTo(LeafNode dest, int from) {
+        // Both halves are re-encoded, as each may now share a longer prefix
+        int numKeys = numKeys();
+        dest.setKeys(copyKeys(from, numKeys), numKeys - from);
+        setKeys(copyKeys(0, from), from);
+    }
+
+    @Override
+    void appendKeysFrom(LeafNode src) {
+        setKeys(concat(copyKeys(0, numKeys()), src.copyKeys(0, src.numKeys())), numKeys() + src.numKeys());
+    }
+
+    /**
+     * The shortest prefix of the right leaf's first key that is still greater than this leaf's last key.
+     */
+    @Override
+    Comparable separatorTo(LeafNode right) {
+        if (numKeys() == 0) {
+            return right.getKey(0);
+        }
+        String last = (String) getKey(numKeys() - 1);
+        String first = (String) right.getKey(0);
+        return first.substring(0, Math.min(commonPrefix(last, first) + 1, first.length()));
+    }
+
+    /**
+     * @return the number of chars used to store the keys, the prefix once plus every suffix
+     */
+    int storedChars() {
+        return prefix.length() + (numKeys() == 0 ? 0 : ends[numKeys() - 1]);
+    }
+
+    String prefix() {
+        return prefix;
+    }
+
+    private int start(int pos) {
+        return pos == 0 ? 0 : ends[pos - 1];
+    }
+
+    /**
+     * Compare stored key pos with str, both from offset plen, in the same way as {@link String#compareTo}.
+     */
+    private int compareSuffix(int pos, String str, int plen) {
+        int start = start(pos);
+        int len = ends[pos] - start;
+        int strLen = str.length() - plen;
+        int lim = Math.min(len, strLen);
+        for (int i = 0; i < lim; i++) {
+            int diff = chars[start + i] - str.charAt(plen + i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return len - strLen;
+    }
+
+    private static int commonPrefix(String s1, String s2) {
+        int lim = Math.min(s1.length(), s2.length());
+        int i = 0;
+        while (i < lim && s1.charAt(i) == s2.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String asString(Comparable key) {
+        if (!(key instanceof String)) {
+            throw new IllegalArgumentException("prefix compressed leaves only support String keys, not " + key);
+        }
+        return (String) key;
+    }
+}
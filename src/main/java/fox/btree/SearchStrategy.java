@@ -0,0 +1,37 @@
+package fox.btree;
+
+/**
+ * Locates a key within the sorted key array of a node.
+ * <p>
+ * Implementations follow the contract of {@link java.util.Arrays#binarySearch(Object[], int, int, Object)}: the
+ * index of the key if it is present in {@code keys[from, to)}, otherwise {@code -(insertionPoint + 1)}.
+ */
+public interface SearchStrategy {
+
+    SearchStrategy LINEAR = new LinearSearch();
+
+    SearchStrategy BINARY = new BinarySearch();
+
+    SearchStrategy BRANCHLESS_BINARY = new BranchlessBinarySearch();
+
+    SearchStrategy INTERPOLATION = new InterpolationSearch();
+
+    /**
+     * For trees whose keys are all {@link ByteKey}s, see {@link KeyEncoder}
+     */
+    SearchStrategy UNSIGNED_BYTES = new UnsignedBytesSearch();
+
+    /**
+     * Nodes up to this size are small enough that a linear scan beats binary search
+     */
+    int LINEAR_THRESHOLD = 16;
+
+    int search(Comparable[] keys, int from, int to, Comparable key);
+
+    /**
+     * Pick a sensible default strategy for a tree with the given branching factor.
+     */
+    static SearchStrategy forBranchingFactor(int branchingFactor) {
+        return branchingFactor <= LINEAR_THRESHOLD ? LINEAR : BINARY;
+    }
+}
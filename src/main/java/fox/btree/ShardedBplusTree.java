@@ -0,0 +1,566 @@
+package fox.btree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * A thread safe B+Tree split into range partitions, each a {@link BasicBplusTree} owned by a single thread.
+ * <p>
+ * Every operation on a shard, reads included, runs as a task on the shard's own thread, so the trees need no latching
+ * and writes to different shards go ahead in parallel. Callers route a key to its shard under the read side of a lock
+ * on the partition bounds, hand the operation over and wait for its result. A scan walks the shards in key order a
+ * chunk at a time, resuming each chunk from the last key it saw, so each chunk is consistent but the scan as a whole
+ * sees writes made while it runs.
+ * <p>
+ * Each shard checks every so many writes whether any shard holds more than the skew limit times the average number of
+ * keys, and if so asks a balancer thread to even them out. The balancer takes the write side of the bounds lock, which
+ * holds up routing while it moves the keys at the ends of neighbouring shards across and shifts the bounds between
+ * them. Operations already handed to a shard run before its part of a move.
+ */
+public class ShardedBplusTree {
+
+    /**
+     * Writes a shard does between checks for skew
+     */
+    private static final int SKEW_CHECK_INTERVAL = 1024;
+    /**
+     * Fewest keys per shard on average before the shards are worth rebalancing
+     */
+    private static final int MIN_BALANCE_SIZE = 1024;
+    private static final int SCAN_CHUNK = 256;
+
+    private final Shard[] shards;
+    private final double maxSkew;
+    private final StampedLock boundsLock = new StampedLock();
+    // The lowest key each shard can hold, null for the first. A shard with the same bound as the next one is empty.
+    private final Comparable[] lowerBounds;
+    private final ExecutorService balancer = Executors.newSingleThreadExecutor(daemon("btree-balancer"));
+    private final AtomicBoolean balanceRequested = new AtomicBoolean();
+    private volatile int rebalances;
+    private volatile long keysMoved;
+
+    /**
+     * Shards that are rebalanced once one holds more than twice the average number of keys.
+     *
+     * @see #ShardedBplusTree(int, Comparable[], double)
+     */
+    public ShardedBplusTree(int branchingFactor, Comparable... splitKeys) {
+        this(branchingFactor, splitKeys, 2.0);
+    }
+
+    /**
+     * @param splitKeys the keys to start the shards at in ascending order, one fewer than the number of shards. They
+     *                  only need to be a rough guess, as the bounds move with the keys.
+     * @param maxSkew   how many times the average number of keys a shard can hold before the shards are rebalanced,
+     *                  or infinity to only rebalance when {@link #rebalance()} is called
+     */
+    public ShardedBplusTree(int branchingFactor, Comparable[] splitKeys, double maxSkew) {
+        if (!(maxSkew > 1)) {
+            throw new IllegalArgumentException("maxSkew must be > 1");
+        }
+        for (int i = 0; i < splitKeys.length; i++) {
+            if (splitKeys[i] == null) {
+                throw new IllegalArgumentException("splitKeys must not be null");
+            }
+            if (i > 0 && splitKeys[i].compareTo(splitKeys[i - 1]) <= 0) {
+                throw new IllegalArgumentException("splitKeys must be in ascending order");
+            }
+        }
+        this.maxSkew = maxSkew;
+        this.lowerBounds = new Comparable[splitKeys.length + 1];
+        System.arraycopy(splitKeys, 0, lowerBounds, 1, splitKeys.length);
+        this.shards = new Shard[lowerBounds.length];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, new BasicBplusTree(branchingFactor));
+        }
+    }
+
+    public void insert(Comparable key, Object value) {
+        await(submit(key, true, tree -> {
+            tree.insert(key, value);
+            return null;
+        }));
+    }
+
+    public Object find(Comparable key) {
+        return await(submit(key, false, tree -> tree.find(key)));
+    }
+
+    public Object remove(Comparable key) {
+        return await(submit(key, true, tree -> tree.remove(key)));
+    }
+
+    /**
+     * Insert or update a batch of entries. The batch is split up by shard and each shard applies its part as one
+     * {@link BasicBplusTree#putAll} batch, in parallel with the others.
+     */
+    public void putAll(Map<? extends Comparable, ?> batch) {
+        List<Future<BatchResult>> results = new ArrayList<>();
+        long stamp = boundsLock.readLock();
+        try {
+            List<Map<Comparable, Object>> parts = new ArrayList<>();
+            for (int i = 0; i < shards.length; i++) {
+                parts.add(new HashMap<>());
+            }
+            for (Map.Entry<? extends Comparable, ?> entry : batch.entrySet()) {
+                parts.get(shardFor(entry.getKey())).put(entry.getKey(), entry.getValue());
+            }
+            for (int i = 0; i < shards.length; i++) {
+                Map<Comparable, Object> part = parts.get(i);
+                if (!part.isEmpty()) {
+                    results.add(shards[i].write(part.size(), tree -> tree.putAll(part)));
+                }
+            }
+        } finally {
+            boundsLock.unlockRead(stamp);
+        }
+        for (Future<BatchResult> result : results) {
+            await(result);
+        }
+    }
+
+    /**
+     * Scan the entries between two keys in ascending order. A null bound means the range is unbounded at that end.
+     */
+    public Cursor scan(Comparable from, boolean fromInclusive, Comparable to, boolean toInclusive) {
+        return new ShardCursor(from, fromInclusive, to, toInclusive);
+    }
+
+    public Cursor scan() {
+        return scan(null, true, null, true);
+    }
+
+    /**
+     * Move the bounds between the shards so they each hold as near as possible the same number of keys. Every other
+     * operation waits while this runs.
+     *
+     * @return the number of keys moved from one shard to another
+     */
+    public int rebalance() {
+        long stamp = boundsLock.writeLock();
+        try {
+            int[] sizes = new int[shards.length];
+            long total = 0;
+            for (int i = 0; i < shards.length; i++) {
+                sizes[i] = await(shards[i].read(BasicBplusTree::keyCount));
+                total += sizes[i];
+            }
+            // First push any excess below each bound up into the next shard. After that no bound has more than its
+            // share of the keys below it, so pulling any shortfall back down, working from the top, always finds the
+            // keys it needs in the shard above.
+            int moved = 0;
+            for (int bound = 1; bound < shards.length; bound++) {
+                long excess = keysBelow(bound, sizes) - total * bound / shards.length;
+                if (excess > 0) {
+                    moved += moveUp(bound, (int) excess, sizes);
+                }
+            }
+            for (int bound = shards.length - 1; bound > 0; bound--) {
+                long shortfall = total * bound / shards.length - keysBelow(bound, sizes);
+                if (shortfall > 0) {
+                    moved += moveDown(bound, (int) shortfall, sizes);
+                }
+            }
+            rebalances++;
+            keysMoved += moved;
+            return moved;
+        } finally {
+            boundsLock.unlockWrite(stamp);
+        }
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @return the number of keys in each shard as of its last write
+     */
+    public int[] shardSizes() {
+        int[] sizes = new int[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            sizes[i] = shards[i].size;
+        }
+        return sizes;
+    }
+
+    /**
+     * @return the number of keys in all the shards as of their last writes
+     */
+    public long keyCount() {
+        long count = 0;
+        for (Shard shard : shards) {
+            count += shard.size;
+        }
+        return count;
+    }
+
+    public int rebalances() {
+        return rebalances;
+    }
+
+    public long keysMoved() {
+        return keysMoved;
+    }
+
+    /**
+     * Stop the balancer and the shards' threads once the operations already handed to them have run. The tree can't
+     * be used after this.
+     */
+    public void close() {
+        balancer.shutdown();
+        awaitTermination(balancer);
+        for (Shard shard : shards) {
+            shard.owner.shutdown();
+        }
+        for (Shard shard : shards) {
+            awaitTermination(shard.owner);
+        }
+    }
+
+    /**
+     * @return a copy of the lowest key each shard can hold
+     */
+    Comparable[] lowerBounds() {
+        long stamp = boundsLock.readLock();
+        try {
+            return lowerBounds.clone();
+        } finally {
+            boundsLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Run something against a shard's tree on the shard's thread and wait for it.
+     */
+    <T> T onShard(int shard, Function<BasicBplusTree, T> op) {
+        return await(shards[shard].read(op));
+    }
+
+    private <T> Future<T> submit(Comparable key, boolean write, Function<BasicBplusTree, T> op) {
+        long stamp = boundsLock.readLock();
+        try {
+            Shard shard = shards[shardFor(key)];
+            return write ? shard.write(1, op) : shard.read(op);
+        } finally {
+            boundsLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the shard a key belongs in. Must hold the bounds lock.
+     */
+    private int shardFor(Comparable key) {
+        // The last shard with a lower bound <= key, which skips over any empty shards
+        int low = 1;
+        int high = lowerBounds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lowerBounds[mid].compareTo(key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Move the highest keys of the shard below a bound up into the shard above, lowering the bound.
+     *
+     * @return the number of keys moved, which is fewer than asked for if that would empty the first shard
+     */
+    private int moveUp(int bound, int count, int[] sizes) {
+        int size = sizes[bound - 1];
+        if (count >= size && bound == 1) {
+            // The first shard has no lower bound to shrink down to
+            count = size - 1;
+        }
+        if (count <= 0) {
+            return 0;
+        }
+        int keep = size - count;
+        Comparable newBound = keep == 0 ? lowerBounds[bound - 1]
+                : await(shards[bound - 1].read(tree -> tree.select(keep)));
+        Map<Comparable, Object> entries = await(shards[bound - 1].write(count,
+                tree -> take(tree, newBound, true, null, false)));
+        await(shards[bound].write(count, tree -> tree.putAll(entries)));
+        lowerBounds[bound] = newBound;
+        sizes[bound - 1] -= count;
+        sizes[bound] += count;
+        return count;
+    }
+
+    /**
+     * Move the lowest keys of the shard above a bound down into the shard below, raising the bound.
+     *
+     * @return the number of keys moved, which is fewer than asked for if that would empty the last shard
+     */
+    private int moveDown(int bound, int count, int[] sizes) {
+        int size = sizes[bound];
+        if (count >= size && bound == shards.length - 1) {
+            // The last shard has no upper bound to grow up to
+            count = size - 1;
+        }
+        if (count <= 0) {
+            return 0;
+        }
+        int first = count;
+        Comparable newBound = count == size ? lowerBounds[bound + 1]
+                : await(shards[bound].read(tree -> tree.select(first)));
+        Map<Comparable, Object> entries = await(shards[bound].write(count,
+                tree -> take(tree, null, true, newBound, false)));
+        await(shards[bound - 1].write(count, tree -> tree.putAll(entries)));
+        lowerBounds[bound] = newBound;
+        sizes[bound] -= count;
+        sizes[bound - 1] += count;
+        return count;
+    }
+
+    private static long keysBelow(int bound, int[] sizes) {
+        long count = 0;
+        for (int i = 0; i < bound; i++) {
+            count += sizes[i];
+        }
+        return count;
+    }
+
+    /**
+     * Remove the entries in a range from a tree.
+     *
+     * @return the entries removed, in key order
+     */
+    private static Map<Comparable, Object> take(BasicBplusTree tree, Comparable from, boolean fromInclusive,
+                                                Comparable to, boolean toInclusive) {
+        Map<Comparable, Object> entries = new LinkedHashMap<>();
+        Cursor cursor = tree.scan(from, fromInclusive, to, toInclusive);
+        while (cursor.next()) {
+            entries.put(cursor.key(), cursor.value());
+        }
+        for (Comparable key : entries.keySet()) {
+            tree.remove(key);
+        }
+        return entries;
+    }
+
+    private boolean skewed() {
+        long total = 0;
+        int largest = 0;
+        for (Shard shard : shards) {
+            total += shard.size;
+            largest = Math.max(largest, shard.size);
+        }
+        double average = (double) total / shards.length;
+        return average >= MIN_BALANCE_SIZE && largest > maxSkew * average;
+    }
+
+    private void requestBalance() {
+        if (balanceRequested.compareAndSet(false, true)) {
+            try {
+                balancer.execute(() -> {
+                    try {
+                        if (skewed()) {
+                            rebalance();
+                        }
+                    } finally {
+                        balanceRequested.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Closed, so there is nothing left to balance. The write that asked has still been applied.
+                balanceRequested.set(false);
+            }
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a shard", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // keep waiting for the queued operations
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A partition's tree and the thread that owns it.
+     */
+    private final class Shard {
+
+        final BasicBplusTree tree;
+        final ExecutorService owner;
+        // Only written by the owner
+        volatile int size;
+        private int writes;
+
+        Shard(int index, BasicBplusTree tree) {
+            this.tree = tree;
+            this.owner = Executors.newSingleThreadExecutor(daemon("btree-shard-" + index));
+        }
+
+        <T> Future<T> read(Function<BasicBplusTree, T> op) {
+            return owner.submit(() -> op.apply(tree));
+        }
+
+        /**
+         * @param count how many keys the write touches, towards the next check for skew
+         */
+        <T> Future<T> write(int count, Function<BasicBplusTree, T> op) {
+            return owner.submit(() -> {
+                try {
+                    return op.apply(tree);
+                } finally {
+                    size = tree.keyCount();
+                    int before = writes;
+                    writes += count;
+                    if (before / SKEW_CHECK_INTERVAL != writes / SKEW_CHECK_INTERVAL && skewed()) {
+                        requestBalance();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Fetches the range a chunk at a time from whichever shard holds the next key.
+     */
+    private final class ShardCursor implements Cursor {
+
+        private final Comparable to;
+        private final boolean toInclusive;
+        // Where the next chunk starts
+        private Comparable from;
+        private boolean fromInclusive;
+        private boolean exhausted;
+
+        private final Comparable[] keys = new Comparable[SCAN_CHUNK];
+        private final Object[] values = new Object[SCAN_CHUNK];
+        private int count;
+        private int pos = -1;
+
+        ShardCursor(Comparable from, boolean fromInclusive, Comparable to, boolean toInclusive) {
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+        }
+
+        @Override
+        public boolean next() {
+            pos++;
+            while (pos >= count) {
+                if (exhausted) {
+                    return false;
+                }
+                fetch();
+                pos = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public Comparable key() {
+            checkPositioned();
+            return keys[pos];
+        }
+
+        @Override
+        public Object value() {
+            checkPositioned();
+            return values[pos];
+        }
+
+        private void checkPositioned() {
+            if (pos < 0 || pos >= count) {
+                throw new NoSuchElementException();
+            }
+        }
+
+        private void fetch() {
+            Comparable start = from;
+            boolean startInclusive = fromInclusive;
+            Comparable shardEnd;
+            Future<Integer> chunk;
+            long stamp = boundsLock.readLock();
+            try {
+                int shard = start == null ? 0 : shardFor(start);
+                shardEnd = shard + 1 < shards.length ? lowerBounds[shard + 1] : null;
+                if (shardEnd != null && to != null && shardEnd.compareTo(to) >= 0) {
+                    // The range ends in this shard
+                    shardEnd = null;
+                }
+                Comparable end = shardEnd == null ? to : shardEnd;
+                boolean endInclusive = shardEnd == null && toInclusive;
+                chunk = shards[shard].read(tree -> fill(tree, start, startInclusive, end, endInclusive));
+            } finally {
+                boundsLock.unlockRead(stamp);
+            }
+            count = await(chunk);
+            if (count == SCAN_CHUNK) {
+                from = keys[count - 1];
+                fromInclusive = false;
+            } else if (shardEnd != null) {
+                from = shardEnd;
+                fromInclusive = true;
+            } else {
+                exhausted = true;
+            }
+        }
+
+        /**
+         * Copy up to a chunk of entries from a range of a shard's tree. Runs on the shard's thread.
+         */
+        private int fill(BasicBplusTree tree, Comparable start, boolean startInclusive, Comparable end,
+                         boolean endInclusive) {
+            Cursor cursor = tree.scan(start, startInclusive, end, endInclusive);
+            int n = 0;
+            while (n < SCAN_CHUNK && cursor.next()) {
+                keys[n] = cursor.key();
+                values[n] = cursor.value();
+                n++;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package fox.btree;
+
+/**
+ * The {@link InvariantChecker} for a {@link ShardedBplusTree}. Checks each shard's tree on the shard's own thread, and
+ * that the bounds are in order and every key is inside its shard's bounds. The tree must not be written to while it
+ * is being checked.
+ */
+public class ShardedInvariantChecker {
+
+    void checkInvariants(ShardedBplusTree tree) {
+        Comparable[] lowerBounds = tree.lowerBounds();
+        assertTrue("first shard must have no lower bound", lowerBounds[0] == null);
+        for (int i = 1; i < lowerBounds.length; i++) {
+            assertTrue("shard " + i + " must have a lower bound", lowerBounds[i] != null);
+            assertTrue("shard " + i + " lower bound out of order",
+                    i == 1 || lowerBounds[i].compareTo(lowerBounds[i - 1]) >= 0);
+        }
+        int[] sizes = tree.shardSizes();
+        for (int i = 0; i < lowerBounds.length; i++) {
+            int shard = i;
+            Comparable lower = lowerBounds[i];
+            Comparable upper = i + 1 < lowerBounds.length ? lowerBounds[i + 1] : null;
+            tree.onShard(i, shardTree -> {
+                new InvariantChecker().checkInvariants(shardTree);
+                assertTrue("shard " + shard + " size " + sizes[shard] + " != key count " + shardTree.keyCount(),
+                        sizes[shard] == shardTree.keyCount());
+                if (shardTree.keyCount() > 0) {
+                    Comparable first = shardTree.select(0);
+                    Comparable last = shardTree.select(shardTree.keyCount() - 1);
+                    assertTrue("key " + first + " below shard " + shard + " lower bound " + lower,
+                            lower == null || first.compareTo(lower) >= 0);
+                    assertTrue("key " + last + " not below shard " + shard + " upper bound " + upper,
+                            upper == null || last.compareTo(upper) < 0);
+                }
+                return null;
+            });
+        }
+    }
+
+    private void assertTrue(String msg, boolean ok) {
+        if (!ok) {
+            throw new IllegalStateException(msg);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package fox.btree;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands out fixed size slots carved out of large direct memory slabs.
+ * <p>
+ * A slot is identified by an int: the high bits select the slab and the low bits the slot within it. Released slots
+ * go on a free list which is threaded through the slots themselves, so the allocator keeps no per slot state on the
+ * heap.
+ */
+public class SlabAllocator implements NodeStore {
+
+    private final int slotSize;
+    private final int slotsPerSlabShift;
+    private final int slotMask;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final long[] metadata = new long[METADATA_SLOTS];
+
+    private int nextUnused;
+    private int freeHead = NO_SLOT;
+    private int freeCount;
+
+    /**
+     * @param slotSize     the size of each slot in bytes, at least 4
+     * @param slotsPerSlab the number of slots in each slab, must be a power of 2
+     */
+    public SlabAllocator(int slotSize, int slotsPerSlab) {
+        if (slotSize < 4) {
+            throw new IllegalArgumentException("slotSize must be >= 4");
+        }
+        if (slotsPerSlab <= 0 || Integer.bitCount(slotsPerSlab) != 1) {
+            throw new IllegalArgumentException("slotsPerSlab must be a power of 2");
+        }
+        if ((long) slotSize * slotsPerSlab > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("slab size must be < 2GB");
+        }
+        this.slotSize = slotSize;
+        this.slotsPerSlabShift = Integer.numberOfTrailingZeros(slotsPerSlab);
+        this.slotMask = slotsPerSlab - 1;
+    }
+
+    @Override
+    public int allocate() {
+        if (freeHead != NO_SLOT) {
+            int slot = freeHead;
+            freeHead = buffer(slot).getInt(offset(slot));
+            freeCount--;
+            return slot;
+        }
+        int slot = nextUnused;
+        if ((slot >>> slotsPerSlabShift) == slabs.size()) {
+            slabs.add(ByteBuffer.allocateDirect(slotSize << slotsPerSlabShift).order(ByteOrder.nativeOrder()));
+        }
+        nextUnused++;
+        return slot;
+    }
+
+    @Override
+    public void free(int slot) {
+        buffer(slot).putInt(offset(slot), freeHead);
+        freeHead = slot;
+        freeCount++;
+    }
+
+    @Override
+    public ByteBuffer buffer(int slot) {
+        return slabs.get(slot >>> slotsPerSlabShift);
+    }
+
+    @Override
+    public ByteBuffer writableBuffer(int slot) {
+        return buffer(slot);
+    }
+
+    @Override
+    public int offset(int slot) {
+        return (slot & slotMask) * slotSize;
+    }
+
+    @Override
+    public int slotSize() {
+        return slotSize;
+    }
+
+    @Override
+    public int usedSlots() {
+        return nextUnused - freeCount;
+    }
+
+    @Override
+    public int freeSlots() {
+        return freeCount;
+    }
+
+    /**
+     * @return the total direct memory reserved by the slabs
+     */
+    @Override
+    public long reservedBytes() {
+        return (long) slabs.size() * (slotSize << slotsPerSlabShift);
+    }
+
+    @Override
+    public long metadata(int index) {
+        return metadata[index];
+    }
+
+    @Override
+    public void setMetadata(int index, long value) {
+        metadata[index] = value;
+    }
+
+    /**
+     * Drop the slabs. The direct memory is returned once the buffers are collected.
+     */
+    @Override
+    public void release() {
+        slabs.clear();
+        nextUnused = 0;
+        freeHead = NO_SLOT;
+        freeCount = 0;
+    }
+}
@@ -0,0 +1,167 @@
+package fox.btree;
+
+import java.util.NoSuchElementException;
+
+/**
+ * One immutable version of a {@link PersistentBplusTree}. Taking a snapshot is O(1) and it stays valid and unchanged
+ * however the tree is modified afterwards.
+ */
+public final class Snapshot {
+
+    final PersistentNode root;
+    private final int keyCount;
+    private final long version;
+    private final SearchStrategy searchStrategy;
+    /**
+     * Set once the snapshot has been handed out and is being watched for reclamation
+     */
+    volatile boolean tracked;
+
+    Snapshot(PersistentNode root, int keyCount, long version, SearchStrategy searchStrategy) {
+        this.root = root;
+        this.keyCount = keyCount;
+        this.version = version;
+        this.searchStrategy = searchStrategy;
+    }
+
+    public Object find(Comparable key) {
+        PersistentNode node = root;
+        while (!node.isLeaf()) {
+            node = node.children[childIndex(node, key)];
+        }
+        int i = searchStrategy.search(node.keys, 0, node.keys.length, key);
+        return i >= 0 ? node.values[i] : null;
+    }
+
+    /**
+     * Scan the entries between two keys in ascending order.
+     *
+     * @param from the lowest key, or null to start at the first entry
+     * @param to the highest key, or null to carry on to the last entry
+     */
+    public Cursor scan(Comparable from, boolean fromInclusive, Comparable to, boolean toInclusive) {
+        return new PathCursor(from, fromInclusive, to, toInclusive);
+    }
+
+    public Cursor scan() {
+        return scan(null, true, null, true);
+    }
+
+    public int keyCount() {
+        return keyCount;
+    }
+
+    /**
+     * @return the number of writes made to the tree before this version
+     */
+    public long version() {
+        return version;
+    }
+
+    private int childIndex(PersistentNode node, Comparable key) {
+        int i = searchStrategy.search(node.keys, 1, node.keys.length, key);
+        return i >= 0 ? i : -(i + 2);
+    }
+
+    /**
+     * There are no leaf links to follow so the cursor keeps the path from the root to its leaf and moves across to the
+     * next leaf by going back up to the nearest ancestor with another child.
+     */
+    private final class PathCursor implements Cursor {
+
+        private final Comparable end;
+        private final boolean endInclusive;
+        private final PersistentNode[] path;
+        private final int[] positions;
+        private PersistentNode leaf;
+        private int pos;
+        private boolean positioned;
+
+        PathCursor(Comparable from, boolean fromInclusive, Comparable to, boolean toInclusive) {
+            this.end = to;
+            this.endInclusive = toInclusive;
+            int height = 0;
+            for (PersistentNode node = root; !node.isLeaf(); node = node.children[0]) {
+                height++;
+            }
+            path = new PersistentNode[height];
+            positions = new int[height];
+            PersistentNode node = root;
+            for (int level = 0; level < height; level++) {
+                path[level] = node;
+                positions[level] = from == null ? 0 : childIndex(node, from);
+                node = node.children[positions[level]];
+            }
+            leaf = node;
+            if (from == null) {
+                pos = 0;
+            } else {
+                int i = searchStrategy.search(leaf.keys, 0, leaf.keys.length, from);
+                pos = i >= 0 ? (fromInclusive ? i : i + 1) : -(i + 1);
+            }
+        }
+
+        @Override
+        public boolean next() {
+            if (leaf == null) {
+                return false;
+            }
+            if (positioned) {
+                pos++;
+            }
+            positioned = true;
+            while (pos >= leaf.keys.length) {
+                if (!nextLeaf()) {
+                    leaf = null;
+                    return false;
+                }
+                pos = 0;
+            }
+            if (end != null) {
+                int comp = leaf.keys[pos].compareTo(end);
+                if (comp > 0 || (comp == 0 && !endInclusive)) {
+                    leaf = null;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean nextLeaf() {
+            int level = path.length - 1;
+            while (level >= 0 && positions[level] == path[level].children.length - 1) {
+                level--;
+            }
+            if (level < 0) {
+                return false;
+            }
+            positions[level]++;
+            PersistentNode node = path[level].children[positions[level]];
+            for (level++; level < path.length; level++) {
+                path[level] = node;
+                positions[level] = 0;
+                node = node.children[0];
+            }
+            leaf = node;
+            return true;
+        }
+
+        @Override
+        public Comparable key() {
+            checkPositioned();
+            return leaf.keys[pos];
+        }
+
+        @Override
+        public Object value() {
+            checkPositioned();
+            return leaf.values[pos];
+        }
+
+        private void checkPositioned() {
+            if (!positioned || leaf == null) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package fox.btree;
+
+/**
+ * Where a {@link BasicBplusTree} splits a full node.
+ * <p>
+ * The skewed policies only apply at the edges of the tree, where keys beyond all the existing ones arrive. A node
+ * split there is left full and the new key (or child) starts a node of its own, so a run of ascending keys fills
+ * every node instead of leaving a trail of half full ones. Nodes on that edge can be under the minimum as a result,
+ * which is only temporary while the run continues. Nodes away from the edges are always split in the middle, as
+ * interior nodes have to stay at least half full.
+ */
+public enum SplitPolicy {
+
+    /**
+     * Always split in the middle, leaving both halves half full.
+     */
+    MIDDLE,
+
+    /**
+     * For keys that are mostly ascending, such as timestamps or sequence ids. Inserting a key past the end of the
+     * last leaf when it is full starts a new leaf holding only that key.
+     */
+    APPEND,
+
+    /**
+     * For keys that are mostly descending. Inserting a key before the start of the first leaf when it is full starts
+     * a new leaf holding only that key.
+     */
+    PREPEND,
+
+    /**
+     * Split the edge leaves like {@link #APPEND} or {@link #PREPEND} when the previous insert into the same leaf was
+     * at the same end, so a sequential run is under way, and in the middle otherwise. Internal nodes on either edge
+     * are split like they are for APPEND and PREPEND.
+     */
+    AUTO;
+
+    /**
+     * @return true if nodes on the right edge of the tree may be split to leave the new node under the minimum
+     */
+    boolean skewsRight() {
+        return this == APPEND || this == AUTO;
+    }
+
+    /**
+     * @return true if nodes on the left edge of the tree may be split to leave the old node under the minimum
+     */
+    boolean skewsLeft() {
+        return this == PREPEND || this == AUTO;
+    }
+}
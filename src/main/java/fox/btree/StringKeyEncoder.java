@@ -0,0 +1,25 @@
+package fox.btree;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes Strings as their UTF-8 bytes, with each zero byte written as 0x00 0xFF and the end marked by 0x00 0x00. The
+ * terminator sorts before any escaped zero or other byte, so a string sorts before every longer string it is a prefix
+ * of, even when it is followed by more parts of a composite key.
+ * <p>
+ * UTF-8 orders by code point, which is the same as {@link String#compareTo} except that supplementary characters sort
+ * after chars in the range U+E000 to U+FFFF rather than before them.
+ */
+class StringKeyEncoder implements KeyEncoder<String> {
+
+    @Override
+    public void encode(String value, ByteKey.Builder out) {
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            out.writeByte(b);
+            if (b == 0) {
+                out.writeByte(0xFF);
+            }
+        }
+        out.writeByte(0).writeByte(0);
+    }
+}
@@ -0,0 +1,50 @@
+package fox.btree;
+
+/**
+ * The hooks a {@link BasicBplusTree} calls as it works. This base class ignores them all, so while metrics are
+ * disabled each hook is an empty call the JIT can inline away, and nothing is timed. {@link TreeStats} records them.
+ */
+class TreeMetrics {
+
+    static final TreeMetrics DISABLED = new TreeMetrics();
+
+    /**
+     * @return the time an operation started, to pass to the matching done hook, or 0 when operations aren't timed
+     */
+    long startTimer() {
+        return 0;
+    }
+
+    void insertDone(long start) {
+    }
+
+    void findDone(long start) {
+    }
+
+    void removeDone(long start) {
+    }
+
+    void leafSplit() {
+    }
+
+    void internalSplit() {
+    }
+
+    void steal() {
+    }
+
+    void merge() {
+    }
+
+    void rootChanged(Node root) {
+    }
+
+    void nodeCreated(Node node) {
+    }
+
+    void nodeReleased(Node node) {
+    }
+
+    void comparisons(int count) {
+    }
+}
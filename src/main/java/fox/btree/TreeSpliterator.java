@@ -0,0 +1,141 @@
+package fox.btree;
+
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the entries of a {@link BasicBplusTree} between two positions in key order. The positions come
+ * from the subtree counts in the internal nodes, so the size is always exact. A split divides the range at the child
+ * boundary closest to the middle, going down towards the leaves until it finds one in the middle half of the range,
+ * so the halves are even but still cover whole subtrees wherever they can.
+ * <p>
+ * The tree must not be modified while the spliterator is in use.
+ */
+class TreeSpliterator implements Spliterator<Map.Entry<Comparable, Object>> {
+
+    private final BasicBplusTree tree;
+    // Positions of the next entry and one past the last entry
+    private int lo;
+    private final int hi;
+    // Where the next entry is, found on the first advance
+    private LeafNode leaf;
+    private int pos;
+
+    TreeSpliterator(BasicBplusTree tree, int lo, int hi) {
+        this.tree = tree;
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Map.Entry<Comparable, Object>> action) {
+        if (lo >= hi) {
+            return false;
+        }
+        if (leaf == null) {
+            locate();
+        }
+        action.accept(new AbstractMap.SimpleImmutableEntry<>(leaf.getKey(pos), leaf.getValue(pos)));
+        lo++;
+        if (++pos == leaf.numKeys() && lo < hi) {
+            // Skipping any leaves a relaxed tree has left empty
+            do {
+                leaf = leaf.next();
+            } while (leaf.numKeys() == 0);
+            pos = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Map.Entry<Comparable, Object>> action) {
+        while (tryAdvance(action)) {
+            // keep going
+        }
+    }
+
+    @Override
+    public Spliterator<Map.Entry<Comparable, Object>> trySplit() {
+        if (leaf != null || hi - lo < 2) {
+            // Already started, or nothing worth splitting
+            return null;
+        }
+        int mid = lo + (hi - lo) / 2;
+        int quarter = (hi - lo) / 4;
+        // The child boundary inside the range nearest the middle found so far
+        int split = -1;
+        Node node = tree.getRoot();
+        // Position of the first key under node
+        int base = 0;
+        while (!node.isLeaf()) {
+            InternalNode internal = (InternalNode) node;
+            int start = base;
+            int middle = -1;
+            for (int i = 0; i < internal.numChildren(); i++) {
+                int end = start + internal.childCount(i);
+                if (start > lo && start < hi && (split == -1 || Math.abs(start - mid) < Math.abs(split - mid))) {
+                    split = start;
+                }
+                if (middle == -1 && mid < end) {
+                    middle = i;
+                    base = start;
+                }
+                if (end >= hi) {
+                    break;
+                }
+                start = end;
+            }
+            if (split != -1 && Math.abs(split - mid) <= quarter) {
+                break;
+            }
+            // Nothing in the middle half of the range on this level, so look for a boundary nearer the middle under
+            // the child holding it
+            node = internal.getChild(middle);
+        }
+        if (split == -1) {
+            // The whole range is in one leaf
+            return null;
+        }
+        TreeSpliterator prefix = new TreeSpliterator(tree, lo, split);
+        lo = split;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return hi - lo;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | NONNULL;
+    }
+
+    @Override
+    public Comparator<? super Map.Entry<Comparable, Object>> getComparator() {
+        // The keys are in natural order, but entries aren't comparable
+        return Map.Entry.comparingByKey();
+    }
+
+    /**
+     * Find the leaf and position of the entry at lo.
+     */
+    private void locate() {
+        Node node = tree.getRoot();
+        int index = lo;
+        while (!node.isLeaf()) {
+            InternalNode internal = (InternalNode) node;
+            int i = 0;
+            while (index >= internal.childCount(i)) {
+                index -= internal.childCount(i);
+                i++;
+            }
+            node = internal.getChild(i);
+        }
+        leaf = (LeafNode) node;
+        pos = index;
+    }
+}
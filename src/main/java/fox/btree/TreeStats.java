@@ -0,0 +1,276 @@
+package fox.btree;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics for a {@link BasicBplusTree}, see {@link BasicBplusTree#enableMetrics()}: counts of the structural changes
+ * the tree makes, latency histograms for inserts, finds and removes, and gauges for the shape of the tree. Counters
+ * are striped so they stay cheap to update, and the gauges are kept up to date from the same hooks rather than by
+ * walking the tree, so every value can be read from any thread while the tree is in use.
+ * <p>
+ * Comparisons are only counted for the {@link SearchStrategy#LINEAR}, {@link SearchStrategy#BINARY} and
+ * {@link SearchStrategy#BRANCHLESS_BINARY} strategies, and not by leaves with {@link KeyCompression#PREFIX}.
+ */
+public class TreeStats extends TreeMetrics implements TreeStatsMBean {
+
+    private final BasicBplusTree tree;
+    private final LatencyHistogram inserts = new LatencyHistogram();
+    private final LatencyHistogram finds = new LatencyHistogram();
+    private final LatencyHistogram removes = new LatencyHistogram();
+    private final LongAdder leafSplits = new LongAdder();
+    private final LongAdder internalSplits = new LongAdder();
+    private final LongAdder steals = new LongAdder();
+    private final LongAdder merges = new LongAdder();
+    private final LongAdder rootChanges = new LongAdder();
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder leaves = new LongAdder();
+    private volatile int height;
+    private ObjectName objectName;
+
+    TreeStats(BasicBplusTree tree) {
+        this.tree = tree;
+        countNodes(tree.getRoot());
+        height = height(tree.getRoot());
+    }
+
+    /**
+     * Publish these metrics on the platform MBean server, under fox.btree:type=BasicBplusTree,name=[name].
+     */
+    public synchronized ObjectName register(String name) {
+        if (objectName != null) {
+            throw new IllegalStateException("Already registered as " + objectName);
+        }
+        try {
+            ObjectName on = new ObjectName("fox.btree:type=BasicBplusTree,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+            objectName = on;
+            return on;
+        } catch (JMException e) {
+            throw new IllegalStateException("Can't register " + name, e);
+        }
+    }
+
+    public synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                throw new IllegalStateException("Can't unregister " + objectName, e);
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    long startTimer() {
+        return System.nanoTime();
+    }
+
+    @Override
+    void insertDone(long start) {
+        inserts.record(System.nanoTime() - start);
+    }
+
+    @Override
+    void findDone(long start) {
+        finds.record(System.nanoTime() - start);
+    }
+
+    @Override
+    void removeDone(long start) {
+        removes.record(System.nanoTime() - start);
+    }
+
+    @Override
+    void leafSplit() {
+        leafSplits.increment();
+    }
+
+    @Override
+    void internalSplit() {
+        internalSplits.increment();
+    }
+
+    @Override
+    void steal() {
+        steals.increment();
+    }
+
+    @Override
+    void merge() {
+        merges.increment();
+    }
+
+    @Override
+    void rootChanged(Node root) {
+        rootChanges.increment();
+        height = height(root);
+    }
+
+    @Override
+    void nodeCreated(Node node) {
+        nodes.increment();
+        if (node.isLeaf()) {
+            leaves.increment();
+        }
+    }
+
+    @Override
+    void nodeReleased(Node node) {
+        nodes.decrement();
+        if (node.isLeaf()) {
+            leaves.decrement();
+        }
+    }
+
+    @Override
+    void comparisons(int count) {
+        comparisons.add(count);
+    }
+
+    @Override
+    public long getInsertCount() {
+        return inserts.count();
+    }
+
+    @Override
+    public long getInsertLatencyMedian() {
+        return inserts.percentile(0.5);
+    }
+
+    @Override
+    public long getInsertLatency99th() {
+        return inserts.percentile(0.99);
+    }
+
+    @Override
+    public long getInsertLatencyMax() {
+        return inserts.max();
+    }
+
+    @Override
+    public long getFindCount() {
+        return finds.count();
+    }
+
+    @Override
+    public long getFindLatencyMedian() {
+        return finds.percentile(0.5);
+    }
+
+    @Override
+    public long getFindLatency99th() {
+        return finds.percentile(0.99);
+    }
+
+    @Override
+    public long getFindLatencyMax() {
+        return finds.max();
+    }
+
+    @Override
+    public long getRemoveCount() {
+        return removes.count();
+    }
+
+    @Override
+    public long getRemoveLatencyMedian() {
+        return removes.percentile(0.5);
+    }
+
+    @Override
+    public long getRemoveLatency99th() {
+        return removes.percentile(0.99);
+    }
+
+    @Override
+    public long getRemoveLatencyMax() {
+        return removes.max();
+    }
+
+    @Override
+    public long getLeafSplits() {
+        return leafSplits.sum();
+    }
+
+    @Override
+    public long getInternalSplits() {
+        return internalSplits.sum();
+    }
+
+    @Override
+    public long getSiblingSteals() {
+        return steals.sum();
+    }
+
+    @Override
+    public long getMerges() {
+        return merges.sum();
+    }
+
+    @Override
+    public long getRootChanges() {
+        return rootChanges.sum();
+    }
+
+    @Override
+    public long getComparisons() {
+        return comparisons.sum();
+    }
+
+    @Override
+    public double getComparisonsPerOperation() {
+        long ops = inserts.count() + finds.count() + removes.count();
+        return ops == 0 ? 0 : (double) comparisons.sum() / ops;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public long getNodeCount() {
+        return nodes.sum();
+    }
+
+    @Override
+    public long getLeafCount() {
+        return leaves.sum();
+    }
+
+    @Override
+    public int getKeyCount() {
+        return tree.keyCount();
+    }
+
+    /**
+     * @return the fraction of the leaves' capacity in use
+     */
+    @Override
+    public double getAverageLeafFill() {
+        long numLeaves = leaves.sum();
+        return numLeaves == 0 ? 0 : (double) tree.keyCount() / (numLeaves * (tree.branchingFactor() - 1));
+    }
+
+    private void countNodes(Node node) {
+        nodeCreated(node);
+        if (!node.isLeaf()) {
+            for (int i = 0; i < node.numChildren(); i++) {
+                countNodes(node.getChild(i));
+            }
+        }
+    }
+
+    private static int height(Node root) {
+        int height = 1;
+        for (Node node = root; !node.isLeaf(); node = node.getChild(0)) {
+            height++;
+        }
+        return height;
+    }
+}
@@ -0,0 +1,55 @@
+package fox.btree;
+
+/**
+ * The metrics of a {@link BasicBplusTree} as published over JMX, see {@link TreeStats}. Latencies are in nanoseconds.
+ */
+public interface TreeStatsMBean {
+
+    long getInsertCount();
+
+    long getInsertLatencyMedian();
+
+    long getInsertLatency99th();
+
+    long getInsertLatencyMax();
+
+    long getFindCount();
+
+    long getFindLatencyMedian();
+
+    long getFindLatency99th();
+
+    long getFindLatencyMax();
+
+    long getRemoveCount();
+
+    long getRemoveLatencyMedian();
+
+    long getRemoveLatency99th();
+
+    long getRemoveLatencyMax();
+
+    long getLeafSplits();
+
+    long getInternalSplits();
+
+    long getSiblingSteals();
+
+    long getMerges();
+
+    long getRootChanges();
+
+    long getComparisons();
+
+    double getComparisonsPerOperation();
+
+    int getHeight();
+
+    long getNodeCount();
+
+    long getLeafCount();
+
+    int getKeyCount();
+
+    double getAverageLeafFill();
+}
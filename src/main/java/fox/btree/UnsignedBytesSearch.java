@@ -0,0 +1,27 @@
+package fox.btree;
+
+/**
+ * Binary search over {@link ByteKey}s, calling ByteKey's compareTo directly rather than through Comparable so the
+ * comparison is a monomorphic call that can be inlined. Every key in the tree must be a ByteKey.
+ */
+public class UnsignedBytesSearch implements SearchStrategy {
+
+    @Override
+    public int search(Comparable[] keys, int from, int to, Comparable key) {
+        ByteKey k = (ByteKey) key;
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comp = k.compareTo((ByteKey) keys[mid]);
+            if (comp > 0) {
+                low = mid + 1;
+            } else if (comp < 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
@@ -0,0 +1,381 @@
+package fox.btree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * An append only log of logical mutations, each a type and a long key and value, with group commit.
+ * <p>
+ * {@link #append} only buffers a record and returns its log sequence number. {@link #awaitDurable} blocks until the
+ * record is on disk. The first caller to need a sync becomes the leader: it waits up to the group commit delay for
+ * other callers to add to the batch, stopping early once the batch reaches the group commit size, then writes and
+ * fsyncs the whole batch while everyone else waits for it. One fsync covers every caller in the batch.
+ * <p>
+ * Record layout, big endian:
+ * <pre>
+ *  0  crc    int  - CRC32 of the rest of the record
+ *  4  type   byte
+ *  5  lsn    long
+ *  13 key    long
+ *  21 value  long
+ * </pre>
+ * A crash can leave a torn record at the end of the log. {@link #replay} stops at the first record that is short or
+ * fails its CRC and cuts the log off there.
+ */
+public class WriteAheadLog {
+
+    static final int RECORD_SIZE = 29;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long groupCommitNanos;
+    private final int groupCommitBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchFull = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final CRC32 crc = new CRC32();
+    private final long openedNanos = System.nanoTime();
+
+    private ByteBuffer pending;
+    private ByteBuffer writing;
+    private boolean flushing;
+    private IOException failure;
+    private long appendedLsn;
+    private long durableLsn;
+
+    private long bytesWritten;
+    private long fsyncs;
+
+    /**
+     * Open the log, creating it if it doesn't exist. Call {@link #replay} before appending to an existing log.
+     *
+     * @param groupCommitDelay the longest a sync waits for more records to join its batch, zero to sync straight away
+     * @param groupCommitBytes the batch size at which a sync stops waiting
+     */
+    public WriteAheadLog(Path path, long groupCommitDelay, TimeUnit unit, int groupCommitBytes) {
+        if (groupCommitDelay < 0) {
+            throw new IllegalArgumentException("groupCommitDelay must be >= 0");
+        }
+        this.path = path;
+        this.groupCommitNanos = unit.toNanos(groupCommitDelay);
+        this.groupCommitBytes = Math.max(groupCommitBytes, RECORD_SIZE);
+        int capacity = Math.max(this.groupCommitBytes, 4096);
+        this.pending = ByteBuffer.allocate(capacity);
+        this.writing = ByteBuffer.allocate(capacity);
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Receives records as they are replayed.
+     */
+    public interface RecordHandler {
+        void apply(byte type, long key, long value);
+    }
+
+    /**
+     * Replay the intact records after a log sequence number, then cut off anything after the last intact record so
+     * new records follow straight on from it.
+     *
+     * @return the number of records replayed
+     */
+    public long replay(long afterLsn, RecordHandler handler) {
+        lock.lock();
+        try {
+            ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE * 1024);
+            long pos = 0;
+            long replayed = 0;
+            long lastLsn = afterLsn;
+            channel.position(0);
+            outer:
+            while (true) {
+                buf.clear();
+                while (buf.hasRemaining() && channel.read(buf) > 0) {
+                    // fill the buffer
+                }
+                buf.flip();
+                if (buf.remaining() < RECORD_SIZE) {
+                    break;
+                }
+                while (buf.remaining() >= RECORD_SIZE) {
+                    int start = buf.position();
+                    int storedCrc = buf.getInt();
+                    crc.reset();
+                    crc.update(buf.array(), start + 4, RECORD_SIZE - 4);
+                    if ((int) crc.getValue() != storedCrc) {
+                        break outer;
+                    }
+                    byte type = buf.get();
+                    long lsn = buf.getLong();
+                    long key = buf.getLong();
+                    long value = buf.getLong();
+                    pos += RECORD_SIZE;
+                    if (lsn > lastLsn) {
+                        handler.apply(type, key, value);
+                        lastLsn = lsn;
+                        replayed++;
+                    }
+                }
+                // Go back for the part record at the end of the buffer
+                channel.position(pos);
+            }
+            channel.truncate(pos);
+            channel.position(pos);
+            appendedLsn = lastLsn;
+            durableLsn = lastLsn;
+            return replayed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Buffer a record. It isn't durable until {@link #awaitDurable} returns for its log sequence number.
+     *
+     * @throws UncheckedIOException if an earlier write failed, so the record could never be made durable
+     * @return the record's log sequence number
+     */
+    public long append(byte type, long key, long value) {
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw new UncheckedIOException("log write failed", failure);
+            }
+            if (pending.remaining() < RECORD_SIZE) {
+                ByteBuffer bigger = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                bigger.put(pending);
+                pending = bigger;
+            }
+            long lsn = ++appendedLsn;
+            int start = pending.position();
+            pending.putInt(0);
+            pending.put(type);
+            pending.putLong(lsn);
+            pending.putLong(key);
+            pending.putLong(value);
+            crc.reset();
+            crc.update(pending.array(), start + 4, RECORD_SIZE - 4);
+            pending.putInt(start, (int) crc.getValue());
+            if (pending.position() >= groupCommitBytes) {
+                batchFull.signal();
+            }
+            return lsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Block until the record with the log sequence number, and everything before it, is on disk.
+     *
+     * @throws IllegalArgumentException if no record with the log sequence number has been appended yet
+     */
+    public void awaitDurable(long lsn) {
+        lock.lock();
+        try {
+            if (lsn > appendedLsn) {
+                throw new IllegalArgumentException("lsn " + lsn + " has not been appended, last is " + appendedLsn);
+            }
+            while (durableLsn < lsn) {
+                if (failure != null) {
+                    // Whatever was in the failed batch is lost so nothing after it can be made durable
+                    throw new UncheckedIOException("log write failed", failure);
+                }
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                } else {
+                    flushBatch();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Make everything appended so far durable.
+     */
+    public void sync() {
+        long lsn;
+        lock.lock();
+        try {
+            lsn = appendedLsn;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Empty the log once everything in it, up to and including the given log sequence number, has been made durable
+     * some other way, e.g. by a checkpoint. Log sequence numbers carry on from where they were.
+     *
+     * @throws IllegalStateException if records have been appended after the log sequence number
+     */
+    public void truncate(long upToLsn) {
+        lock.lock();
+        try {
+            while (flushing) {
+                flushed.awaitUninterruptibly();
+            }
+            if (appendedLsn != upToLsn) {
+                throw new IllegalStateException("records appended after " + upToLsn);
+            }
+            channel.truncate(0);
+            pending.clear();
+            durableLsn = upToLsn;
+            flushed.signalAll();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the log sequence number of the last record known to be on disk
+     */
+    public long durableLsn() {
+        lock.lock();
+        try {
+            return durableLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if a write has failed, after which nothing more can be made durable
+     */
+    public boolean failed() {
+        lock.lock();
+        try {
+            return failure != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the log sequence number of the last record appended
+     */
+    public long lastLsn() {
+        lock.lock();
+        try {
+            return appendedLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long bytesWritten() {
+        lock.lock();
+        try {
+            return bytesWritten;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long fsyncs() {
+        lock.lock();
+        try {
+            return fsyncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the average rate bytes have been written since the log was opened
+     */
+    public double bytesPerSecond() {
+        return bytesWritten() / secondsOpen();
+    }
+
+    /**
+     * @return the average rate of fsyncs since the log was opened
+     */
+    public double fsyncsPerSecond() {
+        return fsyncs() / secondsOpen();
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * Sync and close the log.
+     */
+    public void close() {
+        sync();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lead one group commit. Called and returns with the lock held but doesn't hold it while writing.
+     */
+    private void flushBatch() {
+        flushing = true;
+        try {
+            long remaining = groupCommitNanos;
+            while (remaining > 0 && pending.position() < groupCommitBytes) {
+                try {
+                    remaining = batchFull.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            ByteBuffer batch = pending;
+            pending = writing;
+            writing = batch;
+            long batchLsn = appendedLsn;
+            int bytes = batch.position();
+            lock.unlock();
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException(e);
+            } finally {
+                lock.lock();
+                batch.clear();
+            }
+            bytesWritten += bytes;
+            fsyncs++;
+            durableLsn = Math.max(durableLsn, batchLsn);
+        } finally {
+            flushing = false;
+            flushed.signalAll();
+        }
+    }
+
+    private double secondsOpen() {
+        return Math.max(System.nanoTime() - openedNanos, 1) / 1e9;
+    }
+}
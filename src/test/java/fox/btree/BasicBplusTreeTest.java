@@ -7,9 +7,13 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.security.SecureRandom;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import static junit.framework.TestCase.*;
 import static org.junit.Assert.assertNotNull;
@@ -179,6 +183,252 @@ public class BasicBplusTreeTest {
         }
     }
 
+    @Test
+    public void testScanEmptyTree() {
+        assertFalse(tree.scan().next());
+        assertFalse(tree.descendingScan().next());
+        assertFalse(tree.scan(1, true, 10, true).next());
+    }
+
+    @Test
+    public void testScan() {
+        int numKeys = 1000;
+        for (int i = 0; i < numKeys; i++) {
+            // Only even keys so we can scan from keys which aren't present
+            tree.insert(i * 2, "val" + i * 2);
+        }
+        assertScan(tree.scan(), 0, numKeys * 2 - 2, false);
+        assertScan(tree.descendingScan(), numKeys * 2 - 2, 0, true);
+        assertScan(tree.scan(100, true, 200, true), 100, 200, false);
+        assertScan(tree.scan(100, false, 200, false), 102, 198, false);
+        assertScan(tree.scan(99, true, 201, true), 100, 200, false);
+        assertScan(tree.scan(null, true, 10, false), 0, 8, false);
+        assertScan(tree.scan(1990, true, null, true), 1990, 1998, false);
+        assertScan(tree.descendingScan(200, true, 100, true), 200, 100, true);
+        assertScan(tree.descendingScan(200, false, 100, false), 198, 102, true);
+        assertScan(tree.descendingScan(201, true, 99, true), 200, 100, true);
+        assertScan(tree.descendingScan(10, true, null, true), 10, 0, true);
+        assertFalse(tree.scan(5000, true, null, true).next());
+        assertFalse(tree.scan(101, true, 101, true).next());
+        assertFalse(tree.descendingScan(-1, true, null, true).next());
+    }
+
+    @Test
+    public void testScanAfterRandomInsertRemove() {
+        int numKeys = 1000;
+        Set<Integer> keys = new HashSet<>();
+        for (int i = 0; i < numKeys; i++) {
+            int key = randomInt(numKeys);
+            keys.add(key);
+            tree.insert(key, "val" + key);
+        }
+        for (int i = 0; i < numKeys / 2; i++) {
+            int key = randomInt(numKeys);
+            keys.remove(key);
+            tree.remove(key);
+        }
+        checkInvariants(tree);
+        Cursor cursor = tree.scan();
+        int count = 0;
+        Integer prev = null;
+        while (cursor.next()) {
+            Integer key = (Integer) cursor.key();
+            assertTrue(keys.contains(key));
+            assertEquals("val" + key, cursor.value());
+            if (prev != null) {
+                assertTrue(key > prev);
+            }
+            prev = key;
+            count++;
+        }
+        assertEquals(keys.size(), count);
+    }
+
+    @Test
+    public void testPutAll() {
+        tree.insert(5, "old5");
+        Map<Integer, String> batch = new HashMap<>();
+        for (int i = 9; i >= 0; i--) {
+            batch.put(i, "val" + i);
+        }
+        BatchResult result = tree.putAll(batch);
+        checkInvariants(tree);
+        assertEquals(10, tree.keyCount());
+        assertEquals(10, result.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, result.key(i));
+            assertEquals(i == 5 ? "old5" : null, result.oldValue(i));
+            assertEquals("val" + i, tree.find(i));
+        }
+        // Everything went into the root leaf with a single descent and split
+        assertEquals(1, result.descents());
+        assertEquals(9, result.descentsSaved());
+        assertEquals(1, result.leafSplits());
+        assertTrue(result.splitsSaved() > 0);
+    }
+
+    @Test
+    //@Repeat(value=1000)
+    public void testRandomPutAll() {
+        Map<Integer, String> expected = new HashMap<>();
+        for (int round = 0; round < 50; round++) {
+            // Alternate between hash and sorted batches
+            Map<Integer, String> batch = round % 2 == 0 ? new HashMap<>() : new TreeMap<>();
+            int size = randomInt(1, 200);
+            for (int i = 0; i < size; i++) {
+                int key = randomInt(2000);
+                batch.put(key, "val" + key);
+            }
+            Map<Integer, String> before = new HashMap<>(expected);
+            BatchResult result = tree.putAll(batch);
+            checkInvariants(tree);
+            expected.putAll(batch);
+            assertEquals(expected.size(), tree.keyCount());
+            assertEquals(batch.size(), result.size());
+            for (int i = 0; i < result.size(); i++) {
+                assertEquals(before.get(result.key(i)), result.oldValue(i));
+                if (i > 0) {
+                    assertTrue(result.key(i).compareTo(result.key(i - 1)) > 0);
+                }
+            }
+            assertEquals(batch.size(), result.descents() + result.descentsSaved());
+            // Remove a few so leaves underflow and merge between batches
+            for (int i = 0; i < size / 2; i++) {
+                int key = randomInt(2000);
+                expected.remove(key);
+                tree.remove(key);
+            }
+            checkInvariants(tree);
+        }
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), tree.find(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testRankSelectCount() {
+        TreeSet<Integer> keys = new TreeSet<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 1000; i++) {
+                int key = randomInt(2000);
+                keys.add(key);
+                tree.insert(key, "val" + key);
+            }
+            for (int i = 0; i < 600; i++) {
+                int key = randomInt(2000);
+                keys.remove(key);
+                tree.remove(key);
+            }
+            checkInvariants(tree);
+            int index = 0;
+            for (Integer key : keys) {
+                assertEquals(index, tree.rank(key));
+                assertEquals(key, tree.select(index));
+                index++;
+            }
+            for (int i = 0; i < 200; i++) {
+                int from = randomInt(-10, 2010);
+                int to = randomInt(-10, 2010);
+                assertEquals(keys.headSet(from).size(), tree.rank(from));
+                int expected = from <= to ? keys.subSet(from, to).size() : 0;
+                assertEquals(expected, tree.count(from, to));
+                expected = from <= to ? keys.subSet(from, false, to, true).size() : 0;
+                assertEquals(expected, tree.count(from, false, to, true));
+                assertEquals(keys.tailSet(from).size(), tree.count(from, true, null, false));
+                assertEquals(keys.headSet(to, true).size(), tree.count(null, false, to, true));
+            }
+        }
+        assertEquals(keys.size(), tree.count(null, true, null, true));
+        try {
+            tree.select(keys.size());
+            fail("should throw exception");
+        } catch (IllegalArgumentException e) {
+            // OK
+        }
+    }
+
+    @Test
+    public void testOddBranchingFactor() {
+        for (int b : new int[]{5, 7, 33}) {
+            BasicBplusTree odd = new BasicBplusTree(b);
+            Set<Integer> keys = new HashSet<>();
+            for (int i = 0; i < 2000; i++) {
+                int key = randomInt(1000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(keys.remove(key) ? "val" + key : null, odd.remove(key));
+                } else {
+                    keys.add(key);
+                    odd.insert(key, "val" + key);
+                }
+                checkInvariants(odd);
+            }
+            assertEquals(keys.size(), odd.keyCount());
+            for (Integer key : keys) {
+                assertEquals("val" + key, odd.find(key));
+            }
+        }
+    }
+
+    @Test
+    public void testLargeBranchingFactor() {
+        BasicBplusTree large = new BasicBplusTree(256);
+        Set<Integer> keys = new HashSet<>();
+        for (int round = 0; round < 4; round++) {
+            // Fill up then drain most of it so leaves and internal nodes split, steal and merge
+            for (int i = 0; i < 50000; i++) {
+                int key = randomInt(100000);
+                keys.add(key);
+                large.insert(key, "val" + key);
+            }
+            checkInvariants(large);
+            for (int i = 0; i < 60000; i++) {
+                int key = randomInt(100000);
+                assertEquals(keys.remove(key) ? "val" + key : null, large.remove(key));
+            }
+            checkInvariants(large);
+            assertEquals(keys.size(), large.keyCount());
+        }
+    }
+
+    @Test
+    public void testMergedNodesAreRecycled() {
+        int numKeys = 2000;
+        for (int i = 0; i < numKeys; i++) {
+            tree.insert(i, "val" + i);
+        }
+        for (int i = 0; i < numKeys; i++) {
+            assertEquals("val" + i, tree.remove(i));
+        }
+        checkInvariants(tree);
+        assertTrue(tree.nodePool().size() > 0);
+        int nodes = tree.nodeCount();
+        long reused = tree.nodePool().reused();
+        // Churn within a key range that the pooled nodes can hold shouldn't create any new nodes
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                tree.insert(i, "val" + i);
+            }
+            checkInvariants(tree);
+            for (int i = 0; i < 50; i++) {
+                assertEquals("val" + i, tree.remove(i));
+            }
+            checkInvariants(tree);
+        }
+        assertEquals(nodes, tree.nodeCount());
+        assertTrue(tree.nodePool().reused() > reused);
+    }
+
+    private void assertScan(Cursor cursor, int first, int last, boolean descending) {
+        int step = descending ? -2 : 2;
+        int expected = first;
+        while (cursor.next()) {
+            assertEquals(expected, cursor.key());
+            assertEquals("val" + expected, cursor.value());
+            expected += step;
+        }
+        assertEquals(last + step, expected);
+    }
+
     private int randomInt(int max) {
         return randomInt(0, max);
     }
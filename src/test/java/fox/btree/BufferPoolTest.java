@@ -0,0 +1,167 @@
+package fox.btree;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.TestCase.*;
+
+public class BufferPoolTest {
+
+    private static final long MISSING = Long.MIN_VALUE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Random random = new Random();
+
+    @Test
+    public void testTreeLargerThanPool() throws Exception {
+        for (EvictionPolicy policy : EvictionPolicy.values()) {
+            int b = 8;
+            BufferPool pool = new BufferPool(new PageFile(folder.newFile().toPath(), OffHeapBplusTree.nodeSize(b)), 16,
+                    policy);
+            OffHeapBplusTree tree = new OffHeapBplusTree(b, pool);
+            Map<Long, Long> expected = new HashMap<>();
+            for (int i = 0; i < 20000; i++) {
+                long key = random.nextInt(5000);
+                if (random.nextInt(3) == 0) {
+                    Long val = expected.remove(key);
+                    assertEquals(val == null ? MISSING : val, tree.remove(key, MISSING));
+                } else {
+                    long value = random.nextLong();
+                    expected.put(key, value);
+                    tree.insert(key, value);
+                }
+            }
+            new OffHeapInvariantChecker().checkInvariants(tree);
+            for (long key = 0; key < 5000; key++) {
+                Long val = expected.get(key);
+                assertEquals(val == null ? MISSING : val, tree.find(key, MISSING));
+            }
+            assertTrue(tree.nodeCount() > pool.capacity());
+            assertTrue(pool.misses() > 0);
+            assertTrue(pool.hits() > 0);
+            assertTrue(pool.evictions() > 0);
+            assertTrue(pool.writeBacks() > 0);
+            tree.close();
+        }
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        Path path = folder.newFile().toPath();
+        int b = 16;
+        OffHeapBplusTree tree = new OffHeapBplusTree(b, new BufferPool(new PageFile(path, OffHeapBplusTree.nodeSize(b)),
+                32, EvictionPolicy.CLOCK));
+        for (long i = 0; i < 10000; i++) {
+            tree.insert(i, i * 10);
+        }
+        for (long i = 0; i < 10000; i += 3) {
+            tree.remove(i, MISSING);
+        }
+        int nodes = tree.nodeCount();
+        int free = tree.freeNodeSlots();
+        int keys = tree.keyCount();
+        tree.close();
+
+        tree = new OffHeapBplusTree(b, new BufferPool(new PageFile(path, OffHeapBplusTree.nodeSize(b)), 32,
+                EvictionPolicy.LRU));
+        assertEquals(keys, tree.keyCount());
+        assertEquals(nodes, tree.nodeCount());
+        assertEquals(free, tree.freeNodeSlots());
+        new OffHeapInvariantChecker().checkInvariants(tree);
+        for (long i = 0; i < 10000; i++) {
+            assertEquals(i % 3 == 0 ? MISSING : i * 10, tree.find(i, MISSING));
+        }
+        // Freed pages are reused after reopening
+        for (long i = 0; i < 10000; i += 3) {
+            tree.insert(i, i * 10);
+        }
+        new OffHeapInvariantChecker().checkInvariants(tree);
+        assertTrue(free > 0);
+        assertTrue(tree.freeNodeSlots() < free);
+        tree.close();
+    }
+
+    @Test
+    public void testOpenWrongFile() throws Exception {
+        Path path = folder.newFile().toPath();
+        Files.write(path, new byte[256]);
+        try {
+            new PageFile(path, 128);
+            fail("should not open a file without the magic number");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        path = folder.newFile().toPath();
+        new PageFile(path, 128).close();
+        try {
+            new PageFile(path, 256);
+            fail("should not open a file with another page size");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        PageFile file = new PageFile(path, 128);
+        assertEquals(128, file.pageSize());
+        file.close();
+    }
+
+    @Test
+    public void testPinnedPagesAreNotEvicted() throws Exception {
+        for (EvictionPolicy policy : EvictionPolicy.values()) {
+            BufferPool pool = new BufferPool(new PageFile(folder.newFile().toPath(), 128), 8, policy);
+            int[] pages = new int[8];
+            for (int i = 0; i < 8; i++) {
+                pages[i] = pool.allocate();
+                pool.pin(pages[i]);
+            }
+            try {
+                pool.allocate();
+                fail("should have run out of frames");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            pool.unpin(pages[3]);
+            int page = pool.allocate();
+            assertEquals(1, pool.evictions());
+            // Everything else stayed put
+            long misses = pool.misses();
+            for (int i = 0; i < 8; i++) {
+                if (i != 3) {
+                    pool.buffer(pages[i]);
+                }
+            }
+            pool.buffer(page);
+            assertEquals(misses, pool.misses());
+            pool.release();
+        }
+    }
+
+    @Test
+    public void testLruEvictsLeastRecentlyUsed() throws Exception {
+        BufferPool pool = new BufferPool(new PageFile(folder.newFile().toPath(), 128), 8, EvictionPolicy.LRU);
+        int[] pages = new int[9];
+        for (int i = 0; i < 9; i++) {
+            pages[i] = pool.allocate();
+            pool.writableBuffer(pages[i]).putInt(pool.offset(pages[i]), i);
+            if (i == 7) {
+                // Make the first page the most recently used so the second is evicted
+                pool.buffer(pages[0]);
+            }
+        }
+        long misses = pool.misses();
+        assertEquals(0, pool.buffer(pages[0]).getInt(pool.offset(pages[0])));
+        assertEquals(misses, pool.misses());
+        // The evicted page was written back and reads back the same
+        assertEquals(1, pool.buffer(pages[1]).getInt(pool.offset(pages[1])));
+        assertEquals(misses + 1, pool.misses());
+        pool.release();
+    }
+}
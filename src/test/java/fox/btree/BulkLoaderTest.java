@@ -0,0 +1,129 @@
+package fox.btree;
+
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static junit.framework.TestCase.*;
+
+public class BulkLoaderTest {
+
+    private Random random = new Random();
+
+    @Test
+    public void testEmpty() {
+        BasicBplusTree tree = load(4, 1.0, 0);
+        assertEquals(0, tree.keyCount());
+        assertTrue(tree.getRoot().isLeaf());
+    }
+
+    @Test
+    public void testAllSizesAndFillFactors() {
+        for (int b : new int[]{4, 5, 6, 8, 33}) {
+            for (double fill : new double[]{0.01, 0.5, 0.7, 1.0}) {
+                for (int n = 0; n < 300; n++) {
+                    BasicBplusTree tree = load(b, fill, n);
+                    assertEquals(n, tree.keyCount());
+                    for (int i = 0; i < n; i++) {
+                        assertEquals("val" + i, tree.find(i));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFillFactor() {
+        int n = 10000;
+        BasicBplusTree full = load(64, 1.0, n);
+        BasicBplusTree half = load(64, 0.5, n);
+        assertTrue(full.nodeCount() < half.nodeCount());
+        // With a fill factor of 1 almost every leaf is full
+        int leaves = 0;
+        for (LeafNode leaf = full.firstLeaf(); leaf != null; leaf = leaf.next()) {
+            leaves++;
+        }
+        assertEquals((n + 62) / 63, leaves);
+    }
+
+    @Test
+    public void testModifyAfterLoad() {
+        BasicBplusTree tree = load(4, 1.0, 1000);
+        for (int i = 0; i < 1000; i++) {
+            int key = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                tree.insert(key, "val" + key);
+            } else {
+                tree.remove(key);
+            }
+            checkInvariants(tree);
+        }
+    }
+
+    @Test
+    public void testStream() {
+        BasicBplusTree tree = new BasicBplusTree(8);
+        tree.bulkLoad(IntStream.range(0, 100).mapToObj(i -> entry(i)), 0.8);
+        checkInvariants(tree);
+        assertEquals(100, tree.keyCount());
+    }
+
+    @Test
+    public void testUnsortedInput() {
+        List<Map.Entry<Integer, String>> entries = new ArrayList<>();
+        entries.add(entry(1));
+        entries.add(entry(3));
+        entries.add(entry(2));
+        try {
+            new BasicBplusTree(4).bulkLoad(entries.iterator(), 1.0);
+            fail("should throw");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDuplicateKeys() {
+        List<Map.Entry<Integer, String>> entries = new ArrayList<>();
+        entries.add(entry(1));
+        entries.add(entry(1));
+        try {
+            new BasicBplusTree(4).bulkLoad(entries.iterator(), 1.0);
+            fail("should throw");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNonEmptyTree() {
+        BasicBplusTree tree = new BasicBplusTree(4);
+        tree.insert(1, "val1");
+        try {
+            tree.bulkLoad(new ArrayList<Map.Entry<Integer, String>>().iterator(), 1.0);
+            fail("should throw");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private BasicBplusTree load(int b, double fill, int n) {
+        BasicBplusTree tree = new BasicBplusTree(b);
+        tree.bulkLoad(IntStream.range(0, n).mapToObj(i -> entry(i)).iterator(), fill);
+        checkInvariants(tree);
+        return tree;
+    }
+
+    private static Map.Entry<Integer, String> entry(int i) {
+        return new AbstractMap.SimpleImmutableEntry<>(i, "val" + i);
+    }
+
+    private void checkInvariants(BasicBplusTree tree) {
+        new InvariantChecker().checkInvariants(tree);
+    }
+}
@@ -0,0 +1,132 @@
+package fox.btree;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import static junit.framework.TestCase.*;
+
+public class CompactorTest {
+
+    private Random random = new Random();
+
+    @Test
+    public void testCompactAfterDeletes() {
+        for (int b : new int[]{4, 5, 8, 32, 128}) {
+            BasicBplusTree tree = new BasicBplusTree(b);
+            TreeMap<Integer, String> expected = new TreeMap<>();
+            sparseTree(tree, expected, 20000);
+            TreeStats stats = tree.enableMetrics();
+            long nodesBefore = stats.getNodeCount();
+            int heightBefore = stats.getHeight();
+
+            Compactor compactor = tree.compactor(1.0);
+            while (compactor.step(1 + random.nextInt(20))) {
+                checkInvariants(tree);
+            }
+            checkInvariants(tree);
+            checkContents(tree, expected);
+            assertTrue(compactor.isDone());
+            assertEquals(nodesBefore - stats.getNodeCount(), compactor.nodesReclaimed());
+            assertTrue(stats.getHeight() <= heightBefore);
+            if (b > 8) {
+                // A full packing should at least halve the nodes left at the minimum
+                assertTrue(stats.getNodeCount() < nodesBefore * 0.7);
+                assertTrue(stats.getAverageLeafFill() > 0.8);
+                assertTrue(compactor.bytesReclaimed() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testUpdatesBetweenSteps() {
+        BasicBplusTree tree = new BasicBplusTree(16);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        sparseTree(tree, expected, 20000);
+        Compactor compactor = tree.compactor(0.8);
+        while (compactor.step(5)) {
+            for (int i = 0; i < 20; i++) {
+                int key = random.nextInt(200000);
+                if (random.nextBoolean()) {
+                    tree.insert(key, "val" + key);
+                    expected.put(key, "val" + key);
+                } else {
+                    assertEquals(expected.remove(key), tree.remove(key));
+                }
+            }
+            checkInvariants(tree);
+        }
+        checkContents(tree, expected);
+    }
+
+    @Test
+    public void testPrefixCompressed() {
+        BasicBplusTree tree = new BasicBplusTree(16, KeyCompression.PREFIX);
+        for (int i = 0; i < 10000; i++) {
+            String key = "key" + (100000 + i);
+            tree.insert(key, "val" + key);
+        }
+        for (int i = 0; i < 10000; i++) {
+            if (i % 5 != 0) {
+                tree.remove("key" + (100000 + i));
+            }
+        }
+        tree.compactor(1.0).finish();
+        checkInvariants(tree);
+        assertEquals(2000, tree.keyCount());
+        for (int i = 0; i < 10000; i += 5) {
+            String key = "key" + (100000 + i);
+            assertEquals("val" + key, tree.find(key));
+        }
+    }
+
+    @Test
+    public void testNothingToDo() {
+        BasicBplusTree tree = new BasicBplusTree(8);
+        Compactor compactor = tree.compactor(1.0);
+        assertFalse(compactor.step(1));
+        assertEquals(0, compactor.nodesReclaimed());
+
+        tree.compactor(1.0).finish();
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i, "val" + i);
+        }
+        compactor = tree.compactor(0.5);
+        compactor.finish();
+        checkInvariants(tree);
+        assertEquals(1000, tree.keyCount());
+        assertEquals(0, compactor.bytesReclaimed());
+    }
+
+    /**
+     * Fill a tree and then remove nine in every ten keys, leaving most nodes at the minimum
+     */
+    private void sparseTree(BasicBplusTree tree, TreeMap<Integer, String> expected, int numKeys) {
+        for (int i = 0; i < numKeys; i++) {
+            int key = random.nextInt(numKeys * 10);
+            tree.insert(key, "val" + key);
+            expected.put(key, "val" + key);
+        }
+        for (int i = 0; i < numKeys * 10; i++) {
+            if (random.nextInt(10) != 0) {
+                assertEquals(expected.remove(i), tree.remove(i));
+            }
+        }
+        checkInvariants(tree);
+    }
+
+    private void checkContents(BasicBplusTree tree, TreeMap<Integer, String> expected) {
+        assertEquals(expected.size(), tree.keyCount());
+        Cursor cursor = tree.scan();
+        for (Integer key : expected.keySet()) {
+            assertTrue(cursor.next());
+            assertEquals(key, cursor.key());
+        }
+        assertFalse(cursor.next());
+    }
+
+    private void checkInvariants(BasicBplusTree tree) {
+        new InvariantChecker().checkInvariants(tree);
+    }
+}
@@ -0,0 +1,114 @@
+package fox.btree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.TestCase.*;
+
+public class ConcurrentBplusTreeTest {
+
+    private Random random = new Random();
+
+    @Test
+    public void testSingleThreaded() {
+        for (int b : new int[]{4, 5, 16}) {
+            ConcurrentBplusTree tree = new ConcurrentBplusTree(b);
+            Map<Integer, String> expected = new HashMap<>();
+            for (int i = 0; i < 5000; i++) {
+                int key = random.nextInt(1000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(key), tree.remove(key));
+                } else {
+                    expected.put(key, "val" + key);
+                    tree.insert(key, "val" + key);
+                }
+                checkInvariants(tree);
+            }
+            assertEquals(expected.size(), tree.keyCount());
+            for (int key = 0; key < 1000; key++) {
+                assertEquals(expected.get(key), tree.find(key));
+            }
+        }
+    }
+
+    @Test
+    public void testStress() throws Exception {
+        for (int b : new int[]{4, 8, 64}) {
+            stress(new ConcurrentBplusTree(b), 8, 20000);
+        }
+    }
+
+    /**
+     * Each thread owns the keys that are equal to its id modulo the number of threads, so it knows exactly what should
+     * be in the tree for its own keys, but all the threads hammer the same nodes. Keys below zero are inserted up front
+     * and never removed, so lookups of them must always succeed whatever the writers are doing.
+     */
+    private void stress(ConcurrentBplusTree tree, int numThreads, int opsPerThread) throws Exception {
+        int stableKeys = 500;
+        for (int i = 1; i <= stableKeys; i++) {
+            tree.insert(-i, "val" + -i);
+        }
+        int keyRange = 4000;
+        List<Map<Integer, String>> expected = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            int id = t;
+            Map<Integer, String> mine = new HashMap<>();
+            expected.add(mine);
+            Thread thread = new Thread(() -> {
+                Random rand = new Random(id);
+                try {
+                    start.await();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        int key = rand.nextInt(keyRange / numThreads) * numThreads + id;
+                        int op = rand.nextInt(10);
+                        if (op < 4) {
+                            tree.insert(key, "val" + key);
+                            mine.put(key, "val" + key);
+                        } else if (op < 7) {
+                            assertEquals(mine.remove(key), tree.remove(key));
+                        } else if (op < 9) {
+                            assertEquals(mine.get(key), tree.find(key));
+                        } else {
+                            int stable = -1 - rand.nextInt(stableKeys);
+                            assertEquals("val" + stable, tree.find(stable));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("Worker failed", failure.get());
+        }
+        checkInvariants(tree);
+        int total = stableKeys;
+        for (Map<Integer, String> mine : expected) {
+            total += mine.size();
+            for (Map.Entry<Integer, String> entry : mine.entrySet()) {
+                assertEquals(entry.getValue(), tree.find(entry.getKey()));
+            }
+        }
+        assertEquals(total, tree.keyCount());
+    }
+
+    private void checkInvariants(ConcurrentBplusTree tree) {
+        new InvariantChecker().checkInvariants(tree.getRoot(), tree.branchingFactor());
+    }
+}
@@ -0,0 +1,229 @@
+package fox.btree;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.TestCase.*;
+
+public class DurableBplusTreeTest {
+
+    private static final long MISSING = Long.MIN_VALUE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Random random = new Random();
+
+    @Test
+    public void testRecoverWithoutClose() throws Exception {
+        Path dir = folder.newFolder().toPath();
+        DurableBplusTree tree = open(dir, 0);
+        Map<Long, Long> expected = randomOps(tree, 3000);
+        // Abandon the tree as if the process had died, everything that returned must be in the log
+        DurableBplusTree recovered = open(dir, 0);
+        check(expected, recovered);
+        assertTrue(recovered.recoveredRecords() > 0);
+        assertTrue(recovered.recoveryTime(TimeUnit.NANOSECONDS) > 0);
+        recovered.close();
+        tree.close();
+    }
+
+    @Test
+    public void testCheckpoint() throws Exception {
+        Path dir = folder.newFolder().toPath();
+        DurableBplusTree tree = open(dir, 0);
+        Map<Long, Long> expected = randomOps(tree, 3000);
+        tree.checkpoint();
+        assertEquals(0, Files.size(dir.resolve("wal")));
+        for (long i = 0; i < 100; i++) {
+            tree.insert(i, -i);
+            expected.put(i, -i);
+        }
+        tree.close();
+
+        DurableBplusTree recovered = open(dir, 0);
+        check(expected, recovered);
+        // Only the records after the checkpoint are replayed
+        assertEquals(100, recovered.recoveredRecords());
+        recovered.close();
+    }
+
+    @Test
+    public void testFailedLogWriteIsUndone() throws Exception {
+        Path dir = folder.newFolder().toPath();
+        DurableBplusTree tree = open(dir, 0);
+        tree.insert(1, 1);
+        tree.insert(2, 2);
+        // Interrupting the write closes the log's channel, failing it for good
+        Thread.currentThread().interrupt();
+        try {
+            tree.insert(1, 10);
+            fail("should throw");
+        } catch (UncheckedIOException e) {
+            // expected
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(1, tree.find(1, MISSING));
+        try {
+            tree.insert(3, 3);
+            fail("should throw");
+        } catch (UncheckedIOException e) {
+            // expected
+        }
+        try {
+            tree.remove(2, MISSING);
+            fail("should throw");
+        } catch (UncheckedIOException e) {
+            // expected
+        }
+        Map<Long, Long> expected = new HashMap<>();
+        expected.put(1L, 1L);
+        expected.put(2L, 2L);
+        check(expected, tree);
+        // The failed log can't be closed cleanly, so the tree is abandoned
+        DurableBplusTree recovered = open(dir, 0);
+        check(expected, recovered);
+        recovered.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class, timeout = 10000)
+    public void testAwaitUnappendedLsn() throws Exception {
+        DurableBplusTree tree = open(folder.newFolder().toPath(), 0);
+        try {
+            tree.insert(1, 1);
+            tree.log().awaitDurable(tree.log().lastLsn() + 1);
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test
+    public void testTornRecord() throws Exception {
+        Path dir = folder.newFolder().toPath();
+        DurableBplusTree tree = open(dir, 0);
+        for (long i = 0; i < 10; i++) {
+            tree.insert(i, i);
+        }
+        tree.close();
+        Path wal = dir.resolve("wal");
+        assertEquals(10 * WriteAheadLog.RECORD_SIZE, Files.size(wal));
+        // Crash half way through writing the last record
+        try (FileChannel channel = FileChannel.open(wal, StandardOpenOption.WRITE)) {
+            channel.truncate(9 * WriteAheadLog.RECORD_SIZE + 11);
+        }
+
+        tree = open(dir, 0);
+        assertEquals(9, tree.recoveredRecords());
+        assertEquals(9, tree.keyCount());
+        assertEquals(MISSING, tree.find(9, MISSING));
+        // The torn record is cut off so new records follow the last good one
+        assertEquals(9 * WriteAheadLog.RECORD_SIZE, Files.size(wal));
+        tree.insert(100, 100);
+        tree.close();
+
+        tree = open(dir, 0);
+        assertEquals(10, tree.keyCount());
+        assertEquals(100, tree.find(100, MISSING));
+        tree.close();
+    }
+
+    @Test
+    public void testCorruptRecordStopsReplay() throws Exception {
+        Path dir = folder.newFolder().toPath();
+        DurableBplusTree tree = open(dir, 0);
+        for (long i = 0; i < 10; i++) {
+            tree.insert(i, i);
+        }
+        tree.close();
+        try (FileChannel channel = FileChannel.open(dir.resolve("wal"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), 5 * WriteAheadLog.RECORD_SIZE + 20);
+        }
+        tree = open(dir, 0);
+        assertEquals(5, tree.keyCount());
+        tree.close();
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        Path dir = folder.newFolder().toPath();
+        DurableBplusTree tree = open(dir, TimeUnit.MILLISECONDS.toNanos(2));
+        int numThreads = 8;
+        int opsPerThread = 200;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            long id = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (long i = 0; i < opsPerThread; i++) {
+                        tree.insert(i * numThreads + id, id);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("Worker failed", failure.get());
+        }
+        WriteAheadLog log = tree.log();
+        assertEquals(numThreads * opsPerThread * WriteAheadLog.RECORD_SIZE, log.bytesWritten());
+        assertTrue("fsyncs " + log.fsyncs(), log.fsyncs() < numThreads * opsPerThread / 2);
+        assertTrue(log.bytesPerSecond() > 0);
+        assertTrue(log.fsyncsPerSecond() > 0);
+        tree.close();
+
+        DurableBplusTree recovered = open(dir, 0);
+        assertEquals(numThreads * opsPerThread, recovered.keyCount());
+        recovered.close();
+    }
+
+    private DurableBplusTree open(Path dir, long groupCommitNanos) {
+        return new DurableBplusTree(dir, 16, groupCommitNanos, TimeUnit.NANOSECONDS, 64 * 1024);
+    }
+
+    private Map<Long, Long> randomOps(DurableBplusTree tree, int ops) {
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < ops; i++) {
+            long key = random.nextInt(1000);
+            if (random.nextInt(3) == 0) {
+                Long val = expected.remove(key);
+                assertEquals(val == null ? MISSING : val, tree.remove(key, MISSING));
+            } else {
+                long value = random.nextLong();
+                expected.put(key, value);
+                tree.insert(key, value);
+            }
+        }
+        return expected;
+    }
+
+    private void check(Map<Long, Long> expected, DurableBplusTree tree) {
+        assertEquals(expected.size(), tree.keyCount());
+        for (long key = 0; key < 1000; key++) {
+            Long val = expected.get(key);
+            assertEquals(val == null ? MISSING : val, tree.find(key, MISSING));
+        }
+    }
+}
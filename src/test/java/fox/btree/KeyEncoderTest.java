@@ -0,0 +1,170 @@
+package fox.btree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.*;
+
+public class KeyEncoderTest {
+
+    private Random random = new Random();
+
+    @Test
+    public void testLongOrder() {
+        List<Long> values = new ArrayList<>();
+        values.add(Long.MIN_VALUE);
+        values.add(Long.MAX_VALUE);
+        values.add(0L);
+        values.add(-1L);
+        for (int i = 0; i < 1000; i++) {
+            values.add(random.nextLong());
+            values.add((long) random.nextInt(100) - 50);
+        }
+        checkOrder(KeyEncoder.LONG, values, Comparator.naturalOrder());
+    }
+
+    @Test
+    public void testIntOrder() {
+        List<Integer> values = new ArrayList<>();
+        values.add(Integer.MIN_VALUE);
+        values.add(Integer.MAX_VALUE);
+        for (int i = 0; i < 1000; i++) {
+            values.add(random.nextInt());
+        }
+        checkOrder(KeyEncoder.INT, values, Comparator.naturalOrder());
+    }
+
+    @Test
+    public void testDoubleOrder() {
+        List<Double> values = new ArrayList<>();
+        for (double d : new double[]{Double.NaN, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, -0.0, 0.0,
+                Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE}) {
+            values.add(d);
+        }
+        for (int i = 0; i < 1000; i++) {
+            values.add((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 10));
+        }
+        checkOrder(KeyEncoder.DOUBLE, values, Comparator.naturalOrder());
+    }
+
+    @Test
+    public void testStringOrder() {
+        List<String> values = new ArrayList<>();
+        for (String s : new String[]{"", "\0", "\0\0", "a", "a\0", "a\0b", "ab", "b", "é", "ࠀ", "￿"}) {
+            values.add(s);
+        }
+        for (int i = 0; i < 1000; i++) {
+            char[] chars = new char[random.nextInt(6)];
+            for (int j = 0; j < chars.length; j++) {
+                // Keep to chars below the surrogates, where UTF-8 and UTF-16 order agree
+                chars[j] = (char) (random.nextBoolean() ? random.nextInt(4) : random.nextInt(0xD800));
+            }
+            values.add(new String(chars));
+        }
+        checkOrder(KeyEncoder.STRING, values, Comparator.naturalOrder());
+    }
+
+    @Test
+    public void testEnumOrder() {
+        List<TimeUnit> values = new ArrayList<>();
+        for (TimeUnit unit : TimeUnit.values()) {
+            values.add(unit);
+        }
+        checkOrder(KeyEncoder.forEnum(TimeUnit.class), values, Comparator.naturalOrder());
+    }
+
+    @Test
+    public void testCompositeOrder() {
+        KeyEncoder<Object[]> encoder = KeyEncoder.composite(KeyEncoder.STRING, KeyEncoder.LONG,
+                KeyEncoder.forEnum(TimeUnit.class));
+        List<Object[]> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add(randomComposite());
+        }
+        checkOrder(encoder, values, compositeOrder());
+    }
+
+    @Test
+    public void testCompositeWrongArity() {
+        KeyEncoder<Object[]> encoder = KeyEncoder.composite(KeyEncoder.STRING, KeyEncoder.LONG);
+        try {
+            encoder.encode(new Object[]{"a"});
+            fail("should throw exception");
+        } catch (IllegalArgumentException e) {
+            // OK
+        }
+        try {
+            encoder.encode(new Object[]{"a", null});
+            fail("should throw exception");
+        } catch (IllegalArgumentException e) {
+            // OK
+        }
+    }
+
+    @Test
+    public void testTreeWithCompositeKeys() {
+        KeyEncoder<Object[]> encoder = KeyEncoder.composite(KeyEncoder.STRING, KeyEncoder.LONG,
+                KeyEncoder.forEnum(TimeUnit.class));
+        for (int b : new int[]{4, 16, 128}) {
+            BasicBplusTree tree = new BasicBplusTree(b, SearchStrategy.UNSIGNED_BYTES);
+            TreeMap<Object[], ByteKey> expected = new TreeMap<>(compositeOrder());
+            for (int i = 0; i < 3000; i++) {
+                Object[] value = randomComposite();
+                ByteKey key = encoder.encode(value);
+                if (random.nextInt(4) == 0) {
+                    ByteKey removed = expected.remove(value);
+                    assertEquals(removed == null ? null : "val" + removed, tree.remove(key));
+                } else {
+                    expected.put(value, key);
+                    tree.insert(key, "val" + key);
+                }
+            }
+            new InvariantChecker().checkInvariants(tree);
+            assertEquals(expected.size(), tree.keyCount());
+            Cursor cursor = tree.scan();
+            for (Map.Entry<Object[], ByteKey> entry : expected.entrySet()) {
+                assertTrue(cursor.next());
+                assertEquals(entry.getValue(), cursor.key());
+                assertEquals(tree.find(encoder.encode(entry.getKey())), cursor.value());
+            }
+            assertFalse(cursor.next());
+        }
+    }
+
+    private Object[] randomComposite() {
+        return new Object[]{"tenant" + random.nextInt(5), (long) random.nextInt(20) - 10,
+                TimeUnit.values()[random.nextInt(TimeUnit.values().length)]};
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<Object[]> compositeOrder() {
+        return (o1, o2) -> {
+            for (int i = 0; i < o1.length; i++) {
+                int comp = ((Comparable) o1[i]).compareTo(o2[i]);
+                if (comp != 0) {
+                    return comp;
+                }
+            }
+            return 0;
+        };
+    }
+
+    private <T> void checkOrder(KeyEncoder<T> encoder, List<T> values, Comparator<? super T> order) {
+        for (int i = 0; i < values.size(); i++) {
+            T v1 = values.get(i);
+            T v2 = values.get(random.nextInt(values.size()));
+            T v3 = values.get((i + 1) % values.size());
+            assertEquals(v1 + " " + v2, Integer.signum(order.compare(v1, v2)),
+                    Integer.signum(encoder.encode(v1).compareTo(encoder.encode(v2))));
+            assertEquals(v1 + " " + v3, Integer.signum(order.compare(v1, v3)),
+                    Integer.signum(encoder.encode(v1).compareTo(encoder.encode(v3))));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package fox.btree;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static junit.framework.TestCase.*;
+
+public class LongBplusTreeTest {
+
+    private Random random = new Random();
+
+    protected final int B = 4;
+
+    protected LongBplusTree tree;
+
+    @Before
+    public void setup() {
+        tree = new LongBplusTree(B);
+    }
+
+    @Test
+    public void testEmptyTree() {
+        assertEquals(1, tree.nodeCount());
+        LongNode root = tree.getRoot();
+        assertTrue(root.isRoot());
+        assertTrue(root.isLeaf());
+        assertEquals(0, root.numKeys());
+    }
+
+    @Test
+    public void testInsertFindOverwrite() {
+        assertNull(tree.find(1));
+        tree.insert(1, "val1");
+        tree.insert(-2, "val-2");
+        assertEquals("val1", tree.find(1));
+        assertEquals("val-2", tree.find(-2));
+        tree.insert(1, "other");
+        assertEquals("other", tree.find(1));
+        assertEquals(2, tree.keyCount());
+        assertNull(tree.find(0));
+    }
+
+    @Test
+    public void testRemoveNonExistent() {
+        tree.insert(1, "val1");
+        assertEquals("val1", tree.remove(1));
+        assertNull(tree.remove(1));
+        assertEquals(0, tree.keyCount());
+    }
+
+    @Test
+    public void testRandomInsertRemove() {
+        for (int b : new int[]{4, 5, 8, 64}) {
+            tree = new LongBplusTree(b);
+            int numKeys = 2000;
+            Set<Long> keys = new HashSet<>();
+            for (int i = 0; i < numKeys; i++) {
+                long key = random.nextInt(numKeys) - numKeys / 2;
+                keys.add(key);
+                tree.insert(key, "val" + key);
+                checkInvariants();
+            }
+            assertEquals(keys.size(), tree.keyCount());
+            for (Long key : keys) {
+                assertEquals("val" + key, tree.find(key));
+            }
+            for (Long key : keys) {
+                assertEquals("val" + key, tree.remove(key));
+                checkInvariants();
+            }
+            assertEquals(0, tree.keyCount());
+        }
+    }
+
+    @Test
+    public void testSequentialInsertRemove() {
+        int numKeys = 1000;
+        for (long i = 0; i < numKeys; i++) {
+            tree.insert(i, "val" + i);
+            checkInvariants();
+        }
+        for (long i = numKeys - 1; i >= 0; i--) {
+            assertEquals("val" + i, tree.remove(i));
+            checkInvariants();
+        }
+    }
+
+    @Test
+    public void testExtremeKeys() {
+        tree.insert(Long.MIN_VALUE, "val" + Long.MIN_VALUE);
+        tree.insert(Long.MAX_VALUE, "val" + Long.MAX_VALUE);
+        tree.insert(0, "val0");
+        checkInvariants();
+        assertEquals("val" + Long.MIN_VALUE, tree.find(Long.MIN_VALUE));
+        assertEquals("val" + Long.MAX_VALUE, tree.find(Long.MAX_VALUE));
+    }
+
+    private void checkInvariants() {
+        new LongInvariantChecker().checkInvariants(tree);
+    }
+}
@@ -0,0 +1,95 @@
+package fox.btree;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static junit.framework.TestCase.*;
+
+public class MappedPageStoreTest {
+
+    private static final long MISSING = Long.MIN_VALUE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Random random = new Random();
+
+    @Test
+    public void testReadPersistedTree() throws Exception {
+        int b = 16;
+        Path path = folder.newFile().toPath();
+        OffHeapBplusTree writer = new OffHeapBplusTree(b, new BufferPool(new PageFile(path,
+                OffHeapBplusTree.nodeSize(b)), 64, EvictionPolicy.CLOCK));
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        for (int i = 0; i < 20000; i++) {
+            long key = random.nextInt(10000);
+            if (random.nextInt(4) == 0) {
+                expected.remove(key);
+                writer.remove(key, MISSING);
+            } else {
+                long value = random.nextLong();
+                expected.put(key, value);
+                writer.insert(key, value);
+            }
+        }
+        int nodes = writer.nodeCount();
+        writer.close();
+
+        // Small segments so the tree spans lots of them
+        MappedPageStore store = new MappedPageStore(path, 7 * OffHeapBplusTree.nodeSize(b) + 5);
+        assertTrue(store.segments() > 10);
+        OffHeapBplusTree tree = new OffHeapBplusTree(b, store);
+        assertEquals(expected.size(), tree.keyCount());
+        assertEquals(nodes, tree.nodeCount());
+        new OffHeapInvariantChecker().checkInvariants(tree);
+        for (long key = 0; key < 10000; key++) {
+            Long val = expected.get(key);
+            assertEquals(val == null ? MISSING : val, tree.find(key, MISSING));
+        }
+        checkScan(expected, tree.scan());
+        checkScan(expected.subMap(1000L, false, 5000L, true), tree.scan(1000, false, 5000, true));
+        checkScan(expected.subMap(-5L, true, 20L, false), tree.scan(-5, true, 20, false));
+        checkScan(expected.subMap(20000L, true, 30000L, true), tree.scan(20000, true, 30000, true));
+
+        try {
+            tree.insert(1, 1);
+            fail("should be read only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        tree.close();
+    }
+
+    @Test
+    public void testDefaultSegments() throws Exception {
+        Path path = folder.newFile().toPath();
+        OffHeapBplusTree writer = new OffHeapBplusTree(4, new BufferPool(new PageFile(path,
+                OffHeapBplusTree.nodeSize(4)), 16, EvictionPolicy.LRU));
+        for (long i = 0; i < 1000; i++) {
+            writer.insert(i, -i);
+        }
+        writer.close();
+        MappedPageStore store = new MappedPageStore(path);
+        assertEquals(1, store.segments());
+        OffHeapBplusTree tree = new OffHeapBplusTree(4, store);
+        for (long i = 0; i < 1000; i++) {
+            assertEquals(-i, tree.find(i, MISSING));
+        }
+        tree.close();
+    }
+
+    private void checkScan(Map<Long, Long> expected, LongCursor cursor) {
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertTrue(cursor.next());
+            assertEquals((long) entry.getKey(), cursor.key());
+            assertEquals((long) entry.getValue(), cursor.value());
+        }
+        assertFalse(cursor.next());
+    }
+}
@@ -0,0 +1,107 @@
+package fox.btree;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.TestCase.*;
+
+public class OffHeapBplusTreeTest {
+
+    private static final long MISSING = Long.MIN_VALUE;
+
+    private Random random = new Random();
+
+    private OffHeapBplusTree tree;
+
+    @Before
+    public void setup() {
+        tree = new OffHeapBplusTree(4, 64);
+    }
+
+    @After
+    public void tearDown() {
+        tree.close();
+    }
+
+    @Test
+    public void testEmptyTree() {
+        assertEquals(1, tree.nodeCount());
+        assertEquals(0, tree.keyCount());
+        assertEquals(MISSING, tree.find(1, MISSING));
+        assertEquals(MISSING, tree.remove(1, MISSING));
+        checkInvariants();
+    }
+
+    @Test
+    public void testInsertFindOverwriteRemove() {
+        tree.insert(1, 100);
+        tree.insert(2, 200);
+        assertEquals(100, tree.find(1, MISSING));
+        assertTrue(tree.containsKey(2));
+        assertFalse(tree.containsKey(3));
+        tree.insert(1, 101);
+        assertEquals(101, tree.find(1, MISSING));
+        assertEquals(2, tree.keyCount());
+        assertEquals(101, tree.remove(1, MISSING));
+        assertEquals(MISSING, tree.remove(1, MISSING));
+        assertEquals(1, tree.keyCount());
+    }
+
+    @Test
+    public void testRandomInsertRemove() {
+        for (int b : new int[]{4, 5, 16, 128}) {
+            tree.close();
+            tree = new OffHeapBplusTree(b, 16);
+            int numKeys = 3000;
+            Map<Long, Long> expected = new HashMap<>();
+            for (int i = 0; i < numKeys; i++) {
+                long key = random.nextInt(numKeys) - numKeys / 2;
+                long value = random.nextLong();
+                expected.put(key, value);
+                tree.insert(key, value);
+                checkInvariants();
+            }
+            assertEquals(expected.size(), tree.keyCount());
+            for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+                assertEquals((long) entry.getValue(), tree.find(entry.getKey(), MISSING));
+            }
+            for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+                assertEquals((long) entry.getValue(), tree.remove(entry.getKey(), MISSING));
+                checkInvariants();
+            }
+            assertEquals(0, tree.keyCount());
+            assertEquals(1, tree.nodeCount());
+        }
+    }
+
+    @Test
+    public void testFreedSlotsAreReused() {
+        int numKeys = 5000;
+        for (long i = 0; i < numKeys; i++) {
+            tree.insert(i, i);
+        }
+        long reserved = tree.offHeapBytes();
+        int nodes = tree.nodeCount();
+        assertTrue(tree.usedOffHeapBytes() <= reserved);
+        for (long i = 0; i < numKeys; i++) {
+            tree.remove(i, MISSING);
+        }
+        checkInvariants();
+        assertEquals(nodes - 1, tree.freeNodeSlots());
+        for (long i = 0; i < numKeys; i++) {
+            tree.insert(i, i);
+        }
+        checkInvariants();
+        // The second time round every node comes from the free list
+        assertEquals(reserved, tree.offHeapBytes());
+    }
+
+    private void checkInvariants() {
+        new OffHeapInvariantChecker().checkInvariants(tree);
+    }
+}
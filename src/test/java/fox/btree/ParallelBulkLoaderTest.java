@@ -0,0 +1,193 @@
+package fox.btree;
+
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static junit.framework.TestCase.*;
+
+public class ParallelBulkLoaderTest {
+
+    private Random random = new Random();
+    private ForkJoinPool pool = new ForkJoinPool(4);
+
+    @Test
+    public void testLoadMatchesSerialLoad() {
+        for (int b : new int[]{4, 5, 16, 64}) {
+            for (int n : new int[]{0, 1, 2, 10, 100, 5000, 50000}) {
+                List<Map.Entry<Integer, String>> entries = new ArrayList<>();
+                for (int i = 0; i < n; i++) {
+                    entries.add(entry(i * 2));
+                }
+                Collections.shuffle(entries, random);
+                BasicBplusTree tree = new BasicBplusTree(b);
+                tree.parallelBulkLoad(entries, 0.7, pool);
+                checkInvariants(tree);
+                assertEquals(n, tree.keyCount());
+                // Same shape as the serial load of the sorted entries
+                Collections.sort(entries, Map.Entry.comparingByKey());
+                BasicBplusTree serial = new BasicBplusTree(b);
+                serial.bulkLoad(entries.iterator(), 0.7);
+                assertEquals(leafCount(serial), leafCount(tree));
+                Cursor cursor = tree.scan();
+                for (Map.Entry<Integer, String> entry : entries) {
+                    assertTrue(cursor.next());
+                    assertEquals(entry.getKey(), cursor.key());
+                    assertEquals(entry.getValue(), cursor.value());
+                }
+                assertFalse(cursor.next());
+            }
+        }
+    }
+
+    @Test
+    public void testLoadPrefixCompressed() {
+        List<Map.Entry<String, String>> entries = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            String key = "key" + (i + 100000);
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(key, "val" + key));
+        }
+        Collections.shuffle(entries, random);
+        BasicBplusTree tree = new BasicBplusTree(32, KeyCompression.PREFIX);
+        tree.parallelBulkLoad(entries, 1.0, pool);
+        checkInvariants(tree);
+        for (Map.Entry<String, String> entry : entries) {
+            assertEquals(entry.getValue(), tree.find(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testLoadDuplicateKeys() {
+        List<Map.Entry<Integer, String>> entries = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            entries.add(entry(i));
+        }
+        entries.add(entry(random.nextInt(10000)));
+        BasicBplusTree tree = new BasicBplusTree(8);
+        try {
+            tree.parallelBulkLoad(entries, 1.0, pool);
+            fail("should throw");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        // Nothing was loaded, so the tree can still be loaded afterwards
+        assertEquals(0, tree.keyCount());
+        assertNull(tree.find(0));
+        assertTrue(tree.getRoot().isLeaf());
+        checkInvariants(tree);
+        entries.remove(entries.size() - 1);
+        tree.parallelBulkLoad(entries, 1.0, pool);
+        checkInvariants(tree);
+        assertEquals(10000, tree.keyCount());
+    }
+
+    @Test
+    public void testRemoveRanges() {
+        for (int b : new int[]{4, 5, 16, 64}) {
+            for (int round = 0; round < 20; round++) {
+                BasicBplusTree tree = new BasicBplusTree(b);
+                TreeMap<Integer, String> expected = new TreeMap<>();
+                int n = random.nextInt(20000);
+                for (int i = 0; i < n; i++) {
+                    int key = random.nextInt(n * 2);
+                    expected.put(key, "val" + key);
+                    tree.insert(key, "val" + key);
+                }
+
+                // Random disjoint ranges, sometimes unbounded at the ends
+                List<KeyRange> ranges = new ArrayList<>();
+                int from = random.nextBoolean() ? -1 : random.nextInt(1000);
+                while (from < n * 2) {
+                    int to = from + random.nextInt(n / 4 + 1);
+                    boolean last = random.nextInt(10) == 0;
+                    ranges.add(new KeyRange(from == -1 ? null : from, last ? null : to));
+                    if (last) {
+                        break;
+                    }
+                    from = to + random.nextInt(n / 4 + 1);
+                }
+                Collections.shuffle(ranges, random);
+                int removed = 0;
+                for (KeyRange range : ranges) {
+                    Map<Integer, String> sub = range.from() == null
+                            ? range.to() == null ? expected : expected.headMap((Integer) range.to())
+                            : range.to() == null ? expected.tailMap((Integer) range.from())
+                            : expected.subMap((Integer) range.from(), (Integer) range.to());
+                    removed += sub.size();
+                    sub.clear();
+                }
+
+                assertEquals(removed, tree.parallelRemoveRanges(ranges, pool));
+                checkInvariants(tree);
+                assertEquals(expected.size(), tree.keyCount());
+                Cursor cursor = tree.scan();
+                for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+                    assertTrue(cursor.next());
+                    assertEquals(entry.getKey(), cursor.key());
+                }
+                assertFalse(cursor.next());
+
+                // The tree carries on working normally
+                for (int i = 0; i < 1000; i++) {
+                    int key = random.nextInt(n * 2 + 1);
+                    if (random.nextBoolean()) {
+                        tree.insert(key, "val" + key);
+                        expected.put(key, "val" + key);
+                    } else {
+                        assertEquals(expected.remove(key), tree.remove(key));
+                    }
+                }
+                checkInvariants(tree);
+            }
+        }
+    }
+
+    @Test
+    public void testRemoveEverything() {
+        BasicBplusTree tree = new BasicBplusTree(8);
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i, "val" + i);
+        }
+        assertEquals(1000, tree.parallelRemoveRanges(Collections.singletonList(new KeyRange(null, null)), pool));
+        checkInvariants(tree);
+        assertTrue(tree.getRoot().isLeaf());
+        tree.insert(1, "val1");
+        assertEquals("val1", tree.find(1));
+    }
+
+    @Test
+    public void testOverlappingRanges() {
+        List<KeyRange> ranges = new ArrayList<>();
+        ranges.add(new KeyRange(10, 20));
+        ranges.add(new KeyRange(null, 11));
+        try {
+            new BasicBplusTree(8).parallelRemoveRanges(ranges, pool);
+            fail("should throw");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static int leafCount(BasicBplusTree tree) {
+        int leaves = 0;
+        for (LeafNode leaf = tree.firstLeaf(); leaf != null; leaf = leaf.next()) {
+            leaves++;
+        }
+        return leaves;
+    }
+
+    private static Map.Entry<Integer, String> entry(int i) {
+        return new AbstractMap.SimpleImmutableEntry<>(i, "val" + i);
+    }
+
+    private void checkInvariants(BasicBplusTree tree) {
+        new InvariantChecker().checkInvariants(tree);
+    }
+}
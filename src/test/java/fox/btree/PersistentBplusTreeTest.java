@@ -0,0 +1,179 @@
+package fox.btree;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.TestCase.*;
+
+public class PersistentBplusTreeTest {
+
+    private Random random = new Random();
+
+    @Test
+    public void testRandomInsertRemove() {
+        for (int b : new int[]{4, 5, 16}) {
+            PersistentBplusTree tree = new PersistentBplusTree(b);
+            Map<Integer, String> expected = new TreeMap<>();
+            for (int i = 0; i < 5000; i++) {
+                int key = random.nextInt(1000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(key), tree.remove(key));
+                } else {
+                    expected.put(key, "val" + key);
+                    tree.insert(key, "val" + key);
+                }
+                checkInvariants(tree.current(), b);
+            }
+            assertEquals(expected.size(), tree.keyCount());
+            for (int key = 0; key < 1000; key++) {
+                assertEquals(expected.get(key), tree.find(key));
+            }
+            checkScan(expected, tree.scan());
+        }
+    }
+
+    @Test
+    public void testSnapshotIsolation() {
+        PersistentBplusTree tree = new PersistentBplusTree(6);
+        TreeMap<Integer, String> before = new TreeMap<>();
+        for (int i = 0; i < 500; i++) {
+            tree.insert(i * 2, "val" + i * 2);
+            before.put(i * 2, "val" + i * 2);
+        }
+        Snapshot snapshot = tree.snapshot();
+        assertSame(snapshot, tree.snapshot());
+        for (int i = 0; i < 2000; i++) {
+            int key = random.nextInt(1000);
+            if (random.nextBoolean()) {
+                tree.insert(key, "val" + key);
+            } else {
+                tree.remove(key);
+            }
+        }
+        assertEquals(before.size(), snapshot.keyCount());
+        for (int key = 0; key < 1000; key++) {
+            assertEquals(before.get(key), snapshot.find(key));
+        }
+        checkInvariants(snapshot, 6);
+        checkScan(before, snapshot.scan());
+        checkScan(before.subMap(101, false, 707, true), snapshot.scan(101, false, 707, true));
+        checkScan(before.subMap(100, false, 708, false), snapshot.scan(100, false, 708, false));
+        checkScan(before.subMap(100, true, 708, true), snapshot.scan(100, true, 708, true));
+        assertTrue(tree.snapshot().version() > snapshot.version());
+    }
+
+    @Test
+    public void testStructuralSharing() {
+        PersistentBplusTree tree = new PersistentBplusTree(16);
+        for (int i = 0; i < 10000; i++) {
+            tree.insert(i, "val" + i);
+        }
+        Snapshot before = tree.snapshot();
+        long copied = tree.nodesCopied();
+        tree.insert(5000, "val5000");
+        Snapshot after = tree.snapshot();
+        Set<PersistentNode> beforeNodes = nodes(before.root);
+        Set<PersistentNode> afterNodes = nodes(after.root);
+        int height = 0;
+        for (PersistentNode node = after.root; !node.isLeaf(); node = node.children[0]) {
+            height++;
+        }
+        // Only the path to the changed leaf is new
+        afterNodes.removeAll(beforeNodes);
+        assertEquals(height + 1, afterNodes.size());
+        assertEquals(height + 1, tree.nodesCopied() - copied);
+    }
+
+    @Test
+    public void testReclamation() throws Exception {
+        PersistentBplusTree tree = new PersistentBplusTree(8);
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i, "val" + i);
+            tree.snapshot();
+        }
+        // The current snapshot is still reachable from the tree itself
+        for (int i = 0; i < 50 && tree.reclaimedSnapshots() < 999; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(999, tree.reclaimedSnapshots());
+        assertEquals(1, tree.openSnapshots());
+    }
+
+    @Test
+    public void testReadersDuringWrites() throws Exception {
+        PersistentBplusTree tree = new PersistentBplusTree(8);
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i, "val" + i);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    Snapshot snapshot = tree.snapshot();
+                    int count = 0;
+                    Cursor cursor = snapshot.scan();
+                    while (cursor.next()) {
+                        count++;
+                    }
+                    assertEquals(snapshot.keyCount(), count);
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                tree.insert(key, "val" + key);
+            } else {
+                tree.remove(key);
+            }
+        }
+        done.set(true);
+        reader.join();
+        if (failure.get() != null) {
+            throw new AssertionError("Reader failed", failure.get());
+        }
+        checkInvariants(tree.snapshot(), 8);
+    }
+
+    private Set<PersistentNode> nodes(PersistentNode root) {
+        Set<PersistentNode> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        addNodes(root, nodes);
+        return nodes;
+    }
+
+    private void addNodes(PersistentNode node, Set<PersistentNode> nodes) {
+        nodes.add(node);
+        if (!node.isLeaf()) {
+            for (PersistentNode child : node.children) {
+                addNodes(child, nodes);
+            }
+        }
+    }
+
+    private void checkScan(Map<Integer, String> expected, Cursor cursor) {
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertTrue(cursor.next());
+            assertEquals(entry.getKey(), cursor.key());
+            assertEquals(entry.getValue(), cursor.value());
+        }
+        assertFalse(cursor.next());
+        assertFalse(cursor.next());
+    }
+
+    private void checkInvariants(Snapshot snapshot, int b) {
+        new PersistentInvariantChecker().checkInvariants(snapshot, b);
+    }
+}
@@ -0,0 +1,180 @@
+package fox.btree;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static junit.framework.TestCase.*;
+
+public class PrefixLeafNodeTest {
+
+    private Random random = new Random();
+
+    @Test
+    public void testRandomInsertRemove() {
+        for (int b : new int[]{4, 5, 16, 64}) {
+            BasicBplusTree tree = new BasicBplusTree(b, KeyCompression.PREFIX);
+            TreeMap<String, String> expected = new TreeMap<>();
+            for (int i = 0; i < 5000; i++) {
+                String key = randomKey();
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(key), tree.remove(key));
+                } else {
+                    expected.put(key, "val" + key);
+                    tree.insert(key, "val" + key);
+                }
+                if (i % 100 == 0) {
+                    new InvariantChecker().checkInvariants(tree);
+                }
+            }
+            new InvariantChecker().checkInvariants(tree);
+            assertEquals(expected.size(), tree.keyCount());
+            for (int i = 0; i < 1000; i++) {
+                String key = randomKey();
+                assertEquals(expected.get(key), tree.find(key));
+            }
+            Cursor cursor = tree.scan();
+            for (Map.Entry<String, String> entry : expected.entrySet()) {
+                assertTrue(cursor.next());
+                assertEquals(entry.getKey(), cursor.key());
+                assertEquals(entry.getValue(), cursor.value());
+            }
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    public void testKeysWithoutSharedPrefix() {
+        BasicBplusTree tree = new BasicBplusTree(8, KeyCompression.PREFIX);
+        String[] keys = {"tenant1/a", "tenant1/b", "", "tenant1", "t", "tenant1/a/x", "zzz", "tenant2/a", "a"};
+        for (String key : keys) {
+            tree.insert(key, "val" + key);
+            new InvariantChecker().checkInvariants(tree);
+        }
+        for (String key : keys) {
+            assertEquals("val" + key, tree.find(key));
+        }
+        assertNull(tree.find("tenant1/"));
+        assertNull(tree.find("tenant0"));
+        assertNull(tree.find("zzzz"));
+    }
+
+    @Test
+    public void testSeparatorsAreTruncated() {
+        BasicBplusTree tree = new BasicBplusTree(16, KeyCompression.PREFIX);
+        for (int i = 0; i < 2000; i++) {
+            String key = "tenant-" + (i % 3) + "/namespace/" + Long.toHexString(random.nextLong());
+            tree.insert(key, "val" + key);
+        }
+        new InvariantChecker().checkInvariants(tree);
+        Node internal = tree.getRoot();
+        while (!internal.getChild(0).isLeaf()) {
+            internal = internal.getChild(0);
+        }
+        int separatorChars = 0;
+        int keyChars = 0;
+        for (int i = 1; i < internal.numKeys(); i++) {
+            String separator = (String) internal.getKey(i);
+            String first = (String) internal.getChild(i).getKey(0);
+            assertTrue(first.startsWith(separator));
+            separatorChars += separator.length();
+            keyChars += first.length();
+        }
+        assertTrue(separatorChars < keyChars * 3 / 4);
+    }
+
+    @Test
+    public void testPrefixStoredOnce() {
+        BasicBplusTree tree = new BasicBplusTree(32, KeyCompression.PREFIX);
+        int rawChars = 0;
+        for (int i = 0; i < 31; i++) {
+            String key = "some-long-tenant-name/some-long-namespace/" + i;
+            rawChars += key.length();
+            tree.insert(key, "val" + key);
+        }
+        PrefixLeafNode leaf = (PrefixLeafNode) tree.getRoot();
+        assertEquals("some-long-tenant-name/some-long-namespace/", leaf.prefix());
+        assertTrue(leaf.storedChars() < rawChars / 10);
+    }
+
+    @Test
+    public void testBulkLoadAndPutAll() {
+        BasicBplusTree tree = new BasicBplusTree(8, KeyCompression.PREFIX);
+        TreeMap<String, String> expected = new TreeMap<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = randomKey();
+            expected.put(key, "val" + key);
+        }
+        tree.bulkLoad(expected.entrySet().stream(), 0.8);
+        new InvariantChecker().checkInvariants(tree);
+        Map<String, String> batch = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            String key = randomKey();
+            batch.put(key, "val" + key);
+        }
+        tree.putAll(batch);
+        expected.putAll(batch);
+        new InvariantChecker().checkInvariants(tree);
+        assertEquals(expected.size(), tree.keyCount());
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), tree.find(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testRemoveRanges() {
+        BasicBplusTree tree = new BasicBplusTree(8, KeyCompression.PREFIX);
+        TreeMap<String, String> expected = new TreeMap<>();
+        for (int i = 0; i < 2000; i++) {
+            String key = randomKey();
+            expected.put(key, "val" + key);
+            tree.insert(key, "val" + key);
+        }
+        List<KeyRange> ranges = Arrays.asList(new KeyRange("tenant-0/ns-1/", "tenant-0/ns-2/"),
+                new KeyRange("tenant-2/ns-0/1", "tenant-2/ns-0/2"), new KeyRange("tenant-3/", null));
+        int removed = 0;
+        for (KeyRange range : ranges) {
+            Map<String, String> sub = range.to() == null ? expected.tailMap((String) range.from())
+                    : expected.subMap((String) range.from(), (String) range.to());
+            removed += sub.size();
+            sub.clear();
+        }
+        assertEquals(removed, tree.parallelRemoveRanges(ranges));
+        new InvariantChecker().checkInvariants(tree);
+        assertEquals(expected.size(), tree.keyCount());
+        Cursor cursor = tree.scan();
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertTrue(cursor.next());
+            assertEquals(entry.getKey(), cursor.key());
+            assertEquals(entry.getValue(), cursor.value());
+        }
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    public void testRejectsNonStringKeys() {
+        BasicBplusTree tree = new BasicBplusTree(8, KeyCompression.PREFIX);
+        try {
+            tree.insert(1, "val1");
+            fail("should throw exception");
+        } catch (IllegalArgumentException e) {
+            // OK
+        }
+        try {
+            tree.bulkLoad(Collections.singletonMap(1, "val1").entrySet().stream(), 1);
+            fail("should throw exception");
+        } catch (IllegalArgumentException e) {
+            // OK
+        }
+    }
+
+    private String randomKey() {
+        return "tenant-" + random.nextInt(4) + "/ns-" + random.nextInt(3) + "/" + random.nextInt(400);
+    }
+}
@@ -0,0 +1,226 @@
+package fox.btree;
+
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static junit.framework.TestCase.*;
+
+public class RelaxedRebalancingTest {
+
+    private Random random = new Random();
+
+    @Test
+    public void testMergesDeferred() {
+        BasicBplusTree tree = tree(8, 10000);
+        tree.relaxRebalancing(0, 0);
+        TreeStats stats = tree.enableMetrics();
+        for (int i = 0; i < 10000; i += 2) {
+            tree.remove(i);
+        }
+        checkInvariants(tree);
+        assertEquals(0, stats.getMerges());
+        assertEquals(0, stats.getSiblingSteals());
+        assertTrue(tree.pendingTidyCount() > 0);
+
+        assertTrue(tree.tidy() > 0);
+        assertEquals(0, tree.pendingTidyCount());
+        assertTrue(stats.getMerges() > 0);
+        // Back to the minimum everywhere, so the strict checks pass too
+        new InvariantChecker().checkInvariants(tree.getRoot(), 8);
+        assertEquals(5000, tree.keyCount());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i % 2 == 0 ? null : "val" + i, tree.find(i));
+        }
+    }
+
+    @Test
+    public void testEmptyLeaves() {
+        BasicBplusTree tree = tree(8, 10000);
+        tree.relaxRebalancing(0, 0);
+        // Empty out runs of whole leaves
+        for (int i = 0; i < 10000; i++) {
+            if (i / 500 % 2 == 0) {
+                tree.remove(i);
+            }
+        }
+        checkInvariants(tree);
+
+        int count = 0;
+        Cursor cursor = tree.scan();
+        while (cursor.next()) {
+            assertEquals(1, (Integer) cursor.key() / 500 % 2);
+            count++;
+        }
+        assertEquals(5000, count);
+        count = 0;
+        cursor = tree.descendingScan();
+        while (cursor.next()) {
+            count++;
+        }
+        assertEquals(5000, count);
+        assertEquals(5000, tree.stream().count());
+        assertEquals(5000, tree.parallelStream().count());
+        assertEquals(500, tree.stream(1000, 2000).count());
+
+        // Inserting back into the empty leaves
+        for (int i = 0; i < 500; i++) {
+            tree.insert(i, "val" + i);
+        }
+        checkInvariants(tree);
+        tree.tidy();
+        checkInvariants(tree);
+        assertEquals(5500, tree.keyCount());
+    }
+
+    @Test
+    public void testFloor() {
+        for (int b : new int[]{4, 5, 8, 16}) {
+            for (int floor = 0; floor <= b / 2 - 1; floor++) {
+                BasicBplusTree tree = tree(b, 5000);
+                tree.relaxRebalancing(floor, 0);
+                TreeMap<Integer, String> expected = new TreeMap<>();
+                for (int i = 0; i < 5000; i++) {
+                    expected.put(i, "val" + i);
+                }
+                for (int i = 0; i < 20000; i++) {
+                    int key = random.nextInt(5000);
+                    if (random.nextInt(3) == 0) {
+                        tree.insert(key, "val" + key);
+                        expected.put(key, "val" + key);
+                    } else {
+                        assertEquals(expected.remove(key), tree.remove(key));
+                    }
+                    if (i % 500 == 0) {
+                        checkInvariants(tree);
+                    }
+                    if (i % 5000 == 0) {
+                        tree.tidy();
+                        checkInvariants(tree);
+                    }
+                }
+                checkInvariants(tree);
+                assertEquals(expected, contents(tree));
+                tree.strictRebalancing();
+                assertFalse(tree.isRelaxed());
+                new InvariantChecker().checkInvariants(tree.getRoot(), b);
+                assertEquals(expected, contents(tree));
+            }
+        }
+    }
+
+    @Test
+    public void testTidyThreshold() {
+        BasicBplusTree tree = tree(8, 10000);
+        tree.relaxRebalancing(0, 16);
+        for (int i = 0; i < 10000; i++) {
+            if (random.nextBoolean()) {
+                tree.remove(i);
+                assertTrue(tree.pendingTidyCount() < 16);
+            }
+        }
+        checkInvariants(tree);
+    }
+
+    @Test
+    public void testChurn() {
+        // Remove keys then put them back again, which would merge and split the same leaves over and over
+        BasicBplusTree strict = tree(16, 10000);
+        BasicBplusTree relaxed = tree(16, 10000);
+        relaxed.relaxRebalancing(0, 64);
+        TreeStats strictStats = strict.enableMetrics();
+        TreeStats relaxedStats = relaxed.enableMetrics();
+        for (int round = 0; round < 20; round++) {
+            int start = random.nextInt(9000);
+            for (BasicBplusTree tree : new BasicBplusTree[]{strict, relaxed}) {
+                for (int i = start; i < start + 1000; i++) {
+                    tree.remove(i);
+                }
+                for (int i = start; i < start + 1000; i++) {
+                    tree.insert(i, "val" + i);
+                }
+                checkInvariants(tree);
+            }
+        }
+        assertEquals(contents(strict), contents(relaxed));
+        assertTrue(relaxedStats.getMerges() < strictStats.getMerges());
+        assertTrue(relaxedStats.getLeafSplits() < strictStats.getLeafSplits());
+    }
+
+    @Test
+    public void testSkewedSplits() {
+        BasicBplusTree tree = new BasicBplusTree(8, SplitPolicy.AUTO);
+        for (int i = 0; i < 10000; i++) {
+            tree.insert(i, "val" + i);
+        }
+        tree.relaxRebalancing(0, 0);
+        for (int i = 0; i < 10000; i++) {
+            if (random.nextInt(4) != 0) {
+                tree.remove(i);
+            }
+        }
+        checkInvariants(tree);
+        tree.strictRebalancing();
+        checkInvariants(tree);
+    }
+
+    @Test
+    public void testBulkLoadAfterEmptying() {
+        for (boolean parallel : new boolean[]{false, true}) {
+            BasicBplusTree tree = tree(8, 200);
+            tree.relaxRebalancing(0, 0);
+            for (int i = 0; i < 200; i++) {
+                tree.remove(i);
+            }
+            // Nothing left but empty leaves waiting to be tidied
+            assertEquals(0, tree.keyCount());
+            assertFalse(tree.getRoot().isLeaf());
+
+            List<Map.Entry<Comparable, Object>> entries = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(i, "val" + i));
+            }
+            if (parallel) {
+                tree.parallelBulkLoad(entries, 0.8);
+            } else {
+                tree.bulkLoad(entries.iterator(), 0.8);
+            }
+            assertEquals(0, tree.pendingTidyCount());
+            checkInvariants(tree);
+            assertEquals(1000, tree.keyCount());
+            assertEquals(1000, tree.stream().count());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFloorOverMinimum() {
+        new BasicBplusTree(8).relaxRebalancing(4, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeFloor() {
+        new BasicBplusTree(8).relaxRebalancing(-1, 0);
+    }
+
+    private static BasicBplusTree tree(int b, int size) {
+        BasicBplusTree tree = new BasicBplusTree(b);
+        for (int i = 0; i < size; i++) {
+            tree.insert(i, "val" + i);
+        }
+        return tree;
+    }
+
+    private static Map<Comparable, Object> contents(BasicBplusTree tree) {
+        return tree.stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    private void checkInvariants(BasicBplusTree tree) {
+        new InvariantChecker().checkInvariants(tree);
+    }
+}
@@ -0,0 +1,84 @@
+package fox.btree;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+
+public class SearchStrategyTest {
+
+    private final SearchStrategy[] strategies = {SearchStrategy.LINEAR, SearchStrategy.BINARY,
+            SearchStrategy.BRANCHLESS_BINARY, SearchStrategy.INTERPOLATION};
+
+    private Random random = new Random();
+
+    @Test
+    public void testMatchesArraysBinarySearch() {
+        for (int size = 0; size < 70; size++) {
+            Comparable[] keys = new Comparable[size + 5];
+            Set<Long> used = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                long k;
+                do {
+                    k = random.nextInt(200) - 100;
+                } while (!used.add(k));
+                keys[i] = k;
+            }
+            Arrays.sort(keys, 0, size);
+            for (long k = -105; k <= 105; k++) {
+                for (int from = 0; from <= Math.min(size, 2); from++) {
+                    int expected = Arrays.binarySearch(keys, from, size, k);
+                    for (SearchStrategy strategy : strategies) {
+                        assertEquals(strategy.getClass().getSimpleName() + " size " + size + " key " + k,
+                                expected, strategy.search(keys, from, size, k));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInterpolationFallsBackForNonNumericKeys() {
+        Comparable[] keys = {"a", "c", "e"};
+        assertEquals(1, SearchStrategy.INTERPOLATION.search(keys, 0, 3, "c"));
+        assertEquals(-3, SearchStrategy.INTERPOLATION.search(keys, 0, 3, "d"));
+    }
+
+    @Test
+    public void testDefaultForBranchingFactor() {
+        assertEquals(SearchStrategy.LINEAR, SearchStrategy.forBranchingFactor(4));
+        assertEquals(SearchStrategy.BINARY, SearchStrategy.forBranchingFactor(128));
+    }
+
+    @Test
+    public void testTreeWithEachStrategy() {
+        for (SearchStrategy strategy : strategies) {
+            for (int b : new int[]{4, 8, 64}) {
+                BasicBplusTree tree = new BasicBplusTree(b, strategy);
+                int numKeys = 2000;
+                Set<Long> keys = new HashSet<>();
+                for (int i = 0; i < numKeys; i++) {
+                    long key = random.nextInt(numKeys);
+                    keys.add(key);
+                    tree.insert(key, "val" + key);
+                }
+                new InvariantChecker().checkInvariants(tree);
+                assertEquals(keys.size(), tree.keyCount());
+                for (Long key : keys) {
+                    assertEquals("val" + key, tree.find(key));
+                }
+                assertNull(tree.find((long) numKeys + 1));
+                for (Long key : keys) {
+                    assertEquals("val" + key, tree.remove(key));
+                }
+                new InvariantChecker().checkInvariants(tree);
+                assertEquals(0, tree.keyCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package fox.btree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.TestCase.*;
+
+public class ShardedBplusTreeTest {
+
+    private Random random = new Random();
+
+    @Test
+    public void testRouting() {
+        ShardedBplusTree tree = new ShardedBplusTree(16, new Comparable[]{2500, 5000, 7500},
+                Double.POSITIVE_INFINITY);
+        try {
+            assertEquals(4, tree.shardCount());
+            for (int i = 0; i < 10000; i++) {
+                tree.insert(i, "val" + i);
+            }
+            checkInvariants(tree);
+            for (int size : tree.shardSizes()) {
+                assertEquals(2500, size);
+            }
+            for (int i = 0; i < 10000; i++) {
+                assertEquals("val" + i, tree.find(i));
+            }
+            for (int i = 0; i < 10000; i += 2) {
+                assertEquals("val" + i, tree.remove(i));
+            }
+            assertNull(tree.find(0));
+            assertNull(tree.remove(0));
+            assertEquals(5000, tree.keyCount());
+            checkInvariants(tree);
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test
+    public void testScan() {
+        ShardedBplusTree tree = new ShardedBplusTree(8, new Comparable[]{100, 1000, 1001, 5000},
+                Double.POSITIVE_INFINITY);
+        try {
+            NavigableMap<Integer, String> expected = new TreeMap<>();
+            for (int i = 0; i < 3000; i++) {
+                int key = random.nextInt(10000);
+                tree.insert(key, "val" + key);
+                expected.put(key, "val" + key);
+            }
+            assertEquals(expected, contents(tree.scan()));
+            for (int i = 0; i < 200; i++) {
+                int from = random.nextInt(11000) - 500;
+                int to = from + random.nextInt(6000);
+                boolean fromInclusive = random.nextBoolean();
+                boolean toInclusive = random.nextBoolean();
+                assertEquals(expected.subMap(from, fromInclusive, to, toInclusive),
+                        contents(tree.scan(from, fromInclusive, to, toInclusive)));
+            }
+            assertEquals(expected.headMap(1000, false), contents(tree.scan(null, true, 1000, false)));
+            assertEquals(expected.tailMap(1000, true), contents(tree.scan(1000, true, null, true)));
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test
+    public void testPutAll() {
+        ShardedBplusTree tree = new ShardedBplusTree(16, 1000, 2000, 3000);
+        try {
+            Map<Integer, String> batch = new HashMap<>();
+            for (int i = 0; i < 4000; i++) {
+                int key = random.nextInt(4000);
+                batch.put(key, "val" + key);
+            }
+            tree.putAll(batch);
+            assertEquals(batch.size(), tree.keyCount());
+            assertEquals(new TreeMap<>(batch), contents(tree.scan()));
+            checkInvariants(tree);
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test
+    public void testRebalance() {
+        // All the keys go into the last shard to start with
+        ShardedBplusTree tree = new ShardedBplusTree(16, new Comparable[]{-30, -20, -10},
+                Double.POSITIVE_INFINITY);
+        try {
+            for (int i = 0; i < 10000; i++) {
+                tree.insert(i, "val" + i);
+            }
+            assertEquals(10000, tree.shardSizes()[3]);
+            // Each key moves down a shard at a time
+            assertEquals(7500 + 5000 + 2500, tree.rebalance());
+            checkInvariants(tree);
+            for (int size : tree.shardSizes()) {
+                assertEquals(2500, size);
+            }
+            assertEquals(0, tree.rebalance());
+
+            // Then all into the first
+            for (int i = 0; i < 10000; i++) {
+                tree.remove(i);
+                tree.insert(-1 - i, "val" + (-1 - i));
+            }
+            assertTrue(tree.rebalance() > 0);
+            checkInvariants(tree);
+            for (int size : tree.shardSizes()) {
+                assertEquals(2500, size);
+            }
+            for (int i = 1; i <= 10000; i++) {
+                assertEquals("val" + -i, tree.find(-i));
+            }
+            assertEquals(3, tree.rebalances());
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test
+    public void testEmptyShards() {
+        ShardedBplusTree tree = new ShardedBplusTree(16, new Comparable[]{10, 20, 30}, Double.POSITIVE_INFINITY);
+        try {
+            tree.insert(21, "val21");
+            tree.insert(22, "val22");
+            // Two keys spread over four shards leaves two of them empty
+            assertEquals(2, tree.rebalance());
+            checkInvariants(tree);
+            Comparable[] bounds = tree.lowerBounds();
+            assertEquals(bounds[2], bounds[3]);
+            assertEquals(0, tree.shardSizes()[2]);
+
+            for (int key : new int[]{0, 15, 21, 22, 100}) {
+                tree.insert(key, "val" + key);
+            }
+            checkInvariants(tree);
+            assertEquals(0, tree.shardSizes()[2]);
+            assertEquals("[0, 15, 21, 22, 100]", contents(tree.scan()).keySet().toString());
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test
+    public void testAutomaticRebalance() throws Exception {
+        ShardedBplusTree tree = new ShardedBplusTree(16, 100000, 200000, 300000);
+        try {
+            // Sequential keys all land in the first shard until it is rebalanced
+            for (int i = 0; i < 50000; i++) {
+                tree.insert(i, "val" + i);
+            }
+            long deadline = System.currentTimeMillis() + 10000;
+            while (tree.rebalances() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(tree.rebalances() > 0);
+            assertTrue(tree.keysMoved() > 0);
+            // The balancer may still be running, so wait for it by rebalancing again
+            tree.rebalance();
+            checkInvariants(tree);
+            int[] sizes = tree.shardSizes();
+            for (int size : sizes) {
+                assertTrue(size > 10000);
+            }
+        } finally {
+            tree.close();
+        }
+    }
+
+    /**
+     * Writers own disjoint sets of keys across all the shards while the shards are rebalanced underneath them, and a
+     * scanner checks it always sees the keys that are never removed, in order.
+     */
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        ShardedBplusTree tree = new ShardedBplusTree(8, new Comparable[]{1000, 2000, 3000}, 1.5);
+        int stableKeys = 500;
+        for (int i = 1; i <= stableKeys; i++) {
+            tree.insert(-i, "val" + -i);
+        }
+        int numThreads = 4;
+        int keyRange = 20000;
+        List<Map<Integer, String>> expected = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        try {
+            for (int t = 0; t < numThreads; t++) {
+                int id = t;
+                Map<Integer, String> mine = new HashMap<>();
+                expected.add(mine);
+                threads.add(new Thread(() -> {
+                    Random rand = new Random(id);
+                    try {
+                        start.await();
+                        for (int i = 0; i < 20000; i++) {
+                            int key = rand.nextInt(keyRange / numThreads) * numThreads + id;
+                            int op = rand.nextInt(10);
+                            if (op < 5) {
+                                tree.insert(key, "val" + key);
+                                mine.put(key, "val" + key);
+                            } else if (op < 7) {
+                                assertEquals(mine.remove(key), tree.remove(key));
+                            } else {
+                                assertEquals(mine.get(key), tree.find(key));
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }));
+            }
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    while (!done.get()) {
+                        tree.rebalance();
+                        Cursor cursor = tree.scan(null, true, 0, false);
+                        int next = -stableKeys;
+                        while (cursor.next()) {
+                            assertEquals(next, cursor.key());
+                            next++;
+                        }
+                        assertEquals(0, next);
+                        Comparable prev = null;
+                        cursor = tree.scan();
+                        while (cursor.next()) {
+                            assertTrue(prev == null || prev.compareTo(cursor.key()) < 0);
+                            prev = cursor.key();
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            start.countDown();
+            for (int t = 0; t < numThreads; t++) {
+                threads.get(t).join();
+            }
+            done.set(true);
+            threads.get(numThreads).join();
+            if (failure.get() != null) {
+                throw new AssertionError("Worker failed", failure.get());
+            }
+            tree.rebalance();
+            checkInvariants(tree);
+            int total = stableKeys;
+            for (Map<Integer, String> mine : expected) {
+                total += mine.size();
+                for (Map.Entry<Integer, String> entry : mine.entrySet()) {
+                    assertEquals(entry.getValue(), tree.find(entry.getKey()));
+                }
+            }
+            assertEquals(total, tree.keyCount());
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSplitKeysOutOfOrder() {
+        new ShardedBplusTree(16, 20, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoSkew() {
+        new ShardedBplusTree(16, new Comparable[]{10}, 1.0);
+    }
+
+    private static Map<Comparable, Object> contents(Cursor cursor) {
+        Map<Comparable, Object> contents = new TreeMap<>();
+        Comparable prev = null;
+        while (cursor.next()) {
+            assertTrue(prev == null || prev.compareTo(cursor.key()) < 0);
+            prev = cursor.key();
+            contents.put(cursor.key(), cursor.value());
+        }
+        return contents;
+    }
+
+    private void checkInvariants(ShardedBplusTree tree) {
+        new ShardedInvariantChecker().checkInvariants(tree);
+    }
+}
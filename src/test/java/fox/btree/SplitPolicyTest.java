@@ -0,0 +1,126 @@
+package fox.btree;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import static junit.framework.TestCase.*;
+
+public class SplitPolicyTest {
+
+    private Random random = new Random();
+
+    @Test
+    public void testAscendingKeys() {
+        for (int b : new int[]{4, 5, 16, 64}) {
+            assertTrue(fill(ascending(b, SplitPolicy.MIDDLE)) < 0.8);
+            assertTrue(fill(ascending(b, SplitPolicy.APPEND)) > 0.95);
+            assertTrue(fill(ascending(b, SplitPolicy.AUTO)) > 0.95);
+            // Prepending doesn't help
+            assertTrue(fill(ascending(b, SplitPolicy.PREPEND)) < 0.8);
+        }
+    }
+
+    @Test
+    public void testDescendingKeys() {
+        for (int b : new int[]{4, 5, 16, 64}) {
+            assertTrue(fill(descending(b, SplitPolicy.MIDDLE)) < 0.8);
+            assertTrue(fill(descending(b, SplitPolicy.PREPEND)) > 0.95);
+            assertTrue(fill(descending(b, SplitPolicy.AUTO)) > 0.95);
+        }
+    }
+
+    @Test
+    public void testInternalNodesFilled() {
+        BasicBplusTree tree = ascending(16, SplitPolicy.APPEND);
+        // Full leaves of 15 keys, and full internal nodes of 16 children above them
+        int leaves = (20000 + 14) / 15;
+        assertTrue(tree.enableMetrics().getNodeCount() < leaves * 1.08);
+    }
+
+    @Test
+    public void testRandomKeys() {
+        for (SplitPolicy policy : SplitPolicy.values()) {
+            for (int b : new int[]{4, 5, 16}) {
+                BasicBplusTree tree = new BasicBplusTree(b, policy);
+                for (int i = 0; i < 20000; i++) {
+                    int key = random.nextInt(1000000);
+                    tree.insert(key, "val" + key);
+                }
+                checkInvariants(tree);
+                // Random inserts split in the middle whatever the policy
+                assertTrue(fill(tree) > 0.6 && fill(tree) < 0.8);
+            }
+        }
+    }
+
+    @Test
+    public void testMixedWorkload() {
+        for (SplitPolicy policy : SplitPolicy.values()) {
+            for (int b : new int[]{4, 5, 8, 16}) {
+                BasicBplusTree tree = new BasicBplusTree(b, policy);
+                TreeMap<Integer, String> expected = new TreeMap<>();
+                int next = 0;
+                int first = 0;
+                for (int i = 0; i < 20000; i++) {
+                    int key;
+                    switch (random.nextInt(4)) {
+                        case 0:
+                            key = random.nextInt(next - first + 1) + first;
+                            assertEquals(expected.remove(key), tree.remove(key));
+                            break;
+                        case 1:
+                            key = --first;
+                            tree.insert(key, "val" + key);
+                            expected.put(key, "val" + key);
+                            break;
+                        default:
+                            key = next++;
+                            tree.insert(key, "val" + key);
+                            expected.put(key, "val" + key);
+                    }
+                    if (i % 100 == 0) {
+                        checkInvariants(tree);
+                    }
+                }
+                checkInvariants(tree);
+                // Drain it, which has to rebalance around any under-filled edge nodes
+                while (!expected.isEmpty()) {
+                    Integer key = random.nextBoolean() ? expected.firstKey() : expected.lastKey();
+                    assertEquals(expected.remove(key), tree.remove(key));
+                    if (expected.size() % 100 == 0) {
+                        checkInvariants(tree);
+                    }
+                }
+                checkInvariants(tree);
+            }
+        }
+    }
+
+    private BasicBplusTree ascending(int b, SplitPolicy policy) {
+        BasicBplusTree tree = new BasicBplusTree(b, policy);
+        for (int i = 0; i < 20000; i++) {
+            tree.insert(i, "val" + i);
+        }
+        checkInvariants(tree);
+        return tree;
+    }
+
+    private BasicBplusTree descending(int b, SplitPolicy policy) {
+        BasicBplusTree tree = new BasicBplusTree(b, policy);
+        for (int i = 20000; i > 0; i--) {
+            tree.insert(i, "val" + i);
+        }
+        checkInvariants(tree);
+        return tree;
+    }
+
+    private static double fill(BasicBplusTree tree) {
+        return tree.enableMetrics().getAverageLeafFill();
+    }
+
+    private void checkInvariants(BasicBplusTree tree) {
+        new InvariantChecker().checkInvariants(tree);
+    }
+}
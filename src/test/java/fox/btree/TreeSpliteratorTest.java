@@ -0,0 +1,128 @@
+package fox.btree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static junit.framework.TestCase.*;
+
+public class TreeSpliteratorTest {
+
+    private Random random = new Random();
+
+    @Test
+    public void testStreamMatchesScan() {
+        for (int b : new int[]{4, 16, 128}) {
+            BasicBplusTree tree = new BasicBplusTree(b);
+            TreeMap<Integer, String> expected = populate(tree, 5000);
+            List<Integer> keys = tree.stream().map(e -> (Integer) e.getKey()).collect(Collectors.toList());
+            assertEquals(new ArrayList<>(expected.keySet()), keys);
+            assertEquals(expected, tree.parallelStream()
+                    .collect(Collectors.toMap(e -> (Integer) e.getKey(), e -> (String) e.getValue())));
+            // Parallel streams still respect the encounter order
+            assertEquals(keys, tree.parallelStream().map(e -> (Integer) e.getKey()).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testRanges() {
+        BasicBplusTree tree = new BasicBplusTree(8);
+        TreeMap<Integer, String> expected = populate(tree, 2000);
+        for (int i = 0; i < 200; i++) {
+            int from = random.nextInt(11000) - 500;
+            int to = from + random.nextInt(3000);
+            List<Integer> range = new ArrayList<>(expected.subMap(from, to).keySet());
+            assertEquals(range, tree.stream(from, to).map(e -> (Integer) e.getKey()).collect(Collectors.toList()));
+            assertEquals(range.stream().mapToLong(k -> k).sum(),
+                    tree.parallelStream(from, to).mapToLong(e -> (Integer) e.getKey()).sum());
+            assertEquals(range.size(), tree.spliterator(from, true, to, false).estimateSize());
+        }
+        assertEquals(0, tree.stream(10, 5).count());
+    }
+
+    @Test
+    public void testSplitsAreDisjointAndSized() {
+        BasicBplusTree tree = new BasicBplusTree(16);
+        TreeMap<Integer, String> expected = populate(tree, 20000);
+        Spliterator<Map.Entry<Comparable, Object>> whole = tree.spliterator(null, true, null, true);
+        assertEquals(Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.SIZED
+                | Spliterator.SUBSIZED | Spliterator.NONNULL, whole.characteristics());
+        assertEquals(expected.size(), whole.getExactSizeIfKnown());
+
+        // Keep splitting the biggest piece, checking the pieces stay contiguous, in order and exactly sized
+        List<Spliterator<Map.Entry<Comparable, Object>>> pieces = new ArrayList<>();
+        pieces.add(whole);
+        for (int round = 0; round < 32; round++) {
+            int biggest = 0;
+            for (int i = 1; i < pieces.size(); i++) {
+                if (pieces.get(i).estimateSize() > pieces.get(biggest).estimateSize()) {
+                    biggest = i;
+                }
+            }
+            Spliterator<Map.Entry<Comparable, Object>> piece = pieces.get(biggest);
+            long size = piece.estimateSize();
+            Spliterator<Map.Entry<Comparable, Object>> prefix = piece.trySplit();
+            assertNotNull(prefix);
+            assertEquals(size, prefix.estimateSize() + piece.estimateSize());
+            // Splits at a child boundary near the middle, so neither side gets most of it
+            assertTrue(prefix.estimateSize() > size / 8 && piece.estimateSize() > size / 8);
+            pieces.add(biggest, prefix);
+        }
+        List<Integer> keys = new ArrayList<>();
+        for (Spliterator<Map.Entry<Comparable, Object>> piece : pieces) {
+            long size = piece.estimateSize();
+            int before = keys.size();
+            piece.forEachRemaining(e -> keys.add((Integer) e.getKey()));
+            assertEquals(size, keys.size() - before);
+            assertEquals(0, piece.estimateSize());
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), keys);
+    }
+
+    @Test
+    public void testRangeStartingJustBelowBoundary() {
+        BasicBplusTree tree = new BasicBplusTree(16);
+        for (int i = 0; i < 20000; i++) {
+            tree.insert(i, "val" + i);
+        }
+        // The keys are their own positions, so this range starts a few keys below the root's first child boundary and
+        // that is the only boundary at the top
+        InternalNode root = (InternalNode) tree.getRoot();
+        int from = root.childCount(0) - 3;
+        int to = root.childCount(0) + root.childCount(1) - 1;
+        Spliterator<Map.Entry<Comparable, Object>> range = tree.spliterator(from, true, to, false);
+        long size = range.estimateSize();
+        Spliterator<Map.Entry<Comparable, Object>> prefix = range.trySplit();
+        assertNotNull(prefix);
+        assertTrue(prefix.estimateSize() >= size / 4 && range.estimateSize() >= size / 4);
+        assertTrue(prefix.tryAdvance(e -> assertEquals(from, e.getKey())));
+    }
+
+    @Test
+    public void testSmallTrees() {
+        BasicBplusTree tree = new BasicBplusTree(8);
+        assertEquals(0, tree.stream().count());
+        assertNull(tree.spliterator(null, true, null, true).trySplit());
+        tree.insert(1, "val1");
+        tree.insert(2, "val2");
+        // A single leaf can't be split at a child boundary
+        assertNull(tree.spliterator(null, true, null, true).trySplit());
+        assertEquals(2, tree.parallelStream().count());
+    }
+
+    private TreeMap<Integer, String> populate(BasicBplusTree tree, int numKeys) {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        for (int i = 0; i < numKeys; i++) {
+            int key = random.nextInt(numKeys * 5);
+            expected.put(key, "val" + key);
+            tree.insert(key, "val" + key);
+        }
+        return expected;
+    }
+}
@@ -0,0 +1,151 @@
+package fox.btree;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.TestCase.*;
+
+public class TreeStatsTest {
+
+    private Random random = new Random();
+
+    @Test
+    public void testCounts() {
+        BasicBplusTree tree = new BasicBplusTree(8, SearchStrategy.BINARY);
+        TreeStats stats = tree.enableMetrics();
+        assertSame(stats, tree.enableMetrics());
+        for (int i = 0; i < 10000; i++) {
+            int key = random.nextInt(5000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    tree.insert(key, "val" + key);
+                    break;
+                case 1:
+                    tree.find(key);
+                    break;
+                default:
+                    tree.remove(key);
+            }
+            if (i % 1000 == 0) {
+                checkGauges(tree, stats);
+            }
+        }
+        assertEquals(10000, stats.getInsertCount() + stats.getFindCount() + stats.getRemoveCount());
+        assertTrue(stats.getLeafSplits() > 0);
+        assertTrue(stats.getInternalSplits() > 0);
+        assertTrue(stats.getSiblingSteals() > 0);
+        assertTrue(stats.getMerges() > 0);
+        assertTrue(stats.getRootChanges() >= stats.getHeight() - 1);
+        // Binary search over nodes of up to 8 keys, at one node per level
+        assertTrue(stats.getComparisonsPerOperation() > stats.getHeight() - 1);
+        assertTrue(stats.getComparisonsPerOperation() < stats.getHeight() * 4);
+        assertTrue(stats.getFindLatencyMedian() <= stats.getFindLatency99th());
+        assertTrue(stats.getFindLatency99th() <= stats.getFindLatencyMax());
+        checkGauges(tree, stats);
+    }
+
+    @Test
+    public void testEnableOnExistingTree() {
+        BasicBplusTree tree = new BasicBplusTree(16);
+        for (int i = 0; i < 5000; i++) {
+            tree.insert(i, "val" + i);
+        }
+        TreeStats stats = tree.enableMetrics();
+        checkGauges(tree, stats);
+        assertEquals(0, stats.getInsertCount());
+
+        tree.disableMetrics();
+        tree.insert(-1, "val-1");
+        assertEquals(0, stats.getInsertCount());
+        assertEquals("val-1", tree.find(-1));
+    }
+
+    @Test
+    public void testBulkOperations() {
+        BasicBplusTree tree = new BasicBplusTree(8);
+        TreeStats stats = tree.enableMetrics();
+        List<Map.Entry<Integer, String>> entries = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(i, "val" + i));
+        }
+        Collections.shuffle(entries, random);
+        tree.parallelBulkLoad(entries, 0.6);
+        checkGauges(tree, stats);
+        tree.parallelRemoveRanges(Collections.singletonList(new KeyRange(100, 9000)));
+        checkGauges(tree, stats);
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        BasicBplusTree tree = new BasicBplusTree(8);
+        TreeStats stats = tree.enableMetrics();
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i, "val" + i);
+        }
+        ObjectName name = stats.register("test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(100L, server.getAttribute(name, "InsertCount"));
+            assertEquals(100, server.getAttribute(name, "KeyCount"));
+            assertEquals(stats.getHeight(), server.getAttribute(name, "Height"));
+            try {
+                stats.register("test");
+                fail("should throw");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        } finally {
+            stats.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(0.5));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 10);
+        }
+        assertEquals(100, histogram.count());
+        assertEquals(1000, histogram.max());
+        // Accurate to within a factor of two
+        long median = histogram.percentile(0.5);
+        assertTrue(median >= 500 && median < 1000);
+        assertEquals(1000, histogram.percentile(1));
+    }
+
+    private void checkGauges(BasicBplusTree tree, TreeStats stats) {
+        int height = 0;
+        int nodes = 0;
+        List<Node> level = Collections.singletonList(tree.getRoot());
+        while (!level.isEmpty()) {
+            height++;
+            nodes += level.size();
+            List<Node> next = new ArrayList<>();
+            for (Node node : level) {
+                for (int i = 0; i < node.numChildren(); i++) {
+                    next.add(node.getChild(i));
+                }
+            }
+            if (next.isEmpty()) {
+                assertEquals(level.size(), stats.getLeafCount());
+            }
+            level = next;
+        }
+        assertEquals(height, stats.getHeight());
+        assertEquals(nodes, stats.getNodeCount());
+        assertEquals(tree.keyCount(), stats.getKeyCount());
+        assertEquals((double) tree.keyCount() / (stats.getLeafCount() * (tree.branchingFactor() - 1)),
+                stats.getAverageLeafFill(), 1e-9);
+    }
+}